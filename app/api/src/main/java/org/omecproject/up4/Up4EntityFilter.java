@@ -0,0 +1,239 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.Ip4Address;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
+import org.onosproject.net.behaviour.upf.UpfTerminationDownlink;
+import org.onosproject.net.behaviour.upf.UpfTerminationUplink;
+
+import java.util.Objects;
+
+/**
+ * A filter selecting the UPF entities returned by a read. Each criterion is
+ * optional, and applies only to the entity types that are matched on the
+ * corresponding field: the UE address to downlink sessions and terminations,
+ * the TEID to uplink sessions, the tunnel peer ID to GTP tunnel peers, and the
+ * application ID to terminations and applications. An entity matches the
+ * filter if it matches all the criteria applicable to its type.
+ */
+@Beta
+public final class Up4EntityFilter {
+
+    private static final Up4EntityFilter EMPTY = builder().build();
+
+    private final Ip4Address ueAddress;
+    private final Integer teid;
+    private final Byte tunnelPeerId;
+    private final Byte appId;
+
+    private Up4EntityFilter(Ip4Address ueAddress, Integer teid, Byte tunnelPeerId, Byte appId) {
+        this.ueAddress = ueAddress;
+        this.teid = teid;
+        this.tunnelPeerId = tunnelPeerId;
+        this.appId = appId;
+    }
+
+    /**
+     * Returns a filter matching all entities.
+     *
+     * @return the empty filter
+     */
+    public static Up4EntityFilter empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the UE address criterion, or null if not set.
+     *
+     * @return the UE address, or null
+     */
+    public Ip4Address ueAddress() {
+        return ueAddress;
+    }
+
+    /**
+     * Returns the TEID criterion, or null if not set.
+     *
+     * @return the TEID, or null
+     */
+    public Integer teid() {
+        return teid;
+    }
+
+    /**
+     * Returns the tunnel peer ID criterion, or null if not set.
+     *
+     * @return the tunnel peer ID, or null
+     */
+    public Byte tunnelPeerId() {
+        return tunnelPeerId;
+    }
+
+    /**
+     * Returns the application ID criterion, or null if not set.
+     *
+     * @return the application ID, or null
+     */
+    public Byte appId() {
+        return appId;
+    }
+
+    /**
+     * True if no criterion is set, and the filter matches all entities.
+     *
+     * @return true if the filter is empty
+     */
+    public boolean isEmpty() {
+        return ueAddress == null && teid == null && tunnelPeerId == null && appId == null;
+    }
+
+    /**
+     * Checks if the given entity matches this filter.
+     *
+     * @param entity the UPF entity
+     * @return true if the entity matches all the criteria applicable to its type
+     */
+    public boolean matches(UpfEntity entity) {
+        switch (entity.type()) {
+            case SESSION_DOWNLINK:
+                return matchesUe(((UpfSessionDownlink) entity).ueAddress());
+            case SESSION_UPLINK:
+                return teid == null || teid == ((UpfSessionUplink) entity).teid();
+            case TERMINATION_UPLINK:
+                UpfTerminationUplink termUl = (UpfTerminationUplink) entity;
+                return matchesUe(termUl.ueSessionId()) && matchesApp(termUl.applicationId());
+            case TERMINATION_DOWNLINK:
+                UpfTerminationDownlink termDl = (UpfTerminationDownlink) entity;
+                return matchesUe(termDl.ueSessionId()) && matchesApp(termDl.applicationId());
+            case TUNNEL_PEER:
+                return tunnelPeerId == null || tunnelPeerId == ((UpfGtpTunnelPeer) entity).tunPeerId();
+            case APPLICATION:
+                return matchesApp(((UpfApplication) entity).appId());
+            default:
+                return true;
+        }
+    }
+
+    private boolean matchesUe(Ip4Address address) {
+        return ueAddress == null || ueAddress.equals(address);
+    }
+
+    private boolean matchesApp(byte applicationId) {
+        return appId == null || appId == applicationId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Up4EntityFilter that = (Up4EntityFilter) o;
+        return Objects.equals(ueAddress, that.ueAddress) &&
+                Objects.equals(teid, that.teid) &&
+                Objects.equals(tunnelPeerId, that.tunnelPeerId) &&
+                Objects.equals(appId, that.appId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ueAddress, teid, tunnelPeerId, appId);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .omitNullValues()
+                .add("ueAddress", ueAddress)
+                .add("teid", teid)
+                .add("tunnelPeerId", tunnelPeerId)
+                .add("appId", appId)
+                .toString();
+    }
+
+    /**
+     * Returns a new filter builder.
+     *
+     * @return filter builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of Up4EntityFilter.
+     */
+    public static final class Builder {
+        private Ip4Address ueAddress;
+        private Integer teid;
+        private Byte tunnelPeerId;
+        private Byte appId;
+
+        private Builder() {
+        }
+
+        /**
+         * Selects the entities of the given UE.
+         *
+         * @param ueAddress the UE address
+         * @return this builder
+         */
+        public Builder withUeAddress(Ip4Address ueAddress) {
+            this.ueAddress = ueAddress;
+            return this;
+        }
+
+        /**
+         * Selects the entities with the given TEID.
+         *
+         * @param teid the TEID
+         * @return this builder
+         */
+        public Builder withTeid(int teid) {
+            this.teid = teid;
+            return this;
+        }
+
+        /**
+         * Selects the entities with the given tunnel peer ID.
+         *
+         * @param tunnelPeerId the tunnel peer ID
+         * @return this builder
+         */
+        public Builder withTunnelPeerId(byte tunnelPeerId) {
+            this.tunnelPeerId = tunnelPeerId;
+            return this;
+        }
+
+        /**
+         * Selects the entities with the given application ID.
+         *
+         * @param appId the application ID
+         * @return this builder
+         */
+        public Builder withAppId(byte appId) {
+            this.appId = appId;
+            return this;
+        }
+
+        /**
+         * Builds the filter.
+         *
+         * @return the filter
+         */
+        public Up4EntityFilter build() {
+            return new Up4EntityFilter(ueAddress, teid, tunnelPeerId, appId);
+        }
+    }
+}
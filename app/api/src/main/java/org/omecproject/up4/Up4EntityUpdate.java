@@ -0,0 +1,105 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A single update of a batch of UPF entities to be applied via the Up4Service.
+ */
+@Beta
+public final class Up4EntityUpdate {
+
+    /**
+     * Types of update.
+     */
+    public enum Type {
+        /**
+         * Insert or modify the UPF entity.
+         */
+        APPLY,
+        /**
+         * Delete the UPF entity.
+         */
+        DELETE
+    }
+
+    private final Type type;
+    private final UpfEntity entity;
+
+    private Up4EntityUpdate(Type type, UpfEntity entity) {
+        this.type = checkNotNull(type);
+        this.entity = checkNotNull(entity);
+    }
+
+    /**
+     * Creates an update that applies the given UPF entity.
+     *
+     * @param entity the UPF entity
+     * @return the update
+     */
+    public static Up4EntityUpdate apply(UpfEntity entity) {
+        return new Up4EntityUpdate(Type.APPLY, entity);
+    }
+
+    /**
+     * Creates an update that deletes the given UPF entity.
+     *
+     * @param entity the UPF entity
+     * @return the update
+     */
+    public static Up4EntityUpdate delete(UpfEntity entity) {
+        return new Up4EntityUpdate(Type.DELETE, entity);
+    }
+
+    /**
+     * Returns the type of this update.
+     *
+     * @return the update type
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the UPF entity of this update.
+     *
+     * @return the UPF entity
+     */
+    public UpfEntity entity() {
+        return entity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Up4EntityUpdate that = (Up4EntityUpdate) o;
+        return type == that.type && entity.equals(that.entity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, entity);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", type)
+                .add("entity", entity)
+                .toString();
+    }
+}
@@ -22,7 +22,17 @@ public class Up4Event extends AbstractEvent<Up4Event.Type, Up4EventSubject> {
          * Signals that the data plane device has detected a downlink packet for a UE in buffering
          * state.
          */
-        DOWNLINK_DATA_NOTIFICATION
+        DOWNLINK_DATA_NOTIFICATION,
+
+        /**
+         * Signals that the UP4 app configuration has been updated.
+         */
+        CONFIG_UPDATED,
+
+        /**
+         * Signals that the UPF data plane has been (re-)initialized.
+         */
+        DATA_PLANE_READY
     }
 
     /**
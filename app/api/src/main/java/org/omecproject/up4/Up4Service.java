@@ -7,7 +7,14 @@ package org.omecproject.up4;
 
 import com.google.common.annotations.Beta;
 import org.onosproject.event.ListenerService;
+import org.onosproject.net.behaviour.upf.UpfCounter;
 import org.onosproject.net.behaviour.upf.UpfDevice;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfProgrammableException;
+
+import java.util.Collection;
+import java.util.List;
 
 
 /**
@@ -31,4 +38,70 @@ public interface Up4Service extends ListenerService<Up4Event, Up4EventListener>,
      */
     boolean configIsLoaded();
 
+    /**
+     * Applies the given batch of updates to the UPF data plane, in order.
+     * All updates are validated before any of them is pushed to the data
+     * plane, so that an invalid update does not leave the batch half applied.
+     * If the data plane fails while applying an update, the remaining ones
+     * are not applied.
+     *
+     * @param updates the updates to apply
+     * @throws UpfProgrammableException if an update is invalid or cannot be applied
+     */
+    void applyBatch(List<Up4EntityUpdate> updates) throws UpfProgrammableException;
+
+    /**
+     * Reads the UPF entities of the given type matching the given filter.
+     * Lookups by UE address, TEID, tunnel peer ID or application ID are served
+     * from an index of the UPF entities, without reading the whole table.
+     *
+     * @param entityType the type of entities to read
+     * @param filter     the filter selecting the entities to read
+     * @return the UPF entities matching the filter
+     * @throws UpfProgrammableException if the entities cannot be read
+     */
+    Collection<? extends UpfEntity> readAll(UpfEntityType entityType, Up4EntityFilter filter)
+            throws UpfProgrammableException;
+
+    /**
+     * Reads the counter cells with index in the range [fromCounterId, toCounterId),
+     * aggregating the values read from all UPF physical devices. Small ranges
+     * are read cell by cell, larger ranges with a single bulk read per device.
+     *
+     * @param fromCounterId the first counter cell index to read, inclusive
+     * @param toCounterId   the last counter cell index to read, exclusive
+     * @return the counter cells in the given range
+     * @throws UpfProgrammableException if the range is invalid or the counters cannot be read
+     */
+    Collection<UpfCounter> readCounters(long fromCounterId, long toCounterId) throws UpfProgrammableException;
+
+    /**
+     * Starts a resync of the UPF entities, e.g., after a PFCP agent restart.
+     * The client is expected to re-apply all the UPF entities it wants to be
+     * installed, and then to call {@link #commitResync()}. Entities identical
+     * to the installed ones are not pushed again to the data plane. Starting a
+     * resync while another one is in progress restarts it.
+     *
+     * @throws UpfProgrammableException if the installed entities cannot be read
+     */
+    void beginResync() throws UpfProgrammableException;
+
+    /**
+     * Completes the resync started with {@link #beginResync()}, deleting the
+     * UPF entities that have not been re-applied since then. UPF interfaces
+     * are not affected, as they are managed via the UP4 app configuration.
+     *
+     * @return the number of deleted UPF entities
+     * @throws UpfProgrammableException if no resync is in progress or stale
+     *                                  entities cannot be deleted
+     */
+    long commitResync() throws UpfProgrammableException;
+
+    /**
+     * Aborts the resync started with {@link #beginResync()}, if any, e.g., when
+     * the client that started it disconnects. Entities that have not been
+     * re-applied are kept, and a commit in progress stops deleting them.
+     */
+    void abortResync();
+
 }
@@ -41,6 +41,17 @@ public interface Up4Translator {
      */
     PiTableEntry entityToUp4TableEntry(UpfEntity entity) throws Up4TranslationException;
 
+    /**
+     * Builds a filter from the match fields of the given UP4 logical pipeline
+     * entry, as found in a read request. Match fields that are not set are
+     * not used to filter.
+     *
+     * @param entry the UP4 logical pipeline entry
+     * @return the filter selecting the entities matching the given entry
+     * @throws Up4TranslationException if a match field cannot be translated
+     */
+    Up4EntityFilter up4TableEntryToFilter(PiTableEntry entry) throws Up4TranslationException;
+
 
     class Up4TranslationException extends Exception {
         /**
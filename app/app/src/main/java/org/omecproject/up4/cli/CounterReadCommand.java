@@ -7,14 +7,17 @@ package org.omecproject.up4.cli;
 import org.apache.karaf.shell.api.action.Argument;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
-import org.omecproject.up4.Up4Service;
+import org.omecproject.up4.impl.CounterReadResult;
 import org.omecproject.up4.impl.Up4AdminService;
 import org.onosproject.cli.AbstractShellCommand;
 import org.onosproject.cli.net.DeviceIdCompleter;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.behaviour.upf.UpfCounter;
 
+import java.util.Comparator;
+
 /**
  * Counter read command.
  */
@@ -34,16 +37,40 @@ public class CounterReadCommand extends AbstractShellCommand {
     @Completion(DeviceIdCompleter.class)
     String deviceId = null;
 
+    @Option(name = "-e", aliases = "--end",
+            description = "Read all counter cells from ctr-index up to this index (exclusive).",
+            required = false, multiValued = false)
+    int ctrIndexEnd = -1;
+
+    @Option(name = "-s", aliases = "--max-staleness",
+            description = "Max age in milliseconds of cached counter values, 0 to read from the devices. " +
+                    "Defaults to the configured counter cache TTL.",
+            required = false, multiValued = false)
+    long maxStaleness = -1;
+
     @Override
     protected void doExecute() throws Exception {
-        UpfCounter stats;
         if (deviceId != null) {
+            if (ctrIndexEnd != -1) {
+                print("Error: reading a range of counter cells is not supported per device");
+                return;
+            }
             Up4AdminService app = get(Up4AdminService.class);
-            stats = app.readCounter(ctrIndex, DeviceId.deviceId(deviceId));
-        } else {
-            Up4Service app = get(Up4Service.class);
-            stats = app.readCounter(ctrIndex);
+            print(app.readCounter(ctrIndex, DeviceId.deviceId(deviceId)).toString());
+            return;
+        }
+        int end = ctrIndexEnd != -1 ? ctrIndexEnd : ctrIndex + 1;
+        // A negative staleness reads with the configured counter cache TTL.
+        CounterReadResult result = get(Up4AdminService.class).readCounters(ctrIndex, end, maxStaleness);
+        if (ctrIndexEnd == -1 && result.counters().isEmpty()) {
+            print("Error: counter cell index above max supported UE value");
+            return;
+        }
+        result.counters().stream()
+                .sorted(Comparator.comparingInt(UpfCounter::getCellId))
+                .forEach(stats -> print(stats.toString()));
+        if (!result.isComplete()) {
+            print("Warning: partial counters, missing devices %s", result.missingDevices());
         }
-        print(stats.toString());
     }
 }
@@ -0,0 +1,25 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.omecproject.up4.impl.Up4AdminService;
+import org.onosproject.cli.AbstractShellCommand;
+
+/**
+ * Print the queue depth of the UPF event lanes.
+ */
+@Service
+@Command(scope = "up4", name = "event-lanes",
+        description = "Print the queue depth of the UPF event lanes")
+public class EventLanesCommand extends AbstractShellCommand {
+
+    @Override
+    protected void doExecute() {
+        get(Up4AdminService.class).eventQueueDepths().forEach(
+                (lane, queueDepth) -> print("lane=%s, queueDepth=%d", lane, queueDepth));
+    }
+}
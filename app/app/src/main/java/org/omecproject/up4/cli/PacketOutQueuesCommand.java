@@ -0,0 +1,35 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.omecproject.up4.impl.Up4NorthComponent;
+import org.omecproject.up4.impl.Up4PacketOutQueue;
+import org.onosproject.cli.AbstractShellCommand;
+
+/**
+ * Print statistics of the northbound packet-out queues.
+ */
+@Service
+@Command(scope = "up4", name = "packet-out-queues",
+        description = "Print statistics of the northbound packet-out queues")
+public class PacketOutQueuesCommand extends AbstractShellCommand {
+
+    @Override
+    protected void doExecute() {
+        Up4NorthComponent up4NorthComponent = get(Up4NorthComponent.class);
+
+        if (up4NorthComponent == null) {
+            print("Error: Up4NorthComponent is null");
+            return;
+        }
+
+        for (Up4PacketOutQueue.Stats stats : up4NorthComponent.packetOutQueueStats()) {
+            print("stream=%s, queueDepth=%d, sent=%d, dropped=%d, failed=%d",
+                  stats.name(), stats.queueDepth(), stats.sent(), stats.dropped(), stats.failed());
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.omecproject.up4.Up4Service;
 import org.omecproject.up4.impl.Up4AdminService;
+import org.omecproject.up4.impl.UpfMirrorDiff;
 import org.onosproject.cli.AbstractShellCommand;
 import org.onosproject.net.behaviour.upf.UpfEntity;
 import org.onosproject.net.behaviour.upf.UpfEntityType;
@@ -25,7 +26,7 @@ import java.util.List;
  */
 @Service
 @Command(scope = "up4", name = "read-entities",
-        description = "Print UPF entities installed in the UPF dataplane")
+        description = "Print UPF entities installed in the UPF dataplane, as mirrored by UP4")
 public class ReadUpfEntitiesCommand extends AbstractShellCommand {
 
     @Option(name = "--all", aliases = "-a",
@@ -68,6 +69,11 @@ public class ReadUpfEntitiesCommand extends AbstractShellCommand {
             required = false)
     boolean application = false;
 
+    @Option(name = "--verify", aliases = "-v",
+            description = "Compare the mirrored UPF entities with the ones read from the UPF dataplane",
+            required = false)
+    boolean verify = false;
+
 
     @Override
     protected void doExecute() {
@@ -118,7 +124,7 @@ public class ReadUpfEntitiesCommand extends AbstractShellCommand {
             }
             for (var type : printedTypes) {
                 if (type.equals(UpfEntityType.TERMINATION_UPLINK)) {
-                    Collection<? extends UpfEntity> terminations = up4Admin.adminReadAll(type);
+                    Collection<? extends UpfEntity> terminations = up4Service.readAll(type);
                     for (var t : terminations) {
                         UpfTerminationUplink term = (UpfTerminationUplink) t;
                         print(term.toString());
@@ -127,7 +133,7 @@ public class ReadUpfEntitiesCommand extends AbstractShellCommand {
                         }
                     }
                 } else if (type.equals(UpfEntityType.TERMINATION_DOWNLINK)) {
-                    Collection<? extends UpfEntity> terminations = up4Admin.adminReadAll(type);
+                    Collection<? extends UpfEntity> terminations = up4Service.readAll(type);
                     for (var t : terminations) {
                         UpfTerminationDownlink term = (UpfTerminationDownlink) t;
                         print(term.toString());
@@ -136,7 +142,16 @@ public class ReadUpfEntitiesCommand extends AbstractShellCommand {
                         }
                     }
                 } else {
-                    up4Admin.adminReadAll(type).forEach(upfEntity -> print(upfEntity.toString()));
+                    up4Service.readAll(type).forEach(upfEntity -> print(upfEntity.toString()));
+                }
+                if (verify && !type.equals(UpfEntityType.COUNTER)) {
+                    UpfMirrorDiff diff = up4Admin.verifyMirror(type);
+                    if (diff.isEmpty()) {
+                        print("%s: mirror matches the dataplane", type);
+                    } else {
+                        diff.missing().forEach(e -> print("%s: missing in the dataplane: %s", type, e));
+                        diff.unexpected().forEach(e -> print("%s: unexpected in the dataplane: %s", type, e));
+                    }
                 }
             }
         } catch (UpfProgrammableException e) {
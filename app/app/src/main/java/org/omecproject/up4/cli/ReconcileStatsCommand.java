@@ -0,0 +1,29 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.omecproject.up4.impl.ReconcileStats;
+import org.omecproject.up4.impl.Up4AdminService;
+import org.onosproject.cli.AbstractShellCommand;
+
+/**
+ * Print statistics of the reconciliation of the follower UPF devices.
+ */
+@Service
+@Command(scope = "up4", name = "reconcile-stats",
+        description = "Print statistics of the reconciliation of the follower UPF devices")
+public class ReconcileStatsCommand extends AbstractShellCommand {
+
+    @Override
+    protected void doExecute() {
+        ReconcileStats stats = get(Up4AdminService.class).reconcileStats();
+        print("passes=%d, driftPasses=%d, intervalSec=%d", stats.passes(), stats.driftPasses(), stats.interval());
+        print("lastPassMs=%d, lastPassFull=%s, unexpected=%d, stale=%d, missing=%d",
+              stats.lastPassMillis(), stats.lastPassFull(), stats.lastUnexpected(),
+              stats.lastStale(), stats.lastMissing());
+    }
+}
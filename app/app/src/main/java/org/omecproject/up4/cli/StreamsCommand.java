@@ -0,0 +1,33 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.omecproject.up4.impl.Up4NorthComponent;
+import org.onosproject.cli.AbstractShellCommand;
+
+/**
+ * Print statistics of the northbound StreamChannels.
+ */
+@Service
+@Command(scope = "up4", name = "streams",
+        description = "Print statistics of the northbound StreamChannels")
+public class StreamsCommand extends AbstractShellCommand {
+
+    @Override
+    protected void doExecute() {
+        Up4NorthComponent up4NorthComponent = get(Up4NorthComponent.class);
+
+        if (up4NorthComponent == null) {
+            print("Error: Up4NorthComponent is null");
+            return;
+        }
+
+        up4NorthComponent.streamStats().forEach(
+                (electionId, stats) -> print("electionId=%s, queueDepth=%d, sent=%d, dropped=%d",
+                                             electionId, stats.queueDepth(), stats.sent(), stats.dropped()));
+    }
+}
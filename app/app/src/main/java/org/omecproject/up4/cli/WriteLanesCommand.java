@@ -0,0 +1,38 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.cli;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.omecproject.up4.impl.Up4AdminService;
+import org.omecproject.up4.impl.Up4NorthComponent;
+import org.omecproject.up4.impl.Up4WriteScheduler;
+import org.onosproject.cli.AbstractShellCommand;
+
+/**
+ * Print statistics of the northbound write lanes.
+ */
+@Service
+@Command(scope = "up4", name = "write-lanes",
+        description = "Print statistics of the northbound write lanes")
+public class WriteLanesCommand extends AbstractShellCommand {
+
+    @Override
+    protected void doExecute() {
+        Up4NorthComponent up4NorthComponent = get(Up4NorthComponent.class);
+
+        if (up4NorthComponent == null) {
+            print("Error: Up4NorthComponent is null");
+            return;
+        }
+
+        for (Up4WriteScheduler.LaneStats stats : up4NorthComponent.writeLaneStats()) {
+            print("lane=%d, queueDepth=%d, completed=%d, avgWaitUs=%d, maxWaitUs=%d",
+                  stats.lane(), stats.queueDepth(), stats.completed(),
+                  stats.avgWaitMicros(), stats.maxWaitMicros());
+        }
+        print("elidedWrites=%d", get(Up4AdminService.class).elidedWrites());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.behaviour.upf.UpfCounter;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Counters aggregated over all UPF data plane devices, together with the
+ * devices that failed or timed out while reading them.
+ */
+public final class CounterReadResult {
+
+    private final Collection<UpfCounter> counters;
+    private final Set<DeviceId> missingDevices;
+
+    CounterReadResult(Collection<UpfCounter> counters, Set<DeviceId> missingDevices) {
+        this.counters = ImmutableList.copyOf(counters);
+        this.missingDevices = ImmutableSet.copyOf(missingDevices);
+    }
+
+    /**
+     * Returns the aggregated counters.
+     *
+     * @return the counters
+     */
+    public Collection<UpfCounter> counters() {
+        return counters;
+    }
+
+    /**
+     * Returns the UPF devices whose values are not included in the counters,
+     * because they failed or timed out and partial counter reads are enabled.
+     *
+     * @return the missing devices, empty if the counters are complete
+     */
+    public Set<DeviceId> missingDevices() {
+        return missingDevices;
+    }
+
+    /**
+     * Returns whether the counters include the values of all UPF devices.
+     *
+     * @return true if no device is missing
+     */
+    public boolean isComplete() {
+        return missingDevices.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("counters", counters.size())
+                .add("missingDevices", missingDevices)
+                .toString();
+    }
+}
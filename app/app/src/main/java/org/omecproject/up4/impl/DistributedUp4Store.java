@@ -7,8 +7,11 @@ package org.omecproject.up4.impl;
 import com.google.common.collect.ImmutableSet;
 import org.onlab.packet.Ip4Address;
 import org.onlab.util.KryoNamespace;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
 import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.service.EventuallyConsistentMap;
+import org.onosproject.store.service.EventuallyConsistentMapEvent;
+import org.onosproject.store.service.EventuallyConsistentMapListener;
 import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.WallClockTimestamp;
 import org.osgi.service.component.annotations.Activate;
@@ -20,6 +23,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -35,6 +41,7 @@ public class DistributedUp4Store implements Up4Store {
     protected StorageService storageService;
 
     protected static final String BUFFER_UE_MAP_NAME = "up4-buffer-ue";
+    protected static final String ENTITY_VERSIONS_MAP_NAME = "up4-entity-versions";
 
     protected static final KryoNamespace.Builder SERIALIZER = KryoNamespace.newBuilder()
             .register(KryoNamespaces.API);
@@ -43,6 +50,15 @@ public class DistributedUp4Store implements Up4Store {
     // This can happen in case of instance failure or change in the DNS resolution.
     protected EventuallyConsistentMap<Ip4Address, Boolean> bufferUes;
 
+    // Last modification of each type of UPF entity, as the identifier of the
+    // modifying instance followed by a sequence number.
+    protected EventuallyConsistentMap<String, String> entityVersions;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final EventuallyConsistentMapListener<String, String> entityVersionsListener =
+            new InternalEntityVersionsListener();
+    private volatile Consumer<UpfEntityType> entitiesModifiedListener;
+
     @Activate
     protected void activate() {
         // Allow unit test to inject farIdMap here.
@@ -53,7 +69,14 @@ public class DistributedUp4Store implements Up4Store {
                             .withSerializer(SERIALIZER)
                             .withTimestampProvider((k, v) -> new WallClockTimestamp())
                             .build();
+            this.entityVersions =
+                    storageService.<String, String>eventuallyConsistentMapBuilder()
+                            .withName(ENTITY_VERSIONS_MAP_NAME)
+                            .withSerializer(SERIALIZER)
+                            .withTimestampProvider((k, v) -> new WallClockTimestamp())
+                            .build();
         }
+        entityVersions.addListener(entityVersionsListener);
         log.info("Started");
     }
 
@@ -61,6 +84,9 @@ public class DistributedUp4Store implements Up4Store {
     protected void deactivate() {
         this.bufferUes.destroy();
         this.bufferUes = null;
+        this.entityVersions.removeListener(entityVersionsListener);
+        this.entityVersions.destroy();
+        this.entityVersions = null;
 
         log.info("Stopped");
     }
@@ -92,4 +118,32 @@ public class DistributedUp4Store implements Up4Store {
     public Set<Ip4Address> getBufferUe() {
         return ImmutableSet.copyOf(bufferUes.keySet());
     }
+
+    @Override
+    public void entitiesModified(UpfEntityType entityType) {
+        checkNotNull(entityType);
+        entityVersions.put(entityType.name(), instanceId + "/" + sequence.incrementAndGet());
+    }
+
+    @Override
+    public void setEntitiesModifiedListener(Consumer<UpfEntityType> listener) {
+        this.entitiesModifiedListener = listener;
+    }
+
+    private class InternalEntityVersionsListener implements EventuallyConsistentMapListener<String, String> {
+        @Override
+        public void event(EventuallyConsistentMapEvent<String, String> event) {
+            Consumer<UpfEntityType> listener = entitiesModifiedListener;
+            if (listener == null || event.type() != EventuallyConsistentMapEvent.Type.PUT ||
+                    event.value().startsWith(instanceId + "/")) {
+                // Modifications made by this instance are already known.
+                return;
+            }
+            try {
+                listener.accept(UpfEntityType.valueOf(event.key()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown UPF entity type {} modified by another instance", event.key());
+            }
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TableId;
+import org.onosproject.net.flow.TrafficSelector;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Differences between the flow rules of the leader UPF device and the ones of
+ * a follower UPF device. Rules are matched by table, priority and selector,
+ * using hash indexes, so that computing the differences takes linear time.
+ * Follower rules must be given with the device ID of the leader.
+ */
+final class FlowRuleDiff {
+
+    private final List<FlowRule> unexpected;
+    private final List<FlowRule> stale;
+    private final List<FlowRule> missing;
+
+    private FlowRuleDiff(List<FlowRule> unexpected, List<FlowRule> stale, List<FlowRule> missing) {
+        this.unexpected = unexpected;
+        this.stale = stale;
+        this.missing = missing;
+    }
+
+    /**
+     * Compares the given leader and follower rules.
+     *
+     * @param leaderRules   the rules of the leader
+     * @param followerRules the rules of the follower
+     * @return the differences
+     */
+    static FlowRuleDiff compute(Collection<? extends FlowRule> leaderRules,
+                                Collection<? extends FlowRule> followerRules) {
+        Map<Key, FlowRule> followerByKey = Maps.newHashMapWithExpectedSize(followerRules.size());
+        followerRules.forEach(fr -> followerByKey.putIfAbsent(Key.of(fr), fr));
+        Set<Key> leaderKeys = Sets.newHashSetWithExpectedSize(leaderRules.size());
+        ImmutableList.Builder<FlowRule> stale = ImmutableList.builder();
+        ImmutableList.Builder<FlowRule> missing = ImmutableList.builder();
+        for (FlowRule lr : leaderRules) {
+            Key key = Key.of(lr);
+            leaderKeys.add(key);
+            FlowRule fr = followerByKey.get(key);
+            if (fr == null) {
+                missing.add(lr);
+            } else if (!fr.exactMatch(lr)) {
+                stale.add(lr);
+            }
+        }
+        ImmutableList.Builder<FlowRule> unexpected = ImmutableList.builder();
+        followerByKey.forEach((key, fr) -> {
+            if (!leaderKeys.contains(key)) {
+                unexpected.add(fr);
+            }
+        });
+        return new FlowRuleDiff(unexpected.build(), stale.build(), missing.build());
+    }
+
+    /**
+     * Returns the follower rules that are not in the leader.
+     *
+     * @return the unexpected rules
+     */
+    List<FlowRule> unexpected() {
+        return unexpected;
+    }
+
+    /**
+     * Returns the leader rules that are in the follower with a different
+     * treatment.
+     *
+     * @return the stale rules
+     */
+    List<FlowRule> stale() {
+        return stale;
+    }
+
+    /**
+     * Returns the leader rules that are not in the follower.
+     *
+     * @return the missing rules
+     */
+    List<FlowRule> missing() {
+        return missing;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("unexpected", unexpected.size())
+                .add("stale", stale.size())
+                .add("missing", missing.size())
+                .toString();
+    }
+
+    /**
+     * Identifies the same flow rule on different UPF devices.
+     */
+    static final class Key {
+        private final TableId table;
+        private final int priority;
+        private final TrafficSelector selector;
+
+        private Key(TableId table, int priority, TrafficSelector selector) {
+            this.table = table;
+            this.priority = priority;
+            this.selector = selector;
+        }
+
+        /**
+         * Returns the key of the given flow rule.
+         *
+         * @param rule the flow rule
+         * @return the key
+         */
+        static Key of(FlowRule rule) {
+            return new Key(rule.table(), rule.priority(), rule.selector());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return priority == that.priority &&
+                    Objects.equals(table, that.table) &&
+                    Objects.equals(selector, that.selector);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, priority, selector);
+        }
+    }
+}
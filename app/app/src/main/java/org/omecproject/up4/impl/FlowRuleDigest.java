@@ -0,0 +1,99 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TableId;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Order-independent digest of the UPF flow rules of a device, bucketed by
+ * table. The digest of a table is the sum of the hashes of its rules, so that
+ * it can be updated incrementally when a rule is added or removed. Rules are
+ * hashed by table, priority, selector and treatment, so that the same rules
+ * installed on different devices have the same digest.
+ */
+final class FlowRuleDigest {
+
+    private final Map<FlowRuleDiff.Key, Long> ruleHashes = Maps.newHashMap();
+    private final Map<TableId, Long> tableDigests = Maps.newHashMap();
+
+    /**
+     * Adds the given rule to the digest, replacing the rule with the same
+     * table, priority and selector, if any.
+     *
+     * @param rule the flow rule
+     */
+    synchronized void add(FlowRule rule) {
+        long hash = hash(rule);
+        Long oldHash = ruleHashes.put(FlowRuleDiff.Key.of(rule), hash);
+        tableDigests.merge(rule.table(), hash - (oldHash == null ? 0 : oldHash), Long::sum);
+    }
+
+    /**
+     * Removes the given rule from the digest, if present.
+     *
+     * @param rule the flow rule
+     */
+    synchronized void remove(FlowRule rule) {
+        Long oldHash = ruleHashes.remove(FlowRuleDiff.Key.of(rule));
+        if (oldHash != null) {
+            tableDigests.merge(rule.table(), -oldHash, Long::sum);
+        }
+    }
+
+    /**
+     * Rebuilds the digest from the given rules.
+     *
+     * @param rules the flow rules
+     */
+    synchronized void reset(Collection<? extends FlowRule> rules) {
+        ruleHashes.clear();
+        tableDigests.clear();
+        rules.forEach(this::add);
+    }
+
+    /**
+     * Returns the digest of each table.
+     *
+     * @return the table digests
+     */
+    synchronized Map<TableId, Long> tables() {
+        return ImmutableMap.copyOf(tableDigests);
+    }
+
+    /**
+     * Returns the tables whose digest differs between the given digests.
+     * Tables missing from a digest are considered empty.
+     *
+     * @param digest      table digests
+     * @param otherDigest other table digests
+     * @return the tables with different digests
+     */
+    static Set<TableId> mismatchedTables(Map<TableId, Long> digest, Map<TableId, Long> otherDigest) {
+        Set<TableId> mismatched = Sets.newHashSet();
+        for (TableId table : Sets.union(digest.keySet(), otherDigest.keySet())) {
+            if (!digest.getOrDefault(table, 0L).equals(otherDigest.getOrDefault(table, 0L))) {
+                mismatched.add(table);
+            }
+        }
+        return mismatched;
+    }
+
+    private static long hash(FlowRule rule) {
+        long hash = 31L * FlowRuleDiff.Key.of(rule).hashCode() + Objects.hashCode(rule.treatment());
+        // Spread the bits, so that sums of similar rules are unlikely to collide.
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
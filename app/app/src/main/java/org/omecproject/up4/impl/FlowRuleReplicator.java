@@ -0,0 +1,137 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.onosproject.net.flow.FlowRule;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Coalesces the flow rules added to and removed from the leader UPF device
+ * before replicating them to the follower UPF devices. Rules are buffered for
+ * at most a window of time, or until a batch is full, and are then replicated
+ * together, see {@link WindowedCoalescer}. Within a batch, a later operation
+ * on a rule supersedes an earlier one on the same table, priority and
+ * selector: adding and then removing a rule results in a single removal,
+ * removing and then adding it results in a single addition.
+ */
+final class FlowRuleReplicator {
+
+    private static final Logger log = getLogger(FlowRuleReplicator.class);
+
+    /**
+     * Replicates a batch of flow rules to the follower UPF devices.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * Replicates the given leader rules.
+         *
+         * @param toAdd    rules to add or update
+         * @param toRemove rules to remove
+         */
+        void replicate(List<FlowRule> toAdd, List<FlowRule> toRemove);
+    }
+
+    private final Sink sink;
+    // Rules waiting to be replicated, by table, priority and selector.
+    private final WindowedCoalescer<FlowRuleDiff.Key, Pending> pending;
+
+    /**
+     * Creates a new replicator.
+     *
+     * @param sink         the sink of batches
+     * @param maxBatchSize maximum number of rules in a batch
+     * @param windowNs     maximum buffering time of a rule, in nanoseconds
+     */
+    FlowRuleReplicator(Sink sink, int maxBatchSize, long windowNs) {
+        this.sink = sink;
+        this.pending = new WindowedCoalescer<>(this, this::prepareReplication,
+                                               groupedThreads("omec/up4/replicate", "executor", log),
+                                               maxBatchSize, windowNs);
+    }
+
+    /**
+     * Updates the batching configuration. Rules already waiting are
+     * replicated according to the new configuration.
+     *
+     * @param newMaxBatchSize maximum number of rules in a batch, 0 for no limit
+     * @param newWindowNs     maximum buffering time of a rule, in nanoseconds, 0 to replicate right away
+     */
+    void configure(int newMaxBatchSize, long newWindowNs) {
+        pending.configure(newMaxBatchSize, newWindowNs);
+    }
+
+    /**
+     * Queues the replication of a rule added to the leader.
+     *
+     * @param rule the leader rule
+     */
+    void add(FlowRule rule) {
+        queue(rule, true);
+    }
+
+    /**
+     * Queues the replication of a rule removed from the leader.
+     *
+     * @param rule the leader rule
+     */
+    void remove(FlowRule rule) {
+        queue(rule, false);
+    }
+
+    /**
+     * Replicates all rules waiting to be replicated, on the calling thread.
+     */
+    @VisibleForTesting
+    void flush() {
+        pending.flushNow();
+    }
+
+    /**
+     * Stops the replicator, rules waiting to be replicated are dropped.
+     */
+    void shutdown() {
+        pending.shutdown();
+    }
+
+    private void queue(FlowRule rule, boolean add) {
+        Pending previous = pending.offer(FlowRuleDiff.Key.of(rule), new Pending(rule, add));
+        if (previous != null) {
+            log.debug("Coalescing {} of {} with previous {}",
+                      add ? "add" : "remove", rule.id(), previous.add ? "add" : "remove");
+        }
+    }
+
+    private Runnable prepareReplication(List<Pending> batch) {
+        List<FlowRule> toAdd = new ArrayList<>();
+        List<FlowRule> toRemove = new ArrayList<>();
+        batch.forEach(next -> (next.add ? toAdd : toRemove).add(next.rule));
+        return () -> {
+            try {
+                sink.replicate(toAdd, toRemove);
+            } catch (Exception e) {
+                log.error("Unable to replicate {} flow rules to the followers: {}",
+                          toAdd.size() + toRemove.size(), e.getMessage());
+            }
+        };
+    }
+
+    private static final class Pending {
+        private final FlowRule rule;
+        private final boolean add;
+
+        private Pending(FlowRule rule, boolean add) {
+            this.rule = rule;
+            this.add = add;
+        }
+    }
+}
@@ -13,6 +13,99 @@ public final class OsgiPropertyConstants {
     public static final String UPF_RECONCILE_INTERVAL = "upfReconcileInterval";
     public static final long UPF_RECONCILE_INTERVAL_DEFAULT = 30; // Seconds
 
+    public static final String UPF_RECONCILE_MAX_INTERVAL = "upfReconcileMaxInterval";
+    public static final long UPF_RECONCILE_MAX_INTERVAL_DEFAULT = 240; // Seconds
+
+    public static final String UPF_RECONCILE_THREADS = "upfReconcileThreads";
+    public static final int UPF_RECONCILE_THREADS_DEFAULT = 4;
+
+    public static final String UPF_RECONCILE_FULL_EVERY = "upfReconcileFullEvery";
+    public static final int UPF_RECONCILE_FULL_EVERY_DEFAULT = 10; // Passes, 1 to disable incremental passes
+
+    public static final String REPLICATION_WINDOW = "replicationWindow";
+    public static final int REPLICATION_WINDOW_DEFAULT = 5; // Milliseconds, 0 to replicate right away
+
+    public static final String REPLICATION_BATCH_SIZE = "replicationBatchSize";
+    public static final int REPLICATION_BATCH_SIZE_DEFAULT = 1000; // 0 for no limit
+
+    public static final String COUNTER_READ_THREADS = "counterReadThreads";
+    public static final int COUNTER_READ_THREADS_DEFAULT = 8;
+
+    public static final String COUNTER_READ_TIMEOUT = "counterReadTimeout";
+    public static final int COUNTER_READ_TIMEOUT_DEFAULT = 5000; // Milliseconds, per read
+
+    public static final String COUNTER_READ_PARTIAL = "counterReadPartial";
+    public static final boolean COUNTER_READ_PARTIAL_DEFAULT = false;
+
+    public static final String COUNTER_POLL_INTERVAL = "counterPollInterval";
+    public static final int COUNTER_POLL_INTERVAL_DEFAULT = 0; // Milliseconds, 0 to disable
+
+    public static final String COUNTER_CACHE_TTL = "counterCacheTtl";
+    public static final int COUNTER_CACHE_TTL_DEFAULT = 2000; // Milliseconds
+
+    public static final String WRITE_LANES = "writeLanes";
+    public static final int WRITE_LANES_DEFAULT = 4;
+
+    public static final String WRITE_LANE_QUEUE_SIZE = "writeLaneQueueSize";
+    public static final int WRITE_LANE_QUEUE_SIZE_DEFAULT = 1024; // Write requests per lane
+
+    public static final String READ_CHUNK_SIZE = "readChunkSize";
+    public static final int READ_CHUNK_SIZE_DEFAULT = 1024;
+
+    public static final String READ_THREADS = "readThreads";
+    public static final int READ_THREADS_DEFAULT = 4;
+
+    public static final String GRPC_PORT = "grpcPort";
+    public static final int GRPC_PORT_DEFAULT = AppConstants.GRPC_SERVER_PORT;
+
+    public static final String GRPC_BOSS_THREADS = "grpcBossThreads";
+    public static final int GRPC_BOSS_THREADS_DEFAULT = 0; // gRPC default
+
+    public static final String GRPC_WORKER_THREADS = "grpcWorkerThreads";
+    public static final int GRPC_WORKER_THREADS_DEFAULT = 0; // Netty default
+
+    public static final String GRPC_USE_EPOLL = "grpcUseEpoll";
+    public static final boolean GRPC_USE_EPOLL_DEFAULT = false;
+
+    public static final String GRPC_HANDLER_THREADS = "grpcHandlerThreads";
+    public static final int GRPC_HANDLER_THREADS_DEFAULT = 0; // gRPC default
+
+    public static final String GRPC_HANDLER_QUEUE_SIZE = "grpcHandlerQueueSize";
+    public static final int GRPC_HANDLER_QUEUE_SIZE_DEFAULT = 1024; // Calls
+
+    public static final String GRPC_MAX_INBOUND_MESSAGE_SIZE = "grpcMaxInboundMessageSize";
+    public static final int GRPC_MAX_INBOUND_MESSAGE_SIZE_DEFAULT = 4 * 1024 * 1024; // Bytes
+
+    public static final String GRPC_FLOW_CONTROL_WINDOW = "grpcFlowControlWindow";
+    public static final int GRPC_FLOW_CONTROL_WINDOW_DEFAULT = 1024 * 1024; // Bytes
+
+    public static final String GRPC_KEEPALIVE_TIME = "grpcKeepAliveTime";
+    public static final int GRPC_KEEPALIVE_TIME_DEFAULT = 7200; // Seconds
+
+    public static final String GRPC_KEEPALIVE_TIMEOUT = "grpcKeepAliveTimeout";
+    public static final int GRPC_KEEPALIVE_TIMEOUT_DEFAULT = 20; // Seconds
+
+    public static final String GRPC_PERMIT_KEEPALIVE_TIME = "grpcPermitKeepAliveTime";
+    public static final int GRPC_PERMIT_KEEPALIVE_TIME_DEFAULT = 300; // Seconds
+
+    public static final String DDN_MAX_LIST_SIZE = "ddnMaxListSize";
+    public static final int DDN_MAX_LIST_SIZE_DEFAULT = 64; // 0 for no limit
+
+    public static final String DDN_MAX_TIMEOUT = "ddnMaxTimeout";
+    public static final int DDN_MAX_TIMEOUT_DEFAULT = 10; // Milliseconds
+
+    public static final String DDN_ACK_TIMEOUT = "ddnAckTimeout";
+    public static final int DDN_ACK_TIMEOUT_DEFAULT = 1000; // Milliseconds
+
+    public static final String PACKET_OUT_QUEUE_SIZE = "packetOutQueueSize";
+    public static final int PACKET_OUT_QUEUE_SIZE_DEFAULT = 4096; // Frames per stream
+
+    public static final String STREAM_QUEUE_SIZE = "streamQueueSize";
+    public static final int STREAM_QUEUE_SIZE_DEFAULT = 1024; // Messages per stream
+
+    public static final String STREAM_OVERFLOW_POLICY = "streamOverflowPolicy";
+    public static final String STREAM_OVERFLOW_POLICY_DEFAULT = "DROP_OLDEST"; // or CLOSE_STREAM
+
     private OsgiPropertyConstants() {
     }
 }
@@ -0,0 +1,107 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive interval of the reconciliation of the follower UPF devices, and
+ * statistics of the reconciliation passes. The reconciliation task ticks at
+ * the base interval, and skips ticks to back off: the interval doubles after
+ * every pass that finds the followers in sync, up to a maximum, and goes back
+ * to the base interval after a pass that finds drift, or when a reset is
+ * requested, e.g., on UPF device events.
+ * <p>
+ * Only {@link #requestReset()} is thread safe, the other methods are called
+ * by the reconciliation task only.
+ */
+final class ReconcileBackOff {
+
+    private final AtomicBoolean resetRequested = new AtomicBoolean(false);
+    // Current interval, in number of ticks, and ticks left before the next pass.
+    private long intervalTicks = 1;
+    private long ticksToSkip = 0;
+    private long passes = 0;
+    private long driftPasses = 0;
+    private volatile ReconcileStats stats = ReconcileStats.NONE;
+
+    /**
+     * Requests the interval to go back to the base one, starting from the
+     * next tick.
+     */
+    void requestReset() {
+        resetRequested.set(true);
+    }
+
+    /**
+     * Returns whether a reconciliation pass must run on this tick. If not,
+     * the tick is skipped.
+     *
+     * @return true if a pass must run
+     */
+    boolean tick() {
+        if (resetRequested.getAndSet(false)) {
+            intervalTicks = 1;
+            ticksToSkip = 0;
+        }
+        if (ticksToSkip > 0) {
+            ticksToSkip--;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a completed pass and updates the interval: back to the base
+     * interval if any follower was out of sync, doubled otherwise.
+     *
+     * @param durationMillis duration of the pass, in milliseconds
+     * @param full           whether all the tables were checked
+     * @param diffs          differences found on the followers
+     * @param baseInterval   base interval, in seconds
+     * @param maxInterval    max interval, in seconds
+     * @return the statistics including the pass
+     */
+    ReconcileStats passCompleted(long durationMillis, boolean full, List<FlowRuleDiff> diffs,
+                                 long baseInterval, long maxInterval) {
+        int unexpected = 0;
+        int stale = 0;
+        int missing = 0;
+        for (FlowRuleDiff diff : diffs) {
+            unexpected += diff.unexpected().size();
+            stale += diff.stale().size();
+            missing += diff.missing().size();
+        }
+        passes++;
+        if (unexpected + stale + missing > 0) {
+            driftPasses++;
+            intervalTicks = 1;
+        } else {
+            long maxTicks = Math.max(1, maxInterval / Math.max(1, baseInterval));
+            intervalTicks = Math.min(intervalTicks * 2, maxTicks);
+        }
+        stats = new ReconcileStats(passes, driftPasses, durationMillis, full,
+                                   unexpected, stale, missing, intervalTicks * baseInterval);
+        return stats;
+    }
+
+    /**
+     * Skips the ticks of the current interval. Called after every pass,
+     * including the ones that failed before completing.
+     */
+    void passEnded() {
+        ticksToSkip = intervalTicks - 1;
+    }
+
+    /**
+     * Returns the statistics of the passes completed so far.
+     *
+     * @return the reconciliation statistics
+     */
+    ReconcileStats stats() {
+        return stats;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Statistics of the reconciliation of the follower UPF devices with the
+ * leader UPF device.
+ */
+public final class ReconcileStats {
+
+    static final ReconcileStats NONE = new ReconcileStats(0, 0, 0, false, 0, 0, 0, 0);
+
+    private final long passes;
+    private final long driftPasses;
+    private final long lastPassMillis;
+    private final boolean lastPassFull;
+    private final int lastUnexpected;
+    private final int lastStale;
+    private final int lastMissing;
+    private final long interval;
+
+    ReconcileStats(long passes, long driftPasses, long lastPassMillis, boolean lastPassFull,
+                   int lastUnexpected, int lastStale, int lastMissing, long interval) {
+        this.passes = passes;
+        this.driftPasses = driftPasses;
+        this.lastPassMillis = lastPassMillis;
+        this.lastPassFull = lastPassFull;
+        this.lastUnexpected = lastUnexpected;
+        this.lastStale = lastStale;
+        this.lastMissing = lastMissing;
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the number of reconciliation passes run so far.
+     *
+     * @return number of passes
+     */
+    public long passes() {
+        return passes;
+    }
+
+    /**
+     * Returns the number of passes that found followers out of sync.
+     *
+     * @return number of passes with drift
+     */
+    public long driftPasses() {
+        return driftPasses;
+    }
+
+    /**
+     * Returns the duration (in milliseconds) of the last pass.
+     *
+     * @return duration of the last pass in milliseconds
+     */
+    public long lastPassMillis() {
+        return lastPassMillis;
+    }
+
+    /**
+     * Returns true if the last pass checked all the flow rules, false if it
+     * checked only the ones modified since the previous pass.
+     *
+     * @return true if the last pass was a full pass
+     */
+    public boolean lastPassFull() {
+        return lastPassFull;
+    }
+
+    /**
+     * Returns the number of unexpected rules removed from the followers by
+     * the last pass.
+     *
+     * @return number of unexpected rules
+     */
+    public int lastUnexpected() {
+        return lastUnexpected;
+    }
+
+    /**
+     * Returns the number of stale rules updated on the followers by the last
+     * pass.
+     *
+     * @return number of stale rules
+     */
+    public int lastStale() {
+        return lastStale;
+    }
+
+    /**
+     * Returns the number of missing rules added to the followers by the last
+     * pass.
+     *
+     * @return number of missing rules
+     */
+    public int lastMissing() {
+        return lastMissing;
+    }
+
+    /**
+     * Returns the current interval (in seconds) between passes.
+     *
+     * @return interval in seconds
+     */
+    public long interval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("passes", passes)
+                .add("driftPasses", driftPasses)
+                .add("lastPassMillis", lastPassMillis)
+                .add("lastPassFull", lastPassFull)
+                .add("lastUnexpected", lastUnexpected)
+                .add("lastStale", lastStale)
+                .add("lastMissing", lastMissing)
+                .add("interval", interval)
+                .toString();
+    }
+}
@@ -14,6 +14,7 @@ import org.onosproject.net.behaviour.upf.UpfInterface;
 import org.onosproject.net.behaviour.upf.UpfProgrammableException;
 
 import java.util.Collection;
+import java.util.Map;
 
 
 /**
@@ -74,6 +75,17 @@ public interface Up4AdminService {
     Collection<? extends UpfEntity> adminReadAll(UpfEntityType entityType)
             throws UpfProgrammableException;
 
+    /**
+     * Compares the in-memory mirror of the given type of UPF entity, used to
+     * serve reads, with the entities read from the UPF data plane. The mirror
+     * is then reloaded from the data plane.
+     *
+     * @param entityType The UPF entity type to verify, other than counters
+     * @return the differences between the mirror and the data plane
+     * @throws UpfProgrammableException propagate the exception from the UPF data plane.
+     */
+    UpfMirrorDiff verifyMirror(UpfEntityType entityType) throws UpfProgrammableException;
+
     /**
      * Deletes the given UPF entity from the UPF data plane, without filtering out
      * deletes to entries directly managed by UP4.
@@ -92,6 +104,51 @@ public interface Up4AdminService {
      */
     void adminDeleteAll(UpfEntityType entityType) throws UpfProgrammableException;
 
+    /**
+     * Returns the number of applied UPF entities that were identical to the
+     * ones already installed, and were acknowledged without being pushed to
+     * the UPF data plane.
+     *
+     * @return the number of elided writes
+     */
+    long elidedWrites();
+
+    /**
+     * Returns the number of events waiting to be handled on each event lane.
+     * Control events (device, netcfg and pipeconf) and flow rule events are
+     * handled on separate lanes.
+     *
+     * @return the queue depth of each event lane, by lane name
+     */
+    Map<String, Integer> eventQueueDepths();
+
+    /**
+     * Returns the statistics of the reconciliation of the follower UPF devices
+     * with the leader UPF device.
+     *
+     * @return the reconciliation statistics
+     */
+    ReconcileStats reconcileStats();
+
+    /**
+     * Reads the counter cells with ID in the given range, aggregated over all
+     * UPF data plane devices. The counters are served from the snapshot of the
+     * background counter poller, if the snapshot is not older than the given
+     * staleness. When partial counter reads are enabled, the devices that
+     * failed or timed out are returned with the counters, which do not include
+     * their values.
+     *
+     * @param fromCounterId first counter cell ID to read, inclusive
+     * @param toCounterId   last counter cell ID to read, exclusive
+     * @param maxStaleness  max age in milliseconds of the returned values, 0
+     *                      to read from the UPF data plane, negative to use
+     *                      the configured counter cache TTL
+     * @return The UPF counters and the devices missing from them
+     * @throws UpfProgrammableException propagate the exception from the UPF data plane.
+     */
+    CounterReadResult readCounters(long fromCounterId, long toCounterId, long maxStaleness)
+            throws UpfProgrammableException;
+
     /**
      * Reads a counter at the given ID from the given UPF data plane device.
      *
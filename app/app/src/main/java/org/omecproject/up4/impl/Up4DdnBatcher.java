@@ -0,0 +1,237 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.ByteString;
+import org.onlab.packet.Ip4Address;
+import org.slf4j.Logger;
+import p4.v1.P4DataOuterClass;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Coalesces downlink data notifications (DDNs) into digest lists, following
+ * the semantics of the P4Runtime DigestEntry configuration:
+ * <ul>
+ *     <li>max_timeout_ns: maximum time a notification is buffered before
+ *     being sent, 0 to send as soon as possible;</li>
+ *     <li>max_list_size: maximum number of notifications in a digest list,
+ *     0 for no limit;</li>
+ *     <li>ack_timeout_ns: time to wait for the acknowledgement of a digest list
+ *     before a new notification for the same UE can be sent, 0 to never
+ *     suppress notifications.</li>
+ * </ul>
+ * Notifications for a UE already waiting to be sent are always suppressed.
+ * Notifications are coalesced into digest lists by a {@link WindowedCoalescer}.
+ */
+final class Up4DdnBatcher {
+
+    private static final Logger log = getLogger(Up4DdnBatcher.class);
+
+    /**
+     * Sends a digest list to the connected clients.
+     */
+    @FunctionalInterface
+    interface Sender {
+        /**
+         * Sends the given digest list.
+         *
+         * @param digestList the digest list
+         * @return true if the digest list has been sent to at least one client
+         */
+        boolean send(P4RuntimeOuterClass.DigestList digestList);
+    }
+
+    private final int digestId;
+    private final Sender sender;
+    // Clock of the acknowledgement deadlines, in nanoseconds.
+    private final LongSupplier nanoClock;
+
+    private long ackTimeoutNs;
+
+    // UEs waiting to be sent, guarded by the lock of the batcher.
+    private final WindowedCoalescer<Ip4Address, Ip4Address> pending;
+    // UEs sent and not acknowledged yet, with the deadline of the suppression.
+    private final Map<Ip4Address, Long> suppressedUntil = new HashMap<>();
+    // Digest lists waiting for an acknowledgement, in sending order.
+    private final LinkedHashMap<Long, SentList> unacked = new LinkedHashMap<>();
+    private long lastListId = 0;
+
+    /**
+     * Creates a new batcher.
+     *
+     * @param digestId     the P4Runtime ID of the DDN digest
+     * @param sender       the sender of digest lists
+     * @param maxListSize  maximum number of notifications in a digest list
+     * @param maxTimeoutNs maximum buffering time of a notification, in nanoseconds
+     * @param ackTimeoutNs acknowledgement timeout, in nanoseconds
+     */
+    Up4DdnBatcher(int digestId, Sender sender, int maxListSize, long maxTimeoutNs, long ackTimeoutNs) {
+        this(digestId, sender, maxListSize, maxTimeoutNs, ackTimeoutNs, System::nanoTime);
+    }
+
+    /**
+     * Creates a new batcher measuring the acknowledgement timeout with the
+     * given clock.
+     *
+     * @param digestId     the P4Runtime ID of the DDN digest
+     * @param sender       the sender of digest lists
+     * @param maxListSize  maximum number of notifications in a digest list
+     * @param maxTimeoutNs maximum buffering time of a notification, in nanoseconds
+     * @param ackTimeoutNs acknowledgement timeout, in nanoseconds
+     * @param nanoClock    the clock, in nanoseconds
+     */
+    @VisibleForTesting
+    Up4DdnBatcher(int digestId, Sender sender, int maxListSize, long maxTimeoutNs, long ackTimeoutNs,
+                  LongSupplier nanoClock) {
+        this.digestId = digestId;
+        this.sender = sender;
+        this.nanoClock = nanoClock;
+        this.ackTimeoutNs = Math.max(0, ackTimeoutNs);
+        this.pending = new WindowedCoalescer<>(this, this::prepareDigestList,
+                                               groupedThreads("omec/up4/north", "ddn-batcher", log),
+                                               maxListSize, maxTimeoutNs);
+    }
+
+    /**
+     * Updates the batching configuration. Notifications already waiting are
+     * sent according to the new configuration.
+     *
+     * @param newMaxListSize  maximum number of notifications in a digest list, 0 for no limit
+     * @param newMaxTimeoutNs maximum buffering time of a notification, in nanoseconds
+     * @param newAckTimeoutNs acknowledgement timeout, in nanoseconds, 0 to disable suppression
+     */
+    synchronized void configure(int newMaxListSize, long newMaxTimeoutNs, long newAckTimeoutNs) {
+        this.ackTimeoutNs = Math.max(0, newAckTimeoutNs);
+        pending.configure(newMaxListSize, newMaxTimeoutNs);
+    }
+
+    /**
+     * Adds a notification for the given UE, unless one is already waiting to
+     * be sent or waiting for an acknowledgement.
+     *
+     * @param ueAddress the UE address
+     */
+    synchronized void add(Ip4Address ueAddress) {
+        Long until = suppressedUntil.get(ueAddress);
+        if (until != null) {
+            if (until - nanoClock.getAsLong() > 0) {
+                log.debug("Suppressing DDN for UE {}, waiting for acknowledgement", ueAddress);
+                return;
+            }
+            suppressedUntil.remove(ueAddress);
+        }
+        if (!pending.offerIfAbsent(ueAddress, ueAddress)) {
+            log.debug("Suppressing DDN for UE {}, already pending", ueAddress);
+        }
+    }
+
+    /**
+     * Acknowledges the digest list with the given ID, new notifications for
+     * the UEs in that list are no longer suppressed.
+     *
+     * @param ackDigestId the digest ID of the acknowledged list
+     * @param listId      the ID of the acknowledged list
+     */
+    synchronized void ack(int ackDigestId, long listId) {
+        if (ackDigestId != digestId) {
+            log.warn("Received acknowledgement for unknown digest ID {}", ackDigestId);
+            return;
+        }
+        SentList sentList = unacked.remove(listId);
+        if (sentList == null) {
+            log.debug("Received acknowledgement for unknown or expired digest list {}", listId);
+            return;
+        }
+        sentList.ueAddresses.forEach(suppressedUntil::remove);
+    }
+
+    /**
+     * Sends all notifications waiting to be sent, on the calling thread.
+     */
+    @VisibleForTesting
+    void flush() {
+        pending.flushNow();
+    }
+
+    /**
+     * Stops the batcher, pending notifications are dropped.
+     */
+    void shutdown() {
+        pending.shutdown();
+    }
+
+    // Builds the digest list of the given UEs, with the lock of the batcher
+    // held, so that new notifications for them are suppressed before it is
+    // sent, and returns the action sending it.
+    private Runnable prepareDigestList(List<Ip4Address> ueAddresses) {
+        purgeExpired();
+        P4RuntimeOuterClass.DigestList.Builder builder = P4RuntimeOuterClass.DigestList.newBuilder()
+                .setDigestId(digestId)
+                .setListId(++lastListId)
+                .setTimestamp(System.currentTimeMillis() * 1000000L);
+        for (Ip4Address ueAddress : ueAddresses) {
+            builder.addData(P4DataOuterClass.P4Data.newBuilder()
+                                    .setBitstring(ByteString.copyFrom(ueAddress.toOctets())));
+        }
+        P4RuntimeOuterClass.DigestList digestList = builder.build();
+        boolean suppress = ackTimeoutNs > 0;
+        if (suppress) {
+            // Suppress new notifications before sending, as the ack might arrive right after.
+            long deadline = nanoClock.getAsLong() + ackTimeoutNs;
+            ueAddresses.forEach(ue -> suppressedUntil.put(ue, deadline));
+            unacked.put(digestList.getListId(), new SentList(ueAddresses, deadline));
+        }
+        return () -> send(digestList, suppress);
+    }
+
+    private void send(P4RuntimeOuterClass.DigestList digestList, boolean suppressed) {
+        boolean sent;
+        try {
+            sent = sender.send(digestList);
+        } catch (RuntimeException e) {
+            log.error("Unable to send DDN digest list", e);
+            sent = false;
+        }
+        if (!sent && suppressed) {
+            // Nobody will acknowledge this list.
+            ack(digestId, digestList.getListId());
+        }
+    }
+
+    // Drops the digest lists whose acknowledgement timeout expired.
+    private void purgeExpired() {
+        long now = nanoClock.getAsLong();
+        Iterator<SentList> it = unacked.values().iterator();
+        while (it.hasNext()) {
+            SentList sentList = it.next();
+            if (sentList.deadline - now > 0) {
+                break;
+            }
+            it.remove();
+            sentList.ueAddresses.forEach(ue -> suppressedUntil.remove(ue, sentList.deadline));
+        }
+    }
+
+    private static final class SentList {
+        private final List<Ip4Address> ueAddresses;
+        private final long deadline;
+
+        private SentList(List<Ip4Address> ueAddresses, long deadline) {
+            this.ueAddresses = ueAddresses;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -4,14 +4,20 @@
  */
 package org.omecproject.up4.impl;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import io.grpc.Context;
 import org.omecproject.dbuf.client.DbufClient;
 import org.omecproject.dbuf.client.DefaultDbufClient;
+import org.omecproject.up4.Up4EntityFilter;
+import org.omecproject.up4.Up4EntityUpdate;
 import org.omecproject.up4.Up4Event;
 import org.omecproject.up4.Up4EventListener;
+import org.omecproject.up4.Up4EventSubject;
 import org.omecproject.up4.Up4Service;
 import org.omecproject.up4.config.Up4Config;
 import org.omecproject.up4.config.Up4DbufConfig;
@@ -21,6 +27,8 @@ import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.event.AbstractListenerManager;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
 import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
@@ -48,6 +56,7 @@ import org.onosproject.net.flow.FlowRuleEvent;
 import org.onosproject.net.flow.FlowRuleListener;
 import org.onosproject.net.flow.FlowRuleOperations;
 import org.onosproject.net.flow.FlowRuleService;
+import org.onosproject.net.flow.TableId;
 import org.onosproject.net.flow.FlowEntry.FlowEntryState;
 import org.onosproject.net.pi.service.PiPipeconfEvent;
 import org.onosproject.net.pi.service.PiPipeconfListener;
@@ -64,28 +73,71 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static org.omecproject.up4.impl.AppConstants.SLICE_MOBILE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_CACHE_TTL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_CACHE_TTL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_POLL_INTERVAL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_POLL_INTERVAL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_PARTIAL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_PARTIAL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_TIMEOUT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_TIMEOUT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.REPLICATION_BATCH_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.REPLICATION_BATCH_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.REPLICATION_WINDOW;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.REPLICATION_WINDOW_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_FULL_EVERY;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_FULL_EVERY_DEFAULT;
 import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_INTERVAL;
 import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_INTERVAL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_MAX_INTERVAL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_MAX_INTERVAL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.UPF_RECONCILE_THREADS_DEFAULT;
+import static org.onlab.util.Tools.getIntegerProperty;
 import static org.onlab.util.Tools.getLongProperty;
 import static org.onlab.util.Tools.groupedThreads;
+import static org.onlab.util.Tools.isPropertyEnabled;
+import static org.onosproject.net.behaviour.upf.UpfEntityType.APPLICATION;
 import static org.onosproject.net.behaviour.upf.UpfEntityType.COUNTER;
 import static org.onosproject.net.behaviour.upf.UpfEntityType.SESSION_DOWNLINK;
+import static org.onosproject.net.behaviour.upf.UpfEntityType.SESSION_UPLINK;
 import static org.onosproject.net.behaviour.upf.UpfEntityType.TERMINATION_DOWNLINK;
 import static org.onosproject.net.behaviour.upf.UpfEntityType.TERMINATION_UPLINK;
 import static org.onosproject.net.behaviour.upf.UpfEntityType.TUNNEL_PEER;
@@ -98,6 +150,16 @@ import static org.onosproject.net.config.basics.SubjectFactories.APP_SUBJECT_FAC
 @Component(immediate = true, service = {Up4Service.class, Up4AdminService.class},
         property = {
                 UPF_RECONCILE_INTERVAL + ":Long=" + UPF_RECONCILE_INTERVAL_DEFAULT,
+                UPF_RECONCILE_FULL_EVERY + ":Integer=" + UPF_RECONCILE_FULL_EVERY_DEFAULT,
+                UPF_RECONCILE_MAX_INTERVAL + ":Long=" + UPF_RECONCILE_MAX_INTERVAL_DEFAULT,
+                UPF_RECONCILE_THREADS + ":Integer=" + UPF_RECONCILE_THREADS_DEFAULT,
+                REPLICATION_WINDOW + ":Integer=" + REPLICATION_WINDOW_DEFAULT,
+                REPLICATION_BATCH_SIZE + ":Integer=" + REPLICATION_BATCH_SIZE_DEFAULT,
+                COUNTER_READ_THREADS + ":Integer=" + COUNTER_READ_THREADS_DEFAULT,
+                COUNTER_READ_TIMEOUT + ":Integer=" + COUNTER_READ_TIMEOUT_DEFAULT,
+                COUNTER_READ_PARTIAL + ":Boolean=" + COUNTER_READ_PARTIAL_DEFAULT,
+                COUNTER_POLL_INTERVAL + ":Integer=" + COUNTER_POLL_INTERVAL_DEFAULT,
+                COUNTER_CACHE_TTL + ":Integer=" + COUNTER_CACHE_TTL_DEFAULT,
         })
 public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4EventListener>
         implements Up4Service, Up4AdminService {
@@ -105,9 +167,23 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     private static final long NO_UE_LIMIT = -1;
     public static final int GTP_PORT = 2152;
     public static final byte DBUF_TUNNEL_ID = 1;
+    // Counter ranges up to this size are read cell by cell instead of in bulk.
+    private static final long COUNTER_POINT_READ_MAX = 16;
+    // Entity types affected by a resync, in the order stale entities are deleted.
+    private static final List<UpfEntityType> RESYNC_TYPES = ImmutableList.of(
+            TERMINATION_UPLINK, TERMINATION_DOWNLINK, SESSION_UPLINK, SESSION_DOWNLINK, APPLICATION, TUNNEL_PEER);
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final AtomicBoolean upfInitialized = new AtomicBoolean(false);
+    private final UpfEntityIndex entityIndex = new UpfEntityIndex();
+    // Number of applied entities identical to the installed ones, not pushed to the data plane.
+    private final AtomicLong elidedWrites = new AtomicLong();
+    // Match keys of the entities re-applied during a resync, null if no resync is in progress.
+    private volatile Map<UpfEntityType, Set<Object>> resyncMarks;
+    // Held by the writes from applying an entity to marking it, and exclusively
+    // by the resync sweep while checking and deleting an entity, so that an
+    // entity re-applied concurrently is marked before it is checked.
+    private final ReadWriteLock resyncSweepLock = new ReentrantReadWriteLock();
     private final ConfigFactory<ApplicationId, Up4Config> up4ConfigFactory = new ConfigFactory<>(
             APP_SUBJECT_FACTORY, Up4Config.class, Up4Config.KEY) {
         @Override
@@ -141,17 +217,100 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected Up4Store up4Store;
 
-    private ExecutorService eventExecutor;
+    // Control events (device, netcfg and pipeconf) are handled on a separate
+    // lane from flow rule events, so that they are not delayed by bursts of
+    // flow rule events.
+    private ThreadPoolExecutor eventExecutor;
+    private ThreadPoolExecutor flowEventExecutor;
     private ScheduledExecutorService reconciliationExecutor;
     private Future<?> reconciliationTask;
+    private ExecutorService reconcileFollowerExecutor;
+    private FlowRuleReplicator replicator;
+
+    /**
+     * Time (in milliseconds) leader flow rules are buffered before being replicated to the followers.
+     **/
+    private int replicationWindow = REPLICATION_WINDOW_DEFAULT;
+
+    /**
+     * Max number of leader flow rules replicated together.
+     **/
+    private int replicationBatchSize = REPLICATION_BATCH_SIZE_DEFAULT;
+    private ExecutorService counterExecutor;
+    private ScheduledExecutorService counterPollExecutor;
+    private Future<?> counterPollTask;
 
     /**
      * Interval (in seconds) for reconciling state between UPF devices.
      **/
     private long upfReconcileInterval = UPF_RECONCILE_INTERVAL_DEFAULT;
 
+    /**
+     * Number of reconciliation passes between full passes. The other passes
+     * compare the rule digests of the devices, and only check the tables
+     * whose digest differs.
+     **/
+    private int upfReconcileFullEvery = UPF_RECONCILE_FULL_EVERY_DEFAULT;
+
+    /**
+     * Max interval (in seconds) between reconciliation passes. The interval
+     * doubles, starting from upfReconcileInterval, after every pass that finds
+     * the followers in sync, up to this value.
+     **/
+    private long upfReconcileMaxInterval = UPF_RECONCILE_MAX_INTERVAL_DEFAULT;
+
+    /**
+     * Number of threads reconciling follower UPF devices in parallel.
+     **/
+    private int upfReconcileThreads = UPF_RECONCILE_THREADS_DEFAULT;
+
+    // Digests of the UPF flow rules of each UPF device, updated by flow rule
+    // events and rebuilt by full reconciliation passes.
+    private final Map<DeviceId, FlowRuleDigest> ruleDigests = Maps.newConcurrentMap();
+    private final AtomicBoolean fullReconcileRequested = new AtomicBoolean(false);
+    // Reset on UPF device events.
+    private final ReconcileBackOff reconcileBackOff = new ReconcileBackOff();
+
+    /**
+     * Number of threads reading counters from the UPF devices in parallel.
+     **/
+    private int counterReadThreads = COUNTER_READ_THREADS_DEFAULT;
+
+    /**
+     * Time (in milliseconds) to wait for all UPF devices to return counters.
+     **/
+    private int counterReadTimeout = COUNTER_READ_TIMEOUT_DEFAULT;
+
+    /**
+     * Whether counters are returned without the devices that failed or timed out.
+     **/
+    private boolean counterReadPartial = COUNTER_READ_PARTIAL_DEFAULT;
+
+    /**
+     * Interval (in milliseconds) for polling all counters into a snapshot, 0 to disable.
+     **/
+    private int counterPollInterval = COUNTER_POLL_INTERVAL_DEFAULT;
+
+    /**
+     * Max age (in milliseconds) of the counter snapshot used to serve counter reads.
+     **/
+    private int counterCacheTtl = COUNTER_CACHE_TTL_DEFAULT;
+
+    private volatile CounterSnapshot counterSnapshot;
+    // Filled by the counter poller in turn: one is published in the snapshot
+    // while the other one is refilled. Only accessed by the poller.
+    private final UpfCounterAggregator[] pollAggregators = {
+            new UpfCounterAggregator(), new UpfCounterAggregator()};
+    private int nextPollAggregator;
+    // Held by reads of the counter snapshot, taken exclusively by the poller
+    // to wait for the reads of an old snapshot before refilling its aggregator.
+    private final ReadWriteLock counterSnapshotLock = new ReentrantReadWriteLock();
+    // Reused by bulk counter reads, taken by a read and given back when done.
+    private final AtomicReference<UpfCounterAggregator> spareAggregator = new AtomicReference<>();
+
     private ApplicationId appId;
     private InternalDeviceListener deviceListener;
+    private InternalMastershipListener mastershipListener;
     private InternalConfigListener netCfgListener;
     private PiPipeconfListener piPipeconfListener;
     private FlowRuleListener flowRuleListener;
@@ -174,14 +333,26 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         netCfgListener = new InternalConfigListener();
         piPipeconfListener = new InternalPiPipeconfListener();
         flowRuleListener = new InternalFlowRuleListener();
+        mastershipListener = new InternalMastershipListener();
         upfProgrammables = Maps.newConcurrentMap();
         upfDevices = Sets.newConcurrentHashSet();
-        eventExecutor = newSingleThreadScheduledExecutor(groupedThreads(
-                "omec/up4", "event-%d", log));
+        eventExecutor = newEventLane("event-%d");
+        flowEventExecutor = newEventLane("flow-event-%d");
         reconciliationExecutor = newSingleThreadScheduledExecutor(groupedThreads(
                 "omec/up4/reconcile", "executor", log));
+        reconcileFollowerExecutor = newFixedThreadPool(upfReconcileThreads, groupedThreads(
+                "omec/up4/reconcile", "follower-%d", log));
+        replicator = new FlowRuleReplicator(this::replicateToFollowers, replicationBatchSize,
+                                            TimeUnit.MILLISECONDS.toNanos(replicationWindow));
+        counterExecutor = newFixedThreadPool(counterReadThreads, groupedThreads(
+                "omec/up4/counters", "reader-%d", log));
+        counterPollExecutor = newSingleThreadScheduledExecutor(groupedThreads(
+                "omec/up4/counters", "poller", log));
+        scheduleCounterPoll();
 
         flowRuleService.addListener(flowRuleListener);
+        mastershipService.addListener(mastershipListener);
+        up4Store.setEntitiesModifiedListener(this::entitiesModifiedRemotely);
         netCfgService.addListener(netCfgListener);
         netCfgService.registerConfigFactory(up4ConfigFactory);
         netCfgService.registerConfigFactory(dbufConfigFactory);
@@ -198,6 +369,8 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     @Modified
     protected void modified(ComponentContext context) {
         Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+        readReconcileProperties(properties);
+        readReplicationProperties(properties);
         Long reconcileInterval = getLongProperty(properties, UPF_RECONCILE_INTERVAL);
         if (reconcileInterval != null && reconcileInterval != upfReconcileInterval) {
             upfReconcileInterval = reconcileInterval;
@@ -211,6 +384,135 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                 }
             }
         }
+        Integer readThreads = getIntegerProperty(properties, COUNTER_READ_THREADS);
+        if (readThreads != null && readThreads > 0 && readThreads != counterReadThreads) {
+            counterReadThreads = readThreads;
+            ExecutorService oldExecutor = counterExecutor;
+            counterExecutor = newFixedThreadPool(counterReadThreads, groupedThreads(
+                    "omec/up4/counters", "reader-%d", log));
+            if (oldExecutor != null) {
+                oldExecutor.shutdown();
+            }
+        }
+        Integer readTimeout = getIntegerProperty(properties, COUNTER_READ_TIMEOUT);
+        if (readTimeout != null && readTimeout > 0) {
+            counterReadTimeout = readTimeout;
+        }
+        Boolean readPartial = isPropertyEnabled(properties, COUNTER_READ_PARTIAL);
+        if (readPartial != null) {
+            counterReadPartial = readPartial;
+        }
+        Integer cacheTtl = getIntegerProperty(properties, COUNTER_CACHE_TTL);
+        if (cacheTtl != null && cacheTtl >= 0) {
+            counterCacheTtl = cacheTtl;
+        }
+        Integer pollInterval = getIntegerProperty(properties, COUNTER_POLL_INTERVAL);
+        if (pollInterval != null && pollInterval >= 0 && pollInterval != counterPollInterval) {
+            counterPollInterval = pollInterval;
+            scheduleCounterPoll();
+        }
+    }
+
+    private synchronized void scheduleCounterPoll() {
+        if (counterPollTask != null) {
+            counterPollTask.cancel(false);
+            counterPollTask = null;
+        }
+        counterSnapshot = null;
+        if (counterPollInterval > 0 && counterPollExecutor != null) {
+            counterPollTask = counterPollExecutor.scheduleAtFixedRate(
+                    this::pollCounters, 0, counterPollInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads all counters into a new snapshot. A snapshot is published only if
+     * all the UPF devices returned their counters. Not thread safe, called
+     * only by the counter poller, or by tests with polling disabled.
+     */
+    @VisibleForTesting
+    void pollCounters() {
+        if (!isReady()) {
+            counterSnapshot = null;
+            return;
+        }
+        // Either never published, or used by the snapshot replaced by the
+        // current one: reads that might still use it are done once the lock
+        // is acquired, later reads get the current snapshot.
+        UpfCounterAggregator aggregator = pollAggregators[nextPollAggregator];
+        counterSnapshotLock.writeLock().lock();
+        counterSnapshotLock.writeLock().unlock();
+        aggregator.reset();
+        try {
+            long timestamp = System.nanoTime();
+            long maxCounterId = isMaxUeSet() ? getMaxUe() * 2 : -1;
+            Set<DeviceId> missing = readFromAllDevices(
+                    upfProg -> upfProg.readCounters(maxCounterId), aggregator::addAll);
+            if (missing.isEmpty()) {
+                counterSnapshot = new CounterSnapshot(aggregator, timestamp);
+                nextPollAggregator = 1 - nextPollAggregator;
+            }
+        } catch (UpfProgrammableException | IllegalStateException e) {
+            log.warn("Unable to poll UPF counters: {}", e.getMessage());
+        }
+    }
+
+    // Applies the given function to the counter snapshot if it is not older
+    // than the given number of milliseconds, returns null otherwise.
+    private <R> R fromCounterSnapshot(long maxStaleness, Function<UpfCounterAggregator, R> materializer) {
+        counterSnapshotLock.readLock().lock();
+        try {
+            CounterSnapshot snapshot = freshCounterSnapshot(maxStaleness);
+            return snapshot != null ? materializer.apply(snapshot.counters) : null;
+        } finally {
+            counterSnapshotLock.readLock().unlock();
+        }
+    }
+
+    // Returns the counter snapshot if it is not older than the given number of
+    // milliseconds, null otherwise.
+    private CounterSnapshot freshCounterSnapshot(long maxStaleness) {
+        CounterSnapshot snapshot = counterSnapshot;
+        if (snapshot == null || maxStaleness <= 0 ||
+                System.nanoTime() - snapshot.timestamp > TimeUnit.MILLISECONDS.toNanos(maxStaleness)) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private void readReconcileProperties(Dictionary<?, ?> properties) {
+        Integer fullEvery = getIntegerProperty(properties, UPF_RECONCILE_FULL_EVERY);
+        if (fullEvery != null && fullEvery > 0) {
+            upfReconcileFullEvery = fullEvery;
+        }
+        Long maxInterval = getLongProperty(properties, UPF_RECONCILE_MAX_INTERVAL);
+        if (maxInterval != null && maxInterval > 0) {
+            upfReconcileMaxInterval = maxInterval;
+        }
+        Integer threads = getIntegerProperty(properties, UPF_RECONCILE_THREADS);
+        if (threads != null && threads > 0 && threads != upfReconcileThreads) {
+            upfReconcileThreads = threads;
+            ExecutorService oldExecutor = reconcileFollowerExecutor;
+            reconcileFollowerExecutor = newFixedThreadPool(upfReconcileThreads, groupedThreads(
+                    "omec/up4/reconcile", "follower-%d", log));
+            if (oldExecutor != null) {
+                oldExecutor.shutdown();
+            }
+        }
+    }
+
+    private void readReplicationProperties(Dictionary<?, ?> properties) {
+        Integer window = getIntegerProperty(properties, REPLICATION_WINDOW);
+        if (window != null && window >= 0) {
+            replicationWindow = window;
+        }
+        Integer batchSize = getIntegerProperty(properties, REPLICATION_BATCH_SIZE);
+        if (batchSize != null && batchSize >= 0) {
+            replicationBatchSize = batchSize;
+        }
+        if (replicator != null) {
+            replicator.configure(replicationBatchSize, TimeUnit.MILLISECONDS.toNanos(replicationWindow));
+        }
     }
 
     protected void preDeactivate() {
@@ -236,18 +538,62 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         eventDispatcher.removeSink(Up4Event.class);
         piPipeconfService.removeListener(piPipeconfListener);
         flowRuleService.removeListener(flowRuleListener);
+        mastershipService.removeListener(mastershipListener);
+        up4Store.setEntitiesModifiedListener(null);
 
         eventExecutor.shutdownNow();
+        flowEventExecutor.shutdownNow();
         reconciliationExecutor.shutdown();
-
+        reconcileFollowerExecutor.shutdownNow();
+        replicator.shutdown();
+        counterExecutor.shutdownNow();
+        counterPollExecutor.shutdownNow();
+
+        counterPollTask = null;
+        counterSnapshot = null;
+        counterPollExecutor = null;
+        counterExecutor = null;
         reconciliationExecutor = null;
+        reconcileFollowerExecutor = null;
+        replicator = null;
         eventExecutor = null;
+        flowEventExecutor = null;
         leaderUpfDevice = null;
         upfProgrammables = null;
         upfDevices = null;
         log.info("Stopped.");
     }
 
+    private ThreadPoolExecutor newEventLane(String threadName) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                                      groupedThreads("omec/up4", threadName, log));
+    }
+
+    @Override
+    public Map<String, Integer> eventQueueDepths() {
+        ThreadPoolExecutor control = eventExecutor;
+        ThreadPoolExecutor flow = flowEventExecutor;
+        return ImmutableMap.of("control", control == null ? 0 : control.getQueue().size(),
+                               "flow", flow == null ? 0 : flow.getQueue().size());
+    }
+
+    /**
+     * Sets the given UPF programmables as an initialized UPF data plane, the
+     * first one being the leader, without UPF physical devices.
+     *
+     * @param programmables the UPF programmables, in order
+     */
+    @VisibleForTesting
+    void setUpfDataPlane(Map<DeviceId, UpfProgrammable> programmables) {
+        synchronized (upfInitialized) {
+            leaderUpfDevice = programmables.keySet().iterator().next();
+            upfDevices.addAll(programmables.keySet());
+            upfProgrammables.putAll(programmables);
+            entityIndex.invalidateAll();
+            upfInitialized.set(true);
+        }
+    }
+
     @Override
     public boolean configIsLoaded() {
         return config != null;
@@ -334,6 +680,8 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                 ensureInterfacesInstalled();
                 // Update PSC configuration if needed
                 applyPscEncap();
+                // The device might have lost rules while unavailable
+                fullReconcileRequested.set(true);
             } else if (!upfDevices.contains(deviceId)) {
                 log.warn("UPF {} is not in the configuration!", deviceId);
             } else if (deviceService.getDevice(deviceId) == null) {
@@ -357,6 +705,7 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                     // The UPF data plane is initialized when all UPF physical
                     // devices have been initialized properly.
                     upfInitialized.set(true);
+                    entityIndex.invalidateAll();
 
                     // Do the initial device configuration required
                     installUpfEntities();
@@ -365,6 +714,7 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                     reconciliationTask = reconciliationExecutor.scheduleAtFixedRate(
                             new ReconcileUpfDevices(), 0, upfReconcileInterval, TimeUnit.SECONDS);
                     log.info("UPF data plane setup successful!");
+                    post(new Up4Event(Up4Event.Type.DATA_PLANE_READY, new Up4EventSubject(null)));
                 }
             }
         }
@@ -403,6 +753,8 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                 log.warn("{} is missing from leader device! Installing", iface);
                 try {
                     leader.apply(iface);
+                    entityIndex.invalidate(UpfEntityType.INTERFACE);
+                    up4Store.entitiesModified(UpfEntityType.INTERFACE);
                 } catch (UpfProgrammableException e) {
                     log.warn("Failed to insert interface: {}", e.getMessage());
                 }
@@ -432,10 +784,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     public Collection<UplinkUpfFlow> getUplinkFlows() throws UpfProgrammableException {
         Collection<UplinkUpfFlow> uplinkFlows = Lists.newArrayList();
         Collection<? extends UpfEntity> uplinkTerm = this.adminReadAll(TERMINATION_UPLINK);
+        Map<Integer, UpfCounter> counters = readCountersOf(
+                uplinkTerm.stream().map(t -> ((UpfTerminationUplink) t).counterId()).collect(Collectors.toSet()));
         for (UpfEntity t : uplinkTerm) {
             UpfTerminationUplink term = (UpfTerminationUplink) t;
             uplinkFlows.add(UplinkUpfFlow.builder().withTerminationUplink(term)
-                                    .withCounter(this.readCounter(term.counterId()))
+                                    .withCounter(counters.get(term.counterId()))
                                     .build());
         }
         return uplinkFlows;
@@ -448,6 +802,8 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         Map<Byte, UpfGtpTunnelPeer> idToTunn = Maps.newHashMap();
 
         Collection<? extends UpfEntity> downlinkTerm = this.adminReadAll(TERMINATION_DOWNLINK);
+        Map<Integer, UpfCounter> counters = readCountersOf(
+                downlinkTerm.stream().map(t -> ((UpfTerminationDownlink) t).counterId()).collect(Collectors.toSet()));
         this.adminReadAll(SESSION_DOWNLINK).forEach(
                 s -> ueToSess.put(((UpfSessionDownlink) s).ueAddress(), (UpfSessionDownlink) s));
         this.adminReadAll(TUNNEL_PEER).forEach(
@@ -464,13 +820,36 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                                       .withTerminationDownlink(term)
                                       .withSessionDownlink(sess)
                                       .withTunnelPeer(tunn)
-                                      .withCounter(this.readCounter(term.counterId()))
+                                      .withCounter(counters.get(term.counterId()))
                                       .build());
 
         }
         return downlinkFlows;
     }
 
+    // Reads the given counter cells, aggregated over all UPF devices, and
+    // returns them by cell ID. Cells are read with a single bulk read per
+    // device, unless they are so few that point reads are cheaper. Cells not
+    // returned by the data plane are reported as zero.
+    private Map<Integer, UpfCounter> readCountersOf(Set<Integer> cellIds) throws UpfProgrammableException {
+        Map<Integer, UpfCounter> counters = Maps.newHashMapWithExpectedSize(cellIds.size());
+        if (cellIds.isEmpty()) {
+            return counters;
+        }
+        if (cellIds.size() <= COUNTER_POINT_READ_MAX) {
+            for (int cellId : cellIds) {
+                counters.put(cellId, readCounter(cellId));
+            }
+            return counters;
+        }
+        // Bulk reads return all the cells below the upper bound.
+        long maxCellId = Collections.max(cellIds);
+        return readAggregatedCounters(maxCellId + 1, counterCacheTtl, (aggregator, missing) -> {
+            cellIds.forEach(cellId -> counters.put(cellId, aggregator.get(cellId)));
+            return counters;
+        });
+    }
+
     @Override
     public void installUpfEntities() {
         ensureInterfacesInstalled();
@@ -527,6 +906,9 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
             upfProgrammables = Maps.newConcurrentMap();
             upfDevices = Sets.newConcurrentHashSet();
             up4Store.reset();
+            entityIndex.invalidateAll();
+            counterSnapshot = null;
+            ruleDigests.clear();
             upfInitialized.set(false);
         }
     }
@@ -547,6 +929,7 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
             // Stop reconcile thread when UPF is being uninitialized
             stopReconcile();
             upfProgrammables.remove(deviceId);
+            ruleDigests.remove(deviceId);
             upfInitialized.set(false);
         }
     }
@@ -558,7 +941,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         } else if (config.isValid()) {
             List<DeviceId> upfDeviceIds = config.upfDeviceIds();
             this.config = config;
-            leaderUpfDevice = upfDeviceIds.isEmpty() ? null : upfDeviceIds.get(0);
+            DeviceId newLeader = upfDeviceIds.isEmpty() ? null : upfDeviceIds.get(0);
+            if (!Objects.equals(newLeader, leaderUpfDevice)) {
+                // The mirror reflects the previous leader.
+                entityIndex.invalidateAll();
+            }
+            leaderUpfDevice = newLeader;
             upfDevices.addAll(upfDeviceIds);
             upfDeviceIds.forEach(this::setUpfDevice);
             updateDbufTunnel();
@@ -566,6 +954,7 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
             log.error("Invalid UP4 config loaded! Cannot set up UPF.");
         }
         log.info("Up4Config updated");
+        post(new Up4Event(Up4Event.Type.CONFIG_UPDATED, new Up4EventSubject(null)));
     }
 
     private void updateDbufTunnel() {
@@ -635,6 +1024,13 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     public void cleanUp() {
         getLeaderUpfProgrammable().cleanUp();
         up4Store.reset();
+        entityIndex.invalidateAll();
+        for (UpfEntityType type : UpfEntityType.values()) {
+            if (type != COUNTER) {
+                up4Store.entitiesModified(type);
+            }
+        }
+        resyncMarks = null;
     }
 
     private UpfSessionDownlink convertToBuffering(UpfSessionDownlink sess) {
@@ -653,13 +1049,102 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
 
     @Override
     public void apply(UpfEntity entity) throws UpfProgrammableException {
+        UpfEntity toApply = prepareApply(entity);
+        Map<UpfEntityType, Set<Object>> marks = resyncMarks;
+        if (marks == null) {
+            applyPrepared(toApply);
+            return;
+        }
+        resyncSweepLock.readLock().lock();
+        try {
+            applyPrepared(toApply);
+            markResynced(marks, List.of(toApply));
+        } finally {
+            resyncSweepLock.readLock().unlock();
+        }
+    }
+
+    private void applyPrepared(UpfEntity toApply) throws UpfProgrammableException {
+        if (isNoOp(toApply)) {
+            return;
+        }
+        getLeaderUpfProgrammable().apply(toApply);
+        postApply(toApply);
+        up4Store.entitiesModified(toApply.type());
+    }
+
+    @Override
+    public void applyBatch(List<Up4EntityUpdate> updates) throws UpfProgrammableException {
+        // Validate and convert the whole batch before touching the data plane.
+        List<Up4EntityUpdate> prepared = new ArrayList<>(updates.size());
+        // Including no-ops, marked only once the whole batch is applied.
+        List<UpfEntity> applied = new ArrayList<>(updates.size());
+        // The mirror reflects the data plane before the batch: an entity
+        // deleted or modified earlier in the batch is never a no-op.
+        Set<Object> touched = Sets.newHashSet();
+        for (Up4EntityUpdate update : updates) {
+            if (update.type() == Up4EntityUpdate.Type.APPLY) {
+                UpfEntity toApply = prepareApply(update.entity());
+                applied.add(toApply);
+                if (!touched.add(batchKey(toApply)) || !isNoOp(toApply)) {
+                    prepared.add(Up4EntityUpdate.apply(toApply));
+                }
+            } else {
+                UpfEntity toDelete = prepareDelete(update.entity());
+                touched.add(batchKey(toDelete));
+                prepared.add(Up4EntityUpdate.delete(toDelete));
+            }
+        }
+        Map<UpfEntityType, Set<Object>> marks = resyncMarks;
+        if (marks == null) {
+            applyPreparedBatch(prepared);
+            return;
+        }
+        resyncSweepLock.readLock().lock();
+        try {
+            applyPreparedBatch(prepared);
+            markResynced(marks, applied);
+        } finally {
+            resyncSweepLock.readLock().unlock();
+        }
+    }
+
+    private void applyPreparedBatch(List<Up4EntityUpdate> prepared) throws UpfProgrammableException {
+        // Resolve the leader only once for the whole batch.
+        UpfProgrammable leader = getLeaderUpfProgrammable();
+        // Other instances are notified once per modified entity type.
+        Set<UpfEntityType> modified = EnumSet.noneOf(UpfEntityType.class);
+        try {
+            for (Up4EntityUpdate update : prepared) {
+                modified.add(update.entity().type());
+                if (update.type() == Up4EntityUpdate.Type.APPLY) {
+                    leader.apply(update.entity());
+                    postApply(update.entity());
+                } else {
+                    leader.delete(update.entity());
+                    postDelete(update.entity());
+                }
+            }
+        } finally {
+            modified.forEach(up4Store::entitiesModified);
+        }
+    }
+
+    /**
+     * Validates the given UPF entity and converts it to the entity that should
+     * be applied to the UPF data plane.
+     *
+     * @param entity the UPF entity received from the northbound
+     * @return the UPF entity to apply
+     * @throws UpfProgrammableException if the entity cannot be applied
+     */
+    private UpfEntity prepareApply(UpfEntity entity) throws UpfProgrammableException {
         switch (entity.type()) {
             case SESSION_DOWNLINK:
                 UpfSessionDownlink sessDl = (UpfSessionDownlink) entity;
                 if (sessDl.needsBuffering()) {
                     // Override tunnel peer id with the DBUF
-                    entity = convertToBuffering(sessDl);
-                    up4Store.learnBufferingUe(sessDl.ueAddress());
+                    return convertToBuffering(sessDl);
                 }
                 break;
             case TERMINATION_UPLINK:
@@ -699,44 +1184,157 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
             default:
                 break;
         }
-        getLeaderUpfProgrammable().apply(entity);
-        // Drain from DBUF if necessary
-        if (entity.type().equals(SESSION_DOWNLINK)) {
-            UpfSessionDownlink sess = (UpfSessionDownlink) entity;
-            if (!sess.needsBuffering() && up4Store.forgetBufferingUe(sess.ueAddress())) {
-                // TODO: Should we wait for rules to be installed on all devices before
-                //   triggering drain?
-                // Run the outbound rpc in a forked context so it doesn't cancel if it was called
-                // by an inbound rpc that completes faster than the drain call
-                Ip4Address ueAddr = sess.ueAddress();
-                Context ctx = Context.current().fork();
-                ctx.run(() -> {
-                    if (dbufClient == null) {
-                        log.error("Cannot start dbuf drain for {}, dbufClient is null", ueAddr);
-                        return;
+        return entity;
+    }
+
+    /**
+     * Returns true if the given entity is already installed as is, e.g., when
+     * re-sent by a PFCP agent after a reconnection, in which case it should
+     * not be pushed again to the data plane and to the followers.
+     *
+     * @param toApply the UPF entity to apply to the data plane
+     * @return true if applying the entity would not change the data plane
+     */
+    private boolean isNoOp(UpfEntity toApply) {
+        if (entityIndex.contains(toNorthbound(toApply))) {
+            log.debug("Skipping apply of {}, already installed", toApply);
+            elidedWrites.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // Identifies the entry of the given entity in its table, across types.
+    private Object batchKey(UpfEntity entity) {
+        return Arrays.asList(entity.type(), UpfEntityIndex.matchKey(toNorthbound(entity)));
+    }
+
+    @Override
+    public long elidedWrites() {
+        return elidedWrites.get();
+    }
+
+    @Override
+    public void beginResync() throws UpfProgrammableException {
+        Map<UpfEntityType, Set<Object>> marks = new EnumMap<>(UpfEntityType.class);
+        for (UpfEntityType type : RESYNC_TYPES) {
+            // Reload the mirror from the data plane, so that re-applied entities
+            // are recognized as no-ops only if they are actually installed.
+            entityIndex.invalidate(type);
+            readAll(type);
+            marks.put(type, Sets.newConcurrentHashSet());
+        }
+        if (resyncMarks != null) {
+            log.warn("Restarting resync in progress");
+        }
+        resyncMarks = marks;
+        log.info("Started resync of UPF entities");
+    }
+
+    @Override
+    public long commitResync() throws UpfProgrammableException {
+        Map<UpfEntityType, Set<Object>> marks = resyncMarks;
+        if (marks == null) {
+            throw new UpfProgrammableException("No resync in progress");
+        }
+        long deleted = 0;
+        try {
+            // Entities re-applied while sweeping are marked before being checked, and not deleted.
+            for (UpfEntityType type : RESYNC_TYPES) {
+                Set<Object> keys = marks.get(type);
+                for (UpfEntity entity : readAll(type)) {
+                    if (resyncMarks != marks) {
+                        throw new UpfProgrammableException(
+                                "Resync aborted after deleting " + deleted + " stale entities");
                     }
-                    if (config == null || config.dbufDrainAddr() == null) {
-                        log.error("Cannot start dbuf drain for {}, dbufDrainAddr is null", ueAddr);
-                        return;
+                    resyncSweepLock.writeLock().lock();
+                    try {
+                        if (!keys.contains(UpfEntityIndex.matchKey(entity))) {
+                            delete(entity);
+                            deleted++;
+                        }
+                    } finally {
+                        resyncSweepLock.writeLock().unlock();
                     }
-                    log.info("Started dbuf drain for {}", ueAddr);
-                    dbufClient.drain(ueAddr, config.dbufDrainAddr(), GTP_PORT)
-                            .whenComplete((result, ex) -> {
-                                if (ex != null) {
-                                    log.error("Exception while draining dbuf for {}: {}", ueAddr, ex);
-                                } else if (result) {
-                                    log.info("Dbuf drain completed for {}", ueAddr);
-                                } else {
-                                    log.warn("Unknown error while draining dbuf for {}", ueAddr);
-                                }
-                            });
-                });
+                }
+            }
+        } finally {
+            if (resyncMarks == marks) {
+                resyncMarks = null;
             }
         }
+        log.info("Completed resync of UPF entities, deleted {} stale entities", deleted);
+        return deleted;
+    }
+
+    @Override
+    public void abortResync() {
+        if (resyncMarks != null) {
+            resyncMarks = null;
+            log.info("Aborted resync of UPF entities");
+        }
+    }
+
+    // Marks the given entities as re-applied, once successfully applied.
+    private void markResynced(Map<UpfEntityType, Set<Object>> marks, List<UpfEntity> applied) {
+        for (UpfEntity entity : applied) {
+            Set<Object> keys = marks.get(entity.type());
+            if (keys != null) {
+                keys.add(UpfEntityIndex.matchKey(toNorthbound(entity)));
+            }
+        }
+    }
+
+    /**
+     * Updates the buffering state after the given UPF entity has been applied
+     * to the UPF data plane, and triggers the DBUF drain if necessary.
+     *
+     * @param entity the UPF entity applied to the data plane
+     */
+    private void postApply(UpfEntity entity) {
+        entityIndex.put(toNorthbound(entity));
+        if (!entity.type().equals(SESSION_DOWNLINK)) {
+            return;
+        }
+        UpfSessionDownlink sess = (UpfSessionDownlink) entity;
+        if (sess.needsBuffering()) {
+            up4Store.learnBufferingUe(sess.ueAddress());
+        } else if (up4Store.forgetBufferingUe(sess.ueAddress())) {
+            // Drain from DBUF if necessary
+            // TODO: Should we wait for rules to be installed on all devices before
+            //   triggering drain?
+            // Run the outbound rpc in a forked context so it doesn't cancel if it was called
+            // by an inbound rpc that completes faster than the drain call
+            Ip4Address ueAddr = sess.ueAddress();
+            Context ctx = Context.current().fork();
+            ctx.run(() -> {
+                if (dbufClient == null) {
+                    log.error("Cannot start dbuf drain for {}, dbufClient is null", ueAddr);
+                    return;
+                }
+                if (config == null || config.dbufDrainAddr() == null) {
+                    log.error("Cannot start dbuf drain for {}, dbufDrainAddr is null", ueAddr);
+                    return;
+                }
+                log.info("Started dbuf drain for {}", ueAddr);
+                dbufClient.drain(ueAddr, config.dbufDrainAddr(), GTP_PORT)
+                        .whenComplete((result, ex) -> {
+                            if (ex != null) {
+                                log.error("Exception while draining dbuf for {}: {}", ueAddr, ex);
+                            } else if (result) {
+                                log.info("Dbuf drain completed for {}", ueAddr);
+                            } else {
+                                log.warn("Unknown error while draining dbuf for {}", ueAddr);
+                            }
+                        });
+            });
+        }
     }
 
     public void adminApply(UpfEntity entity) throws UpfProgrammableException {
         getLeaderUpfProgrammable().apply(entity);
+        entityIndex.invalidate(entity.type());
+        up4Store.entitiesModified(entity.type());
     }
 
     @Override
@@ -744,39 +1342,105 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         if (entityType.equals(COUNTER)) {
             // Counters can't be read from only the leader UPF.
             return this.readCounters(-1);
-        } else {
-            Collection<? extends UpfEntity> entities = getLeaderUpfProgrammable().readAll(entityType);
-            switch (entityType) {
-                case SESSION_DOWNLINK:
-                    // TODO: this might be an overkill, however reads are required
-                    //  only during reconciliation, so this shouldn't affect the
-                    //  attachment and detachment of UEs.
-                    // Map the DBUF entities back to be BUFFERING entities.
-                    return entities.stream().map(e -> {
-                        UpfSessionDownlink sess = (UpfSessionDownlink) e;
-                        if (sess.tunPeerId() == DBUF_TUNNEL_ID) {
-                            return UpfSessionDownlink.builder()
-                                    .needsBuffering(true)
-                                    // Towards northbound, do not specify tunnel peer id
-                                    .withUeAddress(sess.ueAddress())
-                                    .build();
-                        }
-                        return e;
-                    }).collect(Collectors.toList());
-                case INTERFACE:
-                    // Don't expose DBUF interface
-                    return entities.stream()
-                            .filter(e -> !((UpfInterface) e).isDbufReceiver())
-                            .collect(Collectors.toList());
-                case TUNNEL_PEER:
-                    // Don't expose DBUF GTP tunnel peer
-                    return entities.stream()
-                            .filter(e -> ((UpfGtpTunnelPeer) e).tunPeerId() != DBUF_TUNNEL_ID)
-                            .collect(Collectors.toList());
-                default:
-                    return entities;
-            }
         }
+        assertUpfIsReady();
+        // Served from the mirror, the data plane is read only to load it.
+        Collection<UpfEntity> mirrored = entityIndex.all(entityType);
+        if (mirrored != null) {
+            return mirrored;
+        }
+        // If the table is modified while reading, the mirror will be loaded at the next read.
+        long version = entityIndex.version(entityType);
+        Collection<? extends UpfEntity> entities = readAllFromDataPlane(entityType);
+        entityIndex.load(entityType, entities, version);
+        return entities;
+    }
+
+    /**
+     * Reads the given type of UPF entity from the leader UPF data plane, as
+     * exposed to the northbound.
+     *
+     * @param entityType the UPF entity type, other than counters
+     * @return the UPF entities
+     * @throws UpfProgrammableException if the entities cannot be read
+     */
+    private Collection<? extends UpfEntity> readAllFromDataPlane(UpfEntityType entityType)
+            throws UpfProgrammableException {
+        Collection<? extends UpfEntity> entities = getLeaderUpfProgrammable().readAll(entityType);
+        switch (entityType) {
+            case SESSION_DOWNLINK:
+                // TODO: this might be an overkill, however reads are required
+                //  only during reconciliation, so this shouldn't affect the
+                //  attachment and detachment of UEs.
+                // Map the DBUF entities back to be BUFFERING entities.
+                return entities.stream().map(this::toNorthbound).collect(Collectors.toList());
+            case INTERFACE:
+                // Don't expose DBUF interface
+                return entities.stream()
+                        .filter(e -> !((UpfInterface) e).isDbufReceiver())
+                        .collect(Collectors.toList());
+            case TUNNEL_PEER:
+                // Don't expose DBUF GTP tunnel peer
+                return entities.stream()
+                        .filter(e -> ((UpfGtpTunnelPeer) e).tunPeerId() != DBUF_TUNNEL_ID)
+                        .collect(Collectors.toList());
+            default:
+                return entities;
+        }
+    }
+
+    @Override
+    public Collection<? extends UpfEntity> readAll(UpfEntityType entityType, Up4EntityFilter filter)
+            throws UpfProgrammableException {
+        if (entityType.equals(COUNTER) || filter.isEmpty()) {
+            return readAll(entityType).stream().filter(filter::matches).collect(Collectors.toList());
+        }
+        Collection<UpfEntity> entities = entityIndex.lookup(entityType, filter);
+        if (entities != null) {
+            return entities;
+        }
+        // Mirror not loaded yet, loaded by the full read.
+        return readAll(entityType).stream().filter(filter::matches).collect(Collectors.toList());
+    }
+
+    @Override
+    public UpfMirrorDiff verifyMirror(UpfEntityType entityType) throws UpfProgrammableException {
+        if (entityType.equals(COUNTER)) {
+            throw new UpfProgrammableException("Counters are not mirrored", UpfProgrammableException.Type.UNKNOWN,
+                                               COUNTER);
+        }
+        long version = entityIndex.version(entityType);
+        Collection<? extends UpfEntity> dataPlane = readAllFromDataPlane(entityType);
+        Collection<UpfEntity> mirrored = entityIndex.all(entityType);
+        // Nothing to compare if the mirror is not loaded yet.
+        UpfMirrorDiff diff = UpfMirrorDiff.compare(
+                entityType, mirrored == null ? dataPlane : mirrored, dataPlane);
+        if (!diff.isEmpty()) {
+            log.warn("Mirror of {} differs from the data plane, reloading it: {}", entityType, diff);
+        }
+        // Resync with the data plane, unless modified while reading.
+        entityIndex.load(entityType, dataPlane, version);
+        return diff;
+    }
+
+    /**
+     * Converts the given UPF entity to how it is exposed to the northbound.
+     * Downlink sessions pointing to the DBUF tunnel peer are exposed as
+     * buffering sessions, without tunnel peer.
+     *
+     * @param entity the UPF entity as in the UPF data plane
+     * @return the UPF entity as exposed to the northbound
+     */
+    private UpfEntity toNorthbound(UpfEntity entity) {
+        if (entity.type().equals(SESSION_DOWNLINK) &&
+                ((UpfSessionDownlink) entity).tunPeerId() == DBUF_TUNNEL_ID) {
+            return UpfSessionDownlink.builder()
+                    .needsBuffering(true)
+                    // Towards northbound, do not specify tunnel peer id
+                    .withUeAddress(((UpfSessionDownlink) entity).ueAddress())
+                    .build();
+        }
+        return entity;
     }
 
     public Collection<? extends UpfEntity> adminReadAll(UpfEntityType entityType)
@@ -790,6 +1454,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
 
     @Override
     public UpfCounter readCounter(int counterIdx) throws UpfProgrammableException {
+        return readCounterCell(counterIdx, counterCacheTtl).counters().iterator().next();
+    }
+
+    // Reads a counter cell from all UPF devices, or from the counter snapshot
+    // if not older than maxStaleness milliseconds.
+    private CounterReadResult readCounterCell(int counterIdx, long maxStaleness) throws UpfProgrammableException {
         if (isMaxUeSet() && counterIdx >= getMaxUe() * 2) {
             throw new UpfProgrammableException(
                     "Requested PDR counter cell index above max supported UE value.",
@@ -798,29 +1468,49 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         // When reading counters we need to explicitly read on all UPF physical
         // devices and aggregate counter values.
         assertUpfIsReady();
-        // TODO: add get on builder can simply this, by removing the need for building the PdrStat every time.
-        UpfCounter.Builder builder = UpfCounter.builder();
-        builder.withCellId(counterIdx);
-        UpfCounter prevStats = builder.build();
-        for (UpfProgrammable upfProg : upfProgrammables.values()) {
-            UpfCounter pdrStat = upfProg.readCounter(counterIdx);
-            builder.setIngress(pdrStat.getIngressPkts() + prevStats.getIngressPkts(),
-                               pdrStat.getIngressBytes() + prevStats.getIngressBytes());
-            builder.setEgress(pdrStat.getEgressPkts() + prevStats.getEgressPkts(),
-                              pdrStat.getEgressBytes() + prevStats.getEgressBytes());
-            prevStats = builder.build();
-        }
-        builder.withCellId(counterIdx);
-        return builder.build();
+        CounterReadResult cached = fromCounterSnapshot(maxStaleness, counters -> new CounterReadResult(
+                ImmutableList.of(counters.get(counterIdx)), Collections.emptySet()));
+        if (cached != null) {
+            return cached;
+        }
+        // Ingress packets, ingress bytes, egress packets and egress bytes.
+        long[] sums = new long[4];
+        Set<DeviceId> missing = readFromAllDevices(upfProg -> upfProg.readCounter(counterIdx), pdrStat -> {
+            sums[0] += pdrStat.getIngressPkts();
+            sums[1] += pdrStat.getIngressBytes();
+            sums[2] += pdrStat.getEgressPkts();
+            sums[3] += pdrStat.getEgressBytes();
+        });
+        return new CounterReadResult(ImmutableList.of(UpfCounter.builder()
+                                                              .withCellId(counterIdx)
+                                                              .setIngress(sums[0], sums[1])
+                                                              .setEgress(sums[2], sums[3])
+                                                              .build()),
+                                     missing);
     }
 
     @Override
     public void delete(UpfEntity entity) throws UpfProgrammableException {
+        UpfEntity toDelete = prepareDelete(entity);
+        getLeaderUpfProgrammable().delete(toDelete);
+        postDelete(toDelete);
+        up4Store.entitiesModified(toDelete.type());
+    }
+
+    /**
+     * Validates the given UPF entity and converts it to the entity that should
+     * be deleted from the UPF data plane.
+     *
+     * @param entity the UPF entity received from the northbound
+     * @return the UPF entity to delete
+     * @throws UpfProgrammableException if the entity cannot be deleted
+     */
+    private UpfEntity prepareDelete(UpfEntity entity) throws UpfProgrammableException {
         switch (entity.type()) {
             case SESSION_DOWNLINK:
                 UpfSessionDownlink sess = (UpfSessionDownlink) entity;
                 if (sess.needsBuffering()) {
-                    entity = convertToBuffering(sess);
+                    return convertToBuffering(sess);
                 }
                 break;
             case INTERFACE:
@@ -838,13 +1528,25 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
             default:
                 break;
         }
-        getLeaderUpfProgrammable().delete(entity);
-        forgetBufferingUeIfRequired(entity);
+        return entity;
     }
 
     public void adminDelete(UpfEntity entity) throws UpfProgrammableException {
         getLeaderUpfProgrammable().delete(entity);
         forgetBufferingUeIfRequired(entity);
+        entityIndex.invalidate(entity.type());
+        up4Store.entitiesModified(entity.type());
+    }
+
+    /**
+     * Updates the index and the buffering state after the given UPF entity
+     * has been deleted from the UPF data plane.
+     *
+     * @param entity the UPF entity deleted from the data plane
+     */
+    private void postDelete(UpfEntity entity) {
+        entityIndex.remove(entity);
+        forgetBufferingUeIfRequired(entity);
     }
 
     private void forgetBufferingUeIfRequired(UpfEntity entity) {
@@ -857,6 +1559,15 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
 
     @Override
     public void deleteAll(UpfEntityType entityType) throws UpfProgrammableException {
+        try {
+            deleteAllInternal(entityType);
+        } finally {
+            entityIndex.invalidate(entityType);
+            up4Store.entitiesModified(entityType);
+        }
+    }
+
+    private void deleteAllInternal(UpfEntityType entityType) throws UpfProgrammableException {
         switch (entityType) {
             case TERMINATION_DOWNLINK:
                 getLeaderUpfProgrammable().deleteAll(entityType);
@@ -886,7 +1597,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     }
 
     public void adminDeleteAll(UpfEntityType entityType) throws UpfProgrammableException {
-        getLeaderUpfProgrammable().deleteAll(entityType);
+        try {
+            getLeaderUpfProgrammable().deleteAll(entityType);
+        } finally {
+            entityIndex.invalidate(entityType);
+            up4Store.entitiesModified(entityType);
+        }
     }
 
     @Override
@@ -928,6 +1644,18 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
 
     @Override
     public Collection<UpfCounter> readCounters(long maxCounterId) throws UpfProgrammableException {
+        return readAggregatedCounters(maxCounterId, counterCacheTtl, (aggregator, missing) -> aggregator.counters(
+                cellId -> maxCounterId < 0 || cellId < maxCounterId));
+    }
+
+    // Reads all the counter cells below maxCounterId from all UPF devices, or
+    // from the counter snapshot if not older than maxStaleness milliseconds,
+    // and passes the aggregated values, and the devices missing from them, to
+    // the given function. The function must extract what is needed, as the
+    // aggregator is reused by other reads.
+    private <R> R readAggregatedCounters(long maxCounterId, long maxStaleness,
+                                         BiFunction<UpfCounterAggregator, Set<DeviceId>, R> materializer)
+            throws UpfProgrammableException {
         if (isMaxUeSet()) {
             if (maxCounterId == -1) {
                 maxCounterId = getMaxUe() * 2;
@@ -938,26 +1666,123 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         // When reading counters we need to explicitly read on all UPF physical
         // devices and aggregate counter values.
         assertUpfIsReady();
-        // TODO: add get on builder can simply this, by removing the need for building the PdrStat every time.
-        UpfCounter.Builder builder = UpfCounter.builder();
-        Map<Integer, UpfCounter> mapCounterIdStats = Maps.newHashMap();
-        for (UpfProgrammable upfProg : upfProgrammables.values()) {
-            Collection<UpfCounter> pdrStats = upfProg.readCounters(maxCounterId);
-            pdrStats.forEach(currStat -> {
-                mapCounterIdStats.compute(currStat.getCellId(), (counterId, prevStats) -> {
-                    if (prevStats == null) {
-                        return currStat;
+        R cached = fromCounterSnapshot(maxStaleness, counters -> materializer.apply(counters, Collections.emptySet()));
+        if (cached != null) {
+            return cached;
+        }
+        UpfCounterAggregator aggregator = spareAggregator.getAndSet(null);
+        if (aggregator == null) {
+            aggregator = new UpfCounterAggregator();
+        }
+        try {
+            final long maxCellId = maxCounterId;
+            Set<DeviceId> missing = readFromAllDevices(
+                    upfProg -> upfProg.readCounters(maxCellId), aggregator::addAll);
+            return materializer.apply(aggregator, missing);
+        } finally {
+            aggregator.reset();
+            spareAggregator.set(aggregator);
+        }
+    }
+
+    @Override
+    public ReconcileStats reconcileStats() {
+        return reconcileBackOff.stats();
+    }
+
+    // Reads from all UPF devices in parallel and passes the results to the
+    // given consumer as they arrive, so that the read takes as long as the
+    // slowest device. Devices that fail or do not reply before the timeout are
+    // skipped and returned if partial results are allowed, otherwise the read
+    // fails.
+    private <T> Set<DeviceId> readFromAllDevices(DeviceRead<T> read, Consumer<T> consumer)
+            throws UpfProgrammableException {
+        CompletionService<T> completionService = new ExecutorCompletionService<>(counterExecutor);
+        Map<Future<T>, DeviceId> pending = Maps.newHashMap();
+        Map.copyOf(upfProgrammables).forEach((deviceId, upfProg) -> pending.put(
+                completionService.submit(() -> read.read(upfProg)), deviceId));
+        Set<DeviceId> missing = Sets.newHashSet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(counterReadTimeout);
+        try {
+            while (!pending.isEmpty()) {
+                Future<T> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    break;
+                }
+                DeviceId deviceId = pending.remove(future);
+                try {
+                    consumer.accept(future.get());
+                } catch (ExecutionException e) {
+                    if (!counterReadPartial) {
+                        if (e.getCause() instanceof UpfProgrammableException) {
+                            throw (UpfProgrammableException) e.getCause();
+                        }
+                        throw new UpfProgrammableException(
+                                "Unable to read counters from " + deviceId + ": " + e.getCause().getMessage(),
+                                UpfProgrammableException.Type.UNKNOWN, COUNTER);
                     }
-                    builder.setIngress(currStat.getIngressPkts() + prevStats.getIngressPkts(),
-                                       currStat.getIngressBytes() + prevStats.getIngressBytes());
-                    builder.setEgress(currStat.getEgressPkts() + prevStats.getEgressPkts(),
-                                      currStat.getEgressBytes() + prevStats.getEgressBytes());
-                    builder.withCellId(counterId);
-                    return builder.build();
-                });
-            });
+                    log.warn("Unable to read counters from {}: {}", deviceId, e.getCause().getMessage());
+                    missing.add(deviceId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpfProgrammableException("Interrupted while reading counters",
+                                               UpfProgrammableException.Type.UNKNOWN, COUNTER);
+        } finally {
+            pending.keySet().forEach(future -> future.cancel(true));
         }
-        return mapCounterIdStats.values();
+        if (!pending.isEmpty()) {
+            if (!counterReadPartial) {
+                throw new UpfProgrammableException(
+                        "Timed out reading counters from " + pending.values(),
+                        UpfProgrammableException.Type.UNKNOWN, COUNTER);
+            }
+            log.warn("Timed out reading counters from {}", pending.values());
+            missing.addAll(pending.values());
+        }
+        return Collections.unmodifiableSet(missing);
+    }
+
+    @Override
+    public Collection<UpfCounter> readCounters(long fromCounterId, long toCounterId)
+            throws UpfProgrammableException {
+        return readCounters(fromCounterId, toCounterId, counterCacheTtl).counters();
+    }
+
+    @Override
+    public CounterReadResult readCounters(long fromCounterId, long toCounterId, long maxStaleness)
+            throws UpfProgrammableException {
+        if (maxStaleness < 0) {
+            maxStaleness = counterCacheTtl;
+        }
+        if (fromCounterId < 0) {
+            throw new UpfProgrammableException(
+                    "Requested counter cell index range starts below zero.",
+                    UpfProgrammableException.Type.ENTITY_OUT_OF_RANGE, UpfEntityType.COUNTER);
+        }
+        if (isMaxUeSet()) {
+            toCounterId = Math.min(toCounterId, getMaxUe() * 2);
+        }
+        if (fromCounterId >= toCounterId) {
+            return new CounterReadResult(Collections.emptyList(), Collections.emptySet());
+        }
+        if (toCounterId - fromCounterId <= COUNTER_POINT_READ_MAX) {
+            // Cheaper to read only the requested cells than the whole counter.
+            List<UpfCounter> counters = new ArrayList<>();
+            Set<DeviceId> missing = Sets.newHashSet();
+            for (long counterIdx = fromCounterId; counterIdx < toCounterId; counterIdx++) {
+                CounterReadResult cell = readCounterCell((int) counterIdx, maxStaleness);
+                counters.addAll(cell.counters());
+                missing.addAll(cell.missingDevices());
+            }
+            return new CounterReadResult(counters, missing);
+        }
+        // UpfProgrammable can only bulk read the cells below an upper bound.
+        final long from = fromCounterId;
+        final long to = toCounterId;
+        return readAggregatedCounters(toCounterId, maxStaleness, (aggregator, missing) -> new CounterReadResult(
+                aggregator.counters(cellId -> cellId >= from && cellId < to), missing));
     }
 
     @Override
@@ -1011,11 +1836,43 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         }
     }
 
+    private interface DeviceRead<T> {
+        T read(UpfProgrammable upfProgrammable) throws UpfProgrammableException;
+    }
+
+    // Counters of all UPF devices, read by the counter poller. Not modified
+    // until replaced by the next snapshot, see pollCounters.
+    private static final class CounterSnapshot {
+        private final UpfCounterAggregator counters;
+        private final long timestamp;
+
+        private CounterSnapshot(UpfCounterAggregator counters, long timestamp) {
+            this.counters = counters;
+            this.timestamp = timestamp;
+        }
+    }
+
     /**
      * React to new devices. Setup the UPF physical device when it shows up on the
      * device store.
      */
     private class InternalDeviceListener implements DeviceListener {
+        @Override
+        public boolean isRelevant(DeviceEvent event) {
+            // UPF devices are only known on the event executor, they are
+            // checked by the handler to not drop events preceding them.
+            switch (event.type()) {
+                case DEVICE_ADDED:
+                case DEVICE_UPDATED:
+                case DEVICE_AVAILABILITY_CHANGED:
+                case DEVICE_REMOVED:
+                case DEVICE_SUSPENDED:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
         @Override
         public void event(DeviceEvent event) {
             eventExecutor.execute(() -> internalEventHandler(event));
@@ -1023,18 +1880,21 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
 
         private void internalEventHandler(DeviceEvent event) {
             DeviceId deviceId = event.subject().id();
-            if (upfDevices.contains(deviceId)) {
+            Set<DeviceId> devices = upfDevices;
+            if (devices != null && devices.contains(deviceId)) {
                 switch (event.type()) {
                     case DEVICE_ADDED:
                     case DEVICE_UPDATED:
                     case DEVICE_AVAILABILITY_CHANGED:
                         log.debug("Event: {}, setting UPF physical device", event.type());
+                        reconcileBackOff.requestReset();
                         setUpfDevice(deviceId);
                         break;
                     case DEVICE_REMOVED:
                     case DEVICE_SUSPENDED:
                         // TODO: DEVICE_SUSPENDED is never generated in ONOS. What is the actual behaviour?
                         log.debug("Event: {}, unsetting UPF physical device", event.type());
+                        reconcileBackOff.requestReset();
                         unsetUpfDevice(deviceId);
                     case PORT_ADDED:
                     case PORT_UPDATED:
@@ -1052,6 +1912,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
      * Listener for network config events.
      */
     private class InternalConfigListener implements NetworkConfigListener {
+        @Override
+        public boolean isRelevant(NetworkConfigEvent event) {
+            return Up4Config.class.equals(event.configClass()) ||
+                    Up4DbufConfig.class.equals(event.configClass());
+        }
+
         @Override
         public void event(NetworkConfigEvent event) {
             eventExecutor.execute(() -> internalEventHandler(event));
@@ -1095,6 +1961,11 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
     }
 
     private class InternalPiPipeconfListener implements PiPipeconfListener {
+        @Override
+        public boolean isRelevant(PiPipeconfEvent event) {
+            return event.type() == PiPipeconfEvent.Type.REGISTERED;
+        }
+
         @Override
         public void event(PiPipeconfEvent event) {
             eventExecutor.execute(() -> internalEventHandler(event));
@@ -1115,14 +1986,54 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         }
     }
 
+    // The data plane has been modified via another ONOS instance, e.g., after a
+    // failover of the PFCP agent to another instance.
+    private void entitiesModifiedRemotely(UpfEntityType entityType) {
+        log.debug("{} modified by another instance, invalidating the mirror", entityType);
+        entityIndex.invalidate(entityType);
+    }
+
+    private class InternalMastershipListener implements MastershipListener {
+
+        @Override
+        public boolean isRelevant(MastershipEvent event) {
+            return event.type() == MastershipEvent.Type.MASTER_CHANGED &&
+                    event.subject().equals(leaderUpfDevice);
+        }
+
+        @Override
+        public void event(MastershipEvent event) {
+            // Writes might have been applied by the previous master while the
+            // mastership was moving, the mirror is reloaded at the next read.
+            log.info("Mastership of leader UPF {} changed, invalidating the mirror", event.subject());
+            entityIndex.invalidateAll();
+        }
+    }
+
     private class InternalFlowRuleListener implements FlowRuleListener {
 
+        @Override
+        public boolean isRelevant(FlowRuleEvent event) {
+            // Only events changing the rules of a UPF device, not stats updates
+            switch (event.type()) {
+                case RULE_ADD_REQUESTED:
+                case RULE_ADDED:
+                case RULE_REMOVE_REQUESTED:
+                case RULE_REMOVED:
+                    Map<DeviceId, UpfProgrammable> upfProgs = upfProgrammables;
+                    return upfProgs != null && upfProgs.containsKey(event.subject().deviceId());
+                default:
+                    return false;
+            }
+        }
+
         @Override
         public void event(FlowRuleEvent event) {
-            eventExecutor.execute(() -> internalEventHandler(event));
+            flowEventExecutor.execute(() -> internalEventHandler(event));
         }
 
         private void internalEventHandler(FlowRuleEvent event) {
+            updateRuleDigest(event);
             if ((event.type() == FlowRuleEvent.Type.RULE_ADD_REQUESTED ||
                     event.type() == FlowRuleEvent.Type.RULE_REMOVE_REQUESTED) &&
                     event.subject().deviceId().equals(leaderUpfDevice)) {
@@ -1134,17 +2045,12 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
                 }
                 if (upfProgrammables.get(leaderUpfDevice).fromThisUpf(event.subject())) {
                     log.debug("Relevant FlowRuleEvent {}: {}", event.type(), event.subject());
-                    FlowRule rule = event.subject();
-                    List<FlowRule> flowRules = Lists.newArrayList();
-                    upfProgrammables.keySet().stream()
-                            .filter(deviceId -> !deviceId.equals(leaderUpfDevice))
-                            .forEach(deviceId -> flowRules.add(copyFlowRuleForDevice(rule, deviceId)));
                     switch (event.type()) {
                         case RULE_ADD_REQUESTED:
-                            flowRuleService.applyFlowRules(flowRules.toArray(new FlowRule[0]));
+                            replicator.add(event.subject());
                             break;
                         case RULE_REMOVE_REQUESTED:
-                            flowRuleService.removeFlowRules(flowRules.toArray(new FlowRule[0]));
+                            replicator.remove(event.subject());
                             break;
                         default:
                             log.error("I should never reach this point on {}", event);
@@ -1154,6 +2060,49 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         }
     }
 
+    // Replicates a batch of leader rules with a single FlowRuleOperations per follower.
+    private void replicateToFollowers(List<FlowRule> toAdd, List<FlowRule> toRemove) {
+        DeviceId leader = leaderUpfDevice;
+        Map<DeviceId, UpfProgrammable> upfProgs = upfProgrammables;
+        if (leader == null || upfProgs == null) {
+            return;
+        }
+        for (DeviceId deviceId : upfProgs.keySet()) {
+            if (deviceId.equals(leader)) {
+                continue;
+            }
+            FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+            toRemove.forEach(r -> ops.remove(copyFlowRuleForDevice(r, deviceId)));
+            toAdd.forEach(r -> ops.add(copyFlowRuleForDevice(r, deviceId)));
+            flowRuleService.apply(ops.build());
+        }
+    }
+
+    private void updateRuleDigest(FlowRuleEvent event) {
+        FlowRule rule = event.subject();
+        UpfProgrammable upfProg = upfProgrammables == null ? null : upfProgrammables.get(rule.deviceId());
+        if (upfProg == null || !upfProg.fromThisUpf(rule)) {
+            return;
+        }
+        FlowRuleDigest digest = ruleDigests.computeIfAbsent(rule.deviceId(), k -> new FlowRuleDigest());
+        switch (event.type()) {
+            case RULE_ADD_REQUESTED:
+            case RULE_ADDED:
+                digest.add(rule);
+                break;
+            case RULE_REMOVE_REQUESTED:
+            case RULE_REMOVED:
+                digest.remove(rule);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private FlowRuleDigest ruleDigest(DeviceId deviceId) {
+        return ruleDigests.computeIfAbsent(deviceId, k -> new FlowRuleDigest());
+    }
+
     private FlowRule copyFlowRuleForDevice(FlowRule original, DeviceId newDevice) {
         var flowRuleBuilder = DefaultFlowRule.builder()
                 .fromApp(coreService.getAppId(original.appId()))
@@ -1168,79 +2117,152 @@ public class Up4DeviceManager extends AbstractListenerManager<Up4Event, Up4Event
         return flowRuleBuilder.build();
     }
 
+    /**
+     * Reconciles the follower UPF devices with the leader. Runs every
+     * upfReconcileInterval, but skips ticks to back off while the followers
+     * are found in sync, see {@link ReconcileBackOff}.
+     */
     private class ReconcileUpfDevices implements Runnable {
 
+        // Incremental passes since the last full pass, -1 before the first pass.
+        private int incrementalPasses = -1;
+
         @Override
         public void run() {
+            if (fullReconcileRequested.get()) {
+                reconcileBackOff.requestReset();
+            }
+            if (!reconcileBackOff.tick()) {
+                return;
+            }
             try {
                 checkStateAndReconcile();
             } catch (Exception e) {
                 log.error("Error during reconciliation: {}", e.getMessage());
             }
+            reconcileBackOff.passEnded();
         }
 
         private void checkStateAndReconcile() throws UpfProgrammableException {
             log.trace("Running reconciliation task...");
             assertUpfIsReady(); // Use assertUpfIsReady to generate exception and log it on the caller
 
-            for (var entry : upfProgrammables.entrySet()) {
-                var deviceId = entry.getKey();
-                var upfProg = entry.getValue();
+            long start = System.nanoTime();
+            boolean full = fullReconcileRequested.getAndSet(false) || incrementalPasses < 0 ||
+                    incrementalPasses + 1 >= upfReconcileFullEvery;
+            incrementalPasses = full ? 0 : incrementalPasses + 1;
+
+            // Tables to check on each follower, all of them on full passes,
+            // otherwise only the ones whose digest differs from the leader's.
+            Map<DeviceId, Set<TableId>> toCheck = Maps.newHashMap();
+            Map<TableId, Long> leaderDigest = ruleDigest(leaderUpfDevice).tables();
+            for (var deviceId : upfProgrammables.keySet()) {
                 if (deviceId.equals(leaderUpfDevice)) {
                     continue;
                 }
                 if (!mastershipService.isLocalMaster(deviceId)) {
                     continue;
                 }
+                Set<TableId> tables = full ? null : FlowRuleDigest.mismatchedTables(
+                        leaderDigest, ruleDigest(deviceId).tables());
+                if (tables == null || !tables.isEmpty()) {
+                    toCheck.put(deviceId, tables);
+                }
+            }
+            if (toCheck.isEmpty()) {
+                backOff(start, full, Collections.emptyList());
+                return;
+            }
+            Set<TableId> leaderTables = Sets.newHashSet();
+            toCheck.values().forEach(tables -> {
+                if (tables != null) {
+                    leaderTables.addAll(tables);
+                }
+            });
 
-                Set<FlowRule> leaderRules =
-                    StreamSupport.stream(flowRuleService.getFlowEntries(leaderUpfDevice).spliterator(), false)
-                        .filter(r -> getLeaderUpfProgrammable().fromThisUpf(r))
-                        .filter(r -> r.state() == FlowEntryState.PENDING_ADD || r.state() == FlowEntryState.ADDED)
-                        .collect(Collectors.toSet());
-
-                // Replace the follower's device id with leader's id,
-                // so that we can re-use the exact match function to compare the state
-                Set<FlowRule> followerRules =
-                    StreamSupport.stream(flowRuleService.getFlowEntries(deviceId).spliterator(), false)
-                        .filter(r -> upfProg.fromThisUpf(r))
-                        .filter(r -> r.state() == FlowEntryState.PENDING_ADD || r.state() == FlowEntryState.ADDED)
-                        .map(r -> copyFlowRuleForDevice(r, leaderUpfDevice))
-                        .collect(Collectors.toSet());
-
-                // Collect the difference between leader and followers
-                // There are 3 situations
-                // Remove unexpected: Rule is in the follower but not in the leader
-                // Update stale: Rule is both on follower and leader but treatments are different
-                // Add missing: Rule is in the leader but not in the follower
-                FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
-
-                Set<FlowRule> unexpectedRules =
-                    followerRules.stream()
-                        .filter(fr -> leaderRules.stream().noneMatch(lr -> lr.equals(fr)))
-                        .collect(Collectors.toSet());
-                followerRules.removeAll(unexpectedRules);
-                ops.newStage();
-                unexpectedRules.forEach(r -> ops.remove(copyFlowRuleForDevice(r, deviceId)));
-
-                Set<FlowRule> staleRules =
-                    leaderRules.stream()
-                        .filter(lr -> followerRules.stream().noneMatch(fr -> fr.exactMatch(lr)))
-                        .filter(lr -> followerRules.stream().anyMatch(fr -> fr.equals(lr)))
-                        .collect(Collectors.toSet());
-                leaderRules.removeAll(staleRules);
-                ops.newStage();
-                staleRules.forEach(r -> ops.modify(copyFlowRuleForDevice(r, deviceId)));
-
-                Set<FlowRule> missingRules =
-                    leaderRules.stream()
-                        .filter(lr -> followerRules.stream().noneMatch(fr -> fr.equals(lr)))
-                        .collect(Collectors.toSet());
-                ops.newStage();
-                missingRules.forEach(r -> ops.add(copyFlowRuleForDevice(r, deviceId)));
-
-                flowRuleService.apply(ops.build());
+            // Read once and shared by all followers
+            Set<FlowRule> leaderRules =
+                StreamSupport.stream(flowRuleService.getFlowEntries(leaderUpfDevice).spliterator(), false)
+                    .filter(r -> full || leaderTables.contains(r.table()))
+                    .filter(r -> getLeaderUpfProgrammable().fromThisUpf(r))
+                    .filter(r -> r.state() == FlowEntryState.PENDING_ADD || r.state() == FlowEntryState.ADDED)
+                    .collect(Collectors.toSet());
+            if (full) {
+                ruleDigest(leaderUpfDevice).reset(leaderRules);
             }
+
+            Map<DeviceId, Future<FlowRuleDiff>> results = Maps.newHashMap();
+            for (var entry : toCheck.entrySet()) {
+                var deviceId = entry.getKey();
+                var tables = entry.getValue();
+                var upfProg = upfProgrammables.get(deviceId);
+                if (upfProg == null) {
+                    continue;
+                }
+                results.put(deviceId, reconcileFollowerExecutor.submit(
+                        () -> reconcileFollower(deviceId, upfProg, leaderRules, tables)));
+            }
+            List<FlowRuleDiff> diffs = Lists.newArrayList();
+            for (var result : results.entrySet()) {
+                try {
+                    diffs.add(result.getValue().get());
+                } catch (ExecutionException e) {
+                    log.error("Error during reconciliation of {}: {}", result.getKey(), e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.values().forEach(future -> future.cancel(true));
+                    return;
+                }
+            }
+            backOff(start, full, diffs);
+        }
+
+        // Reconciles the rules of the given tables of a follower, or all of
+        // its rules if tables is null, in which case its digest is rebuilt.
+        private FlowRuleDiff reconcileFollower(DeviceId deviceId, UpfProgrammable upfProg,
+                                               Set<FlowRule> leaderRules, Set<TableId> tables) {
+            Predicate<FlowRule> inTables = tables == null ? r -> true : r -> tables.contains(r.table());
+            // Replace the follower's device id with leader's id,
+            // so that we can re-use the exact match function to compare the state
+            Set<FlowRule> followerRules =
+                StreamSupport.stream(flowRuleService.getFlowEntries(deviceId).spliterator(), false)
+                    .filter(inTables)
+                    .filter(r -> upfProg.fromThisUpf(r))
+                    .filter(r -> r.state() == FlowEntryState.PENDING_ADD || r.state() == FlowEntryState.ADDED)
+                    .map(r -> copyFlowRuleForDevice(r, leaderUpfDevice))
+                    .collect(Collectors.toSet());
+            if (tables == null) {
+                ruleDigest(deviceId).reset(followerRules);
+            }
+
+            // Collect the difference between leader and followers
+            // There are 3 situations
+            // Remove unexpected: Rule is in the follower but not in the leader
+            // Update stale: Rule is both on follower and leader but treatments are different
+            // Add missing: Rule is in the leader but not in the follower
+            FlowRuleDiff diff = FlowRuleDiff.compute(
+                    leaderRules.stream().filter(inTables).collect(Collectors.toList()), followerRules);
+            if (diff.unexpected().isEmpty() && diff.stale().isEmpty() && diff.missing().isEmpty()) {
+                return diff;
+            }
+            log.debug("Reconciling {} ({}): {}", deviceId, tables == null ? "all tables" : tables, diff);
+            FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+            ops.newStage();
+            diff.unexpected().forEach(r -> ops.remove(copyFlowRuleForDevice(r, deviceId)));
+            ops.newStage();
+            diff.stale().forEach(r -> ops.modify(copyFlowRuleForDevice(r, deviceId)));
+            ops.newStage();
+            diff.missing().forEach(r -> ops.add(copyFlowRuleForDevice(r, deviceId)));
+
+            flowRuleService.apply(ops.build());
+            return diff;
+        }
+
+        private void backOff(long start, boolean full, List<FlowRuleDiff> diffs) {
+            ReconcileStats stats = reconcileBackOff.passCompleted(
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), full, diffs,
+                    upfReconcileInterval, upfReconcileMaxInterval);
+            log.debug("Reconciliation pass completed: {}", stats);
         }
     }
 }
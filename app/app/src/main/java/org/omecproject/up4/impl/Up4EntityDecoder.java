@@ -0,0 +1,466 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.Range;
+import com.google.protobuf.ByteString;
+import org.omecproject.up4.Up4Translator.Up4TranslationException;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.Ip4Prefix;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
+import org.onosproject.net.behaviour.upf.UpfInterface;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
+import org.onosproject.net.behaviour.upf.UpfTerminationDownlink;
+import org.onosproject.net.behaviour.upf.UpfTerminationUplink;
+import org.onosproject.net.pi.model.PiActionId;
+import org.onosproject.net.pi.model.PiActionParamId;
+import org.onosproject.net.pi.model.PiMatchFieldId;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.p4runtime.ctl.utils.P4InfoBrowser;
+import org.onosproject.p4runtime.ctl.utils.PipeconfHelper;
+import p4.v1.P4RuntimeOuterClass;
+
+import static org.omecproject.up4.impl.AppConstants.SLICE_MOBILE;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.IFACE_ACCESS;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.IFACE_CORE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.CTR_IDX;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.DST_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_IP_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_IP_PROTO;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_L4_PORT;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_IPV4_DST_PREFIX;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_N3_ADDRESS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_TEID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_TUNNEL_PEER_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_UE_ADDRESS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_APPLICATIONS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_FWD;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_FWD_NO_TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_INTERFACES;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_LOAD_TUNNEL_PARAM;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK_BUFF;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_UPLINK_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SOURCE_IFACE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TUNNEL_PEERS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_FWD;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_FWD_NO_TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.QFI;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SPORT;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SRC_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SRC_IFACE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TEID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TUNNEL_PEER_ID;
+
+/**
+ * Decodes P4Runtime table entries of the UP4 logical pipeline directly into
+ * UPF entities, without going through PiTableEntry. Table, match field,
+ * action and action parameter IDs are resolved from the UP4 p4info once, when
+ * the decoder is created, and values are extracted from the protobuf byte
+ * strings as primitives. The resulting entities are the same produced by
+ * {@link Up4TranslatorImpl#up4TableEntryToUpfEntity}.
+ */
+final class Up4EntityDecoder {
+
+    // Positions of the match fields and action parameters in the ID arrays.
+    private static final int FIRST = 0;
+    private static final int SECOND = 1;
+    private static final int THIRD = 2;
+    private static final int FOURTH = 3;
+
+    private final TableIds interfaces;
+    private final TableIds sessionsUplink;
+    private final TableIds sessionsDownlink;
+    private final TableIds terminationsUplink;
+    private final TableIds terminationsDownlink;
+    private final TableIds tunnelPeers;
+    private final TableIds applications;
+
+    private final ActionIds setSourceIface;
+    private final ActionIds setSessionUplink;
+    private final ActionIds setSessionUplinkDrop;
+    private final ActionIds setSessionDownlink;
+    private final ActionIds setSessionDownlinkDrop;
+    private final ActionIds setSessionDownlinkBuff;
+    private final ActionIds uplinkTermFwd;
+    private final ActionIds uplinkTermFwdNoTc;
+    private final ActionIds uplinkTermDrop;
+    private final ActionIds downlinkTermFwd;
+    private final ActionIds downlinkTermFwdNoTc;
+    private final ActionIds downlinkTermDrop;
+    private final ActionIds loadTunnelParam;
+    private final ActionIds setAppId;
+
+    /**
+     * Creates a new decoder for the given UP4 logical pipeline.
+     *
+     * @param pipeconf the UP4 logical pipeconf
+     * @throws P4InfoBrowser.NotFoundException if a UP4 table, match field, action or
+     *                                         parameter is missing from the p4info
+     */
+    Up4EntityDecoder(PiPipeconf pipeconf) throws P4InfoBrowser.NotFoundException {
+        P4InfoBrowser browser = PipeconfHelper.getP4InfoBrowser(pipeconf);
+        interfaces = TableIds.of(browser, PRE_QOS_PIPE_INTERFACES, HDR_IPV4_DST_PREFIX);
+        sessionsUplink = TableIds.of(browser, PRE_QOS_PIPE_SESSIONS_UPLINK, HDR_N3_ADDRESS, HDR_TEID);
+        sessionsDownlink = TableIds.of(browser, PRE_QOS_PIPE_SESSIONS_DOWNLINK, HDR_UE_ADDRESS);
+        terminationsUplink = TableIds.of(browser, PRE_QOS_PIPE_TERMINATIONS_UPLINK, HDR_UE_ADDRESS, HDR_APP_ID);
+        terminationsDownlink = TableIds.of(browser, PRE_QOS_PIPE_TERMINATIONS_DOWNLINK, HDR_UE_ADDRESS, HDR_APP_ID);
+        tunnelPeers = TableIds.of(browser, PRE_QOS_PIPE_TUNNEL_PEERS, HDR_TUNNEL_PEER_ID);
+        applications = TableIds.of(browser, PRE_QOS_PIPE_APPLICATIONS,
+                                   HDR_APP_IP_ADDR, HDR_APP_L4_PORT, HDR_APP_IP_PROTO);
+
+        setSourceIface = ActionIds.of(browser, PRE_QOS_PIPE_SET_SOURCE_IFACE, SRC_IFACE);
+        setSessionUplink = ActionIds.of(browser, PRE_QOS_PIPE_SET_SESSION_UPLINK);
+        setSessionUplinkDrop = ActionIds.of(browser, PRE_QOS_PIPE_SET_SESSION_UPLINK_DROP);
+        setSessionDownlink = ActionIds.of(browser, PRE_QOS_PIPE_SET_SESSION_DOWNLINK, TUNNEL_PEER_ID);
+        setSessionDownlinkDrop = ActionIds.of(browser, PRE_QOS_PIPE_SET_SESSION_DOWNLINK_DROP);
+        setSessionDownlinkBuff = ActionIds.of(browser, PRE_QOS_PIPE_SET_SESSION_DOWNLINK_BUFF);
+        uplinkTermFwd = ActionIds.of(browser, PRE_QOS_PIPE_UPLINK_TERM_FWD, CTR_IDX, TC);
+        uplinkTermFwdNoTc = ActionIds.of(browser, PRE_QOS_PIPE_UPLINK_TERM_FWD_NO_TC, CTR_IDX);
+        uplinkTermDrop = ActionIds.of(browser, PRE_QOS_PIPE_UPLINK_TERM_DROP, CTR_IDX);
+        downlinkTermFwd = ActionIds.of(browser, PRE_QOS_PIPE_DOWNLINK_TERM_FWD, CTR_IDX, TEID, QFI, TC);
+        downlinkTermFwdNoTc = ActionIds.of(browser, PRE_QOS_PIPE_DOWNLINK_TERM_FWD_NO_TC, CTR_IDX, TEID, QFI);
+        downlinkTermDrop = ActionIds.of(browser, PRE_QOS_PIPE_DOWNLINK_TERM_DROP, CTR_IDX);
+        loadTunnelParam = ActionIds.of(browser, PRE_QOS_PIPE_LOAD_TUNNEL_PARAM, SRC_ADDR, DST_ADDR, SPORT);
+        setAppId = ActionIds.of(browser, PRE_QOS_PIPE_SET_APP_ID, APP_ID);
+    }
+
+    /**
+     * Decodes the given P4Runtime table entry into a UPF entity.
+     *
+     * @param entry the P4Runtime table entry of the UP4 logical pipeline
+     * @return the UPF entity
+     * @throws Up4TranslationException if the entry cannot be decoded
+     */
+    UpfEntity decode(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        int tableId = entry.getTableId();
+        if (tableId == interfaces.id) {
+            return decodeInterface(entry);
+        } else if (tableId == sessionsUplink.id) {
+            return decodeSessionUplink(entry);
+        } else if (tableId == sessionsDownlink.id) {
+            return decodeSessionDownlink(entry);
+        } else if (tableId == terminationsUplink.id) {
+            return decodeTerminationUplink(entry);
+        } else if (tableId == terminationsDownlink.id) {
+            return decodeTerminationDownlink(entry);
+        } else if (tableId == tunnelPeers.id) {
+            return decodeTunnelPeer(entry);
+        } else if (tableId == applications.id) {
+            return decodeApplication(entry);
+        }
+        throw new Up4TranslationException(
+                "Attempting to translate an unsupported UP4 table entry! Table ID: " + tableId);
+    }
+
+    private UpfEntity decodeInterface(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, setSourceIface);
+        UpfInterface.Builder builder = UpfInterface.builder();
+        int srcIface = toInt(param(action, setSourceIface, FIRST), SRC_IFACE.id());
+        if (srcIface == IFACE_ACCESS) {
+            builder.setAccess();
+        } else if (srcIface == IFACE_CORE) {
+            builder.setCore();
+        } else {
+            throw new Up4TranslationException(
+                    "Attempting to translate an unsupported UP4 interface type! " + srcIface);
+        }
+        P4RuntimeOuterClass.FieldMatch prefix = requireField(entry, interfaces, FIRST);
+        builder.setPrefix(toPrefix(prefix, HDR_IPV4_DST_PREFIX.id()));
+        builder.setSliceId(SLICE_MOBILE);
+        return builder.build();
+    }
+
+    private UpfEntity decodeSessionUplink(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, setSessionUplink, setSessionUplinkDrop);
+        return UpfSessionUplink.builder()
+                .withTunDstAddr(toAddress(fieldValue(requireField(entry, sessionsUplink, FIRST)),
+                                          HDR_N3_ADDRESS.id()))
+                .withTeid(toInt(fieldValue(requireField(entry, sessionsUplink, SECOND)), HDR_TEID.id()))
+                .needsDropping(action.getActionId() == setSessionUplinkDrop.id)
+                .build();
+    }
+
+    private UpfEntity decodeSessionDownlink(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, setSessionDownlink, setSessionDownlinkDrop,
+                                                   setSessionDownlinkBuff);
+        UpfSessionDownlink.Builder builder = UpfSessionDownlink.builder();
+        builder.withUeAddress(toAddress(fieldValue(requireField(entry, sessionsDownlink, FIRST)),
+                                        HDR_UE_ADDRESS.id()));
+        if (action.getActionId() == setSessionDownlinkDrop.id) {
+            builder.needsDropping(true);
+        } else if (action.getActionId() == setSessionDownlinkBuff.id) {
+            builder.needsBuffering(true);
+        } else {
+            builder.withGtpTunnelPeerId(toByte(param(action, setSessionDownlink, FIRST), TUNNEL_PEER_ID.id()));
+        }
+        return builder.build();
+    }
+
+    private UpfEntity decodeTerminationUplink(P4RuntimeOuterClass.TableEntry entry)
+            throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, uplinkTermFwd, uplinkTermFwdNoTc, uplinkTermDrop);
+        ActionIds actionIds = action.getActionId() == uplinkTermFwd.id ? uplinkTermFwd :
+                action.getActionId() == uplinkTermFwdNoTc.id ? uplinkTermFwdNoTc : uplinkTermDrop;
+        UpfTerminationUplink.Builder builder = UpfTerminationUplink.builder();
+        builder.withUeSessionId(toAddress(fieldValue(requireField(entry, terminationsUplink, FIRST)),
+                                          HDR_UE_ADDRESS.id()));
+        builder.withApplicationId(toByte(fieldValue(requireField(entry, terminationsUplink, SECOND)),
+                                         HDR_APP_ID.id()));
+        builder.withCounterId(toInt(param(action, actionIds, FIRST), CTR_IDX.id()));
+        if (actionIds == uplinkTermDrop) {
+            builder.needsDropping(true);
+        } else if (actionIds == uplinkTermFwd) {
+            builder.withTrafficClass(toByte(param(action, actionIds, SECOND), TC.id()));
+        }
+        return builder.build();
+    }
+
+    private UpfEntity decodeTerminationDownlink(P4RuntimeOuterClass.TableEntry entry)
+            throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, downlinkTermFwd, downlinkTermFwdNoTc, downlinkTermDrop);
+        ActionIds actionIds = action.getActionId() == downlinkTermFwd.id ? downlinkTermFwd :
+                action.getActionId() == downlinkTermFwdNoTc.id ? downlinkTermFwdNoTc : downlinkTermDrop;
+        UpfTerminationDownlink.Builder builder = UpfTerminationDownlink.builder();
+        builder.withUeSessionId(toAddress(fieldValue(requireField(entry, terminationsDownlink, FIRST)),
+                                          HDR_UE_ADDRESS.id()));
+        builder.withApplicationId(toByte(fieldValue(requireField(entry, terminationsDownlink, SECOND)),
+                                         HDR_APP_ID.id()));
+        builder.withCounterId(toInt(param(action, actionIds, FIRST), CTR_IDX.id()));
+        if (actionIds == downlinkTermDrop) {
+            builder.needsDropping(true);
+        } else {
+            builder.withTeid(toInt(param(action, actionIds, SECOND), TEID.id()));
+            builder.withQfi(toByte(param(action, actionIds, THIRD), QFI.id()));
+            if (actionIds == downlinkTermFwd) {
+                builder.withTrafficClass(toByte(param(action, actionIds, FOURTH), TC.id()));
+            }
+        }
+        return builder.build();
+    }
+
+    private UpfEntity decodeTunnelPeer(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, loadTunnelParam);
+        return UpfGtpTunnelPeer.builder()
+                .withTunnelPeerId(toByte(fieldValue(requireField(entry, tunnelPeers, FIRST)),
+                                         HDR_TUNNEL_PEER_ID.id()))
+                .withSrcAddr(toAddress(param(action, loadTunnelParam, FIRST), SRC_ADDR.id()))
+                .withDstAddr(toAddress(param(action, loadTunnelParam, SECOND), DST_ADDR.id()))
+                .withSrcPort(toShort(param(action, loadTunnelParam, THIRD), SPORT.id()))
+                .build();
+    }
+
+    private UpfEntity decodeApplication(P4RuntimeOuterClass.TableEntry entry) throws Up4TranslationException {
+        P4RuntimeOuterClass.Action action = action(entry, setAppId);
+        UpfApplication.Builder builder = UpfApplication.builder();
+        builder.withAppId(toByte(param(action, setAppId, FIRST), APP_ID.id()));
+        if (entry.getPriority() <= 0) {
+            throw new Up4TranslationException("Application entry has no priority!");
+        }
+        builder.withPriority(entry.getPriority());
+        P4RuntimeOuterClass.FieldMatch ipAddr = field(entry, applications, FIRST);
+        if (ipAddr != null) {
+            builder.withIp4Prefix(toPrefix(ipAddr, HDR_APP_IP_ADDR.id()));
+        }
+        P4RuntimeOuterClass.FieldMatch l4Port = field(entry, applications, SECOND);
+        if (l4Port != null) {
+            if (l4Port.getFieldMatchTypeCase() != P4RuntimeOuterClass.FieldMatch.FieldMatchTypeCase.RANGE) {
+                throw new Up4TranslationException(
+                        String.format("Field %s is not a range match!", HDR_APP_L4_PORT.id()));
+            }
+            builder.withL4PortRange(Range.closed(toShort(l4Port.getRange().getLow(), HDR_APP_L4_PORT.id()),
+                                                 toShort(l4Port.getRange().getHigh(), HDR_APP_L4_PORT.id())));
+        }
+        P4RuntimeOuterClass.FieldMatch ipProto = field(entry, applications, THIRD);
+        if (ipProto != null) {
+            builder.withIpProto(toByte(fieldValue(ipProto), HDR_APP_IP_PROTO.id()));
+        }
+        builder.withSliceId(SLICE_MOBILE);
+        return builder.build();
+    }
+
+    // Returns the action of the given entry, checking that it is one of the given ones.
+    private static P4RuntimeOuterClass.Action action(P4RuntimeOuterClass.TableEntry entry, ActionIds... allowed)
+            throws Up4TranslationException {
+        if (entry.getAction().getTypeCase() != P4RuntimeOuterClass.TableAction.TypeCase.ACTION) {
+            throw new Up4TranslationException("Table entry has no action!");
+        }
+        P4RuntimeOuterClass.Action action = entry.getAction().getAction();
+        for (ActionIds actionIds : allowed) {
+            if (action.getActionId() == actionIds.id) {
+                return action;
+            }
+        }
+        throw new Up4TranslationException(
+                String.format("Action ID %d not allowed for table ID %d!", action.getActionId(), entry.getTableId()));
+    }
+
+    private static ByteString param(P4RuntimeOuterClass.Action action, ActionIds actionIds, int position)
+            throws Up4TranslationException {
+        int paramId = actionIds.paramIds[position];
+        for (int i = 0; i < action.getParamsCount(); i++) {
+            P4RuntimeOuterClass.Action.Param param = action.getParams(i);
+            if (param.getParamId() == paramId) {
+                return param.getValue();
+            }
+        }
+        throw new Up4TranslationException(
+                String.format("Unable to find parameter %s where expected!", actionIds.paramNames[position]));
+    }
+
+    private static P4RuntimeOuterClass.FieldMatch field(P4RuntimeOuterClass.TableEntry entry, TableIds tableIds,
+                                                        int position) {
+        int fieldId = tableIds.fieldIds[position];
+        for (int i = 0; i < entry.getMatchCount(); i++) {
+            P4RuntimeOuterClass.FieldMatch fieldMatch = entry.getMatch(i);
+            if (fieldMatch.getFieldId() == fieldId) {
+                return fieldMatch;
+            }
+        }
+        return null;
+    }
+
+    private static P4RuntimeOuterClass.FieldMatch requireField(P4RuntimeOuterClass.TableEntry entry,
+                                                               TableIds tableIds, int position)
+            throws Up4TranslationException {
+        P4RuntimeOuterClass.FieldMatch fieldMatch = field(entry, tableIds, position);
+        if (fieldMatch == null) {
+            throw new Up4TranslationException(
+                    String.format("Unable to find field %s where expected!", tableIds.fieldNames[position]));
+        }
+        return fieldMatch;
+    }
+
+    private static ByteString fieldValue(P4RuntimeOuterClass.FieldMatch fieldMatch)
+            throws Up4TranslationException {
+        switch (fieldMatch.getFieldMatchTypeCase()) {
+            case EXACT:
+                return fieldMatch.getExact().getValue();
+            case LPM:
+                return fieldMatch.getLpm().getValue();
+            case TERNARY:
+                return fieldMatch.getTernary().getValue();
+            case RANGE:
+                return fieldMatch.getRange().getLow();
+            case OPTIONAL:
+                return fieldMatch.getOptional().getValue();
+            default:
+                throw new Up4TranslationException(
+                        String.format("Field ID %d has unknown match type: %s",
+                                      fieldMatch.getFieldId(), fieldMatch.getFieldMatchTypeCase()));
+        }
+    }
+
+    private static Ip4Prefix toPrefix(P4RuntimeOuterClass.FieldMatch fieldMatch, String name)
+            throws Up4TranslationException {
+        if (fieldMatch.getFieldMatchTypeCase() != P4RuntimeOuterClass.FieldMatch.FieldMatchTypeCase.LPM) {
+            throw new Up4TranslationException(String.format("Field %s is not an LPM match!", name));
+        }
+        return Ip4Prefix.valueOf(toInt(fieldMatch.getLpm().getValue(), name),
+                                 fieldMatch.getLpm().getPrefixLen());
+    }
+
+    private static Ip4Address toAddress(ByteString value, String name) throws Up4TranslationException {
+        return Ip4Address.valueOf(toInt(value, name));
+    }
+
+    private static int toInt(ByteString value, String name) throws Up4TranslationException {
+        return (int) toLong(value, Integer.BYTES, name);
+    }
+
+    private static short toShort(ByteString value, String name) throws Up4TranslationException {
+        return (short) toLong(value, Short.BYTES, name);
+    }
+
+    private static byte toByte(ByteString value, String name) throws Up4TranslationException {
+        return (byte) toLong(value, Byte.BYTES, name);
+    }
+
+    // Parses a big-endian unsigned value of at most maxBytes significant bytes.
+    // Leading zero bytes are ignored, as in non-canonical P4Runtime byte strings.
+    private static long toLong(ByteString value, int maxBytes, String name) throws Up4TranslationException {
+        int size = value.size();
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            int b = value.byteAt(i) & 0xFF;
+            if (b != 0 && i < size - maxBytes) {
+                throw new Up4TranslationException(
+                        String.format("Value of %s is wider than %d bytes!", name, maxBytes));
+            }
+            result = (result << Byte.SIZE) | b;
+        }
+        return result;
+    }
+
+    /**
+     * P4Runtime IDs of a table and of its match fields.
+     */
+    private static final class TableIds {
+        private final int id;
+        private final int[] fieldIds;
+        private final String[] fieldNames;
+
+        private TableIds(int id, int[] fieldIds, String[] fieldNames) {
+            this.id = id;
+            this.fieldIds = fieldIds;
+            this.fieldNames = fieldNames;
+        }
+
+        private static TableIds of(P4InfoBrowser browser, PiTableId tableId, PiMatchFieldId... fields)
+                throws P4InfoBrowser.NotFoundException {
+            int id = browser.tables().getByName(tableId.id()).getPreamble().getId();
+            int[] fieldIds = new int[fields.length];
+            String[] fieldNames = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fieldIds[i] = browser.matchFields(id).getByName(fields[i].id()).getId();
+                fieldNames[i] = fields[i].id();
+            }
+            return new TableIds(id, fieldIds, fieldNames);
+        }
+    }
+
+    /**
+     * P4Runtime IDs of an action and of its parameters.
+     */
+    private static final class ActionIds {
+        private final int id;
+        private final int[] paramIds;
+        private final String[] paramNames;
+
+        private ActionIds(int id, int[] paramIds, String[] paramNames) {
+            this.id = id;
+            this.paramIds = paramIds;
+            this.paramNames = paramNames;
+        }
+
+        private static ActionIds of(P4InfoBrowser browser, PiActionId actionId, PiActionParamId... params)
+                throws P4InfoBrowser.NotFoundException {
+            int id = browser.actions().getByName(actionId.id()).getPreamble().getId();
+            int[] paramIds = new int[params.length];
+            String[] paramNames = new String[params.length];
+            for (int i = 0; i < params.length; i++) {
+                paramIds[i] = browser.actionParams(id).getByName(params[i].id()).getId();
+                paramNames[i] = params[i].id();
+            }
+            return new ActionIds(id, paramIds, paramNames);
+        }
+    }
+}
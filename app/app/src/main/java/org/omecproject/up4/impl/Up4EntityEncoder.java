@@ -0,0 +1,542 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.omecproject.up4.Up4Translator.Up4TranslationException;
+import org.onlab.packet.Ip4Prefix;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
+import org.onosproject.net.behaviour.upf.UpfInterface;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
+import org.onosproject.net.behaviour.upf.UpfTerminationDownlink;
+import org.onosproject.net.behaviour.upf.UpfTerminationUplink;
+import org.onosproject.net.pi.model.PiActionId;
+import org.onosproject.net.pi.model.PiActionParamId;
+import org.onosproject.net.pi.model.PiMatchFieldId;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.onosproject.net.pi.runtime.PiExactFieldMatch;
+import org.onosproject.net.pi.runtime.PiFieldMatch;
+import org.onosproject.net.pi.runtime.PiLpmFieldMatch;
+import org.onosproject.net.pi.runtime.PiMatchKey;
+import org.onosproject.net.pi.runtime.PiRangeFieldMatch;
+import org.onosproject.net.pi.runtime.PiTableEntry;
+import org.onosproject.net.pi.runtime.PiTernaryFieldMatch;
+import org.onosproject.p4runtime.ctl.codec.CodecException;
+import org.onosproject.p4runtime.ctl.codec.Codecs;
+import org.onosproject.p4runtime.ctl.utils.P4InfoBrowser;
+import org.onosproject.p4runtime.ctl.utils.PipeconfHelper;
+import org.slf4j.Logger;
+import p4.config.v1.P4InfoOuterClass;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.omecproject.up4.impl.AppConstants.SLICE_MOBILE;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.DIRECTION_DOWNLINK;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.DIRECTION_UPLINK;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.IFACE_ACCESS;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.IFACE_CORE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.CTR_IDX;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.DIRECTION;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.DST_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_IP_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_IP_PROTO;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_APP_L4_PORT;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_IPV4_DST_PREFIX;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_N3_ADDRESS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_TEID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_TUNNEL_PEER_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.HDR_UE_ADDRESS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_APPLICATIONS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_FWD;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_DOWNLINK_TERM_FWD_NO_TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_INTERFACES;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_LOAD_TUNNEL_PARAM;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_APP_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK_BUFF;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_DOWNLINK_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SESSION_UPLINK_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SET_SOURCE_IFACE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_DOWNLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_UPLINK;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TUNNEL_PEERS;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_DROP;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_FWD;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_UPLINK_TERM_FWD_NO_TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.QFI;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SLICE_ID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SPORT;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SRC_ADDR;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.SRC_IFACE;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TC;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TEID;
+import static org.omecproject.up4.impl.Up4P4InfoConstants.TUNNEL_PEER_ID;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Encodes UPF entities directly into P4Runtime entities of the UP4 logical
+ * pipeline, without going through PiTableEntry. For each table and action, a
+ * template table entry is encoded once with the PI codec when the encoder is
+ * created; entities are then encoded by filling in the values of a copy of the
+ * template. Since the templates come from the PI codec, the resulting
+ * entities are the same produced by encoding the output of
+ * {@link Up4TranslatorImpl#entityToUp4TableEntry}, including the order of
+ * match fields and action parameters.
+ */
+final class Up4EntityEncoder {
+
+    private static final Logger log = getLogger(Up4EntityEncoder.class);
+
+    // Single-byte values are shared, most action parameters and match fields fit in one byte.
+    private static final ByteString[] SINGLE_BYTES = new ByteString[256];
+
+    static {
+        for (int i = 0; i < SINGLE_BYTES.length; i++) {
+            SINGLE_BYTES[i] = ByteString.copyFrom(new byte[]{(byte) i});
+        }
+    }
+
+    // Positions of the match fields and action parameters, in the order used
+    // to build the templates (the same used by the translator).
+    private static final int FIRST = 0;
+    private static final int SECOND = 1;
+    private static final int THIRD = 2;
+    private static final int FOURTH = 3;
+
+    private final Template setSourceIface;
+    private final Template setSessionUplink;
+    private final Template setSessionUplinkDrop;
+    private final Template setSessionDownlink;
+    private final Template setSessionDownlinkDrop;
+    private final Template setSessionDownlinkBuff;
+    private final Template uplinkTermFwd;
+    private final Template uplinkTermFwdNoTc;
+    private final Template uplinkTermDrop;
+    private final Template downlinkTermFwd;
+    private final Template downlinkTermFwdNoTc;
+    private final Template downlinkTermDrop;
+    private final Template loadTunnelParam;
+    private final Template setAppId;
+
+    /**
+     * Creates a new encoder for the given UP4 logical pipeline.
+     *
+     * @param pipeconf the UP4 logical pipeconf
+     * @throws P4InfoBrowser.NotFoundException if a UP4 table, match field, action or
+     *                                         parameter is missing from the p4info
+     * @throws CodecException                  if a template entry cannot be encoded
+     */
+    Up4EntityEncoder(PiPipeconf pipeconf) throws P4InfoBrowser.NotFoundException, CodecException {
+        TemplateFactory factory = new TemplateFactory(pipeconf);
+        setSourceIface = factory.create(PRE_QOS_PIPE_INTERFACES, ImmutableList.of(HDR_IPV4_DST_PREFIX),
+                                        PRE_QOS_PIPE_SET_SOURCE_IFACE, SRC_IFACE, DIRECTION, SLICE_ID);
+
+        List<PiMatchFieldId> sessionUplinkFields = ImmutableList.of(HDR_N3_ADDRESS, HDR_TEID);
+        setSessionUplink = factory.create(PRE_QOS_PIPE_SESSIONS_UPLINK, sessionUplinkFields,
+                                          PRE_QOS_PIPE_SET_SESSION_UPLINK);
+        setSessionUplinkDrop = factory.create(PRE_QOS_PIPE_SESSIONS_UPLINK, sessionUplinkFields,
+                                              PRE_QOS_PIPE_SET_SESSION_UPLINK_DROP);
+
+        List<PiMatchFieldId> sessionDownlinkFields = ImmutableList.of(HDR_UE_ADDRESS);
+        setSessionDownlink = factory.create(PRE_QOS_PIPE_SESSIONS_DOWNLINK, sessionDownlinkFields,
+                                            PRE_QOS_PIPE_SET_SESSION_DOWNLINK, TUNNEL_PEER_ID);
+        setSessionDownlinkDrop = factory.create(PRE_QOS_PIPE_SESSIONS_DOWNLINK, sessionDownlinkFields,
+                                                PRE_QOS_PIPE_SET_SESSION_DOWNLINK_DROP);
+        setSessionDownlinkBuff = factory.create(PRE_QOS_PIPE_SESSIONS_DOWNLINK, sessionDownlinkFields,
+                                                PRE_QOS_PIPE_SET_SESSION_DOWNLINK_BUFF);
+
+        List<PiMatchFieldId> terminationFields = ImmutableList.of(HDR_UE_ADDRESS, HDR_APP_ID);
+        uplinkTermFwd = factory.create(PRE_QOS_PIPE_TERMINATIONS_UPLINK, terminationFields,
+                                       PRE_QOS_PIPE_UPLINK_TERM_FWD, CTR_IDX, TC);
+        uplinkTermFwdNoTc = factory.create(PRE_QOS_PIPE_TERMINATIONS_UPLINK, terminationFields,
+                                           PRE_QOS_PIPE_UPLINK_TERM_FWD_NO_TC, CTR_IDX);
+        uplinkTermDrop = factory.create(PRE_QOS_PIPE_TERMINATIONS_UPLINK, terminationFields,
+                                        PRE_QOS_PIPE_UPLINK_TERM_DROP, CTR_IDX);
+        downlinkTermFwd = factory.create(PRE_QOS_PIPE_TERMINATIONS_DOWNLINK, terminationFields,
+                                         PRE_QOS_PIPE_DOWNLINK_TERM_FWD, CTR_IDX, TEID, QFI, TC);
+        downlinkTermFwdNoTc = factory.create(PRE_QOS_PIPE_TERMINATIONS_DOWNLINK, terminationFields,
+                                             PRE_QOS_PIPE_DOWNLINK_TERM_FWD_NO_TC, CTR_IDX, TEID, QFI);
+        downlinkTermDrop = factory.create(PRE_QOS_PIPE_TERMINATIONS_DOWNLINK, terminationFields,
+                                          PRE_QOS_PIPE_DOWNLINK_TERM_DROP, CTR_IDX);
+
+        loadTunnelParam = factory.create(PRE_QOS_PIPE_TUNNEL_PEERS, ImmutableList.of(HDR_TUNNEL_PEER_ID),
+                                         PRE_QOS_PIPE_LOAD_TUNNEL_PARAM, SRC_ADDR, DST_ADDR, SPORT);
+
+        // All fields are present in the template, the ones not set in the
+        // application are removed when encoding.
+        setAppId = factory.create(PRE_QOS_PIPE_APPLICATIONS,
+                                  ImmutableList.of(HDR_APP_IP_ADDR, HDR_APP_L4_PORT, HDR_APP_IP_PROTO),
+                                  PRE_QOS_PIPE_SET_APP_ID, APP_ID);
+    }
+
+    /**
+     * Encodes the given UPF entity into a P4Runtime entity of the UP4 logical pipeline.
+     *
+     * @param entity the UPF entity
+     * @return the P4Runtime entity
+     * @throws Up4TranslationException if the entity cannot be encoded
+     */
+    P4RuntimeOuterClass.Entity encode(UpfEntity entity) throws Up4TranslationException {
+        P4RuntimeOuterClass.TableEntry.Builder builder;
+        switch (entity.type()) {
+            case INTERFACE:
+                builder = encodeInterface((UpfInterface) entity);
+                break;
+            case SESSION_UPLINK:
+                builder = encodeSessionUplink((UpfSessionUplink) entity);
+                break;
+            case SESSION_DOWNLINK:
+                builder = encodeSessionDownlink((UpfSessionDownlink) entity);
+                break;
+            case TERMINATION_UPLINK:
+                builder = encodeTerminationUplink((UpfTerminationUplink) entity);
+                break;
+            case TERMINATION_DOWNLINK:
+                builder = encodeTerminationDownlink((UpfTerminationDownlink) entity);
+                break;
+            case TUNNEL_PEER:
+                builder = encodeTunnelPeer((UpfGtpTunnelPeer) entity);
+                break;
+            case APPLICATION:
+                builder = encodeApplication((UpfApplication) entity);
+                break;
+            default:
+                throw new Up4TranslationException(
+                        "Attempting to translate an unsupported UPF entity to a table entry! " + entity);
+        }
+        return P4RuntimeOuterClass.Entity.newBuilder().setTableEntry(builder).build();
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeInterface(UpfInterface upfIntf)
+            throws Up4TranslationException {
+        byte srcIface;
+        byte direction;
+        if (upfIntf.isAccess()) {
+            srcIface = IFACE_ACCESS;
+            direction = DIRECTION_UPLINK;
+        } else if (upfIntf.isCore()) {
+            srcIface = IFACE_CORE;
+            direction = DIRECTION_DOWNLINK;
+        } else {
+            throw new Up4TranslationException("UPF Interface is not Access nor CORE: " + upfIntf);
+        }
+        Template t = setSourceIface;
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setLpm(builder, FIRST, upfIntf.prefix());
+        t.setParam(builder, FIRST, srcIface);
+        t.setParam(builder, SECOND, direction);
+        t.setParam(builder, THIRD, SLICE_MOBILE);
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeSessionUplink(UpfSessionUplink sess) {
+        Template t = sess.needsDropping() ? setSessionUplinkDrop : setSessionUplink;
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setMatch(builder, FIRST, Integer.toUnsignedLong(sess.tunDstAddr().toInt()));
+        t.setMatch(builder, SECOND, Integer.toUnsignedLong(sess.teid()));
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeSessionDownlink(UpfSessionDownlink sess) {
+        Template t;
+        if (sess.needsDropping() && sess.needsBuffering()) {
+            log.error("We don't support DROP + BUFF on the UP4 northbound! Defaulting to only BUFF");
+            t = setSessionDownlinkBuff;
+        } else if (sess.needsDropping()) {
+            t = setSessionDownlinkDrop;
+        } else if (sess.needsBuffering()) {
+            t = setSessionDownlinkBuff;
+        } else {
+            t = setSessionDownlink;
+        }
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setMatch(builder, FIRST, Integer.toUnsignedLong(sess.ueAddress().toInt()));
+        if (t == setSessionDownlink) {
+            t.setParam(builder, FIRST, Byte.toUnsignedLong(sess.tunPeerId()));
+        }
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeTerminationUplink(UpfTerminationUplink term) {
+        Template t;
+        if (term.needsDropping()) {
+            t = uplinkTermDrop;
+        } else if (term.trafficClass() != null) {
+            t = uplinkTermFwd;
+        } else {
+            t = uplinkTermFwdNoTc;
+        }
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setMatch(builder, FIRST, Integer.toUnsignedLong(term.ueSessionId().toInt()));
+        t.setMatch(builder, SECOND, Byte.toUnsignedLong(term.applicationId()));
+        t.setParam(builder, FIRST, Integer.toUnsignedLong(term.counterId()));
+        if (t == uplinkTermFwd) {
+            t.setParam(builder, SECOND, Byte.toUnsignedLong(term.trafficClass()));
+        }
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeTerminationDownlink(UpfTerminationDownlink term) {
+        Template t;
+        if (term.needsDropping()) {
+            t = downlinkTermDrop;
+        } else if (term.trafficClass() != null) {
+            t = downlinkTermFwd;
+        } else {
+            t = downlinkTermFwdNoTc;
+        }
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setMatch(builder, FIRST, Integer.toUnsignedLong(term.ueSessionId().toInt()));
+        t.setMatch(builder, SECOND, Byte.toUnsignedLong(term.applicationId()));
+        t.setParam(builder, FIRST, Integer.toUnsignedLong(term.counterId()));
+        if (t != downlinkTermDrop) {
+            t.setParam(builder, SECOND, Integer.toUnsignedLong(term.teid()));
+            t.setParam(builder, THIRD, Byte.toUnsignedLong(term.qfi()));
+            if (t == downlinkTermFwd) {
+                t.setParam(builder, FOURTH, Byte.toUnsignedLong(term.trafficClass()));
+            }
+        }
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeTunnelPeer(UpfGtpTunnelPeer peer) {
+        Template t = loadTunnelParam;
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        t.setMatch(builder, FIRST, Byte.toUnsignedLong(peer.tunPeerId()));
+        t.setParam(builder, FIRST, Integer.toUnsignedLong(peer.src().toInt()));
+        t.setParam(builder, SECOND, Integer.toUnsignedLong(peer.dst().toInt()));
+        t.setParam(builder, THIRD, Short.toUnsignedLong(peer.srcPort()));
+        return builder;
+    }
+
+    private P4RuntimeOuterClass.TableEntry.Builder encodeApplication(UpfApplication app) {
+        Template t = setAppId;
+        P4RuntimeOuterClass.TableEntry.Builder builder = t.entry.toBuilder();
+        builder.setPriority(app.priority());
+        t.setParam(builder, FIRST, Byte.toUnsignedLong(app.appId()));
+        boolean[] present = new boolean[t.matchPositions.length];
+        if (app.ip4Prefix().isPresent()) {
+            t.setLpm(builder, FIRST, app.ip4Prefix().get());
+            present[FIRST] = true;
+        }
+        if (app.l4PortRange().isPresent()) {
+            Range<Short> range = app.l4PortRange().get();
+            t.setRange(builder, SECOND, Short.toUnsignedLong(range.lowerEndpoint()),
+                       Short.toUnsignedLong(range.upperEndpoint()));
+            present[SECOND] = true;
+        }
+        if (app.ipProto().isPresent()) {
+            t.setMatch(builder, THIRD, Byte.toUnsignedLong(app.ipProto().get()));
+            present[THIRD] = true;
+        }
+        // Remove from the last position, so that the other positions are not shifted.
+        for (int position = builder.getMatchCount() - 1; position >= 0; position--) {
+            if (!present[t.matchSlots[position]]) {
+                builder.removeMatch(position);
+            }
+        }
+        return builder;
+    }
+
+    // Returns the big-endian representation of the given unsigned value, using
+    // the minimum number of bytes but not less than the given width.
+    private static ByteString bytes(long value, int width) {
+        int size = Math.max(width, Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / Byte.SIZE));
+        if (size == 1) {
+            return SINGLE_BYTES[(int) value];
+        }
+        byte[] bytes = new byte[size];
+        for (int i = size - 1; i >= 0 && value != 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
+        // The array is never modified after being wrapped.
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    private static int valueWidth(P4RuntimeOuterClass.FieldMatch fieldMatch) {
+        switch (fieldMatch.getFieldMatchTypeCase()) {
+            case EXACT:
+                return fieldMatch.getExact().getValue().size();
+            case LPM:
+                return fieldMatch.getLpm().getValue().size();
+            case TERNARY:
+                return fieldMatch.getTernary().getValue().size();
+            case RANGE:
+                return fieldMatch.getRange().getLow().size();
+            default:
+                throw new IllegalStateException("Unsupported match type in template: "
+                                                        + fieldMatch.getFieldMatchTypeCase());
+        }
+    }
+
+    /**
+     * A P4Runtime table entry with a given action, encoded by the PI codec
+     * with all values set to zero. The byte strings in the template also tell
+     * the minimum width used by the codec for each value (1 byte if the codec
+     * uses the canonical representation).
+     */
+    private static final class Template {
+        private final P4RuntimeOuterClass.TableEntry entry;
+        // Position of each match field in the template, indexed by the order
+        // used to build the template, and vice versa.
+        private final int[] matchPositions;
+        private final int[] matchSlots;
+        private final int[] matchWidths;
+        // Position of each action parameter in the template.
+        private final int[] paramPositions;
+        private final int[] paramWidths;
+
+        private Template(P4RuntimeOuterClass.TableEntry entry, int[] matchPositions, int[] matchSlots,
+                         int[] matchWidths, int[] paramPositions, int[] paramWidths) {
+            this.entry = entry;
+            this.matchPositions = matchPositions;
+            this.matchSlots = matchSlots;
+            this.matchWidths = matchWidths;
+            this.paramPositions = paramPositions;
+            this.paramWidths = paramWidths;
+        }
+
+        private void setMatch(P4RuntimeOuterClass.TableEntry.Builder builder, int slot, long value) {
+            P4RuntimeOuterClass.FieldMatch.Builder match = builder.getMatchBuilder(matchPositions[slot]);
+            ByteString bytes = bytes(value, matchWidths[slot]);
+            if (match.getFieldMatchTypeCase() == P4RuntimeOuterClass.FieldMatch.FieldMatchTypeCase.TERNARY) {
+                // The template mask matches all bits.
+                match.getTernaryBuilder().setValue(bytes);
+            } else {
+                match.getExactBuilder().setValue(bytes);
+            }
+        }
+
+        private void setLpm(P4RuntimeOuterClass.TableEntry.Builder builder, int slot, Ip4Prefix prefix) {
+            builder.getMatchBuilder(matchPositions[slot]).getLpmBuilder()
+                    .setValue(bytes(Integer.toUnsignedLong(prefix.address().toInt()), matchWidths[slot]))
+                    .setPrefixLen(prefix.prefixLength());
+        }
+
+        private void setRange(P4RuntimeOuterClass.TableEntry.Builder builder, int slot, long low, long high) {
+            builder.getMatchBuilder(matchPositions[slot]).getRangeBuilder()
+                    .setLow(bytes(low, matchWidths[slot]))
+                    .setHigh(bytes(high, matchWidths[slot]));
+        }
+
+        private void setParam(P4RuntimeOuterClass.TableEntry.Builder builder, int slot, long value) {
+            builder.getActionBuilder().getActionBuilder().getParamsBuilder(paramPositions[slot])
+                    .setValue(bytes(value, paramWidths[slot]));
+        }
+    }
+
+    /**
+     * Encodes templates with the PI codec and maps their match fields and
+     * action parameters to their P4Runtime IDs.
+     */
+    private static final class TemplateFactory {
+        private final PiPipeconf pipeconf;
+        private final P4InfoBrowser browser;
+
+        private TemplateFactory(PiPipeconf pipeconf) {
+            this.pipeconf = pipeconf;
+            this.browser = PipeconfHelper.getP4InfoBrowser(pipeconf);
+        }
+
+        private Template create(PiTableId tableId, List<PiMatchFieldId> fields,
+                                PiActionId actionId, PiActionParamId... params)
+                throws P4InfoBrowser.NotFoundException, CodecException {
+            // Insert fields and parameters in the same order as the translator,
+            // the PI codec encodes them in iteration order.
+            int tableIntId = browser.tables().getByName(tableId.id()).getPreamble().getId();
+            PiMatchKey.Builder matchKey = PiMatchKey.builder();
+            for (PiMatchFieldId field : fields) {
+                matchKey.addFieldMatch(zeroFieldMatch(field, browser.matchFields(tableIntId).getByName(field.id())));
+            }
+            int actionIntId = browser.actions().getByName(actionId.id()).getPreamble().getId();
+            PiAction.Builder action = PiAction.builder().withId(actionId);
+            for (PiActionParamId param : params) {
+                int bitwidth = browser.actionParams(actionIntId).getByName(param.id()).getBitwidth();
+                action.withParameter(new PiActionParam(param, ImmutableByteSequence.ofZeros(byteWidth(bitwidth))));
+            }
+            PiTableEntry.Builder piEntry = PiTableEntry.builder()
+                    .forTable(tableId)
+                    .withMatchKey(matchKey.build())
+                    .withAction(action.build());
+            P4RuntimeOuterClass.TableEntry entry = Codecs.CODECS.entity()
+                    .encode(piEntry.build(), null, pipeconf).getTableEntry();
+
+            int[] matchPositions = new int[fields.size()];
+            int[] matchSlots = new int[fields.size()];
+            int[] matchWidths = new int[fields.size()];
+            for (int slot = 0; slot < fields.size(); slot++) {
+                int fieldId = browser.matchFields(tableIntId).getByName(fields.get(slot).id()).getId();
+                int position = -1;
+                for (int i = 0; i < entry.getMatchCount(); i++) {
+                    if (entry.getMatch(i).getFieldId() == fieldId) {
+                        position = i;
+                    }
+                }
+                checkState(position >= 0, "Match field %s missing from template", fields.get(slot));
+                matchPositions[slot] = position;
+                matchSlots[position] = slot;
+                matchWidths[slot] = valueWidth(entry.getMatch(position));
+            }
+
+            P4RuntimeOuterClass.Action encodedAction = entry.getAction().getAction();
+            int[] paramPositions = new int[params.length];
+            int[] paramWidths = new int[params.length];
+            for (int slot = 0; slot < params.length; slot++) {
+                int paramId = browser.actionParams(actionIntId).getByName(params[slot].id()).getId();
+                int position = -1;
+                for (int i = 0; i < encodedAction.getParamsCount(); i++) {
+                    if (encodedAction.getParams(i).getParamId() == paramId) {
+                        position = i;
+                    }
+                }
+                checkState(position >= 0, "Action parameter %s missing from template", params[slot]);
+                paramPositions[slot] = position;
+                paramWidths[slot] = encodedAction.getParams(position).getValue().size();
+            }
+            return new Template(entry, matchPositions, matchSlots, matchWidths, paramPositions, paramWidths);
+        }
+
+        private static PiFieldMatch zeroFieldMatch(PiMatchFieldId field, P4InfoOuterClass.MatchField info) {
+            ImmutableByteSequence zero = ImmutableByteSequence.ofZeros(byteWidth(info.getBitwidth()));
+            switch (info.getMatchType()) {
+                case EXACT:
+                    return new PiExactFieldMatch(field, zero);
+                case LPM:
+                    return new PiLpmFieldMatch(field, zero, info.getBitwidth());
+                case TERNARY:
+                    return new PiTernaryFieldMatch(
+                            field, zero, ImmutableByteSequence.ofOnes(byteWidth(info.getBitwidth())));
+                case RANGE:
+                    return new PiRangeFieldMatch(field, zero, zero);
+                default:
+                    throw new IllegalStateException("Unsupported match type for field " + field
+                                                            + ": " + info.getMatchType());
+            }
+        }
+
+        private static int byteWidth(int bitwidth) {
+            return (bitwidth + Byte.SIZE - 1) / Byte.SIZE;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import io.grpc.BindableService;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_BOSS_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_BOSS_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_FLOW_CONTROL_WINDOW;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_FLOW_CONTROL_WINDOW_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_QUEUE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_QUEUE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIME;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIMEOUT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIMEOUT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIME_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_MAX_INBOUND_MESSAGE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_MAX_INBOUND_MESSAGE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PERMIT_KEEPALIVE_TIME;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PERMIT_KEEPALIVE_TIME_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PORT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PORT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_USE_EPOLL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_USE_EPOLL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_WORKER_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_WORKER_THREADS_DEFAULT;
+import static org.onlab.util.Tools.getIntegerProperty;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.onlab.util.Tools.isPropertyEnabled;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The Netty-based gRPC server exposing the UP4 logical switch, together with
+ * the event loops and the executor it owns. By default, the server uses the
+ * event loops and the executor of gRPC, as it did before they were
+ * configurable.
+ */
+final class Up4GrpcServer {
+
+    private static final Logger log = getLogger(Up4GrpcServer.class);
+
+    private static final String THREAD_GROUP = "omec/up4/grpc";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 2;
+
+    private final Config config;
+    private final Server server;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final ExecutorService handlerExecutor;
+
+    private Up4GrpcServer(Config config, Server server, EventLoopGroup bossGroup,
+                          EventLoopGroup workerGroup, ExecutorService handlerExecutor) {
+        this.config = config;
+        this.server = server;
+        this.bossGroup = bossGroup;
+        this.workerGroup = workerGroup;
+        this.handlerExecutor = handlerExecutor;
+    }
+
+    /**
+     * Builds and starts a new server with the given configuration.
+     *
+     * @param config  server configuration
+     * @param service the service to expose
+     * @return the started server
+     * @throws IOException if the server cannot be started
+     */
+    static Up4GrpcServer start(Config config, BindableService service) throws IOException {
+        NettyServerBuilder builder = NettyServerBuilder.forPort(config.port)
+                .maxInboundMessageSize(config.maxInboundMessageSize)
+                .flowControlWindow(config.flowControlWindow)
+                .keepAliveTime(config.keepAliveTime, TimeUnit.SECONDS)
+                .keepAliveTimeout(config.keepAliveTimeout, TimeUnit.SECONDS)
+                .permitKeepAliveTime(config.permitKeepAliveTime, TimeUnit.SECONDS);
+        EventLoopGroup bossGroup = null;
+        EventLoopGroup workerGroup = null;
+        if (config.ownEventLoops()) {
+            Class<? extends ServerChannel> channelType;
+            if (config.useEpoll && isEpollAvailable()) {
+                bossGroup = new EpollEventLoopGroup(config.bossThreads(), groupedThreads(THREAD_GROUP, "boss-%d", log));
+                workerGroup = new EpollEventLoopGroup(config.workerThreads,
+                                                      groupedThreads(THREAD_GROUP, "worker-%d", log));
+                channelType = EpollServerSocketChannel.class;
+            } else {
+                bossGroup = new NioEventLoopGroup(config.bossThreads(), groupedThreads(THREAD_GROUP, "boss-%d", log));
+                workerGroup = new NioEventLoopGroup(config.workerThreads,
+                                                    groupedThreads(THREAD_GROUP, "worker-%d", log));
+                channelType = NioServerSocketChannel.class;
+            }
+            builder.bossEventLoopGroup(bossGroup)
+                    .workerEventLoopGroup(workerGroup)
+                    .channelType(channelType);
+        }
+        ExecutorService handlerExecutor = null;
+        if (config.handlerThreads > 0) {
+            // Calls are never handled on the Netty event loops: when too many
+            // calls are waiting for a handler thread, new calls are rejected
+            // with RESOURCE_EXHAUSTED.
+            handlerExecutor = new ThreadPoolExecutor(
+                    config.handlerThreads, config.handlerThreads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    groupedThreads(THREAD_GROUP, "handler-%d", log));
+            builder.executor(handlerExecutor)
+                    .addService(ServerInterceptors.intercept(
+                            service, new CallLimiter(config.handlerThreads + config.handlerQueueSize)));
+        } else {
+            builder.addService(service);
+        }
+        Up4GrpcServer up4GrpcServer = new Up4GrpcServer(config, builder.build(), bossGroup,
+                                                        workerGroup, handlerExecutor);
+        try {
+            up4GrpcServer.server.start();
+        } catch (IOException e) {
+            up4GrpcServer.releaseResources();
+            throw e;
+        }
+        log.info("UP4 gRPC server started with {}", config);
+        return up4GrpcServer;
+    }
+
+    private static boolean isEpollAvailable() {
+        // The native transport is an optional import of the bundle.
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            log.warn("Native epoll transport not available, using NIO: {}",
+                     Epoll.unavailabilityCause().getMessage());
+        } catch (NoClassDefFoundError e) {
+            log.warn("Native epoll transport not installed, using NIO");
+        }
+        return false;
+    }
+
+    /**
+     * Returns the configuration of this server.
+     *
+     * @return server configuration
+     */
+    Config config() {
+        return config;
+    }
+
+    /**
+     * Stops the server and releases its port, event loops and executor.
+     * Ongoing calls are cancelled if they don't complete within a short timeout.
+     */
+    void stop() {
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                server.shutdownNow();
+                server.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        releaseResources();
+        log.info("UP4 gRPC server on port {} stopped", config.port);
+    }
+
+    private void releaseResources() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Limits the number of calls in progress when calls are handled by a
+     * bounded executor. Calls beyond the limit are closed right away with
+     * RESOURCE_EXHAUSTED, instead of waiting for a handler thread. Bidirectional
+     * streams are long-lived and are not limited.
+     */
+    private static final class CallLimiter implements ServerInterceptor {
+        private final Semaphore permits;
+
+        private CallLimiter(int maxCalls) {
+            this.permits = new Semaphore(maxCalls);
+        }
+
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            if (call.getMethodDescriptor().getType() == MethodDescriptor.MethodType.BIDI_STREAMING) {
+                return next.startCall(call, headers);
+            }
+            if (!permits.tryAcquire()) {
+                log.debug("Rejecting {}, too many calls in progress", call.getMethodDescriptor().getFullMethodName());
+                call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many calls in progress"), new Metadata());
+                return new ServerCall.Listener<ReqT>() { };
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            };
+            ServerCall<ReqT, RespT> releasingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    release.run();
+                    super.close(status, trailers);
+                }
+            };
+            ServerCall.Listener<ReqT> listener;
+            try {
+                listener = next.startCall(releasingCall, headers);
+            } catch (RuntimeException e) {
+                release.run();
+                throw e;
+            }
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+                @Override
+                public void onCancel() {
+                    release.run();
+                    super.onCancel();
+                }
+
+                @Override
+                public void onComplete() {
+                    release.run();
+                    super.onComplete();
+                }
+            };
+        }
+    }
+
+    /**
+     * Configuration of the UP4 gRPC server, read from the component properties.
+     */
+    static final class Config {
+        private final int port;
+        private final int bossThreads;
+        private final int workerThreads;
+        private final boolean useEpoll;
+        private final int handlerThreads;
+        private final int handlerQueueSize;
+        private final int maxInboundMessageSize;
+        private final int flowControlWindow;
+        private final int keepAliveTime;
+        private final int keepAliveTimeout;
+        private final int permitKeepAliveTime;
+
+        private Config(Dictionary<?, ?> properties) {
+            port = intProperty(properties, GRPC_PORT, GRPC_PORT_DEFAULT, 1);
+            // Zero means the gRPC default event loops, unless epoll is enabled.
+            bossThreads = intProperty(properties, GRPC_BOSS_THREADS, GRPC_BOSS_THREADS_DEFAULT, 0);
+            // Zero means the Netty default (twice the number of cores).
+            workerThreads = intProperty(properties, GRPC_WORKER_THREADS, GRPC_WORKER_THREADS_DEFAULT, 0);
+            Boolean epoll = isPropertyEnabled(properties, GRPC_USE_EPOLL);
+            useEpoll = epoll == null ? GRPC_USE_EPOLL_DEFAULT : epoll;
+            // Zero means the gRPC default executor (unbounded cached thread pool).
+            handlerThreads = intProperty(properties, GRPC_HANDLER_THREADS, GRPC_HANDLER_THREADS_DEFAULT, 0);
+            handlerQueueSize = intProperty(properties, GRPC_HANDLER_QUEUE_SIZE, GRPC_HANDLER_QUEUE_SIZE_DEFAULT, 1);
+            maxInboundMessageSize = intProperty(properties, GRPC_MAX_INBOUND_MESSAGE_SIZE,
+                                                GRPC_MAX_INBOUND_MESSAGE_SIZE_DEFAULT, 1);
+            flowControlWindow = intProperty(properties, GRPC_FLOW_CONTROL_WINDOW,
+                                            GRPC_FLOW_CONTROL_WINDOW_DEFAULT, 1);
+            keepAliveTime = intProperty(properties, GRPC_KEEPALIVE_TIME, GRPC_KEEPALIVE_TIME_DEFAULT, 1);
+            keepAliveTimeout = intProperty(properties, GRPC_KEEPALIVE_TIMEOUT, GRPC_KEEPALIVE_TIMEOUT_DEFAULT, 1);
+            permitKeepAliveTime = intProperty(properties, GRPC_PERMIT_KEEPALIVE_TIME,
+                                              GRPC_PERMIT_KEEPALIVE_TIME_DEFAULT, 0);
+        }
+
+        /**
+         * Reads the server configuration from the given component properties.
+         * Missing or invalid values are replaced by their default.
+         *
+         * @param properties component properties
+         * @return server configuration
+         */
+        static Config fromProperties(Dictionary<?, ?> properties) {
+            return new Config(properties);
+        }
+
+        /**
+         * Returns true if the server uses its own event loops rather than the
+         * ones shared by all gRPC servers.
+         *
+         * @return true if the server owns its event loops
+         */
+        boolean ownEventLoops() {
+            return useEpoll || bossThreads > 0 || workerThreads > 0;
+        }
+
+        private int bossThreads() {
+            return Math.max(1, bossThreads);
+        }
+
+        /**
+         * Returns the TCP port the server listens on.
+         *
+         * @return TCP port
+         */
+        int port() {
+            return port;
+        }
+
+        private static int intProperty(Dictionary<?, ?> properties, String name, int defaultValue, int min) {
+            Integer value = getIntegerProperty(properties, name);
+            if (value == null) {
+                return defaultValue;
+            }
+            if (value < min) {
+                log.warn("Invalid value {} for property {}, using default {}", value, name, defaultValue);
+                return defaultValue;
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Config that = (Config) o;
+            return port == that.port &&
+                    bossThreads == that.bossThreads &&
+                    workerThreads == that.workerThreads &&
+                    useEpoll == that.useEpoll &&
+                    handlerThreads == that.handlerThreads &&
+                    handlerQueueSize == that.handlerQueueSize &&
+                    maxInboundMessageSize == that.maxInboundMessageSize &&
+                    flowControlWindow == that.flowControlWindow &&
+                    keepAliveTime == that.keepAliveTime &&
+                    keepAliveTimeout == that.keepAliveTimeout &&
+                    permitKeepAliveTime == that.permitKeepAliveTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(port, bossThreads, workerThreads, useEpoll, handlerThreads, handlerQueueSize,
+                                maxInboundMessageSize, flowControlWindow, keepAliveTime, keepAliveTimeout,
+                                permitKeepAliveTime);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("port", port)
+                    .add("bossThreads", bossThreads)
+                    .add("workerThreads", workerThreads)
+                    .add("useEpoll", useEpoll)
+                    .add("handlerThreads", handlerThreads)
+                    .add("handlerQueueSize", handlerQueueSize)
+                    .add("maxInboundMessageSize", maxInboundMessageSize)
+                    .add("flowControlWindow", flowControlWindow)
+                    .add("keepAliveTime", keepAliveTime)
+                    .add("keepAliveTimeout", keepAliveTimeout)
+                    .add("permitKeepAliveTime", permitKeepAliveTime)
+                    .toString();
+        }
+    }
+}
@@ -5,23 +5,26 @@
 package org.omecproject.up4.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.TextFormat;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
-import io.grpc.Server;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
-import io.grpc.netty.NettyServerBuilder;
 import io.grpc.stub.StreamObserver;
+import org.omecproject.up4.Up4EntityFilter;
+import org.omecproject.up4.Up4EntityUpdate;
 import org.omecproject.up4.Up4Event;
 import org.omecproject.up4.Up4EventListener;
 import org.omecproject.up4.Up4Service;
 import org.omecproject.up4.Up4Translator;
 import org.onlab.util.HexString;
 import org.onlab.util.ImmutableByteSequence;
-import org.onlab.util.SharedExecutors;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.net.behaviour.upf.UpfCounter;
 import org.onosproject.net.behaviour.upf.UpfEntity;
 import org.onosproject.net.behaviour.upf.UpfEntityType;
@@ -32,8 +35,6 @@ import org.onosproject.net.pi.model.PiPipeconf;
 import org.onosproject.net.pi.model.PiPipelineModel;
 import org.onosproject.net.pi.runtime.PiCounterCell;
 import org.onosproject.net.pi.runtime.PiCounterCellId;
-import org.onosproject.net.pi.runtime.PiEntity;
-import org.onosproject.net.pi.runtime.PiTableAction;
 import org.onosproject.net.pi.runtime.PiTableEntry;
 import org.onosproject.p4runtime.ctl.codec.CodecException;
 import org.onosproject.p4runtime.ctl.codec.Codecs;
@@ -41,15 +42,16 @@ import org.onosproject.p4runtime.ctl.utils.P4InfoBrowser;
 import org.onosproject.p4runtime.ctl.utils.PipeconfHelper;
 import org.onosproject.p4runtime.model.P4InfoParser;
 import org.onosproject.p4runtime.model.P4InfoParserException;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import p4.config.v1.P4InfoOuterClass;
-import p4.v1.P4DataOuterClass;
 import p4.v1.P4RuntimeGrpc;
 import p4.v1.P4RuntimeOuterClass;
 
@@ -58,17 +60,71 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static io.grpc.Status.FAILED_PRECONDITION;
 import static io.grpc.Status.INVALID_ARGUMENT;
 import static io.grpc.Status.PERMISSION_DENIED;
 import static io.grpc.Status.UNIMPLEMENTED;
 import static java.lang.String.format;
 import static org.omecproject.up4.impl.AppConstants.PIPECONF_ID;
 import static org.omecproject.up4.impl.ExtraP4InfoConstants.DDN_DIGEST_ID;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_ACK_TIMEOUT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_ACK_TIMEOUT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_MAX_LIST_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_MAX_LIST_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_MAX_TIMEOUT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.DDN_MAX_TIMEOUT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_BOSS_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_BOSS_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_FLOW_CONTROL_WINDOW;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_FLOW_CONTROL_WINDOW_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_QUEUE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_QUEUE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_HANDLER_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIME;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIMEOUT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIMEOUT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_KEEPALIVE_TIME_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_MAX_INBOUND_MESSAGE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_MAX_INBOUND_MESSAGE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PERMIT_KEEPALIVE_TIME;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PERMIT_KEEPALIVE_TIME_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PORT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_PORT_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_USE_EPOLL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_USE_EPOLL_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_WORKER_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.GRPC_WORKER_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.PACKET_OUT_QUEUE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.PACKET_OUT_QUEUE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.READ_CHUNK_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.READ_CHUNK_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.READ_THREADS;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.READ_THREADS_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.STREAM_OVERFLOW_POLICY;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.STREAM_OVERFLOW_POLICY_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.STREAM_QUEUE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.STREAM_QUEUE_SIZE_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.WRITE_LANES;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.WRITE_LANES_DEFAULT;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.WRITE_LANE_QUEUE_SIZE;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.WRITE_LANE_QUEUE_SIZE_DEFAULT;
 import static org.omecproject.up4.impl.Up4P4InfoConstants.POST_QOS_PIPE_POST_QOS_COUNTER;
 import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_PRE_QOS_COUNTER;
 import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_DOWNLINK;
@@ -76,34 +132,84 @@ import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_SESSIONS_
 import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_DOWNLINK;
 import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TERMINATIONS_UPLINK;
 import static org.omecproject.up4.impl.Up4P4InfoConstants.PRE_QOS_PIPE_TUNNEL_PEERS;
+import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.getIntegerProperty;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.pi.model.PiPipeconf.ExtensionType.P4_INFO_TEXT;
 
 
-/* TODO: listen for netcfg changes. If the grpc port in the netcfg is different from the default,
-         restart the grpc server on the new port.
- */
-
-@Component(immediate = true, service = Up4NorthComponent.class)
+@Component(immediate = true, service = Up4NorthComponent.class,
+        property = {
+                WRITE_LANES + ":Integer=" + WRITE_LANES_DEFAULT,
+                WRITE_LANE_QUEUE_SIZE + ":Integer=" + WRITE_LANE_QUEUE_SIZE_DEFAULT,
+                READ_CHUNK_SIZE + ":Integer=" + READ_CHUNK_SIZE_DEFAULT,
+                READ_THREADS + ":Integer=" + READ_THREADS_DEFAULT,
+                GRPC_PORT + ":Integer=" + GRPC_PORT_DEFAULT,
+                GRPC_BOSS_THREADS + ":Integer=" + GRPC_BOSS_THREADS_DEFAULT,
+                GRPC_WORKER_THREADS + ":Integer=" + GRPC_WORKER_THREADS_DEFAULT,
+                GRPC_USE_EPOLL + ":Boolean=" + GRPC_USE_EPOLL_DEFAULT,
+                GRPC_HANDLER_THREADS + ":Integer=" + GRPC_HANDLER_THREADS_DEFAULT,
+                GRPC_HANDLER_QUEUE_SIZE + ":Integer=" + GRPC_HANDLER_QUEUE_SIZE_DEFAULT,
+                GRPC_MAX_INBOUND_MESSAGE_SIZE + ":Integer=" + GRPC_MAX_INBOUND_MESSAGE_SIZE_DEFAULT,
+                GRPC_FLOW_CONTROL_WINDOW + ":Integer=" + GRPC_FLOW_CONTROL_WINDOW_DEFAULT,
+                GRPC_KEEPALIVE_TIME + ":Integer=" + GRPC_KEEPALIVE_TIME_DEFAULT,
+                GRPC_KEEPALIVE_TIMEOUT + ":Integer=" + GRPC_KEEPALIVE_TIMEOUT_DEFAULT,
+                GRPC_PERMIT_KEEPALIVE_TIME + ":Integer=" + GRPC_PERMIT_KEEPALIVE_TIME_DEFAULT,
+                DDN_MAX_LIST_SIZE + ":Integer=" + DDN_MAX_LIST_SIZE_DEFAULT,
+                DDN_MAX_TIMEOUT + ":Integer=" + DDN_MAX_TIMEOUT_DEFAULT,
+                DDN_ACK_TIMEOUT + ":Integer=" + DDN_ACK_TIMEOUT_DEFAULT,
+                PACKET_OUT_QUEUE_SIZE + ":Integer=" + PACKET_OUT_QUEUE_SIZE_DEFAULT,
+                STREAM_QUEUE_SIZE + ":Integer=" + STREAM_QUEUE_SIZE_DEFAULT,
+                STREAM_OVERFLOW_POLICY + "=" + STREAM_OVERFLOW_POLICY_DEFAULT,
+        })
 public class Up4NorthComponent {
     private static final ImmutableByteSequence ZERO_SEQ = ImmutableByteSequence.ofZeros(4);
     private static final int DEFAULT_DEVICE_ID = 1;
+    // p4_device_config of the pipeline config pushes delimiting a resync.
+    static final ByteString RESYNC_DEVICE_CONFIG = ByteString.copyFromUtf8("up4-resync");
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     protected Up4Service up4Service;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected ComponentConfigService componentConfigService;
+
     protected final Up4Translator up4Translator = new Up4TranslatorImpl();
     protected final Up4NorthService up4NorthService = new Up4NorthService();
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final Up4EventListener up4EventListener = new InternalUp4EventListener();
     // Stores open P4Runtime StreamChannel(s)
-    private final ConcurrentMap<P4RuntimeOuterClass.Uint128,
-            StreamObserver<P4RuntimeOuterClass.StreamMessageResponse>> streams =
+    private final ConcurrentMap<P4RuntimeOuterClass.Uint128, Up4StreamSender> streams =
             Maps.newConcurrentMap();
-    private final AtomicInteger ddnDigestListId = new AtomicInteger(0);
+    // Packet-out queues of open StreamChannel(s)
+    private final Set<Up4PacketOutQueue> packetOutQueues = Sets.newConcurrentHashSet();
+    // Stream of the client that started the resync in progress, if any.
+    private final Object resyncLock = new Object();
+    private Up4StreamSender resyncOwner;
 
     protected P4InfoOuterClass.P4Info p4Info;
     protected PiPipeconf pipeconf;
-    private Server server;
+    // The p4info with physical resource sizes, computed on first use and invalidated when
+    // the UP4 config or the UPF data plane change.
+    private P4InfoOuterClass.P4Info physicalP4Info;
+    protected Up4EntityDecoder entityDecoder;
+    protected Up4EntityEncoder entityEncoder;
+    protected volatile Up4WriteScheduler writeScheduler;
+    protected volatile int readChunkSize = READ_CHUNK_SIZE_DEFAULT;
+    protected volatile ExecutorService readExecutor;
+    private int readThreads;
+    protected volatile ExecutorService packetOutExecutor;
+    protected volatile int packetOutQueueSize = PACKET_OUT_QUEUE_SIZE_DEFAULT;
+    protected volatile ExecutorService resyncExecutor;
+    protected volatile int streamQueueSize = STREAM_QUEUE_SIZE_DEFAULT;
+    protected volatile Up4StreamSender.OverflowPolicy streamOverflowPolicy =
+            Up4StreamSender.OverflowPolicy.valueOf(STREAM_OVERFLOW_POLICY_DEFAULT);
+    private Up4GrpcServer server;
+    protected volatile Up4DdnBatcher ddnBatcher;
+    // DDN digest config from the component properties, and the one written by
+    // the client, if any, which takes precedence.
+    private P4RuntimeOuterClass.DigestEntry.Config ddnPropertiesConfig;
+    private P4RuntimeOuterClass.DigestEntry.Config ddnClientConfig;
     private long pipeconfCookie = 0xbeefbeef;
 
     public Up4NorthComponent() {
@@ -120,8 +226,19 @@ public class Up4NorthComponent {
     }
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         log.info("Starting...");
+        componentConfigService.registerProperties(getClass());
+        writeScheduler = new Up4WriteScheduler(
+                getPositiveIntProperty(context, WRITE_LANES, WRITE_LANES_DEFAULT),
+                getPositiveIntProperty(context, WRITE_LANE_QUEUE_SIZE, WRITE_LANE_QUEUE_SIZE_DEFAULT));
+        readChunkSize = getPositiveIntProperty(context, READ_CHUNK_SIZE, READ_CHUNK_SIZE_DEFAULT);
+        readThreads = getPositiveIntProperty(context, READ_THREADS, READ_THREADS_DEFAULT);
+        readExecutor = newReadExecutor(readThreads);
+        packetOutQueueSize = getPositiveIntProperty(context, PACKET_OUT_QUEUE_SIZE, PACKET_OUT_QUEUE_SIZE_DEFAULT);
+        packetOutExecutor = Executors.newSingleThreadExecutor(groupedThreads("omec/up4/north", "packet-out", log));
+        resyncExecutor = Executors.newSingleThreadExecutor(groupedThreads("omec/up4/north", "resync", log));
+        readStreamProperties(context);
         // Load p4info.
         try {
             pipeconf = buildPipeconf();
@@ -130,13 +247,22 @@ public class Up4NorthComponent {
             throw new IllegalStateException("Unable to parse UP4 p4info file.", e);
         }
         p4Info = PipeconfHelper.getP4Info(pipeconf);
+        try {
+            entityDecoder = new Up4EntityDecoder(pipeconf);
+            entityEncoder = new Up4EntityEncoder(pipeconf);
+        } catch (P4InfoBrowser.NotFoundException | CodecException e) {
+            log.error("Unable to build UP4 entity codecs from the p4info.", e);
+            throw new IllegalStateException("Unable to build UP4 entity codecs.", e);
+        }
+        ddnPropertiesConfig = ddnConfigFromProperties(context);
+        ddnBatcher = new Up4DdnBatcher(DDN_DIGEST_ID, this::sendDigestList,
+                                       ddnPropertiesConfig.getMaxListSize(),
+                                       ddnPropertiesConfig.getMaxTimeoutNs(),
+                                       ddnPropertiesConfig.getAckTimeoutNs());
         // Start server.
         try {
-            server = NettyServerBuilder.forPort(AppConstants.GRPC_SERVER_PORT)
-                    .addService(up4NorthService)
-                    .build()
-                    .start();
-            log.info("UP4 gRPC server started on port {}", AppConstants.GRPC_SERVER_PORT);
+            server = Up4GrpcServer.start(Up4GrpcServer.Config.fromProperties(properties(context)),
+                                         up4NorthService);
         } catch (IOException e) {
             log.error("Unable to start gRPC server", e);
             throw new IllegalStateException("Unable to start gRPC server", e);
@@ -146,62 +272,299 @@ public class Up4NorthComponent {
         log.info("Started.");
     }
 
+    @Modified
+    protected void modified(ComponentContext context) {
+        readChunkSize = getPositiveIntProperty(context, READ_CHUNK_SIZE, READ_CHUNK_SIZE_DEFAULT);
+        // Applies to queues of new streams only.
+        packetOutQueueSize = getPositiveIntProperty(context, PACKET_OUT_QUEUE_SIZE, PACKET_OUT_QUEUE_SIZE_DEFAULT);
+        readStreamProperties(context);
+        int writeLanes = getPositiveIntProperty(context, WRITE_LANES, WRITE_LANES_DEFAULT);
+        int writeLaneQueueSize = getPositiveIntProperty(context, WRITE_LANE_QUEUE_SIZE, WRITE_LANE_QUEUE_SIZE_DEFAULT);
+        Up4WriteScheduler oldScheduler = writeScheduler;
+        if (oldScheduler != null && (writeLanes != oldScheduler.numLanes() ||
+                writeLaneQueueSize != oldScheduler.queueSize())) {
+            log.info("Re-creating write scheduler with {} lanes of {} requests", writeLanes, writeLaneQueueSize);
+            // Updates already scheduled on the old lanes are applied before
+            // the ones scheduled on the new lanes.
+            writeScheduler = new Up4WriteScheduler(writeLanes, writeLaneQueueSize, oldScheduler);
+            oldScheduler.shutdown();
+        }
+        int newReadThreads = getPositiveIntProperty(context, READ_THREADS, READ_THREADS_DEFAULT);
+        if (readExecutor != null && newReadThreads != readThreads) {
+            log.info("Re-creating read executor with {} threads", newReadThreads);
+            // Reads already submitted to the old executor are still completed.
+            ExecutorService oldExecutor = readExecutor;
+            readThreads = newReadThreads;
+            readExecutor = newReadExecutor(newReadThreads);
+            oldExecutor.shutdown();
+        }
+        synchronized (this) {
+            ddnPropertiesConfig = ddnConfigFromProperties(context);
+            if (ddnBatcher != null && ddnClientConfig == null) {
+                configureDdnBatcher(ddnPropertiesConfig);
+            }
+        }
+        Up4GrpcServer.Config serverConfig = Up4GrpcServer.Config.fromProperties(properties(context));
+        if (server != null && !serverConfig.equals(server.config())) {
+            // Clients are disconnected, and are expected to reconnect on the new server.
+            log.info("Restarting UP4 gRPC server with {}", serverConfig);
+            server.stop();
+            try {
+                server = Up4GrpcServer.start(serverConfig, up4NorthService);
+            } catch (IOException e) {
+                log.error("Unable to restart gRPC server on port {}", serverConfig.port(), e);
+                server = null;
+            }
+        }
+    }
+
     @Deactivate
     protected void deactivate() {
         log.info("Shutting down...");
+        componentConfigService.unregisterProperties(getClass(), false);
         up4Service.removeListener(up4EventListener);
         if (server != null) {
-            server.shutdown();
+            server.stop();
+            server = null;
+        }
+        if (writeScheduler != null) {
+            writeScheduler.shutdown();
+            writeScheduler = null;
+        }
+        if (readExecutor != null) {
+            readExecutor.shutdown();
+            readExecutor = null;
+        }
+        if (ddnBatcher != null) {
+            ddnBatcher.shutdown();
+            ddnBatcher = null;
+        }
+        if (packetOutExecutor != null) {
+            packetOutExecutor.shutdown();
+            packetOutExecutor = null;
+        }
+        if (resyncExecutor != null) {
+            resyncExecutor.shutdown();
+            resyncExecutor = null;
         }
         log.info("Stopped.");
     }
 
+    private ExecutorService newReadExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, groupedThreads("omec/up4/north", "read-%d", log));
+    }
+
+    private Dictionary<?, ?> properties(ComponentContext context) {
+        return context != null ? context.getProperties() : new Properties();
+    }
+
+    private int getPositiveIntProperty(ComponentContext context, String name, int defaultValue) {
+        Integer value = getIntegerProperty(properties(context), name);
+        if (value == null || value <= 0) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    // Applies to new streams only.
+    private void readStreamProperties(ComponentContext context) {
+        streamQueueSize = getPositiveIntProperty(context, STREAM_QUEUE_SIZE, STREAM_QUEUE_SIZE_DEFAULT);
+        streamOverflowPolicy = Up4StreamSender.OverflowPolicy.fromString(
+                get(properties(context), STREAM_OVERFLOW_POLICY),
+                Up4StreamSender.OverflowPolicy.valueOf(STREAM_OVERFLOW_POLICY_DEFAULT));
+    }
+
+    private int getNonNegativeIntProperty(ComponentContext context, String name, int defaultValue) {
+        Integer value = getIntegerProperty(properties(context), name);
+        if (value == null || value < 0) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private P4RuntimeOuterClass.DigestEntry.Config ddnConfigFromProperties(ComponentContext context) {
+        return P4RuntimeOuterClass.DigestEntry.Config.newBuilder()
+                .setMaxListSize(getNonNegativeIntProperty(context, DDN_MAX_LIST_SIZE, DDN_MAX_LIST_SIZE_DEFAULT))
+                .setMaxTimeoutNs(TimeUnit.MILLISECONDS.toNanos(
+                        getNonNegativeIntProperty(context, DDN_MAX_TIMEOUT, DDN_MAX_TIMEOUT_DEFAULT)))
+                .setAckTimeoutNs(TimeUnit.MILLISECONDS.toNanos(
+                        getNonNegativeIntProperty(context, DDN_ACK_TIMEOUT, DDN_ACK_TIMEOUT_DEFAULT)))
+                .build();
+    }
+
+    private void configureDdnBatcher(P4RuntimeOuterClass.DigestEntry.Config config) {
+        log.info("Configuring DDN digest batching: {}", TextFormat.shortDebugString(config));
+        ddnBatcher.configure(config.getMaxListSize(), config.getMaxTimeoutNs(), config.getAckTimeoutNs());
+    }
+
     /**
-     * Translate the given logical pipeline table entry to a Up4Service entry deletion call.
+     * Validates a write of the DDN digest entry, which configures how DDNs are
+     * batched and acknowledged. Deleting the entry restores the configuration
+     * from the component properties. The returned action applies the write, it
+     * must be run only once the whole write request has been accepted.
      *
-     * @param entry The logical table entry to be deleted
-     * @throws StatusException if the table entry fails translation or cannot be deleted
+     * @param type  the type of the P4Runtime update
+     * @param entry the digest entry
+     * @return the action applying the write
+     * @throws StatusException if the digest entry or the update type are not valid
      */
-    private void translateEntryAndDelete(PiTableEntry entry) throws StatusException {
-        log.debug("Translating UP4 deletion request to fabric entry deletion.");
-        try {
-            up4Service.delete(up4Translator.up4TableEntryToUpfEntity(entry));
-        } catch (Up4Translator.Up4TranslationException e) {
-            log.warn("Failed to translate UP4 entry in deletion request: {}", e.getMessage());
+    private Runnable translateDigestEntry(P4RuntimeOuterClass.Update.Type type,
+                                          P4RuntimeOuterClass.DigestEntry entry)
+            throws StatusException {
+        if (entry.getDigestId() != DDN_DIGEST_ID) {
             throw INVALID_ARGUMENT
-                    .withDescription("Failed to translate entry in deletion request: " + e.getMessage())
+                    .withDescription(format("Unknown digest ID %d", entry.getDigestId()))
                     .asException();
+        }
+        switch (type) {
+            case INSERT:
+            case MODIFY:
+                if (!entry.hasConfig()) {
+                    throw INVALID_ARGUMENT
+                            .withDescription("Digest entry config is missing")
+                            .asException();
+                }
+                P4RuntimeOuterClass.DigestEntry.Config config = entry.getConfig();
+                return () -> writeDigestConfig(config);
+            case DELETE:
+                return () -> writeDigestConfig(null);
+            default:
+                throw UNIMPLEMENTED
+                        .withDescription("Unsupported update type for digest entry")
+                        .asException();
+        }
+    }
+
+    /**
+     * Returns the DDN digest entry configuration written by the client, if any.
+     *
+     * @return the digest entry configuration, or null if not written
+     */
+    @VisibleForTesting
+    synchronized P4RuntimeOuterClass.DigestEntry.Config ddnClientConfig() {
+        return ddnClientConfig;
+    }
+
+    private synchronized void writeDigestConfig(P4RuntimeOuterClass.DigestEntry.Config config) {
+        ddnClientConfig = config;
+        if (ddnBatcher != null) {
+            configureDdnBatcher(config == null ? ddnPropertiesConfig : config);
+        }
+    }
+
+    /**
+     * Returns the statistics of the lanes used to apply write requests.
+     *
+     * @return write lane statistics
+     */
+    public List<Up4WriteScheduler.LaneStats> writeLaneStats() {
+        Up4WriteScheduler scheduler = writeScheduler;
+        return scheduler == null ? ImmutableList.of() : scheduler.laneStats();
+    }
+
+    /**
+     * Returns the statistics of the senders of the open StreamChannels, by election ID.
+     *
+     * @return StreamChannel sender statistics
+     */
+    public Map<String, Up4StreamSender.Stats> streamStats() {
+        Map<String, Up4StreamSender.Stats> stats = new LinkedHashMap<>();
+        streams.forEach((electionId, sender) -> stats.put(TextFormat.shortDebugString(electionId), sender.stats()));
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of the packet-out queues of the open StreamChannels.
+     *
+     * @return packet-out queue statistics
+     */
+    public List<Up4PacketOutQueue.Stats> packetOutQueueStats() {
+        List<Up4PacketOutQueue.Stats> stats = new ArrayList<>();
+        packetOutQueues.forEach(queue -> stats.add(queue.stats()));
+        return stats;
+    }
+
+    private boolean sendPacketOut(ByteBuffer frame) {
+        try {
+            errorIfSwitchNotReady();
+            if (log.isDebugEnabled()) {
+                // Copy only for logging, the frame is otherwise a view of the received payload.
+                byte[] bytes = new byte[frame.remaining()];
+                frame.duplicate().get(bytes);
+                log.debug("Sending packet-out: {}", HexString.toHexString(bytes, " "));
+            }
+            up4Service.sendPacketOut(frame);
+            return true;
+        } catch (StatusException e) {
+            log.error("Unable to send packet-out: {}", e.getMessage());
         } catch (UpfProgrammableException e) {
-            log.warn("Failed to complete deletion request: {}", e.getMessage());
-            throw io.grpc.Status.UNAVAILABLE
-                    .withDescription(e.getMessage())
-                    .asException();
+            log.error(e.getMessage());
         }
+        return false;
     }
 
     /**
-     * Translate the given logical pipeline table entry to a Up4Service entry insertion call.
+     * Translate the given logical pipeline table entry to a UPF entity update of the given type.
      *
-     * @param entry The logical table entry to be inserted
-     * @throws StatusException if the entry fails translation or cannot be inserted
+     * @param type  The type of the P4Runtime update
+     * @param entry The logical table entry to be inserted, modified or deleted
+     * @return the UPF entity update
+     * @throws StatusException if the entry fails translation or the update type is not supported
      */
-    private void translateEntryAndInsert(PiTableEntry entry) throws StatusException {
-        log.debug("Translating UP4 write request to fabric entry.");
-        if (entry.action().type() != PiTableAction.Type.ACTION) {
-            log.warn("Action profile entry insertion not supported. Ignoring.");
-            throw UNIMPLEMENTED
-                    .withDescription("Action profile entries not supported by UP4.")
-                    .asException();
+    private Up4EntityUpdate translateEntry(P4RuntimeOuterClass.Update.Type type,
+                                           P4RuntimeOuterClass.TableEntry entry)
+            throws StatusException {
+        switch (type) {
+            case INSERT:
+            case MODIFY:
+                log.debug("Translating UP4 write request to fabric entry.");
+                if (entry.getAction().getTypeCase() != P4RuntimeOuterClass.TableAction.TypeCase.ACTION
+                        && entry.getAction().getTypeCase() != P4RuntimeOuterClass.TableAction.TypeCase.TYPE_NOT_SET) {
+                    log.warn("Action profile entry insertion not supported. Ignoring.");
+                    throw UNIMPLEMENTED
+                            .withDescription("Action profile entries not supported by UP4.")
+                            .asException();
+                }
+                try {
+                    return Up4EntityUpdate.apply(entityDecoder.decode(entry));
+                } catch (Up4Translator.Up4TranslationException e) {
+                    log.warn("Failed to parse entry from a write request: {}", e.getMessage());
+                    throw INVALID_ARGUMENT
+                            .withDescription("Translation error: " + e.getMessage())
+                            .asException();
+                }
+            case DELETE:
+                log.debug("Translating UP4 deletion request to fabric entry deletion.");
+                try {
+                    return Up4EntityUpdate.delete(entityDecoder.decode(entry));
+                } catch (Up4Translator.Up4TranslationException e) {
+                    log.warn("Failed to translate UP4 entry in deletion request: {}", e.getMessage());
+                    throw INVALID_ARGUMENT
+                            .withDescription("Failed to translate entry in deletion request: " + e.getMessage())
+                            .asException();
+                }
+            default:
+                log.warn("Unsupported update type for a table entry");
+                throw INVALID_ARGUMENT
+                        .withDescription("Unsupported update type")
+                        .asException();
+        }
+    }
+
+    /**
+     * Push the given batch of UPF entity updates to the Up4Service.
+     *
+     * @param updates The UPF entity updates translated from a write request
+     * @throws StatusException if the updates cannot be applied
+     */
+    private void applyUpdates(List<Up4EntityUpdate> updates) throws StatusException {
+        if (updates.isEmpty()) {
+            return;
         }
         try {
-            up4Service.apply(up4Translator.up4TableEntryToUpfEntity(entry));
-        } catch (Up4Translator.Up4TranslationException e) {
-            log.warn("Failed to parse entry from a write request: {}", e.getMessage());
-            throw INVALID_ARGUMENT
-                    .withDescription("Translation error: " + e.getMessage())
-                    .asException();
+            up4Service.applyBatch(updates);
         } catch (UpfProgrammableException e) {
-            log.warn("Failed to complete table entry insertion request: {}", e.getMessage());
+            log.warn("Failed to complete write request: {}", e.getMessage());
             switch (e.getType()) {
                 case ENTITY_EXHAUSTED:
                     throw io.grpc.Status.RESOURCE_EXHAUSTED
@@ -221,35 +584,59 @@ public class Up4NorthComponent {
     }
 
     /**
-     * Find all table entries that match the requested entry, and translate them to p4runtime
-     * entities for responding to a read request.
+     * Find all table entries that match the requested entry, and lazily translate them to p4runtime
+     * entities for responding to a read request. Entities are translated only when the returned
+     * iterator is advanced, so that large tables can be streamed without translating them at once.
      *
      * @param requestedEntry the entry from a p4runtime read request
      * @return all entries that match the request, translated to p4runtime entities
      * @throws StatusException if the requested entry fails translation
      */
-    private List<P4RuntimeOuterClass.Entity> readEntriesAndTranslate(PiTableEntry requestedEntry)
+    private Iterator<P4RuntimeOuterClass.Entity> readEntriesAndTranslate(PiTableEntry requestedEntry)
             throws StatusException {
-        List<P4RuntimeOuterClass.Entity> translatedEntries = new ArrayList<>();
-        // Respond with all entries for the table of the requested entry, ignoring other requested properties
-        // TODO: return more specific responses
+        // Respond with the entries of the requested table matching the requested match fields
+        Collection<? extends UpfEntity> entities;
         try {
             UpfEntityType entityType = up4Translator.getEntityType(requestedEntry);
-            Collection<? extends UpfEntity> entities = up4Service.readAll(entityType);
-            for (UpfEntity entity : entities) {
-                log.debug("Translating a {} entity for a read request: {}", entity.type(), entity);
-                P4RuntimeOuterClass.Entity responseEntity = Codecs.CODECS.entity().encode(
-                        up4Translator.entityToUp4TableEntry(entity), null, pipeconf);
-                translatedEntries.add(responseEntity);
-            }
-        } catch (Up4Translator.Up4TranslationException | UpfProgrammableException | CodecException e) {
-            log.warn("Unable to encode/translate a read entry to a UP4 read response: {}",
-                     e.getMessage());
+            Up4EntityFilter filter = up4Translator.up4TableEntryToFilter(requestedEntry);
+            entities = up4Service.readAll(entityType, filter);
+        } catch (Up4Translator.Up4TranslationException | UpfProgrammableException e) {
+            log.warn("Unable to read entries for a UP4 read request: {}", e.getMessage());
             throw INVALID_ARGUMENT
                     .withDescription("Unable to translate a read table entry to a p4runtime entity.")
                     .asException();
         }
-        return translatedEntries;
+        return Iterators.transform(entities.iterator(), this::translateReadEntity);
+    }
+
+    private P4RuntimeOuterClass.Entity translateReadEntity(UpfEntity entity) {
+        log.debug("Translating a {} entity for a read request: {}", entity.type(), entity);
+        try {
+            return entityEncoder.encode(entity);
+        } catch (Up4Translator.Up4TranslationException e) {
+            log.warn("Unable to encode/translate a read entry to a UP4 read response: {}",
+                     e.getMessage());
+            throw new IllegalStateException(
+                    "Unable to translate a read table entry to a p4runtime entity: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the logical p4info with physical resource sizes, computing it only
+     * if the cached one has been invalidated.
+     *
+     * @return the p4info with physical resource sizes
+     */
+    @VisibleForTesting
+    synchronized P4InfoOuterClass.P4Info getPhysicalP4Info() {
+        if (physicalP4Info == null) {
+            physicalP4Info = setPhysicalSizes(p4Info);
+        }
+        return physicalP4Info;
+    }
+
+    private synchronized void invalidatePhysicalP4Info() {
+        physicalP4Info = null;
     }
 
     /**
@@ -351,12 +738,11 @@ public class Up4NorthComponent {
      * entities for crafting a p4runtime read response.
      *
      * @param message a p4runtime CounterEntry message from a read request
-     * @return the requested counter cells' contents, as a list of p4runtime entities
+     * @return the requested counter cells' contents, as p4runtime entities encoded lazily while iterating
      * @throws StatusException if the counter index is out of range
      */
-    private List<P4RuntimeOuterClass.Entity> readCountersAndTranslate(P4RuntimeOuterClass.CounterEntry message)
+    private Iterator<P4RuntimeOuterClass.Entity> readCountersAndTranslate(P4RuntimeOuterClass.CounterEntry message)
             throws StatusException {
-        ArrayList<PiCounterCell> responseCells = new ArrayList<>();
         Integer index = null;
         // FYI a counter read message with no index corresponds to a wildcard read of all indices
         if (message.hasIndex()) {
@@ -407,47 +793,64 @@ public class Up4NorthComponent {
                         .withDescription("Invalid UP4 counter identifier.")
                         .asException();
             }
-            responseCells.add(new PiCounterCell(PiCounterCellId.ofIndirect(piCounterId, index), pkts, bytes));
+            PiCounterCell cell = new PiCounterCell(PiCounterCellId.ofIndirect(piCounterId, index), pkts, bytes);
+            try {
+                return Iterators.singletonIterator(encodeCounterCell(cell));
+            } catch (IllegalStateException e) {
+                throw io.grpc.Status.INTERNAL
+                        .withDescription("Unable to encode counter cell into a p4runtime entity.")
+                        .asException();
+            }
         } else {
-            // All cells were requested, either for a specific counter or all counters
-            // FIXME: only read the counter that was requested, instead of both ingress and egress unconditionally
+            // All cells were requested, either for a specific counter or all counters.
+            // UpfProgrammable reads both directions of a cell at once, only the requested
+            // counter is translated and encoded.
             Collection<UpfCounter> allStats;
             try {
-                allStats = up4Service.readCounters(-1);
+                allStats = up4Service.readCounters(0, up4Service.tableSize(UpfEntityType.COUNTER));
             } catch (UpfProgrammableException e) {
                 throw io.grpc.Status.UNKNOWN.withDescription(e.getMessage()).asException();
             }
-            for (UpfCounter stat : allStats) {
-                if (piCounterId == null || piCounterId.equals(PRE_QOS_PIPE_PRE_QOS_COUNTER)) {
-                    // If all counters were requested, or just the ingress one
-                    responseCells.add(new PiCounterCell(
-                            PiCounterCellId.ofIndirect(PRE_QOS_PIPE_PRE_QOS_COUNTER, stat.getCellId()),
-                            stat.getIngressPkts(), stat.getIngressBytes()));
-                }
-                if (piCounterId == null || piCounterId.equals(POST_QOS_PIPE_POST_QOS_COUNTER)) {
-                    // If all counters were requested, or just the egress one
-                    responseCells.add(new PiCounterCell(
-                            PiCounterCellId.ofIndirect(POST_QOS_PIPE_POST_QOS_COUNTER, stat.getCellId()),
-                            stat.getEgressPkts(), stat.getEgressBytes()));
-                }
-            }
+            boolean readIngress = piCounterId == null || piCounterId.equals(PRE_QOS_PIPE_PRE_QOS_COUNTER);
+            boolean readEgress = piCounterId == null || piCounterId.equals(POST_QOS_PIPE_POST_QOS_COUNTER);
+            log.debug("Encoding response to counter read request for {} counter indices", allStats.size());
+            // As for table reads, cells are built and encoded lazily while the response
+            // is streamed, so that the encoded response is never held in memory at once.
+            return Iterators.concat(Iterators.transform(
+                    allStats.iterator(), stat -> counterCellEntities(stat, readIngress, readEgress)));
         }
-        List<P4RuntimeOuterClass.Entity> responseEntities = new ArrayList<>();
-        for (PiCounterCell cell : responseCells) {
-            try {
-                responseEntities.add(Codecs.CODECS.entity().encode(cell, null, pipeconf));
-                log.trace("Encoded response to counter read request for counter {} and index {}",
-                          cell.cellId().counterId(), cell.cellId().index());
-            } catch (CodecException e) {
-                log.error("Unable to encode counter cell into a p4runtime entity: {}",
-                          e.getMessage());
-                throw io.grpc.Status.INTERNAL
-                        .withDescription("Unable to encode counter cell into a p4runtime entity.")
-                        .asException();
-            }
+    }
+
+    private Iterator<P4RuntimeOuterClass.Entity> counterCellEntities(
+            UpfCounter stat, boolean readIngress, boolean readEgress) {
+        List<P4RuntimeOuterClass.Entity> entities = new ArrayList<>(2);
+        if (readIngress) {
+            // If all counters were requested, or just the ingress one
+            entities.add(encodeCounterCell(new PiCounterCell(
+                    PiCounterCellId.ofIndirect(PRE_QOS_PIPE_PRE_QOS_COUNTER, stat.getCellId()),
+                    stat.getIngressPkts(), stat.getIngressBytes())));
+        }
+        if (readEgress) {
+            // If all counters were requested, or just the egress one
+            entities.add(encodeCounterCell(new PiCounterCell(
+                    PiCounterCellId.ofIndirect(POST_QOS_PIPE_POST_QOS_COUNTER, stat.getCellId()),
+                    stat.getEgressPkts(), stat.getEgressBytes())));
+        }
+        return entities.iterator();
+    }
+
+    private P4RuntimeOuterClass.Entity encodeCounterCell(PiCounterCell cell) {
+        try {
+            P4RuntimeOuterClass.Entity entity = Codecs.CODECS.entity().encode(cell, null, pipeconf);
+            log.trace("Encoded response to counter read request for counter {} and index {}",
+                      cell.cellId().counterId(), cell.cellId().index());
+            return entity;
+        } catch (CodecException e) {
+            log.error("Unable to encode counter cell into a p4runtime entity: {}",
+                      e.getMessage());
+            throw new IllegalStateException(
+                    "Unable to encode counter cell into a p4runtime entity: " + e.getMessage());
         }
-        log.debug("Encoded response to counter read request for {} cells", responseEntities.size());
-        return responseEntities;
     }
 
     /**
@@ -462,16 +865,29 @@ public class Up4NorthComponent {
          * every controller that they are the master as soon as they send an arbitration request. We
          * also do not yet handle anything except arbitration requests.
          *
-         * @param responseObserver The thing that is fed responses to arbitration requests.
+         * @param streamObserver The thing that is fed responses to arbitration requests.
          * @return A thing that will be fed arbitration requests.
          */
         @Override
         public StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> streamChannel(
-                StreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver) {
+                StreamObserver<P4RuntimeOuterClass.StreamMessageResponse> streamObserver) {
+            // All messages to the client go through the sender, which serializes
+            // them and holds them until the transport is ready. However the
+            // stream is closed, the sender removes itself from the open streams,
+            // and aborts the resync started by the client, if any.
+            final Up4StreamSender responseObserver = new Up4StreamSender(
+                    streamObserver, streamQueueSize, streamOverflowPolicy,
+                    closedSender -> {
+                        streams.values().remove(closedSender);
+                        abortResync(closedSender);
+                    });
+            responseObserver.start();
             return new StreamObserver<>() {
                 // On instance of this class is created for each stream.
                 // A stream without electionId is invalid.
                 private P4RuntimeOuterClass.Uint128 electionId;
+                // Created on the first packet-out.
+                private Up4PacketOutQueue packetOutQueue;
 
                 @Override
                 public void onNext(P4RuntimeOuterClass.StreamMessageRequest request) {
@@ -490,6 +906,13 @@ public class Up4NorthComponent {
                             handlePacketOut(request.getPacket());
                             return;
                         case DIGEST_ACK:
+                            // The batcher is gone if the component is being deactivated.
+                            Up4DdnBatcher batcher = ddnBatcher;
+                            if (batcher != null) {
+                                batcher.ack(request.getDigestAck().getDigestId(),
+                                            request.getDigestAck().getListId());
+                            }
+                            return;
                         case OTHER:
                         case UPDATE_NOT_SET:
                         default:
@@ -515,16 +938,15 @@ public class Up4NorthComponent {
                         log.error("StreamChannel error", t);
                     }
                     if (electionId != null) {
-                        streams.remove(electionId);
+                        streams.remove(electionId, responseObserver);
                     }
+                    closePacketOutQueue();
                 }
 
                 @Override
                 public void onCompleted() {
                     log.info("StreamChannel closed");
-                    if (electionId != null) {
-                        streams.remove(electionId);
-                    }
+                    closePacketOutQueue();
                     responseObserver.onCompleted();
                 }
 
@@ -545,79 +967,66 @@ public class Up4NorthComponent {
                                                     .withDescription("Missing election_id"));
                         return;
                     }
-                    streams.compute(request.getElectionId(), (requestedElectionId, storedResponseObserver) -> {
-                        if (storedResponseObserver == null) {
-                            // All good.
-                            this.electionId = requestedElectionId;
-                            log.info("Blindly telling requester with election_id {} they are the primary controller",
-                                     TextFormat.shortDebugString(this.electionId));
-                            // FIXME: implement election_id handling
-                            responseObserver.onNext(
-                                    P4RuntimeOuterClass.StreamMessageResponse.newBuilder()
-                                            .setArbitration(
-                                                    P4RuntimeOuterClass.MasterArbitrationUpdate.newBuilder()
-                                                            .setDeviceId(request.getDeviceId())
-                                                            .setRole(request.getRole())
-                                                            .setElectionId(this.electionId)
-                                                            .setStatus(
-                                                                    Status.newBuilder()
-                                                                            .setCode(Code.OK.getNumber())
-                                                                            .build()
-                                                            ).build()
-                                            ).build());
-                            // Store in map.
-                            return responseObserver;
-                        } else if (responseObserver != storedResponseObserver) {
-                            handleErrorResponse(
-                                    INVALID_ARGUMENT.withDescription("Election_id already in use by another client"));
-                            // Map value unchanged.
-                            return storedResponseObserver;
-                        } else {
-                            // Client is sending a second arbitration request for the same or a new
-                            // election_id. Not supported.
-                            handleErrorResponse(
-                                    UNIMPLEMENTED.withDescription("Update of master arbitration not supported"));
-                            // Remove from map.
-                            return null;
-                        }
-                    });
+                    if (electionId != null) {
+                        // Client is sending a second arbitration request for the same or a new
+                        // election_id. Not supported.
+                        handleErrorResponse(
+                                UNIMPLEMENTED.withDescription("Update of master arbitration not supported"));
+                        return;
+                    }
+                    // Errors are sent outside of the map update, as closing the
+                    // stream removes it from the map.
+                    if (streams.putIfAbsent(request.getElectionId(), responseObserver) != null) {
+                        handleErrorResponse(
+                                INVALID_ARGUMENT.withDescription("Election_id already in use by another client"));
+                        return;
+                    }
+                    this.electionId = request.getElectionId();
+                    log.info("Blindly telling requester with election_id {} they are the primary controller",
+                             TextFormat.shortDebugString(this.electionId));
+                    // FIXME: implement election_id handling
+                    responseObserver.send(
+                            P4RuntimeOuterClass.StreamMessageResponse.newBuilder()
+                                    .setArbitration(
+                                            P4RuntimeOuterClass.MasterArbitrationUpdate.newBuilder()
+                                                    .setDeviceId(request.getDeviceId())
+                                                    .setRole(request.getRole())
+                                                    .setElectionId(this.electionId)
+                                                    .setStatus(
+                                                            Status.newBuilder()
+                                                                    .setCode(Code.OK.getNumber())
+                                                                    .build()
+                                                    ).build()
+                                    ).build());
                 }
 
                 private void handlePacketOut(P4RuntimeOuterClass.PacketOut request) {
-                    try {
-                        errorIfSwitchNotReady();
-                        if (request.getPayload().isEmpty()) {
-                            log.error("Received packet-out with empty payload");
-                            return;
-                        }
-                        final byte[] frame = request.getPayload().toByteArray();
-                        if (log.isDebugEnabled()) {
-                            log.debug("Sending packet-out: {}", HexString.toHexString(frame, " "));
-                        }
-                        up4Service.sendPacketOut(ByteBuffer.wrap(frame));
-                    } catch (StatusException e) {
-                        // Drop exception to avoid closing the stream.
-                        log.error("Unable to send packet-out: {}", e.getMessage());
-                    } catch (UpfProgrammableException e) {
-                        log.error(e.getMessage());
+                    if (request.getPayload().isEmpty()) {
+                        log.error("Received packet-out with empty payload");
+                        return;
+                    }
+                    if (packetOutQueue == null) {
+                        packetOutQueue = new Up4PacketOutQueue(
+                                TextFormat.shortDebugString(electionId), packetOutQueueSize,
+                                packetOutExecutor, Up4NorthComponent.this::sendPacketOut);
+                        packetOutQueues.add(packetOutQueue);
+                    }
+                    // Sent asynchronously, failures are logged without closing the stream.
+                    packetOutQueue.offer(request.getPayload());
+                }
+
+                private void closePacketOutQueue() {
+                    if (packetOutQueue != null) {
+                        packetOutQueue.close();
+                        packetOutQueues.remove(packetOutQueue);
                     }
                 }
 
                 private void handleErrorResponse(io.grpc.Status status) {
                     log.warn("Closing StreamChannel with client: {}", status.toString());
-                    responseObserver.onError(status.asException());
-                    // Remove stream from map.
-                    if (electionId != null) {
-                        streams.computeIfPresent(electionId, (storedElectionId, storedResponseObserver) -> {
-                            if (responseObserver == storedResponseObserver) {
-                                // Remove.
-                                return null;
-                            } else {
-                                // This is another stream with same election_id. Do not remove.
-                                return storedResponseObserver;
-                            }
-                        });
-                    }
+                    // Also removes the stream from the map, if this stream is stored.
+                    responseObserver.onError(status);
+                    closePacketOutQueue();
                 }
             };
         }
@@ -626,7 +1035,9 @@ public class Up4NorthComponent {
          * Receives a pipeline config from a client. Discards all but the p4info file and cookie,
          * and compares the received p4info to the already present hardcoded p4info. If the two
          * match, the cookie is stored and a success response is sent. If they do not, the cookie is
-         * disarded and an error is reported.
+         * disarded and an error is reported. Configs with {@link #RESYNC_DEVICE_CONFIG} as
+         * p4_device_config are not pipeline pushes, but delimit a resync of the UPF entities, see
+         * {@link #handleResync}.
          *
          * @param request          A request containing a p4info and cookie
          * @param responseObserver The thing that is fed a response to the config request.
@@ -635,11 +1046,21 @@ public class Up4NorthComponent {
         public void setForwardingPipelineConfig(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest request,
                                                 StreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse>
                                                         responseObserver) {
-            // Currently ignoring device_id, role_id, election_id, action
+            // Currently ignoring device_id, role_id, and election_id of pipeline pushes
             log.info("Received setForwardingPipelineConfig message.");
+            boolean resync = RESYNC_DEVICE_CONFIG.equals(request.getConfig().getP4DeviceConfig());
             P4InfoOuterClass.P4Info otherP4Info = request.getConfig().getP4Info();
             if (!otherP4Info.equals(p4Info)) {
                 log.warn("Someone attempted to write a p4info file that doesn't match our hardcoded one! What a jerk");
+                if (resync) {
+                    responseObserver.onError(INVALID_ARGUMENT
+                                                     .withDescription("P4Info does not match the UP4 p4info")
+                                                     .asException());
+                    return;
+                }
+            } else if (resync) {
+                handleResync(request, responseObserver);
+                return;
             } else {
                 log.info("Received p4info correctly matches hardcoded p4info. Saving cookie.");
                 pipeconfCookie = request.getConfig().getCookie().getCookie();
@@ -650,6 +1071,65 @@ public class Up4NorthComponent {
             responseObserver.onCompleted();
         }
 
+        /**
+         * Begins (VERIFY_AND_SAVE) or commits (COMMIT) a resync of the UPF entities, e.g., after a
+         * restart of the client: entities written in between replace the installed ones, the others
+         * are deleted on commit. Only the primary client, i.e., the one with the highest election_id
+         * among the open streams, can resync, and the resync is aborted if its stream is closed
+         * before the commit. Both steps run on the resync executor, as they read and delete the
+         * installed entities.
+         *
+         * @param request          the resync request
+         * @param responseObserver the response observer
+         */
+        private void handleResync(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest request,
+                                  StreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse>
+                                          responseObserver) {
+            final Up4StreamSender owner;
+            try {
+                errorIfSwitchNotReady();
+                owner = primaryStream(request.getElectionId());
+            } catch (StatusException e) {
+                responseObserver.onError(e);
+                return;
+            }
+            final P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action action = request.getAction();
+            if (action != P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE &&
+                    action != P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.COMMIT) {
+                responseObserver.onError(INVALID_ARGUMENT
+                                                 .withDescription("Resync requires VERIFY_AND_SAVE or COMMIT")
+                                                 .asException());
+                return;
+            }
+            try {
+                resyncExecutor.execute(() -> {
+                    try {
+                        if (action == P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.COMMIT) {
+                            commitResync(owner);
+                        } else {
+                            beginResync(owner, request.getElectionId());
+                        }
+                    } catch (StatusException e) {
+                        responseObserver.onError(e);
+                        return;
+                    } catch (UpfProgrammableException e) {
+                        log.warn("Unable to {} resync: {}", action, e.getMessage());
+                        responseObserver.onError(FAILED_PRECONDITION
+                                                         .withDescription(e.getMessage())
+                                                         .asException());
+                        return;
+                    }
+                    responseObserver.onNext(
+                            P4RuntimeOuterClass.SetForwardingPipelineConfigResponse.getDefaultInstance());
+                    responseObserver.onCompleted();
+                });
+            } catch (RejectedExecutionException e) {
+                responseObserver.onError(io.grpc.Status.UNAVAILABLE
+                                                 .withDescription("Resync executor is shutting down")
+                                                 .asException());
+            }
+        }
+
         /**
          * Returns the UP4 logical switch p4info (but with physical resource sizes) and cookie.
          *
@@ -667,7 +1147,7 @@ public class Up4NorthComponent {
                                     P4RuntimeOuterClass.ForwardingPipelineConfig.newBuilder()
                                             .setCookie(P4RuntimeOuterClass.ForwardingPipelineConfig.Cookie.newBuilder()
                                                                .setCookie(pipeconfCookie))
-                                            .setP4Info(setPhysicalSizes(p4Info))
+                                            .setP4Info(getPhysicalP4Info())
                                             .build())
                             .build());
             responseObserver.onCompleted();
@@ -696,9 +1176,22 @@ public class Up4NorthComponent {
             }
         }
 
-        private void doWrite(P4RuntimeOuterClass.WriteRequest request,
-                             StreamObserver<P4RuntimeOuterClass.WriteResponse> responseObserver)
+        /**
+         * Translates the given write request to UPF entity updates. Writes of
+         * other entities are returned as actions in the given list, to be run
+         * only once the updates have been applied.
+         *
+         * @param request     the write request
+         * @param otherWrites list receiving the writes of other entities
+         * @return the UPF entity updates
+         * @throws StatusException if the request is not valid
+         */
+        private List<Up4EntityUpdate> translateWriteRequest(P4RuntimeOuterClass.WriteRequest request,
+                                                            List<Runnable> otherWrites)
                 throws StatusException {
+            // Translate the whole request before pushing anything to the data plane,
+            // so that all updates can be applied as a single batch.
+            List<Up4EntityUpdate> updates = new ArrayList<>(request.getUpdatesCount());
             for (P4RuntimeOuterClass.Update update : request.getUpdatesList()) {
                 if (!update.hasEntity()) {
                     log.warn("Update message with no entities received. Ignoring");
@@ -710,28 +1203,12 @@ public class Up4NorthComponent {
                         // TODO: support counter cell writes, including wildcard writes
                         break;
                     case TABLE_ENTRY:
-                        PiEntity piEntity;
-                        try {
-                            piEntity = Codecs.CODECS.entity().decode(requestEntity, null, pipeconf);
-                        } catch (CodecException e) {
-                            log.warn("Unable to decode p4runtime entity update message", e);
-                            throw INVALID_ARGUMENT.withDescription(e.getMessage()).asException();
-                        }
-                        PiTableEntry entry = (PiTableEntry) piEntity;
-                        switch (update.getType()) {
-                            case INSERT:
-                            case MODIFY:
-                                translateEntryAndInsert(entry);
-                                break;
-                            case DELETE:
-                                translateEntryAndDelete(entry);
-                                break;
-                            default:
-                                log.warn("Unsupported update type for a table entry");
-                                throw INVALID_ARGUMENT
-                                        .withDescription("Unsupported update type")
-                                        .asException();
-                        }
+                        // Decoded straight from the protobuf message, without building a PiTableEntry.
+                        updates.add(translateEntry(update.getType(), requestEntity.getTableEntry()));
+                        break;
+                    case DIGEST_ENTRY:
+                        // Only configures the DDN batcher, nothing to apply on the data plane.
+                        otherWrites.add(translateDigestEntry(update.getType(), requestEntity.getDigestEntry()));
                         break;
                     default:
                         log.warn("Received write request for unsupported entity type {}",
@@ -741,14 +1218,13 @@ public class Up4NorthComponent {
                                 .asException();
                 }
             }
-            // Response is currently defined to be empty per p4runtime.proto
-            responseObserver.onNext(P4RuntimeOuterClass.WriteResponse.getDefaultInstance());
-            responseObserver.onCompleted();
+            return updates;
         }
 
-
         /**
-         * Writes entities to the logical UP4 switch.
+         * Writes entities to the logical UP4 switch. The request is translated on
+         * the gRPC thread, then applied asynchronously on the write lanes; the
+         * response is sent when all updates have been applied.
          *
          * @param request          A request containing entities to be written
          * @param responseObserver The thing that is fed a response once writing has concluded.
@@ -757,25 +1233,47 @@ public class Up4NorthComponent {
         public void write(P4RuntimeOuterClass.WriteRequest request,
                           StreamObserver<P4RuntimeOuterClass.WriteResponse> responseObserver) {
             log.debug("Received write request.");
+            List<Up4EntityUpdate> updates;
+            List<Runnable> otherWrites = new ArrayList<>();
             try {
                 errorIfSwitchNotReady();
-                doWrite(request, responseObserver);
+                updates = translateWriteRequest(request, otherWrites);
             } catch (StatusException e) {
                 responseObserver.onError(e);
+                return;
+            }
+            Up4WriteScheduler scheduler = writeScheduler;
+            if (scheduler == null) {
+                responseObserver.onError(io.grpc.Status.UNAVAILABLE
+                                                 .withDescription("Write scheduler is shutting down")
+                                                 .asException());
+                return;
             }
-            log.debug("Done with write request.");
+            // The whole request is applied as one batch on the lane of its UE, so
+            // requests for the same UE are applied in order, while requests for
+            // different UEs are applied in parallel.
+            scheduler.submit(updates, Up4NorthComponent.this::applyUpdates)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            responseObserver.onError(toStatusException(error, "applying write request"));
+                            return;
+                        }
+                        otherWrites.forEach(Runnable::run);
+                        // Response is currently defined to be empty per p4runtime.proto
+                        responseObserver.onNext(P4RuntimeOuterClass.WriteResponse.getDefaultInstance());
+                        responseObserver.onCompleted();
+                        log.debug("Done with write request.");
+                    });
         }
 
-        private void doRead(P4RuntimeOuterClass.ReadRequest request,
-                            StreamObserver<P4RuntimeOuterClass.ReadResponse> responseObserver)
+        private Iterator<P4RuntimeOuterClass.Entity> readEntities(P4RuntimeOuterClass.ReadRequest request)
                 throws StatusException {
+            // Entities of all requested tables are streamed as a single sequence of chunks
+            List<Iterator<P4RuntimeOuterClass.Entity>> responseEntities = new ArrayList<>();
             for (P4RuntimeOuterClass.Entity requestEntity : request.getEntitiesList()) {
                 switch (requestEntity.getEntityCase()) {
                     case COUNTER_ENTRY:
-                        responseObserver.onNext(
-                                P4RuntimeOuterClass.ReadResponse.newBuilder()
-                                        .addAllEntities(readCountersAndTranslate(requestEntity.getCounterEntry()))
-                                        .build());
+                        responseEntities.add(readCountersAndTranslate(requestEntity.getCounterEntry()));
                         break;
                     case TABLE_ENTRY:
                         PiTableEntry requestEntry;
@@ -786,21 +1284,20 @@ public class Up4NorthComponent {
                             log.warn("Unable to decode p4runtime read request entity", e);
                             throw INVALID_ARGUMENT.withDescription(e.getMessage()).asException();
                         }
-                        responseObserver.onNext(
-                                P4RuntimeOuterClass.ReadResponse.newBuilder()
-                                        .addAllEntities(readEntriesAndTranslate(requestEntry))
-                                        .build());
+                        responseEntities.add(readEntriesAndTranslate(requestEntry));
                         break;
                     default:
                         log.warn("Received read request for an entity we don't yet support. Skipping");
                         break;
                 }
             }
-            responseObserver.onCompleted();
+            return Iterators.concat(responseEntities.iterator());
         }
 
         /**
-         * Reads entities from the logical UP4 switch. Currently only supports counter reads.
+         * Reads entities from the logical UP4 switch. The southbound reads are
+         * performed asynchronously on the read executor, then the entities are
+         * streamed as the transport is ready to accept them.
          *
          * @param request          A request containing one or more entities to be read.
          * @param responseObserver Thing that will be fed descriptions of the requested entities.
@@ -811,12 +1308,50 @@ public class Up4NorthComponent {
             log.debug("Received read request.");
             try {
                 errorIfSwitchNotReady();
-                doRead(request, responseObserver);
             } catch (StatusException e) {
                 responseObserver.onError(e);
+                return;
             }
-            log.debug("Done with read request.");
+            // Flow-control handlers can only be registered from the call handler.
+            Up4ReadStreamer streamer = new Up4ReadStreamer(responseObserver, readChunkSize);
+            streamer.start();
+            CompletableFuture<Iterator<P4RuntimeOuterClass.Entity>> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return readEntities(request);
+                    } catch (StatusException e) {
+                        throw new CompletionException(e);
+                    }
+                }, readExecutor);
+            } catch (RejectedExecutionException e) {
+                streamer.fail(io.grpc.Status.UNAVAILABLE
+                                      .withDescription("Read executor is shutting down")
+                                      .asException());
+                return;
+            }
+            future.whenComplete((entities, error) -> {
+                if (error != null) {
+                    streamer.fail(toStatusException(error, "reading entities"));
+                } else {
+                    streamer.stream(entities);
+                }
+                log.debug("Done with read request.");
+            });
+        }
+    }
+
+    // Unwraps the cause of a failed asynchronous stage into the status returned to the client.
+    private StatusException toStatusException(Throwable error, String what) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                error.getCause() : error;
+        if (cause instanceof StatusException) {
+            return (StatusException) cause;
         }
+        log.error("Unexpected error while {}", what, cause);
+        return io.grpc.Status.INTERNAL
+                .withDescription(cause.getMessage())
+                .asException();
     }
 
     private void handleDdn(Up4Event event) {
@@ -824,34 +1359,119 @@ public class Up4NorthComponent {
             log.error("Received {} but UE address is missing, bug?", event.type());
             return;
         }
-        var digestList = P4RuntimeOuterClass.DigestList.newBuilder()
-                .setDigestId(DDN_DIGEST_ID)
-                .setListId(ddnDigestListId.incrementAndGet())
-                .addData(P4DataOuterClass.P4Data.newBuilder()
-                                 .setBitstring(ByteString.copyFrom(event.subject().ueAddress().toOctets()))
-                                 .build())
-                .build();
+        // Coalesced with other DDNs, and suppressed if a DDN for the same UE is pending.
+        Up4DdnBatcher batcher = ddnBatcher;
+        if (batcher != null) {
+            batcher.add(event.subject().ueAddress());
+        }
+    }
+
+    /**
+     * Returns the stream of the primary client, if it has the given election_id.
+     *
+     * @param electionId the election_id of the client
+     * @return the stream of the primary client
+     * @throws StatusException if the client is not the primary one
+     */
+    private Up4StreamSender primaryStream(P4RuntimeOuterClass.Uint128 electionId) throws StatusException {
+        Map.Entry<P4RuntimeOuterClass.Uint128, Up4StreamSender> primary = null;
+        for (Map.Entry<P4RuntimeOuterClass.Uint128, Up4StreamSender> entry : streams.entrySet()) {
+            if (primary == null || compareElectionIds(entry.getKey(), primary.getKey()) > 0) {
+                primary = entry;
+            }
+        }
+        if (primary == null || !primary.getKey().equals(electionId)) {
+            throw PERMISSION_DENIED
+                    .withDescription("Only the primary client can resync")
+                    .asException();
+        }
+        return primary.getValue();
+    }
+
+    private static int compareElectionIds(P4RuntimeOuterClass.Uint128 a, P4RuntimeOuterClass.Uint128 b) {
+        int high = Long.compareUnsigned(a.getHigh(), b.getHigh());
+        return high != 0 ? high : Long.compareUnsigned(a.getLow(), b.getLow());
+    }
+
+    private void beginResync(Up4StreamSender owner, P4RuntimeOuterClass.Uint128 electionId)
+            throws UpfProgrammableException {
+        synchronized (resyncLock) {
+            up4Service.beginResync();
+            resyncOwner = owner;
+            // The stream might have been closed before becoming the owner.
+            if (streams.get(electionId) != owner) {
+                abortResync(owner);
+            }
+        }
+    }
+
+    private void commitResync(Up4StreamSender owner) throws StatusException, UpfProgrammableException {
+        synchronized (resyncLock) {
+            if (resyncOwner != owner) {
+                throw FAILED_PRECONDITION
+                        .withDescription("No resync in progress for this client")
+                        .asException();
+            }
+        }
+        // Not holding the lock while deleting, so that closing the stream aborts the sweep.
+        try {
+            up4Service.commitResync();
+        } finally {
+            synchronized (resyncLock) {
+                if (resyncOwner == owner) {
+                    resyncOwner = null;
+                }
+            }
+        }
+    }
+
+    // Aborts the resync in progress, if started by the client of the given stream.
+    private void abortResync(Up4StreamSender sender) {
+        synchronized (resyncLock) {
+            if (resyncOwner == sender) {
+                log.warn("Resync owner stream closed, aborting resync");
+                resyncOwner = null;
+                up4Service.abortResync();
+            }
+        }
+    }
+
+    private boolean sendDigestList(P4RuntimeOuterClass.DigestList digestList) {
         var msg = P4RuntimeOuterClass.StreamMessageResponse.newBuilder()
                 .setDigest(digestList).build();
         if (streams.isEmpty()) {
-            log.warn("There are no clients connected, dropping {} for UE address {}",
-                     event.type(), event.subject().ueAddress());
-        } else {
-            streams.forEach((electionId, responseObserver) -> {
-                log.debug("Sending DDN digest to client with election_id {}: {}",
-                          TextFormat.shortDebugString(electionId), TextFormat.shortDebugString(msg));
-                responseObserver.onNext(msg);
-            });
+            log.warn("There are no clients connected, dropping DDN digest list for {} UE addresses",
+                     digestList.getDataCount());
+            return false;
         }
+        boolean sent = false;
+        for (Map.Entry<P4RuntimeOuterClass.Uint128, Up4StreamSender> entry : streams.entrySet()) {
+            log.debug("Sending DDN digest to client with election_id {}: {}",
+                      TextFormat.shortDebugString(entry.getKey()), TextFormat.shortDebugString(msg));
+            // Streams closed because of an overflow, or cancelled by the client,
+            // remove themselves from the map.
+            if (entry.getValue().send(msg)) {
+                sent = true;
+            }
+        }
+        return sent;
     }
 
     class InternalUp4EventListener implements Up4EventListener {
 
         @Override
         public void event(Up4Event event) {
-            if (event.type() == Up4Event.Type.DOWNLINK_DATA_NOTIFICATION) {
-                SharedExecutors.getPoolThreadExecutor()
-                        .execute(() -> handleDdn(event));
+            switch (event.type()) {
+                case DOWNLINK_DATA_NOTIFICATION:
+                    handleDdn(event);
+                    break;
+                case CONFIG_UPDATED:
+                case DATA_PLANE_READY:
+                    // Physical sizes might have changed (e.g., maxUes)
+                    invalidatePhysicalP4Info();
+                    break;
+                default:
+                    break;
             }
         }
     }
@@ -0,0 +1,227 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Bounded queue of packet-outs received on a StreamChannel. Frames are queued
+ * as read-only views of the protobuf payload, without copying them, and sent
+ * by a shared executor, so that bursts of packet-outs (e.g., GTP end-markers
+ * during handovers) do not stall the processing of other stream messages.
+ * Frames received while the queue is full are dropped.
+ */
+public final class Up4PacketOutQueue {
+
+    private static final Logger log = getLogger(Up4PacketOutQueue.class);
+    // Maximum number of frames sent in a single run, to be fair with the
+    // queues of other streams sharing the same executor.
+    private static final int MAX_DRAIN_BATCH = 64;
+
+    /**
+     * Sends a packet-out frame to the data plane.
+     */
+    @FunctionalInterface
+    interface Sender {
+        /**
+         * Sends the given frame.
+         *
+         * @param frame the frame
+         * @return true if the frame has been sent
+         */
+        boolean send(ByteBuffer frame);
+    }
+
+    private final String name;
+    private final BlockingQueue<ByteBuffer> queue;
+    private final Executor executor;
+    private final Sender sender;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean full;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new packet-out queue.
+     *
+     * @param name     name of the queue, used in logs and statistics
+     * @param capacity maximum number of queued frames
+     * @param executor executor sending the queued frames
+     * @param sender   sender of frames
+     */
+    Up4PacketOutQueue(String name, int capacity, Executor executor, Sender sender) {
+        checkArgument(capacity > 0, "Packet-out queue capacity must be positive");
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.executor = executor;
+        this.sender = sender;
+    }
+
+    /**
+     * Queues the given payload to be sent, or drops it if the queue is full or closed.
+     *
+     * @param payload the packet-out payload
+     * @return true if the payload has been queued
+     */
+    boolean offer(ByteString payload) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (!queue.offer(payload.asReadOnlyByteBuffer())) {
+            dropped.incrementAndGet();
+            if (!full) {
+                // Log only once per burst.
+                full = true;
+                log.warn("Packet-out queue of {} is full, dropping frames", name);
+            }
+            return false;
+        }
+        full = false;
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Closes the queue. Frames still queued are dropped.
+     */
+    void close() {
+        closed = true;
+        int pending = queue.size();
+        queue.clear();
+        dropped.addAndGet(pending);
+    }
+
+    /**
+     * Returns the statistics of this queue.
+     *
+     * @return queue statistics
+     */
+    public Stats stats() {
+        return new Stats(name, queue.size(), sent.get(), dropped.get(), failed.get());
+    }
+
+    private void scheduleDrain() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                close();
+            }
+        }
+    }
+
+    private void drain() {
+        int count = 0;
+        ByteBuffer frame;
+        while (count < MAX_DRAIN_BATCH && (frame = queue.poll()) != null) {
+            count++;
+            boolean success;
+            try {
+                success = sender.send(frame);
+            } catch (RuntimeException e) {
+                log.error("Unable to send packet-out", e);
+                success = false;
+            }
+            (success ? sent : failed).incrementAndGet();
+        }
+        scheduled.set(false);
+        // Frames might have been queued after the last poll.
+        if (!queue.isEmpty() && !closed) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Statistics of a packet-out queue.
+     */
+    public static final class Stats {
+        private final String name;
+        private final int queueDepth;
+        private final long sent;
+        private final long dropped;
+        private final long failed;
+
+        private Stats(String name, int queueDepth, long sent, long dropped, long failed) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.sent = sent;
+            this.dropped = dropped;
+            this.failed = failed;
+        }
+
+        /**
+         * Returns the name of the queue.
+         *
+         * @return queue name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the number of frames waiting in the queue.
+         *
+         * @return queue depth
+         */
+        public int queueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of frames sent to the data plane.
+         *
+         * @return number of sent frames
+         */
+        public long sent() {
+            return sent;
+        }
+
+        /**
+         * Returns the number of frames dropped because the queue was full or closed.
+         *
+         * @return number of dropped frames
+         */
+        public long dropped() {
+            return dropped;
+        }
+
+        /**
+         * Returns the number of frames that could not be sent to the data plane.
+         *
+         * @return number of failed frames
+         */
+        public long failed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("queueDepth", queueDepth)
+                    .add("sent", sent)
+                    .add("dropped", dropped)
+                    .add("failed", failed)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.Iterator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Streams the entities of a read request to a P4Runtime client in chunks of
+ * bounded size. When the response observer supports flow control, the next
+ * chunk is built and sent only when the transport is ready to accept it, so
+ * that the memory used by a read does not grow with the number of entities.
+ */
+final class Up4ReadStreamer {
+
+    private final StreamObserver<P4RuntimeOuterClass.ReadResponse> responseObserver;
+    private final ServerCallStreamObserver<P4RuntimeOuterClass.ReadResponse> serverObserver;
+    private final int chunkSize;
+    private Iterator<P4RuntimeOuterClass.Entity> entities;
+    private boolean done = false;
+    private boolean sentAny = false;
+    private boolean cancelled = false;
+
+    /**
+     * Creates a new streamer.
+     *
+     * @param responseObserver the read response observer
+     * @param chunkSize        the maximum number of entities per read response
+     */
+    Up4ReadStreamer(StreamObserver<P4RuntimeOuterClass.ReadResponse> responseObserver, int chunkSize) {
+        checkArgument(chunkSize > 0, "Read chunk size must be positive");
+        this.responseObserver = responseObserver;
+        this.serverObserver = responseObserver instanceof ServerCallStreamObserver ?
+                (ServerCallStreamObserver<P4RuntimeOuterClass.ReadResponse>) responseObserver : null;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Registers the flow-control handlers, if the response observer supports
+     * flow control. This must be called from the gRPC call handler, as that is
+     * the only place where the handlers can be registered. Nothing is sent
+     * until the entities are provided with {@link #stream(Iterator)}.
+     */
+    void start() {
+        if (serverObserver != null) {
+            serverObserver.setOnCancelHandler(this::cancel);
+            serverObserver.setOnReadyHandler(this::drain);
+        }
+    }
+
+    /**
+     * Starts streaming the given entities, possibly from a thread other than
+     * the gRPC call handler. If the response observer does not support flow
+     * control, all chunks are sent before returning.
+     *
+     * @param entitiesToSend the entities to send, possibly translated lazily
+     */
+    void stream(Iterator<P4RuntimeOuterClass.Entity> entitiesToSend) {
+        synchronized (this) {
+            this.entities = entitiesToSend;
+        }
+        drain();
+    }
+
+    /**
+     * Terminates the read with the given error, if nothing has been sent yet.
+     *
+     * @param error the error
+     */
+    synchronized void fail(Throwable error) {
+        if (done || cancelled) {
+            return;
+        }
+        done = true;
+        responseObserver.onError(error);
+    }
+
+    private synchronized void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Sends chunks until all entities have been sent or the transport is not
+     * ready. The on-ready handler and the thread providing the entities might
+     * both invoke this, hence the synchronization.
+     */
+    private synchronized void drain() {
+        if (entities == null || done || cancelled) {
+            return;
+        }
+        try {
+            while (entities.hasNext() && (serverObserver == null || serverObserver.isReady())) {
+                P4RuntimeOuterClass.ReadResponse.Builder chunk = P4RuntimeOuterClass.ReadResponse.newBuilder();
+                while (entities.hasNext() && chunk.getEntitiesCount() < chunkSize) {
+                    chunk.addEntities(entities.next());
+                }
+                responseObserver.onNext(chunk.build());
+                sentAny = true;
+                if (cancelled) {
+                    return;
+                }
+            }
+            if (!entities.hasNext()) {
+                done = true;
+                if (!sentAny) {
+                    // Keep replying with an empty response when nothing is found.
+                    responseObserver.onNext(P4RuntimeOuterClass.ReadResponse.getDefaultInstance());
+                }
+                responseObserver.onCompleted();
+            }
+        } catch (RuntimeException e) {
+            // Translation of an entity failed while streaming.
+            done = true;
+            responseObserver.onError(io.grpc.Status.INTERNAL
+                                             .withDescription(e.getMessage())
+                                             .asException());
+        }
+    }
+}
@@ -5,8 +5,10 @@
 package org.omecproject.up4.impl;
 
 import org.onlab.packet.Ip4Address;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
 
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Stores state required for UP4.
@@ -48,4 +50,20 @@ public interface Up4Store {
      * @return set
      */
     Set<Ip4Address> getBufferUe();
+
+    /**
+     * Records that UPF entities of the given type have been modified by this
+     * instance, so that the other instances invalidate their view of them.
+     *
+     * @param entityType UPF entity type
+     */
+    void entitiesModified(UpfEntityType entityType);
+
+    /**
+     * Sets the listener notified when UPF entities of a type have been
+     * modified by another instance.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    void setEntitiesModifiedListener(Consumer<UpfEntityType> listener);
 }
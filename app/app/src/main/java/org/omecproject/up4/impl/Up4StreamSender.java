@@ -0,0 +1,284 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Sends messages on a StreamChannel, honoring the flow control of the
+ * transport. Messages are queued in a bounded queue and sent only when the
+ * transport is ready, so that a slow client does not make gRPC buffer messages
+ * without limit. Messages can be sent from any thread, calls to the underlying
+ * observer are serialized. Arbitration messages are never dropped to make room
+ * for other messages.
+ */
+public final class Up4StreamSender {
+
+    private static final Logger log = getLogger(Up4StreamSender.class);
+
+    /**
+     * What to do when a message is sent while the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest queued message, other than an arbitration message,
+         * to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Close the stream with a RESOURCE_EXHAUSTED error.
+         */
+        CLOSE_STREAM;
+
+        /**
+         * Returns the policy with the given name, or the given default value
+         * if the name is null or not valid.
+         *
+         * @param name         the policy name, case insensitive
+         * @param defaultValue the default policy
+         * @return the overflow policy
+         */
+        public static OverflowPolicy fromString(String name, OverflowPolicy defaultValue) {
+            if (name == null) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid overflow policy {}, using {}", name, defaultValue);
+                return defaultValue;
+            }
+        }
+    }
+
+    private final StreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver;
+    private final ServerCallStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> serverObserver;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<Up4StreamSender> closeListener;
+    private final Queue<P4RuntimeOuterClass.StreamMessageResponse> queue = new ArrayDeque<>();
+    private long sent = 0;
+    private long dropped = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new sender.
+     *
+     * @param responseObserver the StreamChannel response observer
+     * @param capacity         maximum number of queued messages
+     * @param overflowPolicy   what to do when the queue is full
+     * @param closeListener    invoked once when the stream is closed, completed or cancelled
+     */
+    Up4StreamSender(StreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver,
+                    int capacity, OverflowPolicy overflowPolicy, Consumer<Up4StreamSender> closeListener) {
+        checkArgument(capacity > 0, "StreamChannel queue capacity must be positive");
+        this.responseObserver = responseObserver;
+        this.serverObserver = responseObserver instanceof ServerCallStreamObserver ?
+                (ServerCallStreamObserver<P4RuntimeOuterClass.StreamMessageResponse>) responseObserver : null;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * Registers the flow-control handlers, if the response observer supports
+     * flow control. This must be called from the gRPC call handler, as that is
+     * the only place where the handlers can be registered.
+     */
+    void start() {
+        if (serverObserver != null) {
+            serverObserver.setOnCancelHandler(this::cancel);
+            serverObserver.setOnReadyHandler(this::drain);
+        }
+    }
+
+    /**
+     * Queues the given message and sends it as soon as the transport is ready.
+     *
+     * @param message the message
+     * @return false if the stream is closed, true otherwise, even if an older
+     * message has been dropped to make room for this one
+     */
+    boolean send(P4RuntimeOuterClass.StreamMessageResponse message) {
+        synchronized (this) {
+            if (closed) {
+                dropped++;
+                return false;
+            }
+            if (queue.size() < capacity || overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                if (queue.size() >= capacity) {
+                    dropOldest();
+                }
+                queue.add(message);
+                drain();
+                return true;
+            }
+            log.warn("StreamChannel queue is full, closing stream");
+            dropped++;
+            close(io.grpc.Status.RESOURCE_EXHAUSTED
+                          .withDescription("Client is too slow to receive stream messages"));
+        }
+        closeListener.accept(this);
+        return false;
+    }
+
+    /**
+     * Closes the stream with the given error. Queued messages are dropped.
+     *
+     * @param status the error status
+     */
+    void onError(io.grpc.Status status) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            close(status);
+        }
+        closeListener.accept(this);
+    }
+
+    /**
+     * Completes the stream after sending the messages the transport is ready
+     * to accept. Messages still queued are dropped.
+     */
+    void onCompleted() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            drain();
+            close(null);
+        }
+        closeListener.accept(this);
+    }
+
+    /**
+     * Returns true if the stream has been closed or cancelled.
+     *
+     * @return true if the stream is closed
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the statistics of this sender.
+     *
+     * @return sender statistics
+     */
+    public synchronized Stats stats() {
+        return new Stats(queue.size(), sent, dropped);
+    }
+
+    private void cancel() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dropped += queue.size();
+            queue.clear();
+        }
+        closeListener.accept(this);
+    }
+
+    // Closes the stream, with the given error or successfully if null.
+    private void close(io.grpc.Status status) {
+        closed = true;
+        dropped += queue.size();
+        queue.clear();
+        if (status == null) {
+            responseObserver.onCompleted();
+        } else {
+            responseObserver.onError(status.asException());
+        }
+    }
+
+    // Drops the oldest message other than an arbitration message. If all
+    // queued messages are arbitration messages, the queue grows beyond its
+    // capacity instead, which is bounded by the number of arbitrations.
+    private void dropOldest() {
+        Iterator<P4RuntimeOuterClass.StreamMessageResponse> it = queue.iterator();
+        while (it.hasNext()) {
+            if (!it.next().hasArbitration()) {
+                it.remove();
+                dropped++;
+                return;
+            }
+        }
+    }
+
+    // Invoked by senders and by the on-ready handler, hence the synchronization.
+    private synchronized void drain() {
+        while (!closed && !queue.isEmpty() && (serverObserver == null || serverObserver.isReady())) {
+            responseObserver.onNext(queue.poll());
+            sent++;
+        }
+    }
+
+    /**
+     * Statistics of a StreamChannel sender.
+     */
+    public static final class Stats {
+        private final int queueDepth;
+        private final long sent;
+        private final long dropped;
+
+        private Stats(int queueDepth, long sent, long dropped) {
+            this.queueDepth = queueDepth;
+            this.sent = sent;
+            this.dropped = dropped;
+        }
+
+        /**
+         * Returns the number of messages waiting for the transport to be ready.
+         *
+         * @return queue depth
+         */
+        public int queueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of messages sent to the client.
+         *
+         * @return number of sent messages
+         */
+        public long sent() {
+            return sent;
+        }
+
+        /**
+         * Returns the number of messages dropped because the queue was full or
+         * the stream was closed.
+         *
+         * @return number of dropped messages
+         */
+        public long dropped() {
+            return dropped;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("queueDepth", queueDepth)
+                    .add("sent", sent)
+                    .add("dropped", dropped)
+                    .toString();
+        }
+    }
+}
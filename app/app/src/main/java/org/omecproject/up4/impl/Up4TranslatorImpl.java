@@ -5,6 +5,7 @@
 package org.omecproject.up4.impl;
 
 import com.google.common.collect.Range;
+import org.omecproject.up4.Up4EntityFilter;
 import org.omecproject.up4.Up4Translator;
 import org.onlab.packet.Ip4Prefix;
 import org.onlab.util.ImmutableByteSequence;
@@ -398,4 +399,22 @@ public class Up4TranslatorImpl implements Up4Translator {
                 .withAction(actionBuilder.build())
                 .build();
     }
+
+    @Override
+    public Up4EntityFilter up4TableEntryToFilter(PiTableEntry entry) throws Up4TranslationException {
+        Up4EntityFilter.Builder builder = Up4EntityFilter.builder();
+        if (Up4TranslatorUtil.fieldIsPresent(entry, HDR_UE_ADDRESS)) {
+            builder.withUeAddress(Up4TranslatorUtil.getFieldAddress(entry, HDR_UE_ADDRESS));
+        }
+        if (Up4TranslatorUtil.fieldIsPresent(entry, HDR_TEID)) {
+            builder.withTeid(Up4TranslatorUtil.getFieldInt(entry, HDR_TEID));
+        }
+        if (Up4TranslatorUtil.fieldIsPresent(entry, HDR_TUNNEL_PEER_ID)) {
+            builder.withTunnelPeerId(Up4TranslatorUtil.getFieldByte(entry, HDR_TUNNEL_PEER_ID));
+        }
+        if (Up4TranslatorUtil.fieldIsPresent(entry, HDR_APP_ID)) {
+            builder.withAppId(Up4TranslatorUtil.getFieldByte(entry, HDR_APP_ID));
+        }
+        return builder.build();
+    }
 }
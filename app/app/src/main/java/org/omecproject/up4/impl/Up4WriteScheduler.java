@@ -0,0 +1,395 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import io.grpc.StatusException;
+import org.omecproject.up4.Up4EntityUpdate;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
+import org.onosproject.net.behaviour.upf.UpfInterface;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
+import org.onosproject.net.behaviour.upf.UpfTerminationDownlink;
+import org.onosproject.net.behaviour.upf.UpfTerminationUplink;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Schedules UPF entity updates on a fixed number of single-threaded lanes.
+ * The updates of a write request are applied together on a single lane, as
+ * one batch, so that they are all validated before any of them is applied,
+ * and in the order of the request. Requests are hashed on a lane by UE
+ * address (or by the identifier of the first entity if none is related to a
+ * single UE), so that requests for the same UE are applied in the order they
+ * are received, while requests for different UEs are applied in parallel.
+ * Uplink sessions are not related to a UE by themselves: the UE of a TEID is
+ * learned from the requests updating both, so that a request updating only
+ * an uplink session is applied on the lane of its UE.
+ * <p>
+ * Lane queues are bounded, requests exceeding them fail with
+ * RESOURCE_EXHAUSTED. A scheduler can replace a previous one, e.g., to change
+ * the number of lanes: its lanes wait for the previous scheduler to apply
+ * the updates already scheduled, so that the order of the updates of a UE is
+ * preserved.
+ */
+public final class Up4WriteScheduler {
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 10;
+
+    private final Logger log = getLogger(getClass());
+
+    private final List<Lane> lanes;
+    // UE address of the uplink sessions, by TEID.
+    private final Map<Integer, Object> ueByTeid;
+
+    /**
+     * Applies a batch of updates scheduled on a lane.
+     */
+    @FunctionalInterface
+    interface BatchWriter {
+        /**
+         * Applies the given updates.
+         *
+         * @param updates the updates
+         * @throws StatusException if the updates cannot be applied
+         */
+        void write(List<Up4EntityUpdate> updates) throws StatusException;
+    }
+
+    /**
+     * Creates a new scheduler with the given number of lanes.
+     *
+     * @param numLanes  number of lanes
+     * @param queueSize maximum number of requests waiting on each lane
+     */
+    Up4WriteScheduler(int numLanes, int queueSize) {
+        this(numLanes, queueSize, null);
+    }
+
+    /**
+     * Creates a new scheduler replacing the given one. Updates are applied
+     * only after the ones scheduled on the previous scheduler, which is
+     * expected to be shut down right after this scheduler replaces it.
+     *
+     * @param numLanes    number of lanes
+     * @param queueSize   maximum number of requests waiting on each lane
+     * @param predecessor the replaced scheduler, or null
+     */
+    Up4WriteScheduler(int numLanes, int queueSize, Up4WriteScheduler predecessor) {
+        checkArgument(numLanes > 0, "Number of write lanes must be positive");
+        checkArgument(queueSize > 0, "Write lane queue size must be positive");
+        ImmutableList.Builder<Lane> builder = ImmutableList.builder();
+        for (int i = 0; i < numLanes; i++) {
+            builder.add(new Lane(i, queueSize));
+        }
+        this.lanes = builder.build();
+        this.ueByTeid = predecessor == null ? Maps.newConcurrentMap() : predecessor.ueByTeid;
+        if (predecessor != null) {
+            lanes.forEach(lane -> lane.executor.execute(predecessor::awaitTermination));
+        }
+    }
+
+    /**
+     * Returns the number of lanes of this scheduler.
+     *
+     * @return number of lanes
+     */
+    int numLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * Returns the maximum number of requests waiting on each lane.
+     *
+     * @return lane queue size
+     */
+    int queueSize() {
+        return lanes.get(0).queueSize;
+    }
+
+    /**
+     * Schedules the given updates of a write request, as a single batch on
+     * the lane of the request. The returned future completes when all updates
+     * have been applied, or exceptionally with the error of the batch.
+     *
+     * @param updates the updates of a write request
+     * @param writer  the writer applying the batch on the lane
+     * @return a future completing when all updates have been applied
+     */
+    CompletableFuture<Void> submit(List<Up4EntityUpdate> updates, BatchWriter writer) {
+        if (updates.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Object ueAddress = ueAddress(updates);
+        trackUplinkSessions(updates, ueAddress);
+        Object laneKey = ueAddress != null ? ueAddress : laneKey(updates.get(0).entity());
+        Lane lane = lanes.get(Math.floorMod(laneKey.hashCode(), lanes.size()));
+        return lane.submit(updates, writer);
+    }
+
+    /**
+     * Returns the statistics of all lanes.
+     *
+     * @return lane statistics
+     */
+    public List<LaneStats> laneStats() {
+        ImmutableList.Builder<LaneStats> builder = ImmutableList.builder();
+        lanes.forEach(lane -> builder.add(lane.stats()));
+        return builder.build();
+    }
+
+    /**
+     * Stops accepting new updates. Already scheduled updates are still applied.
+     */
+    void shutdown() {
+        lanes.forEach(lane -> lane.executor.shutdown());
+    }
+
+    // Waits for the updates scheduled before the shutdown to be applied.
+    private void awaitTermination() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        try {
+            for (Lane lane : lanes) {
+                if (!lane.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    log.warn("Previous write lanes not drained after {} seconds, updates might be reordered",
+                             DRAIN_TIMEOUT_SECONDS);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the key used to select the lane of the given updates: the UE
+     * address of the first update related to a single UE, if any, otherwise
+     * the UE address of the first uplink session whose UE is known, otherwise
+     * the key of the first update.
+     *
+     * @param updates the updates of a write request, not empty
+     * @return the lane key
+     */
+    Object laneKey(List<Up4EntityUpdate> updates) {
+        Object ueAddress = ueAddress(updates);
+        return ueAddress != null ? ueAddress : laneKey(updates.get(0).entity());
+    }
+
+    // Returns the UE address of the given updates, or null if unknown.
+    private Object ueAddress(List<Up4EntityUpdate> updates) {
+        for (Up4EntityUpdate update : updates) {
+            switch (update.entity().type()) {
+                case SESSION_DOWNLINK:
+                case TERMINATION_UPLINK:
+                case TERMINATION_DOWNLINK:
+                    return laneKey(update.entity());
+                default:
+                    break;
+            }
+        }
+        for (Up4EntityUpdate update : updates) {
+            if (update.entity().type() == UpfEntityType.SESSION_UPLINK) {
+                Object ueAddress = ueByTeid.get(((UpfSessionUplink) update.entity()).teid());
+                if (ueAddress != null) {
+                    return ueAddress;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Learns the UE of the uplink sessions applied together with updates for
+    // that UE, and forgets the deleted ones.
+    private void trackUplinkSessions(List<Up4EntityUpdate> updates, Object ueAddress) {
+        for (Up4EntityUpdate update : updates) {
+            if (update.entity().type() != UpfEntityType.SESSION_UPLINK) {
+                continue;
+            }
+            int teid = ((UpfSessionUplink) update.entity()).teid();
+            if (update.type() == Up4EntityUpdate.Type.DELETE) {
+                ueByTeid.remove(teid);
+            } else if (ueAddress != null) {
+                ueByTeid.put(teid, ueAddress);
+            }
+        }
+    }
+
+    /**
+     * Returns the key used to select the lane of the given UPF entity.
+     *
+     * @param entity UPF entity
+     * @return the lane key
+     */
+    static Object laneKey(UpfEntity entity) {
+        switch (entity.type()) {
+            case SESSION_DOWNLINK:
+                return ((UpfSessionDownlink) entity).ueAddress();
+            case TERMINATION_UPLINK:
+                return ((UpfTerminationUplink) entity).ueSessionId();
+            case TERMINATION_DOWNLINK:
+                return ((UpfTerminationDownlink) entity).ueSessionId();
+            case SESSION_UPLINK:
+                return ((UpfSessionUplink) entity).teid();
+            case TUNNEL_PEER:
+                return ((UpfGtpTunnelPeer) entity).tunPeerId();
+            case APPLICATION:
+                return ((UpfApplication) entity).appId();
+            case INTERFACE:
+                return ((UpfInterface) entity).prefix();
+            default:
+                return entity.type();
+        }
+    }
+
+    private final class Lane {
+        private final int id;
+        private final int queueSize;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Lane(int id, int queueSize) {
+            this.id = id;
+            this.queueSize = queueSize;
+            this.executor = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize),
+                    groupedThreads("omec/up4/north", "write-lane-" + id, log));
+        }
+
+        private CompletableFuture<Void> submit(List<Up4EntityUpdate> updates, BatchWriter writer) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            long enqueuedAt = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    long waitNanos = System.nanoTime() - enqueuedAt;
+                    totalWaitNanos.addAndGet(waitNanos);
+                    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+                    Throwable error = null;
+                    try {
+                        writer.write(updates);
+                    } catch (StatusException | RuntimeException e) {
+                        error = e;
+                    }
+                    completed.incrementAndGet();
+                    if (error == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(error);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                if (executor.isShutdown()) {
+                    future.completeExceptionally(io.grpc.Status.UNAVAILABLE
+                                                         .withDescription("Write lane is shutting down")
+                                                         .asException());
+                } else {
+                    log.debug("Rejecting write request, write lane {} is full", id);
+                    future.completeExceptionally(io.grpc.Status.RESOURCE_EXHAUSTED
+                                                         .withDescription("Too many write requests in progress")
+                                                         .asException());
+                }
+            }
+            return future;
+        }
+
+        private LaneStats stats() {
+            return new LaneStats(id, executor.getQueue().size(), completed.get(),
+                                 totalWaitNanos.get(), maxWaitNanos.get());
+        }
+    }
+
+    /**
+     * Statistics of a write lane.
+     */
+    public static final class LaneStats {
+        private final int lane;
+        private final int queueDepth;
+        private final long completed;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private LaneStats(int lane, int queueDepth, long completed, long totalWaitNanos, long maxWaitNanos) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.completed = completed;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        /**
+         * Returns the lane identifier.
+         *
+         * @return lane identifier
+         */
+        public int lane() {
+            return lane;
+        }
+
+        /**
+         * Returns the number of batches waiting in the lane queue.
+         *
+         * @return queue depth
+         */
+        public int queueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of batches processed by the lane.
+         *
+         * @return number of processed batches
+         */
+        public long completed() {
+            return completed;
+        }
+
+        /**
+         * Returns the average time (in microseconds) batches waited in the lane queue.
+         *
+         * @return average wait time in microseconds
+         */
+        public long avgWaitMicros() {
+            return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos / completed);
+        }
+
+        /**
+         * Returns the maximum time (in microseconds) a batch waited in the lane queue.
+         *
+         * @return maximum wait time in microseconds
+         */
+        public long maxWaitMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("lane", lane)
+                    .add("queueDepth", queueDepth)
+                    .add("completed", completed)
+                    .add("avgWaitMicros", avgWaitMicros())
+                    .add("maxWaitMicros", maxWaitMicros())
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.onosproject.net.behaviour.upf.UpfCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Sums the UPF counters read from multiple UPF devices, cell by cell. Values
+ * are accumulated in primitive arrays indexed by cell ID, and UpfCounter
+ * objects are built only when the aggregated values are returned. The arrays
+ * are kept across resets, so that an aggregator can be reused for every
+ * counter read without allocating.
+ * <p>
+ * This class is not thread safe.
+ */
+final class UpfCounterAggregator {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ingressPkts = new long[INITIAL_CAPACITY];
+    private long[] ingressBytes = new long[INITIAL_CAPACITY];
+    private long[] egressPkts = new long[INITIAL_CAPACITY];
+    private long[] egressBytes = new long[INITIAL_CAPACITY];
+    // Cells added since the last reset.
+    private final BitSet cells = new BitSet();
+
+    /**
+     * Adds the values of the given counter to the ones of its cell.
+     *
+     * @param counter the counter
+     */
+    void add(UpfCounter counter) {
+        int cellId = counter.getCellId();
+        ensureCapacity(cellId + 1);
+        ingressPkts[cellId] += counter.getIngressPkts();
+        ingressBytes[cellId] += counter.getIngressBytes();
+        egressPkts[cellId] += counter.getEgressPkts();
+        egressBytes[cellId] += counter.getEgressBytes();
+        cells.set(cellId);
+    }
+
+    /**
+     * Adds the values of the given counters to the ones of their cells.
+     *
+     * @param counters the counters
+     */
+    void addAll(Collection<UpfCounter> counters) {
+        counters.forEach(this::add);
+    }
+
+    /**
+     * Returns the number of cells added since the last reset.
+     *
+     * @return the number of cells
+     */
+    int size() {
+        return cells.cardinality();
+    }
+
+    /**
+     * Returns the aggregated counter of the given cell. Cells that have not
+     * been added are returned with all values set to zero.
+     *
+     * @param cellId the cell ID
+     * @return the aggregated counter
+     */
+    UpfCounter get(int cellId) {
+        UpfCounter.Builder builder = UpfCounter.builder().withCellId(cellId);
+        if (cells.get(cellId)) {
+            builder.setIngress(ingressPkts[cellId], ingressBytes[cellId])
+                    .setEgress(egressPkts[cellId], egressBytes[cellId]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the aggregated counters of the added cells accepted by the
+     * given filter, ordered by cell ID.
+     *
+     * @param cellFilter the filter on cell IDs
+     * @return the aggregated counters
+     */
+    List<UpfCounter> counters(IntPredicate cellFilter) {
+        List<UpfCounter> counters = new ArrayList<>();
+        for (int cellId = cells.nextSetBit(0); cellId >= 0; cellId = cells.nextSetBit(cellId + 1)) {
+            if (cellFilter.test(cellId)) {
+                counters.add(get(cellId));
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Clears the aggregated values, keeping the allocated memory.
+     */
+    void reset() {
+        for (int cellId = cells.nextSetBit(0); cellId >= 0; cellId = cells.nextSetBit(cellId + 1)) {
+            ingressPkts[cellId] = 0;
+            ingressBytes[cellId] = 0;
+            egressPkts[cellId] = 0;
+            egressBytes[cellId] = 0;
+        }
+        cells.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ingressPkts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ingressPkts.length * 2);
+        ingressPkts = Arrays.copyOf(ingressPkts, newCapacity);
+        ingressBytes = Arrays.copyOf(ingressBytes, newCapacity);
+        egressPkts = Arrays.copyOf(egressPkts, newCapacity);
+        egressBytes = Arrays.copyOf(egressBytes, newCapacity);
+    }
+}
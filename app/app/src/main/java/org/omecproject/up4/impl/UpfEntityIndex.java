@@ -0,0 +1,306 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import org.omecproject.up4.Up4EntityFilter;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
+import org.onosproject.net.behaviour.upf.UpfInterface;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
+import org.onosproject.net.behaviour.upf.UpfTerminationDownlink;
+import org.onosproject.net.behaviour.upf.UpfTerminationUplink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the UPF entities installed in the UPF data plane, as
+ * exposed to the northbound. Entities are indexed by their match key, and by
+ * the fields that can be used to filter reads (UE address, TEID, tunnel peer
+ * ID and application ID), so that filtered reads don't require reading and
+ * scanning the whole table.
+ * <p>
+ * The index of an entity type is loaded lazily from a full read of the table,
+ * and it is then kept up to date with the entities applied and deleted via
+ * the Up4Service, acting as a mirror of the data plane that serves all reads.
+ * It must be invalidated when the table is modified bypassing the Up4Service.
+ */
+final class UpfEntityIndex {
+
+    /**
+     * Fields used to look up entities.
+     */
+    private enum Criterion {
+        UE_ADDRESS,
+        TEID,
+        TUNNEL_PEER_ID,
+        APP_ID
+    }
+
+    private final Map<UpfEntityType, TypeIndex> indexes = new EnumMap<>(UpfEntityType.class);
+    // Incremented at every modification of an entity type, used to detect
+    // modifications happening while an index is being loaded.
+    private final Map<UpfEntityType, Long> versions = new EnumMap<>(UpfEntityType.class);
+
+    /**
+     * Returns the current version of the given entity type. Must be called
+     * before reading the entities used to load the index.
+     *
+     * @param type entity type
+     * @return the version
+     */
+    synchronized long version(UpfEntityType type) {
+        return versions.getOrDefault(type, 0L);
+    }
+
+    /**
+     * Loads the index of the given entity type, unless the entity type has
+     * been modified since the given version was obtained.
+     *
+     * @param type     entity type
+     * @param entities all the entities of the given type
+     * @param version  the version obtained before reading the entities
+     * @return true if the index has been loaded
+     */
+    synchronized boolean load(UpfEntityType type, Collection<? extends UpfEntity> entities, long version) {
+        if (version != version(type)) {
+            return false;
+        }
+        TypeIndex index = new TypeIndex();
+        entities.forEach(index::put);
+        indexes.put(type, index);
+        return true;
+    }
+
+    /**
+     * Looks up the entities of the given type matching the given filter.
+     *
+     * @param type   entity type
+     * @param filter the filter
+     * @return the matching entities, or null if the index of the given type is not loaded
+     */
+    synchronized Collection<UpfEntity> lookup(UpfEntityType type, Up4EntityFilter filter) {
+        TypeIndex index = indexes.get(type);
+        if (index == null) {
+            return null;
+        }
+        return index.lookup(type, filter);
+    }
+
+    /**
+     * Returns all the entities of the given type.
+     *
+     * @param type entity type
+     * @return the entities, or null if the index of the given type is not loaded
+     */
+    synchronized Collection<UpfEntity> all(UpfEntityType type) {
+        TypeIndex index = indexes.get(type);
+        if (index == null) {
+            return null;
+        }
+        return ImmutableList.copyOf(index.byMatchKey.values());
+    }
+
+    /**
+     * Returns true if the given entity is known to be installed as is, that
+     * is, if the index of its type is loaded and contains an equal entity.
+     *
+     * @param entity the UPF entity
+     * @return true if an equal entity is installed
+     */
+    synchronized boolean contains(UpfEntity entity) {
+        TypeIndex index = indexes.get(entity.type());
+        return index != null && entity.equals(index.byMatchKey.get(matchKey(entity)));
+    }
+
+    /**
+     * Adds or replaces the given entity, after it has been applied.
+     *
+     * @param entity the UPF entity
+     */
+    synchronized void put(UpfEntity entity) {
+        bumpVersion(entity.type());
+        TypeIndex index = indexes.get(entity.type());
+        if (index != null) {
+            index.put(entity);
+        }
+    }
+
+    /**
+     * Removes the entity with the same match key of the given one, after it has been deleted.
+     *
+     * @param entity the UPF entity
+     */
+    synchronized void remove(UpfEntity entity) {
+        bumpVersion(entity.type());
+        TypeIndex index = indexes.get(entity.type());
+        if (index != null) {
+            index.remove(entity);
+        }
+    }
+
+    /**
+     * Drops the index of the given entity type, it will be loaded again on the next lookup.
+     *
+     * @param type entity type
+     */
+    synchronized void invalidate(UpfEntityType type) {
+        bumpVersion(type);
+        indexes.remove(type);
+    }
+
+    /**
+     * Drops the index of all entity types.
+     */
+    synchronized void invalidateAll() {
+        for (UpfEntityType type : UpfEntityType.values()) {
+            invalidate(type);
+        }
+    }
+
+    private void bumpVersion(UpfEntityType type) {
+        versions.merge(type, 1L, Long::sum);
+    }
+
+    /**
+     * Returns the key identifying the data plane entry of the given entity.
+     *
+     * @param entity UPF entity
+     * @return the match key
+     */
+    static Object matchKey(UpfEntity entity) {
+        switch (entity.type()) {
+            case INTERFACE:
+                return ((UpfInterface) entity).prefix();
+            case SESSION_UPLINK:
+                UpfSessionUplink sessUl = (UpfSessionUplink) entity;
+                return Arrays.asList(sessUl.tunDstAddr(), sessUl.teid());
+            case SESSION_DOWNLINK:
+                return ((UpfSessionDownlink) entity).ueAddress();
+            case TERMINATION_UPLINK:
+                UpfTerminationUplink termUl = (UpfTerminationUplink) entity;
+                return Arrays.asList(termUl.ueSessionId(), termUl.applicationId());
+            case TERMINATION_DOWNLINK:
+                UpfTerminationDownlink termDl = (UpfTerminationDownlink) entity;
+                return Arrays.asList(termDl.ueSessionId(), termDl.applicationId());
+            case TUNNEL_PEER:
+                return ((UpfGtpTunnelPeer) entity).tunPeerId();
+            case APPLICATION:
+                UpfApplication app = (UpfApplication) entity;
+                return Arrays.asList(app.sliceId(), app.ip4Prefix(), app.l4PortRange(),
+                                     app.ipProto(), app.priority());
+            default:
+                return entity;
+        }
+    }
+
+    private static List<Map.Entry<Criterion, Object>> lookupKeys(UpfEntity entity) {
+        switch (entity.type()) {
+            case SESSION_UPLINK:
+                return ImmutableList.of(key(Criterion.TEID, ((UpfSessionUplink) entity).teid()));
+            case SESSION_DOWNLINK:
+                return ImmutableList.of(
+                        key(Criterion.UE_ADDRESS, ((UpfSessionDownlink) entity).ueAddress()));
+            case TERMINATION_UPLINK:
+                UpfTerminationUplink termUl = (UpfTerminationUplink) entity;
+                return ImmutableList.of(key(Criterion.UE_ADDRESS, termUl.ueSessionId()),
+                                        key(Criterion.APP_ID, termUl.applicationId()));
+            case TERMINATION_DOWNLINK:
+                UpfTerminationDownlink termDl = (UpfTerminationDownlink) entity;
+                return ImmutableList.of(key(Criterion.UE_ADDRESS, termDl.ueSessionId()),
+                                        key(Criterion.APP_ID, termDl.applicationId()));
+            case TUNNEL_PEER:
+                return ImmutableList.of(
+                        key(Criterion.TUNNEL_PEER_ID, ((UpfGtpTunnelPeer) entity).tunPeerId()));
+            case APPLICATION:
+                return ImmutableList.of(key(Criterion.APP_ID, ((UpfApplication) entity).appId()));
+            default:
+                return ImmutableList.of();
+        }
+    }
+
+    // Returns the most selective lookup key of the given filter that applies to the given entity type.
+    private static Map.Entry<Criterion, Object> lookupKey(UpfEntityType type, Up4EntityFilter filter) {
+        switch (type) {
+            case SESSION_DOWNLINK:
+            case TERMINATION_UPLINK:
+            case TERMINATION_DOWNLINK:
+                if (filter.ueAddress() != null) {
+                    return key(Criterion.UE_ADDRESS, filter.ueAddress());
+                }
+                if (filter.appId() != null && type != UpfEntityType.SESSION_DOWNLINK) {
+                    return key(Criterion.APP_ID, filter.appId());
+                }
+                return null;
+            case SESSION_UPLINK:
+                return filter.teid() == null ? null : key(Criterion.TEID, filter.teid());
+            case TUNNEL_PEER:
+                return filter.tunnelPeerId() == null ? null :
+                        key(Criterion.TUNNEL_PEER_ID, filter.tunnelPeerId());
+            case APPLICATION:
+                return filter.appId() == null ? null : key(Criterion.APP_ID, filter.appId());
+            default:
+                return null;
+        }
+    }
+
+    private static Map.Entry<Criterion, Object> key(Criterion criterion, Object value) {
+        return Maps.immutableEntry(criterion, value);
+    }
+
+    private static final class TypeIndex {
+        private final Map<Object, UpfEntity> byMatchKey = new LinkedHashMap<>();
+        private final SetMultimap<Map.Entry<Criterion, Object>, Object> byLookupKey = HashMultimap.create();
+
+        private void put(UpfEntity entity) {
+            Object matchKey = matchKey(entity);
+            UpfEntity old = byMatchKey.put(matchKey, entity);
+            if (old != null) {
+                lookupKeys(old).forEach(key -> byLookupKey.remove(key, matchKey));
+            }
+            lookupKeys(entity).forEach(key -> byLookupKey.put(key, matchKey));
+        }
+
+        private void remove(UpfEntity entity) {
+            Object matchKey = matchKey(entity);
+            UpfEntity old = byMatchKey.remove(matchKey);
+            if (old != null) {
+                lookupKeys(old).forEach(key -> byLookupKey.remove(key, matchKey));
+            }
+        }
+
+        private Collection<UpfEntity> lookup(UpfEntityType type, Up4EntityFilter filter) {
+            Map.Entry<Criterion, Object> lookupKey = lookupKey(type, filter);
+            Collection<UpfEntity> candidates;
+            if (lookupKey == null) {
+                candidates = byMatchKey.values();
+            } else {
+                candidates = new ArrayList<>();
+                for (Object matchKey : byLookupKey.get(lookupKey)) {
+                    candidates.add(byMatchKey.get(matchKey));
+                }
+            }
+            List<UpfEntity> result = new ArrayList<>();
+            for (UpfEntity entity : candidates) {
+                if (filter.matches(entity)) {
+                    result.add(entity);
+                }
+            }
+            return result;
+        }
+    }
+}
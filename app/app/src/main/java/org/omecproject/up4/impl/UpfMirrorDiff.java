@@ -0,0 +1,93 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Differences between the in-memory mirror of the UPF entities of a given
+ * type and the entities read from the UPF data plane.
+ */
+public final class UpfMirrorDiff {
+
+    private final UpfEntityType type;
+    private final ImmutableList<UpfEntity> missing;
+    private final ImmutableList<UpfEntity> unexpected;
+
+    private UpfMirrorDiff(UpfEntityType type, Collection<UpfEntity> missing, Collection<UpfEntity> unexpected) {
+        this.type = type;
+        this.missing = ImmutableList.copyOf(missing);
+        this.unexpected = ImmutableList.copyOf(unexpected);
+    }
+
+    /**
+     * Compares the given mirrored and data plane entities.
+     *
+     * @param type      the entity type
+     * @param mirrored  the entities in the mirror
+     * @param dataPlane the entities read from the data plane
+     * @return the differences
+     */
+    static UpfMirrorDiff compare(UpfEntityType type, Collection<? extends UpfEntity> mirrored,
+                                 Collection<? extends UpfEntity> dataPlane) {
+        Set<UpfEntity> missing = new LinkedHashSet<>(mirrored);
+        dataPlane.forEach(missing::remove);
+        Set<UpfEntity> unexpected = new LinkedHashSet<>(dataPlane);
+        mirrored.forEach(unexpected::remove);
+        return new UpfMirrorDiff(type, missing, unexpected);
+    }
+
+    /**
+     * Returns the entity type.
+     *
+     * @return the entity type
+     */
+    public UpfEntityType type() {
+        return type;
+    }
+
+    /**
+     * Returns the entities in the mirror that are not in the data plane.
+     *
+     * @return the missing entities
+     */
+    public ImmutableList<UpfEntity> missing() {
+        return missing;
+    }
+
+    /**
+     * Returns the entities in the data plane that are not in the mirror.
+     *
+     * @return the unexpected entities
+     */
+    public ImmutableList<UpfEntity> unexpected() {
+        return unexpected;
+    }
+
+    /**
+     * Returns true if the mirror matches the data plane.
+     *
+     * @return true if there are no differences
+     */
+    public boolean isEmpty() {
+        return missing.isEmpty() && unexpected.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", type)
+                .add("missing", missing)
+                .add("unexpected", unexpected)
+                .toString();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Coalesces values by merge key and flushes them in batches. Values are
+ * buffered for at most a window of time, or until a batch is full, and are
+ * flushed in the order they were added. A value can either supersede the
+ * pending one with the same key, or be dropped if one is already pending.
+ * <p>
+ * Pending values are guarded by a lock, which can be shared with the owner of
+ * the coalescer, so that the owner can update its own state atomically with
+ * the pending values.
+ *
+ * @param <K> type of the merge keys
+ * @param <V> type of the values
+ */
+final class WindowedCoalescer<K, V> {
+
+    private static final Logger log = getLogger(WindowedCoalescer.class);
+
+    /**
+     * Flushes the batches of a coalescer.
+     *
+     * @param <V> type of the values
+     */
+    @FunctionalInterface
+    interface Flusher<V> {
+        /**
+         * Prepares the flush of the given batch. Called with the lock of the
+         * coalescer held, right after the batch is removed from the pending
+         * values.
+         *
+         * @param batch the values to flush, in order
+         * @return the flush action, run without the lock held, or null if there is nothing to do
+         */
+        Runnable prepare(List<V> batch);
+    }
+
+    private final Object lock;
+    private final Flusher<V> flusher;
+    private final ScheduledExecutorService executor;
+
+    private int maxBatchSize;
+    private long windowNs;
+
+    // Values waiting to be flushed, in order.
+    private final LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * Creates a new coalescer guarding its pending values with the given lock.
+     *
+     * @param lock          the lock guarding the pending values
+     * @param flusher       the flusher of batches
+     * @param threadFactory the factory of the flushing thread
+     * @param maxBatchSize  maximum number of values in a batch, 0 for no limit
+     * @param windowNs      maximum buffering time of a value, in nanoseconds, 0 to flush right away
+     */
+    WindowedCoalescer(Object lock, Flusher<V> flusher, ThreadFactory threadFactory,
+                      int maxBatchSize, long windowNs) {
+        this.lock = lock;
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        configure(maxBatchSize, windowNs);
+    }
+
+    /**
+     * Updates the batching configuration. Values already waiting are flushed
+     * according to the new configuration.
+     *
+     * @param newMaxBatchSize maximum number of values in a batch, 0 for no limit
+     * @param newWindowNs     maximum buffering time of a value, in nanoseconds, 0 to flush right away
+     */
+    void configure(int newMaxBatchSize, long newWindowNs) {
+        synchronized (lock) {
+            this.maxBatchSize = Math.max(0, newMaxBatchSize);
+            this.windowNs = Math.max(0, newWindowNs);
+            if (!pending.isEmpty()) {
+                scheduleFlush(isFull() ? 0 : this.windowNs);
+            }
+        }
+    }
+
+    /**
+     * Adds the given value, superseding the pending value with the same key,
+     * if any. The value is flushed after the other pending values.
+     *
+     * @param key   the merge key
+     * @param value the value
+     * @return the superseded value, or null
+     */
+    V offer(K key, V value) {
+        synchronized (lock) {
+            V previous = pending.remove(key);
+            pending.put(key, value);
+            added();
+            return previous;
+        }
+    }
+
+    /**
+     * Adds the given value, unless a value with the same key is pending.
+     *
+     * @param key   the merge key
+     * @param value the value
+     * @return true if the value has been added
+     */
+    boolean offerIfAbsent(K key, V value) {
+        synchronized (lock) {
+            if (pending.containsKey(key)) {
+                return false;
+            }
+            pending.put(key, value);
+            added();
+            return true;
+        }
+    }
+
+    /**
+     * Flushes all pending values right away, on the calling thread.
+     */
+    void flushNow() {
+        while (true) {
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Stops the coalescer, pending values are dropped.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void added() {
+        if (isFull() || windowNs == 0) {
+            scheduleFlush(0);
+        } else if (pending.size() == 1) {
+            scheduleFlush(windowNs);
+        }
+    }
+
+    private boolean isFull() {
+        return maxBatchSize > 0 && pending.size() >= maxBatchSize;
+    }
+
+    private void scheduleFlush(long delayNs) {
+        if (flushTask != null) {
+            if (flushTask.getDelay(TimeUnit.NANOSECONDS) <= delayNs) {
+                // Already due earlier.
+                return;
+            }
+            flushTask.cancel(false);
+        }
+        flushTask = executor.schedule(this::flush, delayNs, TimeUnit.NANOSECONDS);
+    }
+
+    private void flush() {
+        Runnable action;
+        synchronized (lock) {
+            if (flushTask != null) {
+                // No-op if called by the flush task itself.
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            List<V> batch = new ArrayList<>();
+            Iterator<V> it = pending.values().iterator();
+            while (it.hasNext() && (maxBatchSize == 0 || batch.size() < maxBatchSize)) {
+                batch.add(it.next());
+                it.remove();
+            }
+            if (!pending.isEmpty()) {
+                scheduleFlush(isFull() ? 0 : windowNs);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            action = flusher.prepare(batch);
+        }
+        if (action == null) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.error("Unable to flush batch", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.Test;
+import org.onosproject.net.flow.FlowRule;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.omecproject.up4.impl.TestFlowRules.rule;
+
+public class FlowRuleDiffTest {
+
+    @Test
+    public void inSyncTest() {
+        FlowRuleDiff diff = FlowRuleDiff.compute(
+                List.of(rule("10.0.0.1/32", 1), rule("10.0.0.2/32", 2)),
+                List.of(rule("10.0.0.2/32", 2), rule("10.0.0.1/32", 1)));
+        assertThat(diff.unexpected(), empty());
+        assertThat(diff.stale(), empty());
+        assertThat(diff.missing(), empty());
+    }
+
+    @Test
+    public void diffTest() {
+        FlowRule inSync = rule("10.0.0.1/32", 1);
+        FlowRule stale = rule("10.0.0.2/32", 2);
+        FlowRule missing = rule("10.0.0.3/32", 3);
+        FlowRule unexpected = rule("10.0.0.4/32", 4);
+        FlowRuleDiff diff = FlowRuleDiff.compute(
+                List.of(inSync, stale, missing),
+                List.of(inSync, rule("10.0.0.2/32", 20), unexpected));
+        assertThat(diff.unexpected(), contains(unexpected));
+        assertThat(diff.stale(), contains(stale));
+        assertThat(diff.missing(), contains(missing));
+    }
+}
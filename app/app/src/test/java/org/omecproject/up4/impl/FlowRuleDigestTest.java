@@ -0,0 +1,64 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.IndexTableId;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.omecproject.up4.impl.TestFlowRules.LEADER;
+import static org.omecproject.up4.impl.TestFlowRules.rule;
+
+public class FlowRuleDigestTest {
+
+    private static final DeviceId FOLLOWER = DeviceId.deviceId("device:follower");
+
+    @Test
+    public void sameRulesTest() {
+        FlowRuleDigest leader = new FlowRuleDigest();
+        FlowRuleDigest follower = new FlowRuleDigest();
+        leader.reset(List.of(rule(LEADER, 0, "10.0.0.1/32", 1),
+                             rule(LEADER, 1, "10.0.0.2/32", 2)));
+        // Different order and device
+        follower.add(rule(FOLLOWER, 1, "10.0.0.2/32", 2));
+        follower.add(rule(FOLLOWER, 0, "10.0.0.1/32", 1));
+        assertThat(follower.tables(), equalTo(leader.tables()));
+        assertThat(FlowRuleDigest.mismatchedTables(leader.tables(), follower.tables()), empty());
+    }
+
+    @Test
+    public void mismatchedTablesTest() {
+        FlowRuleDigest leader = new FlowRuleDigest();
+        FlowRuleDigest follower = new FlowRuleDigest();
+        leader.reset(List.of(rule(LEADER, 0, "10.0.0.1/32", 1),
+                             rule(LEADER, 1, "10.0.0.2/32", 2)));
+        follower.reset(List.of(rule(FOLLOWER, 0, "10.0.0.1/32", 1),
+                               rule(FOLLOWER, 1, "10.0.0.2/32", 20)));
+        assertThat(FlowRuleDigest.mismatchedTables(leader.tables(), follower.tables()),
+                   contains(IndexTableId.of(1)));
+        // Replacing the stale rule restores the digest
+        follower.add(rule(FOLLOWER, 1, "10.0.0.2/32", 2));
+        assertThat(FlowRuleDigest.mismatchedTables(leader.tables(), follower.tables()), empty());
+    }
+
+    @Test
+    public void removeTest() {
+        FlowRuleDigest leader = new FlowRuleDigest();
+        FlowRuleDigest follower = new FlowRuleDigest();
+        follower.add(rule(FOLLOWER, 2, "10.0.0.3/32", 3));
+        assertThat(FlowRuleDigest.mismatchedTables(leader.tables(), follower.tables()),
+                   contains(IndexTableId.of(2)));
+        follower.remove(rule(FOLLOWER, 2, "10.0.0.3/32", 3));
+        // Removing a rule that is not in the digest has no effect
+        follower.remove(rule(FOLLOWER, 2, "10.0.0.3/32", 3));
+        assertThat(FlowRuleDigest.mismatchedTables(leader.tables(), follower.tables()), empty());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.flow.FlowRule;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.omecproject.up4.impl.TestBatchSink.NEVER;
+import static org.omecproject.up4.impl.TestFlowRules.rule;
+
+public class FlowRuleReplicatorTest {
+
+    private final TestBatchSink<Batch> replicated = new TestBatchSink<>();
+    private FlowRuleReplicator replicator;
+
+    @Before
+    public void setUp() {
+        // Batches are replicated on flush only.
+        replicator = new FlowRuleReplicator((toAdd, toRemove) -> replicated.add(new Batch(toAdd, toRemove)),
+                                            0, NEVER);
+    }
+
+    @After
+    public void tearDown() {
+        replicator.shutdown();
+    }
+
+    @Test
+    public void coalesceTest() {
+        FlowRule added = rule("10.0.0.1/32", 1);
+        FlowRule updated = rule("10.0.0.1/32", 10);
+        FlowRule removed = rule("10.0.0.2/32", 2);
+        replicator.add(added);
+        replicator.add(updated);
+        replicator.add(removed);
+        replicator.remove(removed);
+        replicator.flush();
+        Batch batch = replicated.poll();
+        assertThat(batch.toAdd, contains(updated));
+        assertThat(batch.toRemove, contains(removed));
+        replicated.assertEmpty();
+    }
+
+    @Test
+    public void removeThenAddTest() {
+        FlowRule rule = rule("10.0.0.1/32", 1);
+        replicator.remove(rule);
+        replicator.add(rule);
+        replicator.flush();
+        Batch batch = replicated.poll();
+        assertThat(batch.toAdd, contains(rule));
+        assertThat(batch.toRemove, empty());
+    }
+
+    private static final class Batch {
+        private final List<FlowRule> toAdd;
+        private final List<FlowRule> toRemove;
+
+        private Batch(List<FlowRule> toAdd, List<FlowRule> toRemove) {
+            this.toAdd = toAdd;
+            this.toRemove = toRemove;
+        }
+    }
+}
@@ -4,6 +4,8 @@
  */
 package org.omecproject.up4.impl;
 
+import org.omecproject.up4.Up4EntityFilter;
+import org.omecproject.up4.Up4EntityUpdate;
 import org.omecproject.up4.Up4EventListener;
 import org.omecproject.up4.Up4Service;
 import org.onosproject.net.behaviour.upf.UpfCounter;
@@ -15,6 +17,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class MockUp4Service implements Up4Service {
     boolean upfProgrammableAvailable = true;
@@ -27,6 +30,9 @@ public class MockUp4Service implements Up4Service {
     final List<UpfEntity> applications = new ArrayList<>();
     final List<UpfEntity> ifaces = new ArrayList<>();
     final List<ByteBuffer> sentPacketOuts = new ArrayList<>();
+    int tableSizeReads = 0;
+    boolean resyncInProgress = false;
+    int resyncCommits = 0;
 
     public void hideState(boolean hideUpfProgrammable, boolean hideConfig) {
         upfProgrammableAvailable = !hideUpfProgrammable;
@@ -87,6 +93,17 @@ public class MockUp4Service implements Up4Service {
         }
     }
 
+    @Override
+    public void applyBatch(List<Up4EntityUpdate> updates) throws UpfProgrammableException {
+        for (Up4EntityUpdate update : updates) {
+            if (update.type() == Up4EntityUpdate.Type.APPLY) {
+                apply(update.entity());
+            } else {
+                delete(update.entity());
+            }
+        }
+    }
+
     @Override
     public Collection<? extends UpfEntity> readAll(UpfEntityType entityType)
             throws UpfProgrammableException {
@@ -111,6 +128,12 @@ public class MockUp4Service implements Up4Service {
         return null;
     }
 
+    @Override
+    public Collection<? extends UpfEntity> readAll(UpfEntityType entityType, Up4EntityFilter filter)
+            throws UpfProgrammableException {
+        return readAll(entityType).stream().filter(filter::matches).collect(Collectors.toList());
+    }
+
     @Override
     public void disablePscEncap() {
 
@@ -145,6 +168,33 @@ public class MockUp4Service implements Up4Service {
         return stats;
     }
 
+    @Override
+    public Collection<UpfCounter> readCounters(long fromCounterId, long toCounterId) {
+        return readCounters(-1).stream()
+                .filter(c -> c.getCellId() >= fromCounterId && c.getCellId() < toCounterId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void beginResync() {
+        resyncInProgress = true;
+    }
+
+    @Override
+    public long commitResync() throws UpfProgrammableException {
+        if (!resyncInProgress) {
+            throw new UpfProgrammableException("No resync in progress");
+        }
+        resyncInProgress = false;
+        resyncCommits++;
+        return 0;
+    }
+
+    @Override
+    public void abortResync() {
+        resyncInProgress = false;
+    }
+
     @Override
     public void delete(UpfEntity entity) throws UpfProgrammableException {
         List<UpfEntity> entities;
@@ -210,6 +260,7 @@ public class MockUp4Service implements Up4Service {
 
     @Override
     public long tableSize(UpfEntityType entityType) throws UpfProgrammableException {
+        tableSizeReads++;
         switch (entityType) {
             case INTERFACE:
                 return TestImplConstants.PHYSICAL_MAX_INTERFACES;
@@ -0,0 +1,223 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.onosproject.net.behaviour.upf.UpfCounter;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfProgrammable;
+import org.onosproject.net.behaviour.upf.UpfProgrammableException;
+import org.onosproject.net.flow.FlowRule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stateful UPF data plane, exposed as a UpfProgrammable by {@link #asUpfProgrammable()}.
+ * Only the methods used by the Up4DeviceManager are implemented.
+ */
+public class MockUpfProgrammable {
+
+    private static final int DEFAULT_COUNTERS = 4;
+
+    private final Map<UpfEntityType, Map<Object, UpfEntity>> entities = Maps.newConcurrentMap();
+    private final List<String> operations = new ArrayList<>();
+    private final AtomicInteger counterReads = new AtomicInteger();
+
+    private volatile long counterValue = 1;
+    private volatile long counterReadDelayMs = 0;
+    private volatile boolean failCounterReads = false;
+    private volatile boolean failApplies = false;
+    private volatile CountDownLatch fromThisUpfLatch;
+
+    /**
+     * Returns a UpfProgrammable delegating to this data plane.
+     *
+     * @return the UpfProgrammable
+     */
+    public UpfProgrammable asUpfProgrammable() {
+        return mock(UpfProgrammable.class, delegatesTo(this));
+    }
+
+    public boolean init() {
+        return true;
+    }
+
+    public void cleanUp() {
+        entities.clear();
+    }
+
+    public void enablePscEncap() {
+    }
+
+    public void disablePscEncap() {
+    }
+
+    public synchronized void apply(UpfEntity entity) throws UpfProgrammableException {
+        operations.add("apply " + entity);
+        if (failApplies) {
+            throw new UpfProgrammableException("Apply failed: " + entity);
+        }
+        table(entity.type()).put(UpfEntityIndex.matchKey(entity), entity);
+    }
+
+    public synchronized void delete(UpfEntity entity) throws UpfProgrammableException {
+        operations.add("delete " + entity);
+        if (table(entity.type()).remove(UpfEntityIndex.matchKey(entity)) == null) {
+            throw new UpfProgrammableException("Entity not found: " + entity);
+        }
+    }
+
+    public synchronized void deleteAll(UpfEntityType entityType) throws UpfProgrammableException {
+        operations.add("deleteAll " + entityType);
+        table(entityType).clear();
+    }
+
+    public Collection<? extends UpfEntity> readAll(UpfEntityType entityType) throws UpfProgrammableException {
+        return ImmutableList.copyOf(table(entityType).values());
+    }
+
+    public long tableSize(UpfEntityType entityType) throws UpfProgrammableException {
+        return entityType == UpfEntityType.COUNTER ? DEFAULT_COUNTERS : 1024;
+    }
+
+    public UpfCounter readCounter(int cellId) throws UpfProgrammableException {
+        counterReads.incrementAndGet();
+        awaitCounterRead();
+        return counter(cellId);
+    }
+
+    public Collection<UpfCounter> readCounters(long maxCounterId) throws UpfProgrammableException {
+        counterReads.incrementAndGet();
+        awaitCounterRead();
+        long size = maxCounterId < 0 ? DEFAULT_COUNTERS : maxCounterId;
+        List<UpfCounter> counters = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            counters.add(counter(i));
+        }
+        return counters;
+    }
+
+    public boolean fromThisUpf(FlowRule flowRule) {
+        CountDownLatch latch = fromThisUpfLatch;
+        if (latch != null) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entities of the given type installed in this data plane.
+     *
+     * @param entityType the entity type
+     * @return the installed entities
+     */
+    public Collection<UpfEntity> installed(UpfEntityType entityType) {
+        return ImmutableList.copyOf(table(entityType).values());
+    }
+
+    /**
+     * Returns the applies and deletes received so far, in order.
+     *
+     * @return the operations
+     */
+    public synchronized List<String> operations() {
+        return ImmutableList.copyOf(operations);
+    }
+
+    /**
+     * Returns the number of counter reads received so far.
+     *
+     * @return number of counter reads
+     */
+    public int counterReads() {
+        return counterReads.get();
+    }
+
+    /**
+     * Sets the packets and bytes returned by counter reads.
+     *
+     * @param value the counter value
+     */
+    public void setCounterValue(long value) {
+        this.counterValue = value;
+    }
+
+    /**
+     * Sets the delay of counter reads.
+     *
+     * @param delayMs delay in milliseconds
+     */
+    public void setCounterReadDelay(long delayMs) {
+        this.counterReadDelayMs = delayMs;
+    }
+
+    /**
+     * Makes counter reads fail, or succeed again.
+     *
+     * @param fail true to make counter reads fail
+     */
+    public void setFailCounterReads(boolean fail) {
+        this.failCounterReads = fail;
+    }
+
+    /**
+     * Makes applies fail, or succeed again.
+     *
+     * @param fail true to make applies fail
+     */
+    public void setFailApplies(boolean fail) {
+        this.failApplies = fail;
+    }
+
+    /**
+     * Makes fromThisUpf block until the given latch is released.
+     *
+     * @param latch the latch, or null not to block
+     */
+    public void setFromThisUpfLatch(CountDownLatch latch) {
+        this.fromThisUpfLatch = latch;
+    }
+
+    private Map<Object, UpfEntity> table(UpfEntityType entityType) {
+        return entities.computeIfAbsent(entityType, type -> Maps.newConcurrentMap());
+    }
+
+    private void awaitCounterRead() throws UpfProgrammableException {
+        if (counterReadDelayMs > 0) {
+            try {
+                Thread.sleep(counterReadDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failCounterReads) {
+            throw new UpfProgrammableException("Counter read failed");
+        }
+    }
+
+    private UpfCounter counter(int cellId) {
+        long value = counterValue;
+        return UpfCounter.builder()
+                .withCellId(cellId)
+                .setIngress(value, value)
+                .setEgress(value, value)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.omecproject.up4.impl.TestFlowRules.rule;
+
+public class ReconcileBackOffTest {
+
+    private static final long BASE_INTERVAL = 10;
+    private static final long MAX_INTERVAL = 80;
+
+    private final ReconcileBackOff backOff = new ReconcileBackOff();
+
+    private static List<FlowRuleDiff> drift() {
+        return List.of(FlowRuleDiff.compute(
+                List.of(rule("10.0.0.1/32", 1), rule("10.0.0.2/32", 2)),
+                List.of(rule("10.0.0.2/32", 20), rule("10.0.0.3/32", 3))));
+    }
+
+    // Runs ticks until a pass is due, and returns the number of ticks it took.
+    private int ticksToNextPass() {
+        int ticks = 1;
+        while (!backOff.tick()) {
+            ticks++;
+        }
+        return ticks;
+    }
+
+    private ReconcileStats pass(List<FlowRuleDiff> diffs) {
+        ReconcileStats stats = backOff.passCompleted(5, false, diffs, BASE_INTERVAL, MAX_INTERVAL);
+        backOff.passEnded();
+        return stats;
+    }
+
+    @Test
+    public void backOffTest() {
+        assertThat(backOff.stats().passes(), equalTo(0L));
+        assertTrue(backOff.tick());
+        // The interval doubles after every pass in sync.
+        long[] intervals = {20, 40, 80};
+        for (long interval : intervals) {
+            assertThat(pass(Collections.emptyList()).interval(), equalTo(interval));
+            assertThat(ticksToNextPass(), equalTo((int) (interval / BASE_INTERVAL)));
+        }
+        assertThat(backOff.stats().passes(), equalTo(3L));
+        assertThat(backOff.stats().driftPasses(), equalTo(0L));
+    }
+
+    @Test
+    public void backOffCapTest() {
+        for (int i = 0; i < 10; i++) {
+            pass(Collections.emptyList());
+        }
+        assertThat(backOff.stats().interval(), equalTo(MAX_INTERVAL));
+        assertThat(ticksToNextPass(), equalTo((int) (MAX_INTERVAL / BASE_INTERVAL)));
+
+        // A max interval below the base one never skips ticks.
+        ReconcileStats stats = backOff.passCompleted(5, false, Collections.emptyList(), BASE_INTERVAL, 1);
+        backOff.passEnded();
+        assertThat(stats.interval(), equalTo(BASE_INTERVAL));
+        assertThat(ticksToNextPass(), equalTo(1));
+    }
+
+    @Test
+    public void resetOnDriftTest() {
+        pass(Collections.emptyList());
+        pass(Collections.emptyList());
+        assertThat(backOff.stats().interval(), equalTo(40L));
+        ReconcileStats stats = pass(drift());
+        assertThat(stats.interval(), equalTo(BASE_INTERVAL));
+        assertThat(ticksToNextPass(), equalTo(1));
+        assertThat(stats.passes(), equalTo(3L));
+        assertThat(stats.driftPasses(), equalTo(1L));
+        assertThat(stats.lastUnexpected(), equalTo(1));
+        assertThat(stats.lastStale(), equalTo(1));
+        assertThat(stats.lastMissing(), equalTo(1));
+        assertThat(stats.lastPassMillis(), equalTo(5L));
+        assertFalse(stats.lastPassFull());
+    }
+
+    @Test
+    public void resetOnRequestTest() {
+        pass(Collections.emptyList());
+        pass(Collections.emptyList());
+        assertFalse(backOff.tick());
+        // E.g., on a UPF device event.
+        backOff.requestReset();
+        assertTrue(backOff.tick());
+        // Backs off again from the base interval.
+        assertThat(pass(Collections.emptyList()).interval(), equalTo(2 * BASE_INTERVAL));
+        assertThat(ticksToNextPass(), equalTo(2));
+    }
+
+    @Test
+    public void failedPassTest() {
+        pass(Collections.emptyList());
+        assertTrue(ticksToNextPass() > 1);
+        // A pass failing before completing keeps the interval and the stats.
+        backOff.passEnded();
+        assertThat(ticksToNextPass(), equalTo(2));
+        assertThat(backOff.stats().passes(), equalTo(1L));
+    }
+}
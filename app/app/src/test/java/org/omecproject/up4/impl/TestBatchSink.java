@@ -0,0 +1,71 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Collects the batches flushed by a {@link WindowedCoalescer} in tests.
+ * Batches flushed by the coalescer thread are awaited with {@link #next()},
+ * the ones flushed on the test thread are checked with {@link #poll()} and
+ * {@link #assertEmpty()}, without waiting.
+ *
+ * @param <T> type of the batches
+ */
+public final class TestBatchSink<T> {
+
+    /**
+     * Window of time never expiring during a test, in nanoseconds.
+     */
+    public static final long NEVER = TimeUnit.MINUTES.toNanos(1);
+
+    private final BlockingQueue<T> batches = new LinkedBlockingQueue<>();
+
+    /**
+     * Adds a flushed batch.
+     *
+     * @param batch the batch
+     * @return true
+     */
+    public boolean add(T batch) {
+        return batches.add(batch);
+    }
+
+    /**
+     * Waits for the next batch flushed by the coalescer thread.
+     *
+     * @return the batch
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T next() throws InterruptedException {
+        T batch = batches.poll(5, TimeUnit.SECONDS);
+        assertThat(batch, notNullValue());
+        return batch;
+    }
+
+    /**
+     * Returns the next batch, which must have been flushed already.
+     *
+     * @return the batch
+     */
+    public T poll() {
+        T batch = batches.poll();
+        assertThat(batch, notNullValue());
+        return batch;
+    }
+
+    /**
+     * Asserts that no batch has been flushed.
+     */
+    public void assertEmpty() {
+        assertThat(batches.poll(), nullValue());
+    }
+}
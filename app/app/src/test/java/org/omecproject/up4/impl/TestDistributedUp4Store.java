@@ -9,6 +9,7 @@ import org.onosproject.store.service.TestEventuallyConsistentMap;
 import org.onosproject.store.service.WallClockTimestamp;
 
 import static org.omecproject.up4.impl.DistributedUp4Store.BUFFER_UE_MAP_NAME;
+import static org.omecproject.up4.impl.DistributedUp4Store.ENTITY_VERSIONS_MAP_NAME;
 import static org.omecproject.up4.impl.DistributedUp4Store.SERIALIZER;
 
 public final class TestDistributedUp4Store {
@@ -26,6 +27,14 @@ public final class TestDistributedUp4Store {
                 .withSerializer(SERIALIZER.build());
 
         store.bufferUes = bufferUeBuilder.build();
+
+        TestEventuallyConsistentMap.Builder<String, String>
+                entityVersionsBuilder = TestEventuallyConsistentMap.builder();
+        entityVersionsBuilder.withName(ENTITY_VERSIONS_MAP_NAME)
+                .withTimestampProvider((k, v) -> new WallClockTimestamp())
+                .withSerializer(SERIALIZER.build());
+
+        store.entityVersions = entityVersionsBuilder.build();
         store.activate();
         return store;
     }
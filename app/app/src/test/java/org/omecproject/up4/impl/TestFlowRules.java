@@ -0,0 +1,63 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.onlab.packet.Ip4Prefix;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+
+import static org.omecproject.up4.impl.TestImplConstants.APP_ID;
+
+/**
+ * Flow rules of the UPF devices used in tests.
+ */
+public final class TestFlowRules {
+
+    public static final DeviceId LEADER = DeviceId.deviceId("device:leader");
+
+    private TestFlowRules() {
+    }
+
+    /**
+     * Returns a rule of the leader UPF device, in table 0.
+     *
+     * @param dstPrefix the IPv4 destination matched by the rule
+     * @param outPort   the output port of the rule
+     * @return the flow rule
+     */
+    public static FlowRule rule(String dstPrefix, long outPort) {
+        return rule(LEADER, 0, dstPrefix, outPort);
+    }
+
+    /**
+     * Returns a rule of the given device and table.
+     *
+     * @param deviceId  the device of the rule
+     * @param table     the table of the rule
+     * @param dstPrefix the IPv4 destination matched by the rule
+     * @param outPort   the output port of the rule
+     * @return the flow rule
+     */
+    public static FlowRule rule(DeviceId deviceId, int table, String dstPrefix, long outPort) {
+        return DefaultFlowRule.builder()
+                .forDevice(deviceId)
+                .fromApp(APP_ID)
+                .forTable(table)
+                .withPriority(10)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchEthType((short) 0x0800)
+                                      .matchIPDst(Ip4Prefix.valueOf(dstPrefix))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                                       .setOutput(PortNumber.portNumber(outPort))
+                                       .build())
+                .makePermanent()
+                .build();
+    }
+}
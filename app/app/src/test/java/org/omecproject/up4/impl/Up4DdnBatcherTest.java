@@ -0,0 +1,120 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Test;
+import org.onlab.packet.Ip4Address;
+import p4.v1.P4DataOuterClass;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.omecproject.up4.impl.ExtraP4InfoConstants.DDN_DIGEST_ID;
+import static org.omecproject.up4.impl.TestBatchSink.NEVER;
+
+public class Up4DdnBatcherTest {
+
+    private static final Ip4Address UE1 = Ip4Address.valueOf("17.0.0.1");
+    private static final Ip4Address UE2 = Ip4Address.valueOf("17.0.0.2");
+
+    private final TestBatchSink<P4RuntimeOuterClass.DigestList> sent = new TestBatchSink<>();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile boolean connected = true;
+    private Up4DdnBatcher batcher;
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    // Digest lists are sent on flush only.
+    private void createBatcher(long ackTimeoutNs) {
+        batcher = new Up4DdnBatcher(DDN_DIGEST_ID, digestList -> {
+            if (!connected) {
+                return false;
+            }
+            sent.add(digestList);
+            return true;
+        }, 0, NEVER, ackTimeoutNs, clock::get);
+    }
+
+    private List<Ip4Address> flushUeAddresses() {
+        batcher.flush();
+        P4RuntimeOuterClass.DigestList digestList = sent.poll();
+        assertThat(digestList.getDigestId(), equalTo(DDN_DIGEST_ID));
+        return ueAddresses(digestList);
+    }
+
+    private void assertNothingSent() {
+        batcher.flush();
+        sent.assertEmpty();
+    }
+
+    private static List<Ip4Address> ueAddresses(P4RuntimeOuterClass.DigestList digestList) {
+        return digestList.getDataList().stream()
+                .map(P4DataOuterClass.P4Data::getBitstring)
+                .map(ByteString::toByteArray)
+                .map(Ip4Address::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void suppressPendingTest() {
+        createBatcher(0);
+        batcher.add(UE1);
+        batcher.add(UE1);
+        batcher.add(UE2);
+        assertThat(flushUeAddresses(), contains(UE1, UE2));
+    }
+
+    @Test
+    public void suppressUntilAckTest() {
+        createBatcher(NEVER);
+        batcher.add(UE1);
+        batcher.flush();
+        P4RuntimeOuterClass.DigestList digestList = sent.poll();
+        assertThat(ueAddresses(digestList), contains(UE1));
+        batcher.add(UE1);
+        assertNothingSent();
+        batcher.ack(DDN_DIGEST_ID, digestList.getListId());
+        batcher.add(UE1);
+        assertThat(flushUeAddresses(), contains(UE1));
+    }
+
+    @Test
+    public void suppressUntilAckTimeoutTest() {
+        long ackTimeoutNs = TimeUnit.MILLISECONDS.toNanos(100);
+        createBatcher(ackTimeoutNs);
+        batcher.add(UE1);
+        assertThat(flushUeAddresses(), contains(UE1));
+        clock.addAndGet(ackTimeoutNs - 1);
+        batcher.add(UE1);
+        assertNothingSent();
+        clock.incrementAndGet();
+        batcher.add(UE1);
+        assertThat(flushUeAddresses(), contains(UE1));
+    }
+
+    @Test
+    public void noSuppressionIfNotSentTest() {
+        createBatcher(NEVER);
+        connected = false;
+        batcher.add(UE1);
+        assertNothingSent();
+        connected = true;
+        batcher.add(UE1);
+        assertThat(flushUeAddresses(), contains(UE1));
+    }
+}
@@ -4,23 +4,63 @@
  */
 package org.omecproject.up4.impl;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.omecproject.up4.Up4EntityUpdate;
 import org.onlab.packet.Ip4Address;
 import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.common.event.impl.TestEventDispatcher;
 import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipInfo;
+import org.onosproject.mastership.MastershipListener;
+import org.onosproject.mastership.MastershipServiceAdapter;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.NetTestTools;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
 import org.onosproject.net.behaviour.upf.UpfGtpTunnelPeer;
 import org.onosproject.net.behaviour.upf.UpfInterface;
 import org.onosproject.net.behaviour.upf.UpfProgrammableException;
+import org.onosproject.net.behaviour.upf.UpfSessionUplink;
 import org.onosproject.net.config.NetworkConfigRegistryAdapter;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.flow.FlowRuleEvent;
+import org.onosproject.net.flow.FlowRuleListener;
 import org.onosproject.net.flow.FlowRuleServiceAdapter;
 import org.onosproject.net.pi.PiPipeconfServiceAdapter;
+import org.osgi.service.component.ComponentContext;
 
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.TestCase.fail;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.omecproject.up4.impl.AppConstants.SLICE_MOBILE;
+import static org.omecproject.up4.impl.TestFlowRules.rule;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_SESSION;
+import static org.omecproject.up4.impl.TestImplConstants.N3_ADDR;
+import static org.omecproject.up4.impl.TestImplConstants.TEID;
+import static org.omecproject.up4.impl.TestImplConstants.TUNNEL_PEER;
+import static org.omecproject.up4.impl.TestImplConstants.UPLINK_SESSION;
 import static org.omecproject.up4.impl.Up4DeviceManager.DBUF_TUNNEL_ID;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_CACHE_TTL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_PARTIAL;
+import static org.omecproject.up4.impl.OsgiPropertyConstants.COUNTER_READ_TIMEOUT;
+import static org.onlab.junit.TestTools.assertAfter;
 import static org.onosproject.net.NetTestTools.injectEventDispatcher;
 
 /**
@@ -28,7 +68,17 @@ import static org.onosproject.net.NetTestTools.injectEventDispatcher;
  */
 public class Up4DeviceManagerTest {
 
+    private static final DeviceId LEADER_ID = DeviceId.deviceId("device:leader");
+    private static final DeviceId FOLLOWER_ID = DeviceId.deviceId("device:follower");
+    // Enough cells to be read with a single bulk read per device.
+    private static final int BULK_READ_CELLS = 32;
+
     private Up4DeviceManager component;
+    private DistributedUp4Store store;
+    private MockUpfProgrammable leader;
+    private MastershipListener mastershipListener;
+    private DeviceListener deviceListener;
+    private FlowRuleListener flowRuleListener;
 
     private final UpfInterface dbufInterface = UpfInterface.createDbufReceiverFrom(
             Ip4Address.valueOf("10.0.0.1"), SLICE_MOBILE);
@@ -43,14 +93,33 @@ public class Up4DeviceManagerTest {
     public void setUp() {
         component = new Up4DeviceManager();
         component.coreService = new CoreServiceAdapter();
-        component.flowRuleService = new FlowRuleServiceAdapter();
-        component.deviceService = new DeviceServiceAdapter();
+        component.flowRuleService = new FlowRuleServiceAdapter() {
+            @Override
+            public void addListener(FlowRuleListener listener) {
+                flowRuleListener = listener;
+            }
+        };
+        component.deviceService = new DeviceServiceAdapter() {
+            @Override
+            public void addListener(DeviceListener listener) {
+                deviceListener = listener;
+            }
+        };
         component.piPipeconfService = new PiPipeconfServiceAdapter();
         component.netCfgService = new NetworkConfigRegistryAdapter();
         component.componentConfigService = new ComponentConfigAdapter();
-        component.up4Store = TestDistributedUp4Store.build();
+        component.mastershipService = new MastershipServiceAdapter() {
+            @Override
+            public void addListener(MastershipListener listener) {
+                mastershipListener = listener;
+            }
+        };
+        store = TestDistributedUp4Store.build();
+        component.up4Store = store;
         injectEventDispatcher(component, new TestEventDispatcher());
         component.activate();
+        leader = new MockUpfProgrammable();
+        component.setUpfDataPlane(ImmutableMap.of(LEADER_ID, leader.asUpfProgrammable()));
     }
 
     @After
@@ -83,4 +152,352 @@ public class Up4DeviceManagerTest {
         component.delete(dbufTunnelPeer);
     }
 
+    @Test(expected = UpfProgrammableException.class)
+    public void testPreventNegativeCounterRange() throws UpfProgrammableException {
+        component.readCounters(-1, 10);
+    }
+
+    @Test
+    public void reapplyElidedTest() throws UpfProgrammableException {
+        component.apply(DOWNLINK_SESSION);
+        // Loads the mirror from the data plane.
+        component.readAll(UpfEntityType.SESSION_DOWNLINK);
+        component.apply(DOWNLINK_SESSION);
+        assertThat(component.elidedWrites(), equalTo(1L));
+        assertThat(leader.operations().size(), equalTo(1));
+    }
+
+    @Test
+    public void remoteModificationInvalidatesMirrorTest() throws UpfProgrammableException {
+        component.readAll(UpfEntityType.SESSION_DOWNLINK);
+        component.apply(DOWNLINK_SESSION);
+        // Local modifications don't invalidate the mirror.
+        assertThat(component.readAll(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION));
+
+        // Deleted via another instance.
+        leader.delete(DOWNLINK_SESSION);
+        store.entityVersions.put(UpfEntityType.SESSION_DOWNLINK.name(), "other-instance/1");
+
+        assertThat(component.readAll(UpfEntityType.SESSION_DOWNLINK), empty());
+        component.apply(DOWNLINK_SESSION);
+        assertThat(component.elidedWrites(), equalTo(0L));
+        assertThat(leader.installed(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION));
+    }
+
+    @Test
+    public void leaderMastershipChangeInvalidatesMirrorTest() throws UpfProgrammableException {
+        component.readAll(UpfEntityType.SESSION_DOWNLINK);
+        component.apply(DOWNLINK_SESSION);
+
+        // Deleted by the previous master.
+        leader.delete(DOWNLINK_SESSION);
+        MastershipEvent event = new MastershipEvent(
+                MastershipEvent.Type.MASTER_CHANGED, LEADER_ID, new MastershipInfo());
+        assertThat(mastershipListener.isRelevant(event), equalTo(true));
+        mastershipListener.event(event);
+
+        assertThat(component.readAll(UpfEntityType.SESSION_DOWNLINK), empty());
+        component.apply(DOWNLINK_SESSION);
+        assertThat(component.elidedWrites(), equalTo(0L));
+    }
+
+    @Test
+    public void batchReapplyElidedTest() throws UpfProgrammableException {
+        leader.apply(DOWNLINK_SESSION);
+        component.readAll(UpfEntityType.SESSION_DOWNLINK);
+        component.applyBatch(ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_SESSION)));
+        assertThat(component.elidedWrites(), equalTo(1L));
+        assertThat(leader.operations().size(), equalTo(1));
+    }
+
+    @Test
+    public void batchDeleteThenInsertNotElidedTest() throws UpfProgrammableException {
+        leader.apply(DOWNLINK_SESSION);
+        component.readAll(UpfEntityType.SESSION_DOWNLINK);
+        component.applyBatch(ImmutableList.of(
+                Up4EntityUpdate.delete(DOWNLINK_SESSION),
+                Up4EntityUpdate.apply(DOWNLINK_SESSION)));
+        assertThat(component.elidedWrites(), equalTo(0L));
+        assertThat(leader.installed(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION));
+        assertThat(component.readAll(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION));
+    }
+
+    @Test
+    public void batchModifyBackNotElidedTest() throws UpfProgrammableException {
+        UpfGtpTunnelPeer modified = UpfGtpTunnelPeer.builder()
+                .withTunnelPeerId(TUNNEL_PEER.tunPeerId())
+                .withSrcAddr(TUNNEL_PEER.src())
+                .withDstAddr(Ip4Address.valueOf("192.168.0.3"))
+                .withSrcPort(TUNNEL_PEER.srcPort())
+                .build();
+        leader.apply(TUNNEL_PEER);
+        component.readAll(UpfEntityType.TUNNEL_PEER);
+        component.applyBatch(ImmutableList.of(
+                Up4EntityUpdate.apply(modified),
+                Up4EntityUpdate.apply(TUNNEL_PEER)));
+        assertThat(component.elidedWrites(), equalTo(0L));
+        assertThat(leader.installed(UpfEntityType.TUNNEL_PEER), contains(TUNNEL_PEER));
+        assertThat(component.readAll(UpfEntityType.TUNNEL_PEER), contains(TUNNEL_PEER));
+    }
+
+    @Test
+    public void resyncDeletesStaleEntitiesTest() throws UpfProgrammableException {
+        leader.apply(DOWNLINK_SESSION);
+        leader.apply(UPLINK_SESSION);
+        leader.apply(TUNNEL_PEER);
+        component.beginResync();
+        // Re-applied by the client, identical to the installed ones.
+        component.apply(DOWNLINK_SESSION);
+        component.apply(TUNNEL_PEER);
+        assertThat(component.elidedWrites(), equalTo(2L));
+
+        assertThat(component.commitResync(), equalTo(1L));
+        assertThat(leader.installed(UpfEntityType.SESSION_UPLINK), empty());
+        assertThat(leader.installed(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION));
+        assertThat(leader.installed(UpfEntityType.TUNNEL_PEER), contains(TUNNEL_PEER));
+        assertThat(component.readAll(UpfEntityType.SESSION_UPLINK), empty());
+    }
+
+    @Test
+    public void resyncAbortKeepsEntitiesTest() throws UpfProgrammableException {
+        leader.apply(UPLINK_SESSION);
+        component.beginResync();
+        component.abortResync();
+        try {
+            component.commitResync();
+            fail("Commit of an aborted resync should fail");
+        } catch (UpfProgrammableException e) {
+            // Expected.
+        }
+        assertThat(leader.installed(UpfEntityType.SESSION_UPLINK), contains(UPLINK_SESSION));
+    }
+
+    @Test
+    public void resyncRejectedBatchNotMarkedTest() throws UpfProgrammableException {
+        leader.apply(DOWNLINK_SESSION);
+        component.beginResync();
+        try {
+            component.applyBatch(ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_SESSION),
+                                                  Up4EntityUpdate.apply(dbufInterface)));
+            fail("Batch with the DBUF interface should be rejected");
+        } catch (UpfProgrammableException e) {
+            // Expected.
+        }
+        assertThat(component.commitResync(), equalTo(1L));
+        assertThat(leader.installed(UpfEntityType.SESSION_DOWNLINK), empty());
+    }
+
+    @Test
+    public void resyncFailedApplyNotMarkedTest() throws UpfProgrammableException {
+        leader.apply(UPLINK_SESSION);
+        component.beginResync();
+        leader.setFailApplies(true);
+        try {
+            component.apply(UpfSessionUplink.builder()
+                                    .withTeid(TEID)
+                                    .withTunDstAddr(N3_ADDR)
+                                    .needsDropping(true)
+                                    .build());
+            fail("Apply should fail");
+        } catch (UpfProgrammableException e) {
+            // Expected.
+        }
+        leader.setFailApplies(false);
+        assertThat(component.commitResync(), equalTo(1L));
+        assertThat(leader.installed(UpfEntityType.SESSION_UPLINK), empty());
+    }
+
+    @Test
+    public void parallelCounterReadTest() throws UpfProgrammableException {
+        MockUpfProgrammable follower = addFollower();
+        leader.setCounterReadDelay(300);
+        follower.setCounterReadDelay(300);
+        long start = System.currentTimeMillis();
+        CounterReadResult result = component.readCounters(0, BULK_READ_CELLS, 0);
+        // Devices are read in parallel, the read takes as long as the slowest one.
+        assertThat(System.currentTimeMillis() - start, lessThan(550L));
+        assertThat(leader.counterReads(), equalTo(1));
+        assertThat(follower.counterReads(), equalTo(1));
+        assertThat(result.counters().size(), equalTo(BULK_READ_CELLS));
+        result.counters().forEach(counter -> assertThat(counter.getIngressPkts(), equalTo(2L)));
+        assertThat(result.missingDevices(), empty());
+    }
+
+    @Test
+    public void counterReadTimeoutTest() {
+        MockUpfProgrammable follower = addFollower();
+        follower.setCounterReadDelay(2000);
+        setProperties(COUNTER_READ_TIMEOUT, "200");
+        long start = System.currentTimeMillis();
+        try {
+            component.readCounters(0, BULK_READ_CELLS, 0);
+            fail("Counter read should time out");
+        } catch (UpfProgrammableException e) {
+            // Expected.
+        }
+        assertThat(System.currentTimeMillis() - start, lessThan(1500L));
+    }
+
+    @Test
+    public void partialCounterReadTest() throws UpfProgrammableException {
+        MockUpfProgrammable follower = addFollower();
+        follower.setFailCounterReads(true);
+        setProperties(COUNTER_READ_PARTIAL, "true");
+        CounterReadResult result = component.readCounters(0, BULK_READ_CELLS, 0);
+        assertThat(result.missingDevices(), contains(FOLLOWER_ID));
+        result.counters().forEach(counter -> assertThat(counter.getIngressPkts(), equalTo(1L)));
+        // Point reads report the missing devices too.
+        result = component.readCounters(0, 2, 0);
+        assertThat(result.counters().size(), equalTo(2));
+        assertThat(result.missingDevices(), contains(FOLLOWER_ID));
+
+        // Devices timing out are missing as well.
+        follower.setFailCounterReads(false);
+        follower.setCounterReadDelay(2000);
+        setProperties(COUNTER_READ_TIMEOUT, "200");
+        result = component.readCounters(0, BULK_READ_CELLS, 0);
+        assertThat(result.missingDevices(), contains(FOLLOWER_ID));
+
+        // A complete read reports no missing device.
+        follower.setCounterReadDelay(0);
+        assertThat(component.readCounters(0, BULK_READ_CELLS, 0).missingDevices(), empty());
+    }
+
+    @Test(expected = UpfProgrammableException.class)
+    public void failedCounterReadTest() throws UpfProgrammableException {
+        addFollower().setFailCounterReads(true);
+        component.readCounters(0, BULK_READ_CELLS, 0);
+    }
+
+    @Test
+    public void counterSnapshotTtlTest() throws UpfProgrammableException {
+        // Polling is disabled by default, polls are triggered by the test.
+        component.pollCounters();
+        int reads = leader.counterReads();
+        leader.setCounterValue(5);
+        // Served from the snapshot, within the configured TTL.
+        assertThat(component.readCounter(0).getIngressPkts(), equalTo(1L));
+        assertThat(component.readCounters(0, BULK_READ_CELLS).size(), equalTo(4));
+        assertThat(leader.counterReads(), equalTo(reads));
+
+        setProperties(COUNTER_CACHE_TTL, "0");
+        assertThat(component.readCounter(0).getIngressPkts(), equalTo(5L));
+        assertThat(leader.counterReads(), equalTo(reads + 1));
+    }
+
+    @Test
+    public void counterSnapshotMaxStalenessTest() throws Exception {
+        component.pollCounters();
+        leader.setCounterValue(5);
+        Thread.sleep(200);
+        int reads = leader.counterReads();
+        // Too old for the requested staleness.
+        assertThat(component.readCounters(0, 2, 100).counters().iterator().next().getIngressPkts(),
+                   equalTo(5L));
+        assertThat(leader.counterReads(), equalTo(reads + 2));
+        // Fresh enough.
+        assertThat(component.readCounters(0, 2, 10000).counters().iterator().next().getIngressPkts(),
+                   equalTo(1L));
+        // Never served from the snapshot.
+        assertThat(component.readCounters(0, 2, 0).counters().iterator().next().getIngressPkts(),
+                   equalTo(5L));
+        assertThat(leader.counterReads(), equalTo(reads + 4));
+    }
+
+    @Test
+    public void counterSnapshotRequiresAllDevicesTest() throws UpfProgrammableException {
+        MockUpfProgrammable follower = addFollower();
+        follower.setFailCounterReads(true);
+        setProperties(COUNTER_READ_PARTIAL, "true");
+        component.pollCounters();
+        // Not published, counters are read from the devices.
+        int reads = leader.counterReads();
+        CounterReadResult result = component.readCounters(0, BULK_READ_CELLS, 10000);
+        assertThat(leader.counterReads(), equalTo(reads + 1));
+        assertThat(result.missingDevices(), contains(FOLLOWER_ID));
+
+        follower.setFailCounterReads(false);
+        component.pollCounters();
+        reads = leader.counterReads();
+        result = component.readCounters(0, BULK_READ_CELLS, 10000);
+        assertThat(leader.counterReads(), equalTo(reads));
+        assertThat(result.missingDevices(), empty());
+        result.counters().forEach(counter -> assertThat(counter.getIngressPkts(), equalTo(2L)));
+    }
+
+    @Test
+    public void counterSnapshotAggregatorReuseTest() throws UpfProgrammableException {
+        // Each poll refills the aggregator not used by the published snapshot.
+        for (long value = 1; value <= 5; value++) {
+            leader.setCounterValue(value);
+            component.pollCounters();
+            CounterReadResult result = component.readCounters(0, BULK_READ_CELLS, 10000);
+            assertThat(result.counters().size(), equalTo(4));
+            for (var counter : result.counters()) {
+                assertThat(counter.getIngressPkts(), equalTo(value));
+            }
+        }
+        // A failed poll keeps the published snapshot.
+        leader.setFailCounterReads(true);
+        component.pollCounters();
+        leader.setFailCounterReads(false);
+        int reads = leader.counterReads();
+        assertThat(component.readCounter(0).getIngressPkts(), equalTo(5L));
+        assertThat(leader.counterReads(), equalTo(reads));
+    }
+
+    @Test
+    public void deviceEventLaneTest() {
+        // Not a UPF device yet, the handler checks it on the event lane.
+        Device device = NetTestTools.device("new");
+        for (DeviceEvent.Type type : List.of(DeviceEvent.Type.DEVICE_ADDED, DeviceEvent.Type.DEVICE_UPDATED,
+                                             DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED,
+                                             DeviceEvent.Type.DEVICE_REMOVED, DeviceEvent.Type.DEVICE_SUSPENDED)) {
+            assertThat(deviceListener.isRelevant(new DeviceEvent(type, device)), equalTo(true));
+        }
+        assertThat(deviceListener.isRelevant(new DeviceEvent(DeviceEvent.Type.PORT_STATS_UPDATED, device)),
+                   equalTo(false));
+    }
+
+    @Test
+    public void flowEventLaneTest() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        leader.setFromThisUpfLatch(latch);
+        try {
+            FlowRuleEvent flowEvent = new FlowRuleEvent(FlowRuleEvent.Type.RULE_ADDED, rule("10.0.0.1/32", 1));
+            assertThat(flowRuleListener.isRelevant(flowEvent), equalTo(true));
+            // The first event blocks the flow lane, the others wait behind it.
+            for (int i = 0; i < 3; i++) {
+                flowRuleListener.event(flowEvent);
+            }
+            assertAfter(10, 5000, () -> assertThat(component.eventQueueDepths().get("flow"), equalTo(2)));
+            // Device events are not delayed by the flow rule events.
+            DeviceEvent deviceEvent = new DeviceEvent(DeviceEvent.Type.DEVICE_ADDED, NetTestTools.device("new"));
+            for (int i = 0; i < 3; i++) {
+                deviceListener.event(deviceEvent);
+            }
+            assertAfter(10, 5000, () -> assertThat(component.eventQueueDepths().get("control"), equalTo(0)));
+            assertThat(component.eventQueueDepths().get("flow"), equalTo(2));
+        } finally {
+            latch.countDown();
+        }
+        assertAfter(10, 5000, () -> assertThat(component.eventQueueDepths().get("flow"), equalTo(0)));
+    }
+
+    private MockUpfProgrammable addFollower() {
+        MockUpfProgrammable follower = new MockUpfProgrammable();
+        component.setUpfDataPlane(ImmutableMap.of(LEADER_ID, leader.asUpfProgrammable(),
+                                                  FOLLOWER_ID, follower.asUpfProgrammable()));
+        return follower;
+    }
+
+    private void setProperties(String... keyValues) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.put(keyValues[i], keyValues[i + 1]);
+        }
+        ComponentContext context = mock(ComponentContext.class);
+        when(context.getProperties()).thenReturn(properties);
+        component.modified(context);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.omecproject.up4.Up4Translator;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.pi.runtime.PiTableEntry;
+import org.onosproject.p4runtime.ctl.codec.Codecs;
+import p4.v1.P4RuntimeOuterClass;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class Up4EntityDecoderTest {
+
+    private Up4EntityDecoder decoder;
+
+    @Before
+    public void setUp() throws Exception {
+        decoder = new Up4EntityDecoder(Up4NorthComponent.buildPipeconf());
+    }
+
+    private P4RuntimeOuterClass.TableEntry encode(PiTableEntry entry) throws Exception {
+        return Codecs.CODECS.entity().encode(entry, null, Up4NorthComponent.buildPipeconf()).getTableEntry();
+    }
+
+    private void decodeTest(UpfEntity expected, PiTableEntry up4Entry) throws Exception {
+        assertThat(decoder.decode(encode(up4Entry)), equalTo(expected));
+    }
+
+    @Test
+    public void decodeTunnelPeerTest() throws Exception {
+        decodeTest(TestImplConstants.TUNNEL_PEER, TestImplConstants.UP4_TUNNEL_PEER);
+    }
+
+    @Test
+    public void decodeSessionsTest() throws Exception {
+        decodeTest(TestImplConstants.UPLINK_SESSION, TestImplConstants.UP4_UPLINK_SESSION);
+        decodeTest(TestImplConstants.DOWNLINK_SESSION, TestImplConstants.UP4_DOWNLINK_SESSION);
+        decodeTest(TestImplConstants.DOWNLINK_SESSION_DBUF, TestImplConstants.UP4_DOWNLINK_SESSION_DBUF);
+    }
+
+    @Test
+    public void decodeTerminationsTest() throws Exception {
+        decodeTest(TestImplConstants.UPLINK_TERMINATION, TestImplConstants.UP4_UPLINK_TERMINATION);
+        decodeTest(TestImplConstants.UPLINK_TERMINATION_NO_TC, TestImplConstants.UP4_UPLINK_TERMINATION_NO_TC);
+        decodeTest(TestImplConstants.UPLINK_TERMINATION_DROP, TestImplConstants.UP4_UPLINK_TERMINATION_DROP);
+        decodeTest(TestImplConstants.DOWNLINK_TERMINATION, TestImplConstants.UP4_DOWNLINK_TERMINATION);
+        decodeTest(TestImplConstants.DOWNLINK_TERMINATION_NO_TC,
+                   TestImplConstants.UP4_DOWNLINK_TERMINATION_NO_TC);
+        decodeTest(TestImplConstants.DOWNLINK_TERMINATION_DROP, TestImplConstants.UP4_DOWNLINK_TERMINATION_DROP);
+    }
+
+    @Test
+    public void decodeInterfacesTest() throws Exception {
+        decodeTest(TestImplConstants.UPLINK_INTERFACE, TestImplConstants.UP4_UPLINK_INTERFACE);
+        decodeTest(TestImplConstants.DOWNLINK_INTERFACE, TestImplConstants.UP4_DOWNLINK_INTERFACE);
+    }
+
+    @Test
+    public void decodeApplicationTest() throws Exception {
+        decodeTest(TestImplConstants.APPLICATION_FILTERING, TestImplConstants.UP4_APPLICATION_FILTERING);
+    }
+
+    @Test
+    public void decodeNonCanonicalValueTest() throws Exception {
+        P4RuntimeOuterClass.TableEntry entry = encode(TestImplConstants.UP4_TUNNEL_PEER);
+        // Prepend a zero byte to the tunnel peer ID, the decoded value must not change.
+        P4RuntimeOuterClass.FieldMatch match = entry.getMatch(0);
+        ByteString padded = ByteString.copyFrom(new byte[]{0}).concat(match.getExact().getValue());
+        P4RuntimeOuterClass.TableEntry paddedEntry = entry.toBuilder()
+                .setMatch(0, match.toBuilder().setExact(match.getExact().toBuilder().setValue(padded)))
+                .build();
+        assertThat(decoder.decode(paddedEntry), equalTo(TestImplConstants.TUNNEL_PEER));
+    }
+
+    @Test(expected = Up4Translator.Up4TranslationException.class)
+    public void decodeUnknownTableTest() throws Exception {
+        decoder.decode(encode(TestImplConstants.UP4_TUNNEL_PEER).toBuilder().setTableId(1).build());
+    }
+
+    @Test(expected = Up4Translator.Up4TranslationException.class)
+    public void decodeApplicationWithoutPriorityTest() throws Exception {
+        decoder.decode(encode(TestImplConstants.UP4_APPLICATION_FILTERING).toBuilder().clearPriority().build());
+    }
+
+    @Test(expected = Up4Translator.Up4TranslationException.class)
+    public void decodeTooWideValueTest() throws Exception {
+        P4RuntimeOuterClass.TableEntry entry = encode(TestImplConstants.UP4_TUNNEL_PEER);
+        P4RuntimeOuterClass.FieldMatch match = entry.getMatch(0);
+        // Tunnel peer ID is 8 bits wide.
+        ByteString tooWide = ByteString.copyFrom(new byte[]{1, 1});
+        decoder.decode(entry.toBuilder()
+                               .setMatch(0, match.toBuilder().setExact(
+                                       match.getExact().toBuilder().setValue(tooWide)))
+                               .build());
+    }
+}
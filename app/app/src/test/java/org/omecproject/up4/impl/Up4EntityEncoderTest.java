@@ -0,0 +1,81 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.behaviour.upf.UpfApplication;
+import org.onosproject.net.behaviour.upf.UpfEntity;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.p4runtime.ctl.codec.Codecs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class Up4EntityEncoderTest {
+
+    private final Up4TranslatorImpl up4Translator = new Up4TranslatorImpl();
+    private PiPipeconf pipeconf;
+    private Up4EntityEncoder encoder;
+
+    @Before
+    public void setUp() throws Exception {
+        pipeconf = Up4NorthComponent.buildPipeconf();
+        encoder = new Up4EntityEncoder(pipeconf);
+    }
+
+    // The encoder must produce the same P4Runtime entity of the translator followed by the PI codec.
+    private void encodeTest(UpfEntity entity) throws Exception {
+        assertThat(encoder.encode(entity),
+                   equalTo(Codecs.CODECS.entity().encode(up4Translator.entityToUp4TableEntry(entity),
+                                                         null, pipeconf)));
+    }
+
+    @Test
+    public void encodeTunnelPeerTest() throws Exception {
+        encodeTest(TestImplConstants.TUNNEL_PEER);
+    }
+
+    @Test
+    public void encodeSessionsTest() throws Exception {
+        encodeTest(TestImplConstants.UPLINK_SESSION);
+        encodeTest(TestImplConstants.DOWNLINK_SESSION);
+        encodeTest(TestImplConstants.DOWNLINK_SESSION_DBUF);
+    }
+
+    @Test
+    public void encodeTerminationsTest() throws Exception {
+        encodeTest(TestImplConstants.UPLINK_TERMINATION);
+        encodeTest(TestImplConstants.UPLINK_TERMINATION_NO_TC);
+        encodeTest(TestImplConstants.UPLINK_TERMINATION_DROP);
+        encodeTest(TestImplConstants.DOWNLINK_TERMINATION);
+        encodeTest(TestImplConstants.DOWNLINK_TERMINATION_NO_TC);
+        encodeTest(TestImplConstants.DOWNLINK_TERMINATION_DROP);
+    }
+
+    @Test
+    public void encodeInterfacesTest() throws Exception {
+        encodeTest(TestImplConstants.UPLINK_INTERFACE);
+        encodeTest(TestImplConstants.DOWNLINK_INTERFACE);
+    }
+
+    @Test
+    public void encodeApplicationsTest() throws Exception {
+        encodeTest(TestImplConstants.APPLICATION_FILTERING);
+        // Applications without some of the optional match fields.
+        encodeTest(UpfApplication.builder()
+                           .withAppId(TestImplConstants.APP_FILTER_ID)
+                           .withIpProto(TestImplConstants.APP_IP_PROTO)
+                           .withPriority(TestImplConstants.APP_FILTER_PRIORITY)
+                           .withSliceId(TestImplConstants.MOBILE_SLICE)
+                           .build());
+        encodeTest(UpfApplication.builder()
+                           .withAppId(TestImplConstants.APP_FILTER_ID)
+                           .withL4PortRange(TestImplConstants.APP_L4_RANGE)
+                           .withPriority(TestImplConstants.APP_FILTER_PRIORITY)
+                           .withSliceId(TestImplConstants.MOBILE_SLICE)
+                           .build());
+    }
+}
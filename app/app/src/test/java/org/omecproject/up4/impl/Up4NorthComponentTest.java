@@ -4,13 +4,19 @@
  */
 package org.omecproject.up4.impl;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import io.grpc.stub.StreamObserver;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.omecproject.up4.Up4Event;
+import org.omecproject.up4.Up4EventSubject;
+import org.onlab.packet.Ip4Address;
 import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
 import org.onosproject.net.pi.model.PiCounterId;
 import org.onosproject.net.pi.model.PiPipeconf;
 import org.onosproject.net.pi.runtime.PiCounterCell;
@@ -27,7 +33,12 @@ import p4.v1.P4RuntimeOuterClass;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -54,8 +65,23 @@ public class Up4NorthComponentTest {
         p4Info = PipeconfHelper.getP4Info(pipeconf);
         up4NorthComponent.pipeconf = pipeconf;
         up4NorthComponent.p4Info = p4Info;
+        up4NorthComponent.entityDecoder = new Up4EntityDecoder(pipeconf);
+        up4NorthComponent.entityEncoder = new Up4EntityEncoder(pipeconf);
         mockUp4Service = new MockUp4Service();
         up4NorthComponent.up4Service = mockUp4Service;
+        up4NorthComponent.writeScheduler = new Up4WriteScheduler(2, 16);
+        up4NorthComponent.readChunkSize = OsgiPropertyConstants.READ_CHUNK_SIZE_DEFAULT;
+        up4NorthComponent.readExecutor = Executors.newFixedThreadPool(2);
+        // Packet-outs are sent on the calling thread.
+        up4NorthComponent.packetOutExecutor = MoreExecutors.newDirectExecutorService();
+        up4NorthComponent.resyncExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        up4NorthComponent.writeScheduler.shutdown();
+        up4NorthComponent.readExecutor.shutdown();
+        up4NorthComponent.resyncExecutor.shutdown();
     }
 
     /**
@@ -111,8 +137,10 @@ public class Up4NorthComponentTest {
 
         // Read and write, and assert errors are hit
         up4NorthService.read(readRequest, readResponseObserver);
+        readResponseObserver.awaitCompletion();
         readResponseObserver.assertErrorObserved();
         up4NorthService.write(writeRequest, writeResponseObserver);
+        writeResponseObserver.awaitCompletion();
         writeResponseObserver.assertErrorObserved();
     }
 
@@ -136,6 +164,8 @@ public class Up4NorthComponentTest {
 
         up4NorthService.write(request, responseObserver);
 
+        responseObserver.awaitCompletion();
+
         var response = responseObserver.lastResponse();
         assertThat(response, equalTo(P4RuntimeOuterClass.WriteResponse.getDefaultInstance()));
     }
@@ -160,6 +190,8 @@ public class Up4NorthComponentTest {
 
         up4NorthService.write(request, responseObserver);
 
+        responseObserver.awaitCompletion();
+
         var response = responseObserver.lastResponse();
         assertThat(response, equalTo(P4RuntimeOuterClass.WriteResponse.getDefaultInstance()));
     }
@@ -180,6 +212,8 @@ public class Up4NorthComponentTest {
                 .build();
 
         up4NorthService.read(request, responseObserver);
+
+        responseObserver.awaitCompletion();
         var response = responseObserver.lastResponse();
 
         assertThat(response.getEntitiesCount(), equalTo(1));
@@ -196,10 +230,33 @@ public class Up4NorthComponentTest {
                                      .build())
                 .build();
         up4NorthService.read(request, responseObserver);
+        responseObserver.awaitCompletion();
         var response = responseObserver.lastResponse();
         assertThat(response.getEntitiesList().size(), equalTo(TestImplConstants.PHYSICAL_COUNTER_SIZE * 2));
     }
 
+    @Test
+    public void readChunkedTest() {
+        // A wildcard read larger than the chunk size should be split in multiple responses
+        up4NorthComponent.readChunkSize = 100;
+        MockStreamObserver<P4RuntimeOuterClass.ReadResponse> responseObserver = new MockStreamObserver<>();
+        P4RuntimeOuterClass.ReadRequest request = P4RuntimeOuterClass.ReadRequest.newBuilder()
+                .addEntities(P4RuntimeOuterClass.Entity.newBuilder()
+                                     .setCounterEntry(P4RuntimeOuterClass.CounterEntry.newBuilder().build())
+                                     .build())
+                .build();
+        up4NorthService.read(request, responseObserver);
+        responseObserver.awaitCompletion();
+        int expectedEntities = TestImplConstants.PHYSICAL_COUNTER_SIZE * 2;
+        assertThat(responseObserver.responsesObserved.size(), equalTo((expectedEntities + 99) / 100));
+        int totalEntities = 0;
+        for (P4RuntimeOuterClass.ReadResponse response : responseObserver.responsesObserved) {
+            assertTrue(response.getEntitiesCount() <= 100);
+            totalEntities += response.getEntitiesCount();
+        }
+        assertThat(totalEntities, equalTo(expectedEntities));
+    }
+
     private void readPartialWildcardCounterTest(PiCounterId counterId) {
         // A counter read request with a counterID but no cellId
         // Encode a dummy cell just so we can get the p4runtime counter integer ID from the encoder
@@ -222,6 +279,7 @@ public class Up4NorthComponentTest {
                                      .build())
                 .build();
         up4NorthService.read(request, responseObserver);
+        responseObserver.awaitCompletion();
         var response = responseObserver.lastResponse();
         assertThat(response.getEntitiesList().size(), equalTo(TestImplConstants.PHYSICAL_COUNTER_SIZE));
         for (P4RuntimeOuterClass.Entity entity : response.getEntitiesList()) {
@@ -272,6 +330,8 @@ public class Up4NorthComponentTest {
                 .build();
 
         up4NorthService.read(request, responseObserver);
+
+        responseObserver.awaitCompletion();
         var response = responseObserver.lastResponse();
 
         PiCounterCell expectedCell = new PiCounterCell(
@@ -311,6 +371,17 @@ public class Up4NorthComponentTest {
         readTest(TestImplConstants.UP4_DOWNLINK_SESSION);
     }
 
+    @Test
+    public void downlinkSessionFilteredReadTest() throws Exception {
+        // Only the session of the requested UE should be returned
+        mockUp4Service.apply(TestImplConstants.DOWNLINK_SESSION);
+        mockUp4Service.apply(UpfSessionDownlink.builder()
+                                     .withUeAddress(Ip4Address.valueOf("17.0.0.2"))
+                                     .withGtpTunnelPeerId(TestImplConstants.GTP_TUNNEL_ID)
+                                     .build());
+        readTest(TestImplConstants.UP4_DOWNLINK_SESSION);
+    }
+
     @Test
     public void uplinkSessionReadTest() throws Exception {
         mockUp4Service.apply(TestImplConstants.UPLINK_SESSION);
@@ -404,6 +475,33 @@ public class Up4NorthComponentTest {
         assertThat(mockUp4Service.readAll(UpfEntityType.APPLICATION).size(), equalTo(1));
     }
 
+    @Test
+    public void multipleUpdatesInsertionTest() throws Exception {
+        MockStreamObserver<P4RuntimeOuterClass.WriteResponse> responseObserver = new MockStreamObserver<>();
+        P4RuntimeOuterClass.WriteRequest request = P4RuntimeOuterClass.WriteRequest.newBuilder()
+                .setDeviceId(NorthTestConstants.P4RUNTIME_DEVICE_ID)
+                .addUpdates(P4RuntimeOuterClass.Update.newBuilder()
+                                    .setEntity(Codecs.CODECS.entity().encode(
+                                            TestImplConstants.UP4_DOWNLINK_SESSION, null, pipeconf))
+                                    .setType(P4RuntimeOuterClass.Update.Type.INSERT)
+                                    .build())
+                .addUpdates(P4RuntimeOuterClass.Update.newBuilder()
+                                    .setEntity(Codecs.CODECS.entity().encode(
+                                            TestImplConstants.UP4_DOWNLINK_TERMINATION, null, pipeconf))
+                                    .setType(P4RuntimeOuterClass.Update.Type.INSERT)
+                                    .build())
+                .build();
+
+        up4NorthService.write(request, responseObserver);
+
+        responseObserver.awaitCompletion();
+
+        var response = responseObserver.lastResponse();
+        assertThat(response, equalTo(P4RuntimeOuterClass.WriteResponse.getDefaultInstance()));
+        assertThat(mockUp4Service.readAll(UpfEntityType.SESSION_DOWNLINK).size(), equalTo(1));
+        assertThat(mockUp4Service.readAll(UpfEntityType.TERMINATION_DOWNLINK).size(), equalTo(1));
+    }
+
     // ------------------- DELETION TESTS --------------------------------------
 
     @Test
@@ -456,11 +554,16 @@ public class Up4NorthComponentTest {
     }
 
     public void doArbitration(StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> requestObserver) {
+        doArbitration(requestObserver, P4RUNTIME_ELECTION_ID);
+    }
+
+    public void doArbitration(StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> requestObserver,
+                              P4RuntimeOuterClass.Uint128 electionId) {
         P4RuntimeOuterClass.StreamMessageRequest request = P4RuntimeOuterClass.StreamMessageRequest.newBuilder()
                 .setArbitration(P4RuntimeOuterClass.MasterArbitrationUpdate.newBuilder()
                                         .setDeviceId(P4RUNTIME_DEVICE_ID)
                                         .setRole(P4RUNTIME_ROLE)
-                                        .setElectionId(P4RUNTIME_ELECTION_ID)
+                                        .setElectionId(electionId)
                                         .build())
                 .build();
 
@@ -484,6 +587,29 @@ public class Up4NorthComponentTest {
                    equalTo(Status.newBuilder().setCode(Code.OK.getNumber()).build()));
     }
 
+    @Test
+    public void reconnectAfterStreamClosedTest() {
+        MockStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver
+                = new MockStreamObserver<>();
+        responseObserver.setErrorExpected(io.grpc.Status.UNIMPLEMENTED.asException());
+        StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> requestObserver
+                = up4NorthService.streamChannel(responseObserver);
+        doArbitration(requestObserver);
+        assertThat(up4NorthComponent.streamStats().size(), equalTo(1));
+        // Updates of the arbitration are not supported, the stream is closed.
+        doArbitration(requestObserver);
+        responseObserver.assertErrorObserved();
+        assertThat(up4NorthComponent.streamStats().size(), equalTo(0));
+
+        // A new stream with the same election_id is accepted.
+        MockStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> newResponseObserver
+                = new MockStreamObserver<>();
+        doArbitration(up4NorthService.streamChannel(newResponseObserver));
+        assertThat(newResponseObserver.lastResponse().getArbitration().getStatus().getCode(),
+                   equalTo(Code.OK.getNumber()));
+        assertThat(up4NorthComponent.streamStats().size(), equalTo(1));
+    }
+
     public MockStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> doPacketOut(byte[] payload) {
         MockStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver
                 = new MockStreamObserver<>();
@@ -538,6 +664,87 @@ public class Up4NorthComponentTest {
         assertThat(mockUp4Service.sentPacketOuts.size(), equalTo(0));
     }
 
+    @Test
+    public void digestAckWithoutBatcherTest() {
+        // The DDN batcher is not set, as after the component is deactivated.
+        MockStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> responseObserver
+                = new MockStreamObserver<>();
+        StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> requestObserver
+                = up4NorthService.streamChannel(responseObserver);
+        doArbitration(requestObserver);
+        requestObserver.onNext(P4RuntimeOuterClass.StreamMessageRequest.newBuilder()
+                                       .setDigestAck(P4RuntimeOuterClass.DigestListAck.newBuilder()
+                                                             .setDigestId(ExtraP4InfoConstants.DDN_DIGEST_ID)
+                                                             .setListId(1)
+                                                             .build())
+                                       .build());
+        // There should be just the arbitration response, and no error.
+        assertThat(responseObserver.responsesObserved.size(), equalTo(1));
+        assertThat(responseObserver.lastError(), equalTo(null));
+    }
+
+    @Test
+    public void writeAfterDeactivateTest() throws Exception {
+        // The write scheduler is not set, as after the component is deactivated.
+        Up4WriteScheduler scheduler = up4NorthComponent.writeScheduler;
+        up4NorthComponent.writeScheduler = null;
+        try {
+            P4RuntimeOuterClass.WriteRequest request = P4RuntimeOuterClass.WriteRequest.newBuilder()
+                    .setDeviceId(P4RUNTIME_DEVICE_ID)
+                    .addUpdates(P4RuntimeOuterClass.Update.newBuilder()
+                                        .setType(P4RuntimeOuterClass.Update.Type.INSERT)
+                                        .setEntity(Codecs.CODECS.entity().encode(
+                                                TestImplConstants.UP4_TUNNEL_PEER, null, pipeconf)))
+                    .build();
+            MockStreamObserver<P4RuntimeOuterClass.WriteResponse> responseObserver = new MockStreamObserver<>();
+            responseObserver.setErrorExpected(io.grpc.Status.UNAVAILABLE.asException());
+            up4NorthService.write(request, responseObserver);
+            responseObserver.awaitCompletion();
+            responseObserver.assertErrorObserved();
+            assertThat(io.grpc.Status.fromThrowable(responseObserver.lastError()).getCode(),
+                       equalTo(io.grpc.Status.Code.UNAVAILABLE));
+        } finally {
+            up4NorthComponent.writeScheduler = scheduler;
+        }
+    }
+
+    @Test
+    public void digestEntryNotWrittenOnFailedRequestTest() {
+        P4RuntimeOuterClass.DigestEntry.Config config = P4RuntimeOuterClass.DigestEntry.Config.newBuilder()
+                .setMaxListSize(1)
+                .build();
+        P4RuntimeOuterClass.Entity digestEntry = P4RuntimeOuterClass.Entity.newBuilder()
+                .setDigestEntry(P4RuntimeOuterClass.DigestEntry.newBuilder()
+                                        .setDigestId(ExtraP4InfoConstants.DDN_DIGEST_ID)
+                                        .setConfig(config))
+                .build();
+        P4RuntimeOuterClass.Entity unsupportedEntry = P4RuntimeOuterClass.Entity.newBuilder()
+                .setExternEntry(P4RuntimeOuterClass.ExternEntry.getDefaultInstance())
+                .build();
+        P4RuntimeOuterClass.WriteRequest request = P4RuntimeOuterClass.WriteRequest.newBuilder()
+                .setDeviceId(P4RUNTIME_DEVICE_ID)
+                .addUpdates(P4RuntimeOuterClass.Update.newBuilder()
+                                    .setType(P4RuntimeOuterClass.Update.Type.INSERT)
+                                    .setEntity(digestEntry))
+                .addUpdates(P4RuntimeOuterClass.Update.newBuilder()
+                                    .setType(P4RuntimeOuterClass.Update.Type.INSERT)
+                                    .setEntity(unsupportedEntry))
+                .build();
+        MockStreamObserver<P4RuntimeOuterClass.WriteResponse> responseObserver = new MockStreamObserver<>();
+        responseObserver.setErrorExpected(io.grpc.Status.INVALID_ARGUMENT.asException());
+        up4NorthService.write(request, responseObserver);
+        responseObserver.awaitCompletion();
+        responseObserver.assertErrorObserved();
+        assertThat(up4NorthComponent.ddnClientConfig(), equalTo(null));
+
+        // The same digest entry alone is written.
+        request = request.toBuilder().removeUpdates(1).build();
+        responseObserver = new MockStreamObserver<>();
+        up4NorthService.write(request, responseObserver);
+        responseObserver.awaitCompletion();
+        assertThat(up4NorthComponent.ddnClientConfig(), equalTo(config));
+    }
+
     @Test
     public void setPipelineConfigTest() {
         MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> responseObserver
@@ -556,6 +763,132 @@ public class Up4NorthComponentTest {
                    equalTo(P4RuntimeOuterClass.SetForwardingPipelineConfigResponse.getDefaultInstance()));
     }
 
+    private MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> resync(
+            P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action action) {
+        return resync(action, P4RUNTIME_ELECTION_ID, p4Info, new MockStreamObserver<>());
+    }
+
+    private MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> resync(
+            P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action action,
+            P4RuntimeOuterClass.Uint128 electionId,
+            P4InfoOuterClass.P4Info otherP4Info,
+            MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> responseObserver) {
+        up4NorthService.setForwardingPipelineConfig(
+                P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.newBuilder()
+                        .setDeviceId(NorthTestConstants.P4RUNTIME_DEVICE_ID)
+                        .setElectionId(electionId)
+                        .setAction(action)
+                        .setConfig(P4RuntimeOuterClass.ForwardingPipelineConfig.newBuilder()
+                                           .setP4Info(otherP4Info)
+                                           .setP4DeviceConfig(Up4NorthComponent.RESYNC_DEVICE_CONFIG)
+                                           .build())
+                        .build(),
+                responseObserver);
+        responseObserver.awaitCompletion();
+        return responseObserver;
+    }
+
+    private MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> expectResyncError(
+            P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action action,
+            P4RuntimeOuterClass.Uint128 electionId, P4InfoOuterClass.P4Info otherP4Info,
+            io.grpc.Status.Code expectedCode) {
+        MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> responseObserver
+                = new MockStreamObserver<>();
+        responseObserver.setErrorExpected(io.grpc.Status.UNKNOWN.asException());
+        resync(action, electionId, otherP4Info, responseObserver);
+        responseObserver.assertErrorObserved();
+        assertThat(io.grpc.Status.fromThrowable(responseObserver.lastError()).getCode(), equalTo(expectedCode));
+        return responseObserver;
+    }
+
+    private StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> openStream(
+            P4RuntimeOuterClass.Uint128 electionId) {
+        StreamObserver<P4RuntimeOuterClass.StreamMessageRequest> requestObserver
+                = up4NorthService.streamChannel(new MockStreamObserver<>());
+        doArbitration(requestObserver, electionId);
+        return requestObserver;
+    }
+
+    @Test
+    public void resyncTest() {
+        openStream(P4RUNTIME_ELECTION_ID);
+        resync(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE);
+        assertTrue(mockUp4Service.resyncInProgress);
+        var responseObserver = resync(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.COMMIT);
+        assertThat(responseObserver.lastResponse(),
+                   equalTo(P4RuntimeOuterClass.SetForwardingPipelineConfigResponse.getDefaultInstance()));
+        assertThat(mockUp4Service.resyncCommits, equalTo(1));
+    }
+
+    @Test
+    public void resyncCommitWithoutBeginTest() {
+        openStream(P4RUNTIME_ELECTION_ID);
+        expectResyncError(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.COMMIT,
+                          P4RUNTIME_ELECTION_ID, p4Info, io.grpc.Status.Code.FAILED_PRECONDITION);
+        assertThat(mockUp4Service.resyncCommits, equalTo(0));
+    }
+
+    @Test
+    public void pipelinePushIsNotResyncTest() {
+        openStream(P4RUNTIME_ELECTION_ID);
+        MockStreamObserver<P4RuntimeOuterClass.SetForwardingPipelineConfigResponse> responseObserver
+                = new MockStreamObserver<>();
+        up4NorthService.setForwardingPipelineConfig(
+                P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.newBuilder()
+                        .setDeviceId(NorthTestConstants.P4RUNTIME_DEVICE_ID)
+                        .setElectionId(P4RUNTIME_ELECTION_ID)
+                        .setAction(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE)
+                        .setConfig(P4RuntimeOuterClass.ForwardingPipelineConfig.newBuilder()
+                                           .setP4Info(p4Info)
+                                           .build())
+                        .build(),
+                responseObserver);
+        assertThat(responseObserver.lastResponse(),
+                   equalTo(P4RuntimeOuterClass.SetForwardingPipelineConfigResponse.getDefaultInstance()));
+        assertFalse(mockUp4Service.resyncInProgress);
+    }
+
+    @Test
+    public void resyncNotPrimaryTest() {
+        P4RuntimeOuterClass.Uint128 higherElectionId = P4RuntimeOuterClass.Uint128.newBuilder()
+                .setHigh(1).setLow(0).build();
+        // No client connected.
+        expectResyncError(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE,
+                          P4RUNTIME_ELECTION_ID, p4Info, io.grpc.Status.Code.PERMISSION_DENIED);
+        openStream(P4RUNTIME_ELECTION_ID);
+        openStream(higherElectionId);
+        expectResyncError(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE,
+                          P4RUNTIME_ELECTION_ID, p4Info, io.grpc.Status.Code.PERMISSION_DENIED);
+        assertFalse(mockUp4Service.resyncInProgress);
+        resync(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE,
+               higherElectionId, p4Info, new MockStreamObserver<>());
+        assertTrue(mockUp4Service.resyncInProgress);
+    }
+
+    @Test
+    public void resyncP4InfoMismatchTest() {
+        openStream(P4RUNTIME_ELECTION_ID);
+        expectResyncError(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE,
+                          P4RUNTIME_ELECTION_ID, P4InfoOuterClass.P4Info.getDefaultInstance(),
+                          io.grpc.Status.Code.INVALID_ARGUMENT);
+        assertFalse(mockUp4Service.resyncInProgress);
+    }
+
+    @Test
+    public void resyncAbortedOnStreamCloseTest() {
+        var requestObserver = openStream(P4RUNTIME_ELECTION_ID);
+        resync(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.VERIFY_AND_SAVE);
+        assertTrue(mockUp4Service.resyncInProgress);
+        requestObserver.onCompleted();
+        assertFalse(mockUp4Service.resyncInProgress);
+
+        // The reconnected client must begin a new resync.
+        openStream(P4RUNTIME_ELECTION_ID);
+        expectResyncError(P4RuntimeOuterClass.SetForwardingPipelineConfigRequest.Action.COMMIT,
+                          P4RUNTIME_ELECTION_ID, p4Info, io.grpc.Status.Code.FAILED_PRECONDITION);
+        assertThat(mockUp4Service.resyncCommits, equalTo(0));
+    }
+
     @Test
     public void getPipelineConfigTest() {
 
@@ -571,10 +904,29 @@ public class Up4NorthComponentTest {
         assertThat(response.getConfig().getP4Info(), equalTo(modifiedP4info));
     }
 
+    @Test
+    public void physicalP4InfoCachedTest() {
+        up4NorthComponent.getPhysicalP4Info();
+        int tableSizeReads = mockUp4Service.tableSizeReads;
+        up4NorthComponent.getPhysicalP4Info();
+        assertThat(mockUp4Service.tableSizeReads, equalTo(tableSizeReads));
+        // A config update invalidates the cached p4info
+        up4NorthComponent.new InternalUp4EventListener().event(
+                new Up4Event(Up4Event.Type.CONFIG_UPDATED, new Up4EventSubject(null)));
+        up4NorthComponent.getPhysicalP4Info();
+        assertThat(mockUp4Service.tableSizeReads, equalTo(tableSizeReads * 2));
+    }
+
     static class MockStreamObserver<T> implements StreamObserver<T> {
-        public List<T> responsesObserved = new ArrayList<>();
+        private static final long COMPLETION_TIMEOUT_SECONDS = 5;
+
+        public List<T> responsesObserved = new CopyOnWriteArrayList<>();
         Throwable errorExpected;
-        Throwable errorObserved;
+        volatile Throwable errorObserved;
+        // Responses to reads and writes are sent asynchronously, failures
+        // observed in the callbacks are rethrown by awaitCompletion.
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile AssertionError failure;
 
         public T lastResponse() {
             return responsesObserved.get(responsesObserved.size() - 1);
@@ -599,33 +951,68 @@ public class Up4NorthComponentTest {
             return errorObserved;
         }
 
+        /**
+         * Waits for the stream to be completed, either successfully or with an error.
+         */
+        public void awaitCompletion() {
+            try {
+                if (!completed.await(COMPLETION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    fail("gRPC stream was not completed in time.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted while waiting for gRPC stream completion.");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
         @Override
         public void onNext(T value) {
-            if (this.errorObserved != null) {
-                fail("Stream observer experienced an onNext call after an error was observed");
+            try {
+                if (this.errorObserved != null) {
+                    fail("Stream observer experienced an onNext call after an error was observed");
+                }
+                responsesObserved.add(value);
+            } catch (AssertionError e) {
+                failure = e;
+                throw e;
             }
-            responsesObserved.add(value);
         }
 
         @Override
         public void onError(Throwable t) {
-            if (errorExpected != null) {
-                if (this.errorObserved != null) {
-                    fail("Stream observer unexpectedly received more than one error");
+            try {
+                if (errorExpected != null) {
+                    if (this.errorObserved != null) {
+                        fail("Stream observer unexpectedly received more than one error");
+                    }
+                    this.errorObserved = t;
+                    assertThat(errorObserved.getClass(), equalTo(errorExpected.getClass()));
+                } else {
+                    fail("Stream observer shouldn't see any errors");
                 }
-                this.errorObserved = t;
-                assertThat(errorObserved.getClass(), equalTo(errorExpected.getClass()));
-            } else {
-                fail("Stream observer shouldn't see any errors");
+            } catch (AssertionError e) {
+                failure = e;
+                throw e;
+            } finally {
+                completed.countDown();
             }
         }
 
         @Override
         public void onCompleted() {
-            if (this.errorObserved != null) {
-                fail("Stream observer experienced an onCompleted call after an error was observed");
+            try {
+                if (this.errorObserved != null) {
+                    fail("Stream observer experienced an onCompleted call after an error was observed");
+                }
+            } catch (AssertionError e) {
+                failure = e;
+                throw e;
+            } finally {
+                completed.countDown();
             }
-
         }
     }
 }
@@ -0,0 +1,82 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class Up4PacketOutQueueTest {
+
+    private static final ByteString FRAME_1 = ByteString.copyFrom(new byte[]{1, 2, 3});
+    private static final ByteString FRAME_2 = ByteString.copyFrom(new byte[]{4, 5, 6});
+
+    private final List<ByteBuffer> sent = new ArrayList<>();
+    private final List<Runnable> scheduled = new ArrayList<>();
+    // Runs the drain only when requested by the test.
+    private final Executor manualExecutor = scheduled::add;
+
+    private void runScheduled() {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void sendTest() {
+        Up4PacketOutQueue queue = new Up4PacketOutQueue("test", 8, MoreExecutors.directExecutor(),
+                                                        frame -> sent.add(frame));
+        assertThat(queue.offer(FRAME_1), is(true));
+        assertThat(queue.offer(FRAME_2), is(true));
+        assertThat(sent, equalTo(List.of(FRAME_1.asReadOnlyByteBuffer(), FRAME_2.asReadOnlyByteBuffer())));
+        assertThat(sent.get(0).isReadOnly(), is(true));
+        assertThat(queue.stats().sent(), equalTo(2L));
+        assertThat(queue.stats().dropped(), equalTo(0L));
+    }
+
+    @Test
+    public void dropWhenFullTest() {
+        Up4PacketOutQueue queue = new Up4PacketOutQueue("test", 1, manualExecutor, frame -> sent.add(frame));
+        assertThat(queue.offer(FRAME_1), is(true));
+        assertThat(queue.offer(FRAME_2), is(false));
+        assertThat(queue.stats().queueDepth(), equalTo(1));
+        assertThat(queue.stats().dropped(), equalTo(1L));
+        runScheduled();
+        assertThat(sent, equalTo(List.of(FRAME_1.asReadOnlyByteBuffer())));
+        // Space is available again.
+        assertThat(queue.offer(FRAME_2), is(true));
+        runScheduled();
+        assertThat(queue.stats().sent(), equalTo(2L));
+    }
+
+    @Test
+    public void failedSendTest() {
+        Up4PacketOutQueue queue = new Up4PacketOutQueue("test", 8, MoreExecutors.directExecutor(),
+                                                        frame -> false);
+        queue.offer(FRAME_1);
+        assertThat(queue.stats().sent(), equalTo(0L));
+        assertThat(queue.stats().failed(), equalTo(1L));
+    }
+
+    @Test
+    public void closeTest() {
+        Up4PacketOutQueue queue = new Up4PacketOutQueue("test", 8, manualExecutor, frame -> sent.add(frame));
+        queue.offer(FRAME_1);
+        queue.close();
+        runScheduled();
+        assertThat(sent.isEmpty(), is(true));
+        assertThat(queue.offer(FRAME_2), is(false));
+        assertThat(queue.stats().dropped(), equalTo(2L));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import io.grpc.StatusException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.Test;
+import p4.v1.P4RuntimeOuterClass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class Up4StreamSenderTest {
+
+    private final List<Up4StreamSender> closedSenders = new ArrayList<>();
+
+    private Up4StreamSender newSender(FakeServerObserver observer, int capacity,
+                                      Up4StreamSender.OverflowPolicy overflowPolicy) {
+        return new Up4StreamSender(observer, capacity, overflowPolicy, closedSenders::add);
+    }
+
+    private static P4RuntimeOuterClass.StreamMessageResponse arbitration() {
+        return P4RuntimeOuterClass.StreamMessageResponse.newBuilder()
+                .setArbitration(P4RuntimeOuterClass.MasterArbitrationUpdate.getDefaultInstance())
+                .build();
+    }
+
+    private static P4RuntimeOuterClass.StreamMessageResponse digest(long listId) {
+        return P4RuntimeOuterClass.StreamMessageResponse.newBuilder()
+                .setDigest(P4RuntimeOuterClass.DigestList.newBuilder().setListId(listId))
+                .build();
+    }
+
+    private static List<Long> listIds(List<P4RuntimeOuterClass.StreamMessageResponse> messages) {
+        List<Long> ids = new ArrayList<>();
+        messages.forEach(message -> ids.add(message.getDigest().getListId()));
+        return ids;
+    }
+
+    @Test
+    public void sendWhenReadyTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 4, Up4StreamSender.OverflowPolicy.DROP_OLDEST);
+        sender.start();
+        observer.ready = false;
+        sender.send(digest(1));
+        sender.send(digest(2));
+        assertThat(observer.received.isEmpty(), is(true));
+        assertThat(sender.stats().queueDepth(), equalTo(2));
+        observer.setReady();
+        assertThat(listIds(observer.received), equalTo(List.of(1L, 2L)));
+        assertThat(sender.stats().sent(), equalTo(2L));
+        assertThat(sender.stats().queueDepth(), equalTo(0));
+    }
+
+    @Test
+    public void dropOldestTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 2, Up4StreamSender.OverflowPolicy.DROP_OLDEST);
+        sender.start();
+        observer.ready = false;
+        assertThat(sender.send(digest(1)), is(true));
+        assertThat(sender.send(digest(2)), is(true));
+        assertThat(sender.send(digest(3)), is(true));
+        assertThat(sender.stats().dropped(), equalTo(1L));
+        observer.setReady();
+        assertThat(listIds(observer.received), equalTo(List.of(2L, 3L)));
+        assertThat(closedSenders.isEmpty(), is(true));
+    }
+
+    @Test
+    public void dropOldestKeepsArbitrationTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 2, Up4StreamSender.OverflowPolicy.DROP_OLDEST);
+        sender.start();
+        observer.ready = false;
+        sender.send(arbitration());
+        sender.send(digest(1));
+        sender.send(digest(2));
+        assertThat(sender.stats().dropped(), equalTo(1L));
+        observer.setReady();
+        assertThat(observer.received.size(), equalTo(2));
+        assertThat(observer.received.get(0).hasArbitration(), is(true));
+        assertThat(observer.received.get(1).getDigest().getListId(), equalTo(2L));
+
+        // A queue full of arbitration messages grows instead of dropping them.
+        observer.ready = false;
+        observer.received.clear();
+        sender.send(arbitration());
+        sender.send(arbitration());
+        sender.send(arbitration());
+        assertThat(sender.stats().queueDepth(), equalTo(3));
+        observer.setReady();
+        assertThat(observer.received.size(), equalTo(3));
+    }
+
+    @Test
+    public void closeStreamTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 2, Up4StreamSender.OverflowPolicy.CLOSE_STREAM);
+        sender.start();
+        observer.ready = false;
+        sender.send(digest(1));
+        sender.send(digest(2));
+        assertThat(sender.send(digest(3)), is(false));
+        assertThat(sender.isClosed(), is(true));
+        assertThat(observer.error, instanceOf(StatusException.class));
+        assertThat(((StatusException) observer.error).getStatus().getCode(),
+                   equalTo(io.grpc.Status.Code.RESOURCE_EXHAUSTED));
+        assertThat(sender.stats().dropped(), equalTo(3L));
+        assertThat(closedSenders, equalTo(List.of(sender)));
+        observer.setReady();
+        assertThat(observer.received.isEmpty(), is(true));
+        // Closing an already closed stream does not notify again.
+        sender.onError(io.grpc.Status.CANCELLED);
+        assertThat(closedSenders.size(), equalTo(1));
+    }
+
+    @Test
+    public void cancelTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 2, Up4StreamSender.OverflowPolicy.DROP_OLDEST);
+        sender.start();
+        observer.onCancelHandler.run();
+        assertThat(closedSenders, equalTo(List.of(sender)));
+        assertThat(sender.send(digest(1)), is(false));
+        assertThat(observer.received.isEmpty(), is(true));
+    }
+
+    @Test
+    public void completeTest() {
+        FakeServerObserver observer = new FakeServerObserver();
+        Up4StreamSender sender = newSender(observer, 2, Up4StreamSender.OverflowPolicy.CLOSE_STREAM);
+        sender.start();
+        sender.send(digest(1));
+        sender.onCompleted();
+        assertThat(observer.completed, is(true));
+        assertThat(closedSenders, equalTo(List.of(sender)));
+        assertThat(listIds(observer.received), equalTo(List.of(1L)));
+    }
+
+    private static class FakeServerObserver
+            extends ServerCallStreamObserver<P4RuntimeOuterClass.StreamMessageResponse> {
+        private final List<P4RuntimeOuterClass.StreamMessageResponse> received = new ArrayList<>();
+        private boolean ready = true;
+        private Throwable error;
+        private boolean completed;
+        private Runnable onReadyHandler;
+        private Runnable onCancelHandler;
+
+        private void setReady() {
+            ready = true;
+            onReadyHandler.run();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(P4RuntimeOuterClass.StreamMessageResponse value) {
+            received.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
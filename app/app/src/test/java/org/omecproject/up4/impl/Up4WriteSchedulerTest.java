@@ -0,0 +1,172 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omecproject.up4.Up4EntityUpdate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.fail;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_SESSION;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_TERMINATION;
+import static org.omecproject.up4.impl.TestImplConstants.UPLINK_SESSION;
+import static org.omecproject.up4.impl.TestImplConstants.UPLINK_TERMINATION;
+
+public class Up4WriteSchedulerTest {
+
+    private Up4WriteScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new Up4WriteScheduler(4, 16);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void sameUeSameLaneTest() {
+        assertThat(Up4WriteScheduler.laneKey(DOWNLINK_SESSION),
+                   equalTo(Up4WriteScheduler.laneKey(DOWNLINK_TERMINATION)));
+        assertThat(Up4WriteScheduler.laneKey(DOWNLINK_SESSION),
+                   equalTo(Up4WriteScheduler.laneKey(UPLINK_TERMINATION)));
+    }
+
+    @Test
+    public void sameUeOrderPreservedTest() throws Exception {
+        List<Up4EntityUpdate> updates = ImmutableList.of(
+                Up4EntityUpdate.apply(DOWNLINK_SESSION),
+                Up4EntityUpdate.apply(DOWNLINK_TERMINATION),
+                Up4EntityUpdate.delete(DOWNLINK_TERMINATION),
+                Up4EntityUpdate.delete(DOWNLINK_SESSION));
+        List<Up4EntityUpdate> applied = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit(updates, applied::addAll).get(5, TimeUnit.SECONDS);
+        assertThat(applied, equalTo(updates));
+    }
+
+    @Test
+    public void requestAppliedAsSingleBatchTest() throws Exception {
+        // Uplink sessions are keyed by TEID, the request must still be applied
+        // on a single lane, as one batch, in the order of the request.
+        List<Up4EntityUpdate> updates = ImmutableList.of(
+                Up4EntityUpdate.apply(UPLINK_SESSION),
+                Up4EntityUpdate.apply(DOWNLINK_SESSION),
+                Up4EntityUpdate.apply(UPLINK_TERMINATION),
+                Up4EntityUpdate.apply(DOWNLINK_TERMINATION));
+        List<List<Up4EntityUpdate>> batches = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit(updates, batches::add).get(5, TimeUnit.SECONDS);
+        assertThat(batches.size(), equalTo(1));
+        assertThat(batches.get(0), equalTo(updates));
+        assertThat(scheduler.laneKey(updates), equalTo(Up4WriteScheduler.laneKey(DOWNLINK_SESSION)));
+    }
+
+    @Test
+    public void uplinkSessionOnUeLaneTest() throws Exception {
+        List<Up4EntityUpdate> uplinkOnly = ImmutableList.of(Up4EntityUpdate.apply(UPLINK_SESSION));
+        assertThat(scheduler.laneKey(uplinkOnly), equalTo(Up4WriteScheduler.laneKey(UPLINK_SESSION)));
+        // The UE of the TEID is learned from a request updating both.
+        scheduler.submit(ImmutableList.of(Up4EntityUpdate.apply(UPLINK_SESSION),
+                                          Up4EntityUpdate.apply(UPLINK_TERMINATION)), u -> { })
+                .get(5, TimeUnit.SECONDS);
+        assertThat(scheduler.laneKey(uplinkOnly), equalTo(Up4WriteScheduler.laneKey(UPLINK_TERMINATION)));
+        // And forgotten when the uplink session is deleted.
+        List<Up4EntityUpdate> delete = ImmutableList.of(Up4EntityUpdate.delete(UPLINK_SESSION));
+        assertThat(scheduler.laneKey(delete), equalTo(Up4WriteScheduler.laneKey(UPLINK_TERMINATION)));
+        scheduler.submit(delete, u -> { }).get(5, TimeUnit.SECONDS);
+        assertThat(scheduler.laneKey(uplinkOnly), equalTo(Up4WriteScheduler.laneKey(UPLINK_SESSION)));
+    }
+
+    @Test
+    public void laneFullTest() throws Exception {
+        Up4WriteScheduler small = new Up4WriteScheduler(1, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            List<Up4EntityUpdate> updates = ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_SESSION));
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Void> running = small.submit(updates, u -> {
+                started.countDown();
+                awaitUninterruptibly(latch);
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+            CompletableFuture<Void> queued = small.submit(updates, u -> { });
+            try {
+                small.submit(updates, u -> { }).get(5, TimeUnit.SECONDS);
+                fail("Expected exception");
+            } catch (ExecutionException e) {
+                assertThat(Status.fromThrowable(e.getCause()).getCode(), equalTo(Status.Code.RESOURCE_EXHAUSTED));
+            }
+            latch.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+        } finally {
+            latch.countDown();
+            small.shutdown();
+        }
+    }
+
+    @Test
+    public void predecessorDrainedTest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        Up4WriteScheduler successor = null;
+        try {
+            scheduler.submit(ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_SESSION)), u -> {
+                awaitUninterruptibly(latch);
+                applied.add("old");
+            });
+            successor = new Up4WriteScheduler(2, 16, scheduler);
+            scheduler.shutdown();
+            CompletableFuture<Void> future = successor.submit(
+                    ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_TERMINATION)), u -> applied.add("new"));
+            latch.countDown();
+            future.get(5, TimeUnit.SECONDS);
+            assertThat(applied, contains("old", "new"));
+        } finally {
+            latch.countDown();
+            if (successor != null) {
+                successor.shutdown();
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void errorPropagatedTest() throws Exception {
+        try {
+            scheduler.submit(ImmutableList.of(Up4EntityUpdate.apply(DOWNLINK_SESSION)), u -> {
+                throw io.grpc.Status.RESOURCE_EXHAUSTED.asException();
+            }).get(5, TimeUnit.SECONDS);
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(io.grpc.StatusException.class));
+        }
+        assertThat(scheduler.laneStats().stream().mapToLong(Up4WriteScheduler.LaneStats::completed).sum(),
+                   equalTo(1L));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.behaviour.upf.UpfCounter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class UpfCounterAggregatorTest {
+
+    private UpfCounterAggregator aggregator;
+
+    private static UpfCounter counter(int cellId, long pkts, long bytes) {
+        return UpfCounter.builder()
+                .withCellId(cellId)
+                .setIngress(pkts, bytes)
+                .setEgress(pkts / 2, bytes / 2)
+                .build();
+    }
+
+    private static void assertCounter(UpfCounter actual, int cellId, long pkts, long bytes) {
+        assertThat(actual.getCellId(), equalTo(cellId));
+        assertThat(actual.getIngressPkts(), equalTo(pkts));
+        assertThat(actual.getIngressBytes(), equalTo(bytes));
+        assertThat(actual.getEgressPkts(), equalTo(pkts / 2));
+        assertThat(actual.getEgressBytes(), equalTo(bytes / 2));
+    }
+
+    private static List<Integer> cellIds(List<UpfCounter> counters) {
+        return counters.stream().map(UpfCounter::getCellId).collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() {
+        aggregator = new UpfCounterAggregator();
+    }
+
+    @Test
+    public void sumTest() {
+        aggregator.addAll(List.of(counter(1, 10, 1000), counter(3, 4, 400)));
+        aggregator.addAll(List.of(counter(1, 20, 2000)));
+        assertThat(aggregator.size(), equalTo(2));
+        assertCounter(aggregator.get(1), 1, 30, 3000);
+        assertCounter(aggregator.get(3), 3, 4, 400);
+        assertCounter(aggregator.get(2), 2, 0, 0);
+    }
+
+    @Test
+    public void countersTest() {
+        aggregator.addAll(List.of(counter(5, 2, 200), counter(0, 1, 100), counter(9, 3, 300)));
+        assertThat(cellIds(aggregator.counters(cellId -> true)), contains(0, 5, 9));
+        List<UpfCounter> filtered = aggregator.counters(cellId -> cellId >= 5 && cellId < 9);
+        assertThat(cellIds(filtered), contains(5));
+        assertCounter(filtered.get(0), 5, 2, 200);
+    }
+
+    @Test
+    public void growTest() {
+        aggregator.add(counter(100_000, 7, 700));
+        assertCounter(aggregator.get(100_000), 100_000, 7, 700);
+    }
+
+    @Test
+    public void resetTest() {
+        aggregator.addAll(List.of(counter(1, 10, 1000), counter(2, 20, 2000)));
+        aggregator.reset();
+        assertThat(aggregator.size(), equalTo(0));
+        assertThat(aggregator.counters(cellId -> true), empty());
+        aggregator.add(counter(1, 5, 500));
+        List<UpfCounter> counters = aggregator.counters(cellId -> true);
+        assertThat(cellIds(counters), contains(1));
+        assertCounter(counters.get(0), 1, 5, 500);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.omecproject.up4.Up4EntityFilter;
+import org.onlab.packet.Ip4Address;
+import org.onosproject.net.behaviour.upf.UpfEntityType;
+import org.onosproject.net.behaviour.upf.UpfSessionDownlink;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_SESSION;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_SESSION_DBUF;
+import static org.omecproject.up4.impl.TestImplConstants.DOWNLINK_TERMINATION;
+import static org.omecproject.up4.impl.TestImplConstants.GTP_TUNNEL_ID;
+import static org.omecproject.up4.impl.TestImplConstants.UE_ADDR;
+
+public class UpfEntityIndexTest {
+
+    private static final UpfSessionDownlink OTHER_DOWNLINK_SESSION = UpfSessionDownlink.builder()
+            .withUeAddress(Ip4Address.valueOf("17.0.0.2"))
+            .withGtpTunnelPeerId(GTP_TUNNEL_ID)
+            .build();
+    private static final Up4EntityFilter UE_FILTER = Up4EntityFilter.builder().withUeAddress(UE_ADDR).build();
+
+    private UpfEntityIndex index;
+
+    @Before
+    public void setUp() {
+        index = new UpfEntityIndex();
+    }
+
+    @Test
+    public void notLoadedTest() {
+        assertThat(index.lookup(UpfEntityType.SESSION_DOWNLINK, UE_FILTER), nullValue());
+    }
+
+    @Test
+    public void lookupByUeTest() {
+        long version = index.version(UpfEntityType.SESSION_DOWNLINK);
+        index.load(UpfEntityType.SESSION_DOWNLINK, ImmutableList.of(DOWNLINK_SESSION, OTHER_DOWNLINK_SESSION),
+                   version);
+        assertThat(index.lookup(UpfEntityType.SESSION_DOWNLINK, UE_FILTER), contains(DOWNLINK_SESSION));
+    }
+
+    @Test
+    public void putReplacesAndRemoveTest() {
+        index.load(UpfEntityType.SESSION_DOWNLINK, ImmutableList.of(DOWNLINK_SESSION),
+                   index.version(UpfEntityType.SESSION_DOWNLINK));
+        // Same match key, the entry is modified
+        index.put(DOWNLINK_SESSION_DBUF);
+        assertThat(index.lookup(UpfEntityType.SESSION_DOWNLINK, UE_FILTER), contains(DOWNLINK_SESSION_DBUF));
+        index.remove(DOWNLINK_SESSION);
+        assertThat(index.lookup(UpfEntityType.SESSION_DOWNLINK, UE_FILTER), empty());
+    }
+
+    @Test
+    public void allTest() {
+        assertThat(index.all(UpfEntityType.SESSION_DOWNLINK), nullValue());
+        index.load(UpfEntityType.SESSION_DOWNLINK, ImmutableList.of(DOWNLINK_SESSION),
+                   index.version(UpfEntityType.SESSION_DOWNLINK));
+        index.put(OTHER_DOWNLINK_SESSION);
+        assertThat(index.all(UpfEntityType.SESSION_DOWNLINK), contains(DOWNLINK_SESSION, OTHER_DOWNLINK_SESSION));
+        index.invalidate(UpfEntityType.SESSION_DOWNLINK);
+        assertThat(index.all(UpfEntityType.SESSION_DOWNLINK), nullValue());
+    }
+
+    @Test
+    public void containsTest() {
+        // Unknown until loaded
+        assertFalse(index.contains(DOWNLINK_SESSION));
+        index.load(UpfEntityType.SESSION_DOWNLINK, ImmutableList.of(DOWNLINK_SESSION),
+                   index.version(UpfEntityType.SESSION_DOWNLINK));
+        assertTrue(index.contains(DOWNLINK_SESSION));
+        // Same match key, different action
+        assertFalse(index.contains(DOWNLINK_SESSION_DBUF));
+        assertFalse(index.contains(OTHER_DOWNLINK_SESSION));
+    }
+
+    @Test
+    public void modifiedWhileLoadingTest() {
+        long version = index.version(UpfEntityType.SESSION_DOWNLINK);
+        index.put(OTHER_DOWNLINK_SESSION);
+        assertFalse(index.load(UpfEntityType.SESSION_DOWNLINK, ImmutableList.of(DOWNLINK_SESSION), version));
+        assertThat(index.lookup(UpfEntityType.SESSION_DOWNLINK, UE_FILTER), nullValue());
+        // Other entity types are not affected
+        index.load(UpfEntityType.TERMINATION_DOWNLINK, ImmutableList.of(DOWNLINK_TERMINATION),
+                   index.version(UpfEntityType.TERMINATION_DOWNLINK));
+        assertThat(index.lookup(UpfEntityType.TERMINATION_DOWNLINK, UE_FILTER), contains(DOWNLINK_TERMINATION));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ SPDX-License-Identifier: Apache-2.0
+ SPDX-FileCopyrightText: 2021-present Open Networking Foundation <info@opennetworking.org>
+ */
+package org.omecproject.up4.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.omecproject.up4.impl.TestBatchSink.NEVER;
+
+public class WindowedCoalescerTest {
+
+    private final TestBatchSink<List<String>> flushed = new TestBatchSink<>();
+    private WindowedCoalescer<Integer, String> coalescer;
+
+    @After
+    public void tearDown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    private void createCoalescer(int maxBatchSize, long windowNs) {
+        coalescer = new WindowedCoalescer<>(this, batch -> () -> flushed.add(batch),
+                                            Executors.defaultThreadFactory(), maxBatchSize, windowNs);
+    }
+
+    @Test
+    public void batchSizeTest() throws InterruptedException {
+        createCoalescer(2, NEVER);
+        coalescer.offer(1, "a");
+        coalescer.offer(2, "b");
+        coalescer.offer(3, "c");
+        assertThat(flushed.next(), contains("a", "b"));
+        // The rest waits for the window.
+        coalescer.flushNow();
+        assertThat(flushed.poll(), contains("c"));
+        flushed.assertEmpty();
+    }
+
+    @Test
+    public void windowTest() throws InterruptedException {
+        createCoalescer(0, TimeUnit.MILLISECONDS.toNanos(50));
+        coalescer.offer(1, "a");
+        coalescer.offer(2, "b");
+        assertThat(flushed.next(), contains("a", "b"));
+    }
+
+    @Test
+    public void noWindowTest() throws InterruptedException {
+        createCoalescer(0, 0);
+        coalescer.offer(1, "a");
+        assertThat(flushed.next(), contains("a"));
+    }
+
+    @Test
+    public void flushNowTest() {
+        createCoalescer(2, NEVER);
+        coalescer.flushNow();
+        flushed.assertEmpty();
+        coalescer.offer(1, "a");
+        coalescer.flushNow();
+        assertThat(flushed.poll(), contains("a"));
+        flushed.assertEmpty();
+    }
+
+    @Test
+    public void offerSupersedesTest() {
+        createCoalescer(0, NEVER);
+        coalescer.offer(1, "a");
+        coalescer.offer(2, "b");
+        assertThat(coalescer.offer(1, "a2"), equalTo("a"));
+        coalescer.flushNow();
+        // Flushed in order of the last offer.
+        assertThat(flushed.poll(), contains("b", "a2"));
+    }
+
+    @Test
+    public void offerIfAbsentTest() {
+        createCoalescer(0, NEVER);
+        assertTrue(coalescer.offerIfAbsent(1, "a"));
+        assertTrue(coalescer.offerIfAbsent(2, "b"));
+        assertFalse(coalescer.offerIfAbsent(1, "a2"));
+        coalescer.flushNow();
+        assertThat(flushed.poll(), contains("a", "b"));
+        // No longer pending once flushed.
+        assertTrue(coalescer.offerIfAbsent(1, "a3"));
+        coalescer.flushNow();
+        assertThat(flushed.poll(), contains("a3"));
+    }
+
+    @Test
+    public void reconfigureTest() throws InterruptedException {
+        createCoalescer(0, NEVER);
+        coalescer.offer(1, "a");
+        coalescer.offer(2, "b");
+        flushed.assertEmpty();
+        // Pending values are flushed according to the new configuration.
+        coalescer.configure(1, NEVER);
+        assertThat(flushed.next(), contains("a"));
+        assertThat(flushed.next(), contains("b"));
+    }
+}